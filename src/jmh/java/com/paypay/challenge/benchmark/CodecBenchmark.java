@@ -0,0 +1,86 @@
+package com.paypay.challenge.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.codec.Codec;
+import com.paypay.challenge.codec.CodecRegistry;
+import com.paypay.challenge.codec.JsonCodec;
+import com.paypay.challenge.test.model.Address;
+import com.paypay.challenge.test.model.Team;
+import com.paypay.challenge.test.model.User;
+import com.paypay.challenge.test.util.Utilities;
+
+/**
+ * Benchmarks the encoding and decoding of a {@link Team}, as the records of a
+ * {@link com.paypay.challenge.queue.DurableImmutableQueue} are, with the binary
+ * codec of a {@link CodecRegistry} and with the {@link JsonCodec}.
+ *
+ * @author hoang.tran
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+    /** The name of the codec. */
+    @Param({ "binary", "json" })
+    private String format;
+
+    private Codec<Team> codec;
+
+    private Team team;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+	this.codec = "json".equals(this.format) ? new JsonCodec<>(Team.class)
+		: new CodecRegistry().codecFor(Team.class);
+	User ana = new User("Ana", Utilities.stringToDate("1990-06-15"), new Address("USA", "Los Angeles", 123456));
+	User suzuki = new User("Suzuki", Utilities.stringToDate("1985-01-20"), new Address("Japan", "Osaka", 5300001));
+	Map<String, Address> offices = new LinkedHashMap<>();
+	offices.put("HQ", new Address("Japan", "Tokyo", 1000001));
+	this.team = new Team("Team A", Utilities.stringToDate("2015-10-01"),
+		new ArrayList<>(Arrays.asList(ana, suzuki)), offices, new int[] { 1, 2, 3 }, new String[] { "fast", "safe" });
+	this.encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try (DataOutputStream out = new DataOutputStream(bytes)) {
+	    this.codec.encode(this.team, out);
+	}
+	return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Team decode() throws IOException {
+	try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(this.encoded))) {
+	    return this.codec.decode(in);
+	}
+    }
+}
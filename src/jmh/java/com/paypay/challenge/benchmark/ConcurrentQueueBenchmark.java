@@ -0,0 +1,145 @@
+package com.paypay.challenge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.paypay.challenge.queue.BankersImmutableQueue;
+import com.paypay.challenge.queue.ConcurrentImmutableQueue;
+import com.paypay.challenge.queue.FlatCombiningQueue;
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.queue.SlowImmutableQueue;
+
+/**
+ * Benchmarks queues shared by several threads, lock-free or flat combining,
+ * each thread offering then polling one element, against the baseline of a
+ * {@link SlowImmutableQueue} guarded by {@code synchronized}. The queue starts
+ * with a backlog of elements, so that the cost of the slow queue operations
+ * shows.
+ * <p>
+ * Run through {@link #main(String[])}, the benchmark is repeated with 1, 2, 4
+ * and up to the number of available processors threads, to show how the
+ * throughput scales.
+ * 
+ * @author hoang.tran
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentQueueBenchmark {
+    /** The shared queue implementation. */
+    @Param({ "synchronizedSlow", "concurrentBankers", "flatCombiningBankers" })
+    private String queueType;
+
+    /** The number of elements in the queue before the benchmark starts. */
+    @Param({ "100" })
+    private int backlog;
+
+    private SharedQueue queue;
+
+    /**
+     * Defines the operations of the benchmarked shared queues.
+     */
+    private interface SharedQueue {
+	void offer(Integer element);
+
+	Integer poll();
+    }
+
+    @Setup
+    public void setUp() {
+	if ("synchronizedSlow".equals(this.queueType)) {
+	    this.queue = new SharedQueue() {
+		private Queue<Integer> queue = new SlowImmutableQueue<>();
+
+		@Override
+		public synchronized void offer(Integer element) {
+		    this.queue = this.queue.enQueue(element);
+		}
+
+		@Override
+		public synchronized Integer poll() {
+		    Integer element = this.queue.head();
+		    this.queue = this.queue.isEmpty() ? this.queue : this.queue.deQueue();
+		    return element;
+		}
+	    };
+	} else if ("flatCombiningBankers".equals(this.queueType)) {
+	    FlatCombiningQueue<Integer> combiningQueue = new FlatCombiningQueue<>(
+		    new ConcurrentImmutableQueue<>(new BankersImmutableQueue<>()));
+	    this.queue = new SharedQueue() {
+		@Override
+		public void offer(Integer element) {
+		    combiningQueue.offer(element);
+		}
+
+		@Override
+		public Integer poll() {
+		    return combiningQueue.poll();
+		}
+	    };
+	} else {
+	    ConcurrentImmutableQueue<Integer> concurrentQueue = new ConcurrentImmutableQueue<>(
+		    new BankersImmutableQueue<>());
+	    this.queue = new SharedQueue() {
+		@Override
+		public void offer(Integer element) {
+		    concurrentQueue.offer(element);
+		}
+
+		@Override
+		public Integer poll() {
+		    return concurrentQueue.poll();
+		}
+	    };
+	}
+
+	for (int i = 0; i < this.backlog; i++) {
+	    this.queue.offer(i);
+	}
+    }
+
+    @Benchmark
+    public Integer offerThenPoll() {
+	this.queue.offer(1);
+	return this.queue.poll();
+    }
+
+    /**
+     * Runs the benchmark with a growing number of threads.
+     * 
+     * @param args
+     *            not used.
+     * @throws RunnerException
+     *             if the benchmark fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+	int processors = Runtime.getRuntime().availableProcessors();
+	for (int threads = 1;; threads = Math.min(2 * threads, processors)) {
+	    Options options = new OptionsBuilder().include(ConcurrentQueueBenchmark.class.getSimpleName())
+		    .threads(threads).addProfiler(GCProfiler.class).build();
+	    new Runner(options).run();
+	    if (threads == processors) {
+		break;
+	    }
+	}
+    }
+}
\ No newline at end of file
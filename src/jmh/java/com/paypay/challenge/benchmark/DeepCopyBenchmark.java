@@ -0,0 +1,71 @@
+package com.paypay.challenge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.clone.CompiledCopyStrategy;
+import com.paypay.challenge.clone.CopyStrategy;
+import com.paypay.challenge.clone.DeepCopy;
+import com.paypay.challenge.clone.GsonCopyStrategy;
+import com.paypay.challenge.codec.CodecCopyStrategy;
+import com.paypay.challenge.test.model.Address;
+import com.paypay.challenge.test.model.User;
+import com.paypay.challenge.test.util.Utilities;
+
+/**
+ * Benchmarks {@link DeepCopy#deepCopy(Object, CopyStrategy)} on the models used
+ * in the queues, with each copy strategy.
+ * 
+ * @author hoang.tran
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeepCopyBenchmark {
+    /** The name of the copy strategy. */
+    @Param({ "compiled", "codec", "gson" })
+    private String strategy;
+
+    private CopyStrategy copyStrategy;
+
+    private Address address;
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+	if ("gson".equals(this.strategy)) {
+	    this.copyStrategy = new GsonCopyStrategy();
+	} else if ("codec".equals(this.strategy)) {
+	    this.copyStrategy = new CodecCopyStrategy();
+	} else {
+	    this.copyStrategy = new CompiledCopyStrategy();
+	}
+	this.address = new Address("Japan", "Tokyo", 1234);
+	this.user = new User("Hoang", Utilities.stringToDate("1990-01-01"), new Address("Japan", "Tokyo", 1234));
+    }
+
+    @Benchmark
+    public Address copyAddress() {
+	return DeepCopy.deepCopy(this.address, this.copyStrategy);
+    }
+
+    @Benchmark
+    public User copyUser() {
+	return DeepCopy.deepCopy(this.user, this.copyStrategy);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.paypay.challenge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.queue.Element;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Benchmarks the construction of an {@link Element} in front of chains of
+ * different lengths, which it copies unless its data is immutable.
+ * 
+ * @author hoang.tran
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ElementBenchmark {
+    /** The number of elements of the chain the new element refers to. */
+    @Param({ "1", "10", "100" })
+    private int length;
+
+    private Address address;
+
+    private Element<Address> mutableChain;
+
+    private Element<String> frozenChain;
+
+    @Setup
+    public void setUp() {
+	this.address = new Address("Japan", "Tokyo", 1234);
+	this.mutableChain = new Element<>(this.address);
+	this.frozenChain = new Element<>("Tokyo");
+	for (int i = 1; i < this.length; i++) {
+	    this.mutableChain = new Element<>(new Address("Japan", "Tokyo", i), this.mutableChain);
+	    this.frozenChain = new Element<>("Tokyo", this.frozenChain);
+	}
+    }
+
+    @Benchmark
+    public Element<Address> newElement() {
+	return new Element<>(this.address);
+    }
+
+    @Benchmark
+    public Element<Address> newElementWithMutableNext() {
+	return new Element<>(this.address, this.mutableChain);
+    }
+
+    @Benchmark
+    public Element<String> newElementWithFrozenNext() {
+	return new Element<>("Paris", this.frozenChain);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.paypay.challenge.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.clone.CompiledCopyStrategy;
+import com.paypay.challenge.clone.CopyStrategy;
+import com.paypay.challenge.clone.GsonCopyStrategy;
+import com.paypay.challenge.test.model.Address;
+import com.paypay.challenge.test.model.User;
+import com.paypay.challenge.test.util.Utilities;
+
+/**
+ * Benchmarks {@link CompiledCopyStrategy} on a wide payload, a list of users
+ * sharing a few addresses, copied on the calling thread and in parallel on the
+ * common pool. The parallel copy falls back to the calling thread when the
+ * common pool has a single thread.
+ *
+ * @author hoang.tran
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphCopyBenchmark {
+    /** The number of users of the payload. */
+    @Param({ "10000", "100000" })
+    private int size;
+
+    /** Whether the elements are copied in parallel. */
+    @Param({ "sequential", "parallel" })
+    private String mode;
+
+    private CopyStrategy copyStrategy;
+
+    private List<User> users;
+
+    @Setup
+    public void setUp() {
+	this.copyStrategy = new CompiledCopyStrategy(new GsonCopyStrategy(), ForkJoinPool.commonPool(),
+		"parallel".equals(this.mode) ? CompiledCopyStrategy.DEFAULT_PARALLEL_THRESHOLD : Integer.MAX_VALUE);
+	Address[] addresses = new Address[100];
+	for (int i = 0; i < addresses.length; i++) {
+	    addresses[i] = new Address("Japan", "Tokyo", i);
+	}
+	Date birthDate = Utilities.stringToDate("1990-01-01");
+	this.users = new ArrayList<User>(this.size);
+	for (int i = 0; i < this.size; i++) {
+	    this.users.add(new User("User " + i, birthDate, addresses[i % addresses.length]));
+	}
+    }
+
+    @Benchmark
+    public List<User> copyUsers() {
+	return this.copyStrategy.copy(this.users);
+    }
+}
@@ -0,0 +1,79 @@
+package com.paypay.challenge.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.queue.BankersImmutableQueue;
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Benchmarks a map, filter and take pipeline consuming the first elements of a
+ * backlog: eagerly, by dequeuing every element and enqueuing the transformed
+ * ones into a new queue, and through the lazy views of the queue, which only
+ * compute the elements consumed.
+ *
+ * @author hoang.tran
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LazyQueueBenchmark {
+    /** The number of elements of the backlog. */
+    @Param({ "100000" })
+    private int size;
+
+    /** The number of transformed elements consumed. */
+    @Param({ "10" })
+    private int consumed;
+
+    private Queue<Address> backlog;
+
+    @Setup
+    public void setUp() {
+	List<Address> addresses = new ArrayList<Address>();
+	for (int i = 0; i < this.size; i++) {
+	    addresses.add(new Address("Japan", "Tokyo", i));
+	}
+	this.backlog = new BankersImmutableQueue<Address>().enQueueAll(addresses);
+    }
+
+    @Benchmark
+    public List<Integer> eager() {
+	Queue<Integer> transformed = new BankersImmutableQueue<Integer>();
+	for (Queue<Address> queue = this.backlog; !queue.isEmpty(); queue = queue.deQueue()) {
+	    int zipCode = queue.head().getZipCode();
+	    if (zipCode % 2 == 0) {
+		transformed = transformed.enQueue(zipCode);
+	    }
+	}
+	return consume(transformed);
+    }
+
+    @Benchmark
+    public List<Integer> lazy() {
+	return consume(this.backlog.map(Address::getZipCode).filter(zipCode -> zipCode % 2 == 0));
+    }
+
+    private List<Integer> consume(Queue<Integer> queue) {
+	List<Integer> result = new ArrayList<Integer>();
+	queue.take(this.consumed).drainTo(result, this.consumed);
+	return result;
+    }
+}
@@ -0,0 +1,66 @@
+package com.paypay.challenge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.metrics.Metrics;
+import com.paypay.challenge.metrics.MetricsRegistry;
+import com.paypay.challenge.queue.ChunkedImmutableQueue;
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Benchmarks the cost of the metrics on an enqueue followed by a dequeue of a
+ * {@link ChunkedImmutableQueue}: without instrumentation, instrumented with
+ * metrics disabled, and instrumented with a {@link MetricsRegistry} recording
+ * the operations and the copies, with and without the bytes copied.
+ *
+ * @author hoang.tran
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    /** How the queue is measured. */
+    @Param({ "none", "disabled", "enabled", "enabledWithBytes" })
+    private String metrics;
+
+    private Queue<Address> queue;
+
+    private Address address;
+
+    @Setup
+    public void setUp() {
+	Queue<Address> queue = new ChunkedImmutableQueue<Address>().enQueue(new Address("Japan", "Tokyo", 1234));
+	this.queue = "none".equals(this.metrics) ? queue : Metrics.instrument(queue);
+	if (this.metrics.startsWith("enabled")) {
+	    Metrics.setRecorder(new MetricsRegistry("enabledWithBytes".equals(this.metrics)));
+	}
+	this.address = new Address("France", "Paris", 2222);
+    }
+
+    @TearDown
+    public void tearDown() {
+	Metrics.setRecorder(null);
+    }
+
+    @Benchmark
+    public Queue<Address> enQueueThenDeQueue() {
+	return this.queue.enQueue(this.address).deQueue();
+    }
+}
@@ -0,0 +1,137 @@
+package com.paypay.challenge.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.codec.CodecRegistry;
+import com.paypay.challenge.queue.OffHeapImmutableQueue;
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.queue.SlowImmutableQueue;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Benchmarks the cost of a large backlog for the garbage collector: a queue of
+ * ten million {@link Address}es is built, on the heap in a
+ * {@link SlowImmutableQueue} or off the heap in an
+ * {@link OffHeapImmutableQueue}, then a full collection is timed, as the pause
+ * an old-generation collection takes with such a backlog. The heap used by the
+ * backlog after a collection is reported as the {@code backlogHeapMegabytes}
+ * auxiliary counter of {@link #backlogHeap}, measured once, as JMH sums such
+ * counters over the measurement iterations. The cost of materializing the
+ * head, decoded from direct memory for the off-heap queue, is measured too.
+ *
+ * @author hoang.tran
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-Xms3g", "-Xmx3g", "-XX:MaxDirectMemorySize=1g" })
+public class OffHeapQueueBenchmark {
+    /** The number of elements enqueued at once while building the backlog. */
+    private static final int BATCH_SIZE = 10000;
+
+    /** The queue implementation. */
+    @Param({ "slow", "offHeap" })
+    private String implementation;
+
+    /** The number of elements in the backlog. */
+    @Param({ "10000000" })
+    private int size;
+
+    private Queue<Address> queue;
+
+    /** The heap used by the backlog after a full collection, in bytes. */
+    private long backlogHeap;
+
+    /**
+     * The counters reported with the results of {@link #backlogHeap}.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HeapCounters {
+	/** The heap used by the backlog after a full collection, in megabytes. */
+	public long backlogHeapMegabytes;
+    }
+
+    @Setup
+    public void setUp() {
+	long before = usedHeap();
+	if ("slow".equals(this.implementation)) {
+	    Queue.Builder<Address> builder = SlowImmutableQueue.builder();
+	    for (int i = 0; i < this.size; i++) {
+		builder.enQueue(new Address("Japan", "Tokyo", i));
+	    }
+	    this.queue = builder.freeze();
+	} else {
+	    Queue<Address> queue = new OffHeapImmutableQueue<>(new CodecRegistry().codecFor(Address.class));
+	    List<Address> batch = new ArrayList<>(BATCH_SIZE);
+	    for (int i = 0; i < this.size; i += BATCH_SIZE) {
+		batch.clear();
+		for (int j = i; j < Math.min(i + BATCH_SIZE, this.size); j++) {
+		    batch.add(new Address("Japan", "Tokyo", j));
+		}
+		queue = queue.enQueueAll(batch);
+	    }
+	    this.queue = queue;
+	}
+	this.backlogHeap = usedHeap() - before;
+    }
+
+    @TearDown
+    public void tearDown() {
+	if (this.queue instanceof OffHeapImmutableQueue) {
+	    ((OffHeapImmutableQueue<Address>) this.queue).close();
+	}
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Queue<Address> fullCollection() {
+	System.gc();
+	return this.queue;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Queue<Address> backlogHeap(HeapCounters counters) {
+	counters.backlogHeapMegabytes = this.backlogHeap / (1024 * 1024);
+	return this.queue;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Address head() {
+	return this.queue.head();
+    }
+
+    /**
+     * Gets the heap used after a full collection.
+     */
+    private static long usedHeap() {
+	System.gc();
+	return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
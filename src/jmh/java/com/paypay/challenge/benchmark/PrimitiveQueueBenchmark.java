@@ -0,0 +1,138 @@
+package com.paypay.challenge.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.queue.LongImmutableQueue;
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.queue.SlowImmutableQueue;
+
+/**
+ * Benchmarks the footprint of a million {@code long} values, stored without
+ * boxing in a {@link LongImmutableQueue} or as {@link Long}s in a
+ * {@link SlowImmutableQueue}, and the time a sum of all the values takes. The
+ * heap used by the queue after full collections is reported per value as the
+ * {@code queueBytesPerValue} auxiliary counter of {@link #footprint}, measured
+ * once, as JMH sums such counters over the measurement iterations.
+ *
+ * @author hoang.tran
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@State(Scope.Benchmark)
+public class PrimitiveQueueBenchmark {
+    /** The queue implementation. */
+    @Param({ "long", "slow" })
+    private String implementation;
+
+    /** The number of values in the queue. */
+    @Param({ "1000000" })
+    private int size;
+
+    private LongImmutableQueue longQueue;
+
+    private Queue<Long> slowQueue;
+
+    /** The heap used by the queue after full collections, in bytes. */
+    private long queueHeap;
+
+    /**
+     * The counters reported with the results of {@link #footprint}.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HeapCounters {
+	/** The heap used by the queue after full collections, per value. */
+	public long queueBytesPerValue;
+    }
+
+    @Setup
+    public void setUp() {
+	long before = usedHeap();
+	if ("long".equals(this.implementation)) {
+	    this.longQueue = longQueue(this.size);
+	} else {
+	    this.slowQueue = slowQueue(this.size);
+	}
+	this.queueHeap = usedHeap() - before;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Object footprint(HeapCounters counters) {
+	counters.queueBytesPerValue = this.queueHeap / this.size;
+	return this.longQueue != null ? this.longQueue : this.slowQueue;
+    }
+
+    @Benchmark
+    public long sum() {
+	long sum = 0;
+	if (this.longQueue != null) {
+	    for (long value : this.longQueue.toArray()) {
+		sum += value;
+	    }
+	} else {
+	    for (Long value : this.slowQueue) {
+		sum += value;
+	    }
+	}
+	return sum;
+    }
+
+    /**
+     * Creates a {@link LongImmutableQueue} of the given number of values. The
+     * array of the values is only reachable from this method, so it is not
+     * counted in the heap used by the queue.
+     */
+    private static LongImmutableQueue longQueue(int size) {
+	long[] values = new long[size];
+	for (int i = 0; i < size; i++) {
+	    values[i] = i;
+	}
+	return new LongImmutableQueue().enQueueAll(values);
+    }
+
+    /**
+     * Creates a {@link SlowImmutableQueue} of the given number of values.
+     */
+    private static Queue<Long> slowQueue(int size) {
+	Queue.Builder<Long> builder = SlowImmutableQueue.builder();
+	for (long i = 0; i < size; i++) {
+	    builder.enQueue(i);
+	}
+	return builder.freeze();
+    }
+
+    /**
+     * Gets the heap used after full collections, repeated until the used heap no
+     * longer shrinks.
+     */
+    private static long usedHeap() {
+	long previous;
+	long used = Long.MAX_VALUE;
+	do {
+	    previous = used;
+	    System.gc();
+	    used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	} while (used < previous);
+	return used;
+    }
+}
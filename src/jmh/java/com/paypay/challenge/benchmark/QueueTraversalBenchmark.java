@@ -0,0 +1,101 @@
+package com.paypay.challenge.benchmark;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.queue.BankersImmutableQueue;
+import com.paypay.challenge.queue.ChunkedImmutableQueue;
+import com.paypay.challenge.queue.Queue;
+
+/**
+ * Benchmarks the traversal of a whole queue, through
+ * {@link Queue#drainTo(java.util.Collection, int)} and through sequential and
+ * parallel reductions of {@link Queue#stream()}, for the chunked queue and
+ * the one-cell-per-element banker's queue, from a thousand to ten million
+ * elements. All the elements are the same instance, so only the queue itself
+ * takes memory.
+ * 
+ * @author hoang.tran
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class QueueTraversalBenchmark {
+    /** The implementation of the queue. */
+    @Param({ "chunked", "bankers" })
+    private String queueType;
+
+    /** The number of elements of the queue. */
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    private int size;
+
+    private Queue<Object> queue;
+
+    @Setup
+    public void setUp() {
+	Queue.Builder<Object> builder = "bankers".equals(this.queueType) ? BankersImmutableQueue.builder()
+		: ChunkedImmutableQueue.builder();
+	Object element = "element";
+	for (int i = 0; i < this.size; i++) {
+	    builder.enQueue(element);
+	}
+	this.queue = builder.freeze();
+    }
+
+    @Benchmark
+    public int drainAll() {
+	Counter counter = new Counter();
+	this.queue.drainTo(counter, this.size);
+	return counter.count;
+    }
+
+    @Benchmark
+    public long streamSum() {
+	return this.queue.stream().mapToLong(Object::hashCode).sum();
+    }
+
+    @Benchmark
+    public long parallelStreamSum() {
+	return this.queue.parallelStream().mapToLong(Object::hashCode).sum();
+    }
+
+    /**
+     * Defines a collection only counting the elements added to it, so that the
+     * benchmark measures the traversal of the queue only.
+     */
+    private static final class Counter extends AbstractCollection<Object> {
+	private int count;
+
+	@Override
+	public boolean add(Object element) {
+	    this.count++;
+	    return true;
+	}
+
+	@Override
+	public Iterator<Object> iterator() {
+	    throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int size() {
+	    return this.count;
+	}
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.paypay.challenge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.queue.BankersImmutableQueue;
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.queue.RealTimeImmutableQueue;
+import com.paypay.challenge.queue.SlowImmutableQueue;
+
+/**
+ * Benchmarks the latency distribution of the operations on a queue of a steady
+ * size, alternately dequeuing and enqueuing one element. The sampled
+ * percentiles show the long tail of the occasional reversals of
+ * {@link BankersImmutableQueue} and the growing cost of
+ * {@link SlowImmutableQueue}, against the constant cost of every operation of
+ * {@link RealTimeImmutableQueue}.
+ *
+ * @author hoang.tran
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RealTimeQueueBenchmark {
+    /** The queue implementation. */
+    @Param({ "realTime", "bankers", "slow" })
+    private String implementation;
+
+    /** The number of elements in the queue. */
+    @Param({ "1000", "100000" })
+    private int size;
+
+    private Queue<Integer> queue;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+	Queue.Builder<Integer> builder;
+	if ("realTime".equals(this.implementation)) {
+	    builder = RealTimeImmutableQueue.builder();
+	} else if ("bankers".equals(this.implementation)) {
+	    builder = BankersImmutableQueue.builder();
+	} else {
+	    builder = SlowImmutableQueue.builder();
+	}
+	for (this.next = 0; this.next < this.size; this.next++) {
+	    builder.enQueue(this.next);
+	}
+	this.queue = builder.freeze();
+    }
+
+    @Benchmark
+    public Queue<Integer> deQueueAndEnQueue() {
+	this.queue = this.queue.deQueue().enQueue(this.next++);
+	return this.queue;
+    }
+}
@@ -0,0 +1,66 @@
+package com.paypay.challenge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.queue.SlowImmutableQueue;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Benchmarks the operations of the {@link SlowImmutableQueue}, the baseline of
+ * the other queues, across queue sizes.
+ * 
+ * @author hoang.tran
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlowImmutableQueueBenchmark {
+    /** The number of elements of the queue the operations are applied to. */
+    @Param({ "10", "100", "1000" })
+    private int size;
+
+    private Queue<Address> queue;
+
+    private Address address;
+
+    @Setup
+    public void setUp() {
+	Queue.Builder<Address> builder = SlowImmutableQueue.builder();
+	for (int i = 0; i < this.size; i++) {
+	    builder.enQueue(new Address("Japan", "Tokyo", i));
+	}
+	this.queue = builder.freeze();
+	this.address = new Address("France", "Paris", 2222);
+    }
+
+    @Benchmark
+    public Queue<Address> enQueue() {
+	return this.queue.enQueue(this.address);
+    }
+
+    @Benchmark
+    public Queue<Address> deQueue() {
+	return this.queue.deQueue();
+    }
+
+    @Benchmark
+    public Address head() {
+	return this.queue.head();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+/**
+ * Provides the JMH benchmarks of the immutable queues and of the deep copy,
+ * run by the {@code benchmark} Maven profile. All of them report throughput,
+ * average time and, through the GC profiler enabled by the profile, the
+ * allocation rate, so that new queues and copy strategies can be compared with
+ * the baseline on the same machine.
+ * 
+ * @author hoang.tran
+ */
+package com.paypay.challenge.benchmark;
\ No newline at end of file
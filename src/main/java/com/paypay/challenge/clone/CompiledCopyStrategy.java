@@ -0,0 +1,639 @@
+package com.paypay.challenge.clone;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.paypay.challenge.exception.DeepCopyException;
+
+/**
+ * Defines the deep copy strategy copying objects field by field, without any
+ * intermediate text. The first time an instance of a class is copied, a
+ * <em>copier</em> is built for that class and cached:
+ * <ul>
+ * <li>instances of immutable classes, as classified by
+ * {@link ImmutabilityClassifier}, are shared, not copied,</li>
+ * <li>arrays, {@link Date}s and {@link Calendar}s are cloned, with the elements
+ * of object arrays deeply copied,</li>
+ * <li>collections and maps are rebuilt as instances of their own class, with
+ * their elements deeply copied,</li>
+ * <li>any other object is instantiated (through its no-argument constructor if
+ * it has one) and each of its fields is copied by a chain of
+ * {@link MethodHandle}s reading the field from the original, deeply copying
+ * its value and writing it to the copy.</li>
+ * </ul>
+ * Unlike JSON conversion, the copy keeps the runtime class of every nested
+ * object, and the shape of the graph: each copy records, in an identity map,
+ * the copy made of every mutable object it reached, and registers it before
+ * copying the fields or elements of that object. So an object referenced twice
+ * in the original graph, such as an address shared by two users, is copied once
+ * and referenced twice in the copy, and cycles are copied as cycles instead of
+ * recursing forever. The elements of hashed collections and keys of hashed maps
+ * on a cycle are hashed while their copy is still being filled, as with Java
+ * serialization.
+ * <p>
+ * The elements of the arrays, collections and maps of at least
+ * {@code parallelThreshold} elements are copied in parallel, by tasks of a
+ * {@link ForkJoinPool} sharing the identity map of the copy, when the pool has
+ * more than one thread. Collections and maps are then filled in order, on the
+ * copying thread, with the copied elements.
+ * <p>
+ * Classes that cannot be copied field by field (for example because their
+ * fields are not accessible) are handed to a fallback strategy, by default a
+ * {@link GsonCopyStrategy}, which copies their instances as trees.
+ *
+ * @author hoang.tran
+ */
+public final class CompiledCopyStrategy implements CopyStrategy {
+    /**
+     * The default minimum number of elements of an array, collection or map whose
+     * elements are copied in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+
+    /** The maximum number of elements copied by one parallel task. */
+    private static final int PARALLEL_GRAIN = 1024;
+
+    /** The copier of immutable classes, sharing their instances. */
+    private static final Copier SHARE = (original, graph) -> original;
+
+    /** The allocator creating objects without calling their constructor. */
+    private static final MethodHandle UNSAFE_ALLOCATOR = unsafeAllocator();
+
+    /** The strategy copying the objects that cannot be copied field by field. */
+    private final CopyStrategy fallback;
+
+    /** The pool running the parallel copies. */
+    private final ForkJoinPool pool;
+
+    /** The minimum number of elements copied in parallel. */
+    private final int parallelThreshold;
+
+    /** The handle of {@link #copy(Object, Graph)}, bound to this strategy. */
+    private final MethodHandle copyHandle;
+
+    /** The copiers built so far, one per class. */
+    private final ClassValue<Copier> copiers = new ClassValue<Copier>() {
+	@Override
+	protected Copier computeValue(Class<?> type) {
+	    return compile(type);
+	}
+    };
+
+    /**
+     * Defines how the instances of one class are copied.
+     */
+    @FunctionalInterface
+    private interface Copier {
+	/**
+	 * Deeply copies the given non-null object, not copied yet in the given
+	 * graph, and registers its copy in the graph.
+	 */
+	Object copy(Object original, Graph graph) throws Throwable;
+    }
+
+    /**
+     * Defines the copies made so far by one copy, keyed by the identity of their
+     * original. The copies are kept in an {@link IdentityHashMap} while the copy
+     * runs on one thread, and moved to a concurrent map before the first parallel
+     * task is forked.
+     */
+    private static final class Graph {
+	/** The copies made on the copying thread, {@code null} until the first one. */
+	private Map<Object, Object> copies;
+
+	/** The copies made once copying in parallel, {@code null} until then. */
+	private ConcurrentHashMap<Identity, Object> sharedCopies;
+
+	/**
+	 * Gets the copy made of the given original, or {@code null} if there is none
+	 * yet.
+	 */
+	private Object get(Object original) {
+	    if (this.sharedCopies != null) {
+		return this.sharedCopies.get(new Identity(original));
+	    }
+	    return this.copies == null ? null : this.copies.get(original);
+	}
+
+	/**
+	 * Registers the copy of the given original, unless another task registered
+	 * one first.
+	 *
+	 * @return the registered copy, the given one or the one of the other task.
+	 */
+	private Object register(Object original, Object copy) {
+	    if (this.sharedCopies != null) {
+		Object existing = this.sharedCopies.putIfAbsent(new Identity(original), copy);
+		return existing == null ? copy : existing;
+	    }
+
+	    if (this.copies == null) {
+		this.copies = new IdentityHashMap<Object, Object>();
+	    }
+	    this.copies.put(original, copy);
+	    return copy;
+	}
+
+	/**
+	 * Moves the copies to the concurrent map, if not done yet. Only the copying
+	 * thread runs before the first move, and the parallel tasks are forked after
+	 * it, so they all see the concurrent map.
+	 */
+	private void share() {
+	    if (this.sharedCopies != null) {
+		return;
+	    }
+
+	    this.sharedCopies = new ConcurrentHashMap<Identity, Object>();
+	    if (this.copies != null) {
+		for (Map.Entry<Object, Object> entry : this.copies.entrySet()) {
+		    this.sharedCopies.put(new Identity(entry.getKey()), entry.getValue());
+		}
+		this.copies = null;
+	    }
+	}
+    }
+
+    /**
+     * Defines the key of an original object in the concurrent map of the copies,
+     * equal to the keys of the same object only.
+     */
+    private static final class Identity {
+	private final Object object;
+
+	private Identity(Object object) {
+	    this.object = object;
+	}
+
+	@Override
+	public int hashCode() {
+	    return System.identityHashCode(this.object);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+	    return other instanceof Identity && ((Identity) other).object == this.object;
+	}
+    }
+
+    /**
+     * Defines the task copying a range of elements in parallel, splitting it in
+     * halves down to {@link CompiledCopyStrategy#PARALLEL_GRAIN} elements.
+     */
+    private final class CopyTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	private final Object[] elements;
+	private final Object[] copies;
+	private final int from;
+	private final int to;
+	private final Graph graph;
+
+	private CopyTask(Object[] elements, Object[] copies, int from, int to, Graph graph) {
+	    this.elements = elements;
+	    this.copies = copies;
+	    this.from = from;
+	    this.to = to;
+	    this.graph = graph;
+	}
+
+	@Override
+	protected void compute() {
+	    if (this.to - this.from <= PARALLEL_GRAIN) {
+		for (int i = this.from; i < this.to; i++) {
+		    this.copies[i] = copyOrThrow(this.elements[i], this.graph);
+		}
+		return;
+	    }
+
+	    int middle = (this.from + this.to) >>> 1;
+	    invokeAll(new CopyTask(this.elements, this.copies, this.from, middle, this.graph),
+		    new CopyTask(this.elements, this.copies, middle, this.to, this.graph));
+	}
+    }
+
+    /** Creates a strategy falling back to a {@link GsonCopyStrategy}. */
+    public CompiledCopyStrategy() {
+	this(new GsonCopyStrategy());
+    }
+
+    /**
+     * Creates a strategy falling back to the given one for the classes it cannot
+     * copy field by field.
+     *
+     * @param fallback
+     *            the fallback strategy.
+     */
+    public CompiledCopyStrategy(CopyStrategy fallback) {
+	this(fallback, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Creates a strategy falling back to the given one for the classes it cannot
+     * copy field by field, and copying the elements of large arrays, collections
+     * and maps in parallel on the given pool.
+     *
+     * @param fallback
+     *            the fallback strategy.
+     * @param pool
+     *            the pool running the parallel copies; they are only made if it
+     *            has more than one thread.
+     * @param parallelThreshold
+     *            the minimum number of elements of an array, collection or map
+     *            whose elements are copied in parallel; use
+     *            {@link Integer#MAX_VALUE} to always copy on the calling thread.
+     * @throws IllegalArgumentException
+     *             if the pool is {@code null}, or if the threshold is not
+     *             positive.
+     */
+    public CompiledCopyStrategy(CopyStrategy fallback, ForkJoinPool pool, int parallelThreshold) {
+	if (pool == null) {
+	    throw new IllegalArgumentException("Pool must not be null");
+	}
+	if (parallelThreshold <= 0) {
+	    throw new IllegalArgumentException("Parallel threshold must be positive: " + parallelThreshold);
+	}
+
+	this.fallback = fallback;
+	this.pool = pool;
+	this.parallelThreshold = parallelThreshold;
+	try {
+	    this.copyHandle = MethodHandles.lookup().findVirtual(CompiledCopyStrategy.class, "copy",
+		    MethodType.methodType(Object.class, Object.class, Graph.class)).bindTo(this);
+	} catch (ReflectiveOperationException e) {
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    /**
+     * {@inheritDoc} The objects shared in the graph of the original object are
+     * shared in the graph of the copy too.
+     *
+     * @throws DeepCopyException
+     *             if the object, or one of its nested objects, cannot be copied.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T copy(T originalObj) {
+	return (T) copyOrThrow(originalObj, new Graph());
+    }
+
+    /**
+     * Deeply copies the given object in the given graph, wrapping the checked
+     * exceptions of the handles.
+     */
+    private Object copyOrThrow(Object original, Graph graph) {
+	try {
+	    return copy(original, graph);
+	} catch (RuntimeException | Error e) {
+	    throw e;
+	} catch (Throwable e) {
+	    throw new DeepCopyException("Failed to copy an instance of " + original.getClass().getName(), e);
+	}
+    }
+
+    /**
+     * Deeply copies the given object in the given graph: gets the copy already
+     * made of it, if any, or makes one with the copier of its class.
+     */
+    private Object copy(Object original, Graph graph) throws Throwable {
+	if (original == null) {
+	    return null;
+	}
+
+	Copier copier = this.copiers.get(original.getClass());
+	if (copier == SHARE) {
+	    return original;
+	}
+	Object copied = graph.get(original);
+	return copied != null ? copied : copier.copy(original, graph);
+    }
+
+    /**
+     * Deeply copies the given elements into the given array, which can be the
+     * same, in parallel if there are enough of them.
+     */
+    private void copyElements(Object[] elements, Object[] copies, Graph graph) throws Throwable {
+	if (!parallel(elements.length)) {
+	    for (int i = 0; i < elements.length; i++) {
+		copies[i] = copy(elements[i], graph);
+	    }
+	    return;
+	}
+
+	graph.share();
+	CopyTask task = new CopyTask(elements, copies, 0, elements.length, graph);
+	if (ForkJoinTask.getPool() == this.pool) {
+	    task.invoke();
+	} else {
+	    this.pool.invoke(task);
+	}
+    }
+
+    /**
+     * Tells whether the given number of elements are copied in parallel.
+     */
+    private boolean parallel(int size) {
+	return size >= this.parallelThreshold && this.pool.getParallelism() > 1;
+    }
+
+    /**
+     * Builds the copier of the given class.
+     */
+    private Copier compile(Class<?> type) {
+	if (ImmutabilityClassifier.isImmutableClass(type)) {
+	    return SHARE;
+	}
+	if (type.isArray()) {
+	    return compileArray(type.getComponentType());
+	}
+	if (Date.class.isAssignableFrom(type)) {
+	    return (original, graph) -> graph.register(original, ((Date) original).clone());
+	}
+	if (Calendar.class.isAssignableFrom(type)) {
+	    return (original, graph) -> graph.register(original, ((Calendar) original).clone());
+	}
+
+	try {
+	    if (EnumSet.class.isAssignableFrom(type)) {
+		// Enums are immutable, so a shallow clone is a deep copy
+		return (original, graph) -> graph.register(original, ((EnumSet<?>) original).clone());
+	    }
+	    if (EnumMap.class.isAssignableFrom(type)) {
+		return compileEnumMap();
+	    }
+	    if (Collection.class.isAssignableFrom(type)) {
+		MethodHandle constructor = collectionConstructor(type, SortedSet.class);
+		if (constructor != null) {
+		    return compileCollection(constructor, SortedSet.class.isAssignableFrom(type));
+		}
+	    }
+	    if (Map.class.isAssignableFrom(type)) {
+		MethodHandle constructor = collectionConstructor(type, SortedMap.class);
+		if (constructor != null) {
+		    return compileMap(constructor, SortedMap.class.isAssignableFrom(type));
+		}
+	    }
+
+	    return compileFields(type);
+	} catch (ReflectiveOperationException | RuntimeException e) {
+	    return (original, graph) -> graph.register(original, this.fallback.copy(original));
+	}
+    }
+
+    /**
+     * Builds the copier of the arrays having the given component type.
+     */
+    private Copier compileArray(Class<?> componentType) {
+	if (ImmutabilityClassifier.isImmutableDeclaredType(componentType)) {
+	    return (original, graph) -> {
+		int length = Array.getLength(original);
+		Object copiedArray = Array.newInstance(componentType, length);
+		System.arraycopy(original, 0, copiedArray, 0, length);
+		return graph.register(original, copiedArray);
+	    };
+	}
+
+	return (original, graph) -> {
+	    Object[] elements = (Object[]) original;
+	    Object[] copiedArray = (Object[]) Array.newInstance(componentType, elements.length);
+	    Object registered = graph.register(original, copiedArray);
+	    if (registered != copiedArray) {
+		return registered;
+	    }
+	    copyElements(elements, copiedArray, graph);
+	    return copiedArray;
+	};
+    }
+
+    /**
+     * Builds the copier of {@link EnumMap}s; their keys are immutable.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Copier compileEnumMap() {
+	return (original, graph) -> {
+	    EnumMap copiedMap = new EnumMap((EnumMap) original);
+	    Object registered = graph.register(original, copiedMap);
+	    if (registered != copiedMap) {
+		return registered;
+	    }
+	    for (Object entry : copiedMap.entrySet()) {
+		((Map.Entry) entry).setValue(copy(((Map.Entry) entry).getValue(), graph));
+	    }
+	    return copiedMap;
+	};
+    }
+
+    /**
+     * Builds the copier of a collection class, rebuilding copies through the given
+     * constructor.
+     */
+    @SuppressWarnings("unchecked")
+    private Copier compileCollection(MethodHandle constructor, boolean sorted) {
+	return (original, graph) -> {
+	    Collection<Object> copiedCollection = (Collection<Object>) (sorted
+		    ? constructor.invoke(((SortedSet<?>) original).comparator())
+		    : constructor.invoke());
+	    Object registered = graph.register(original, copiedCollection);
+	    if (registered != copiedCollection) {
+		return registered;
+	    }
+
+	    Collection<?> elements = (Collection<?>) original;
+	    if (!parallel(elements.size())) {
+		for (Object element : elements) {
+		    copiedCollection.add(copy(element, graph));
+		}
+		return copiedCollection;
+	    }
+
+	    Object[] copiedElements = elements.toArray();
+	    copyElements(copiedElements, copiedElements, graph);
+	    copiedCollection.addAll(Arrays.asList(copiedElements));
+	    return copiedCollection;
+	};
+    }
+
+    /**
+     * Builds the copier of a map class, rebuilding copies through the given
+     * constructor.
+     */
+    @SuppressWarnings("unchecked")
+    private Copier compileMap(MethodHandle constructor, boolean sorted) {
+	return (original, graph) -> {
+	    Map<Object, Object> copiedMap = (Map<Object, Object>) (sorted
+		    ? constructor.invoke(((SortedMap<?, ?>) original).comparator())
+		    : constructor.invoke());
+	    Object registered = graph.register(original, copiedMap);
+	    if (registered != copiedMap) {
+		return registered;
+	    }
+
+	    Map<?, ?> entries = (Map<?, ?>) original;
+	    if (!parallel(entries.size())) {
+		for (Map.Entry<?, ?> entry : entries.entrySet()) {
+		    copiedMap.put(copy(entry.getKey(), graph), copy(entry.getValue(), graph));
+		}
+		return copiedMap;
+	    }
+
+	    // Keys and values interleaved, so they are copied by the same tasks
+	    Object[] copiedEntries = new Object[entries.size() << 1];
+	    int i = 0;
+	    for (Map.Entry<?, ?> entry : entries.entrySet()) {
+		copiedEntries[i++] = entry.getKey();
+		copiedEntries[i++] = entry.getValue();
+	    }
+	    copyElements(copiedEntries, copiedEntries, graph);
+	    for (i = 0; i < copiedEntries.length; i += 2) {
+		copiedMap.put(copiedEntries[i], copiedEntries[i + 1]);
+	    }
+	    return copiedMap;
+	};
+    }
+
+    /**
+     * Finds the constructor used to rebuild copies of a collection or map class:
+     * the one taking a {@link Comparator} for sorted ones, the no-argument one
+     * otherwise.
+     *
+     * @return the constructor, or {@code null} if the class has none of them.
+     */
+    private static MethodHandle collectionConstructor(Class<?> type, Class<?> sortedType)
+	    throws ReflectiveOperationException {
+	Class<?>[] parameterTypes = sortedType.isAssignableFrom(type) ? new Class<?>[] { Comparator.class }
+		: new Class<?>[0];
+	for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+	    if (Arrays.equals(constructor.getParameterTypes(), parameterTypes)) {
+		constructor.setAccessible(true);
+		return MethodHandles.lookup().unreflectConstructor(constructor);
+	    }
+	}
+
+	return null;
+    }
+
+    /**
+     * Builds the copier instantiating the given class and copying its fields, and
+     * the fields of its super classes, one by one.
+     */
+    private Copier compileFields(Class<?> type) throws ReflectiveOperationException {
+	MethodHandle instantiator = instantiator(type);
+	List<MethodHandle> fieldCopiers = new ArrayList<MethodHandle>();
+	for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+	    for (Field field : c.getDeclaredFields()) {
+		if (!Modifier.isStatic(field.getModifiers())) {
+		    fieldCopiers.add(fieldCopier(field));
+		}
+	    }
+	}
+	MethodHandle[] handles = fieldCopiers.toArray(new MethodHandle[fieldCopiers.size()]);
+
+	return (original, graph) -> {
+	    Object copiedObj = (Object) instantiator.invokeExact();
+	    Object registered = graph.register(original, copiedObj);
+	    if (registered != copiedObj) {
+		return registered;
+	    }
+	    for (MethodHandle handle : handles) {
+		handle.invokeExact(copiedObj, original, graph);
+	    }
+	    return copiedObj;
+	};
+    }
+
+    /**
+     * Builds the handle creating new instances of the given class: its
+     * no-argument constructor if it has one, an allocation without constructor
+     * call otherwise.
+     *
+     * @return a handle of type {@code ()Object}.
+     */
+    private static MethodHandle instantiator(Class<?> type) throws ReflectiveOperationException {
+	if (Modifier.isAbstract(type.getModifiers())) {
+	    throw new InstantiationException(type.getName() + " is abstract");
+	}
+
+	MethodHandle constructor;
+	try {
+	    Constructor<?> noArgConstructor = type.getDeclaredConstructor();
+	    noArgConstructor.setAccessible(true);
+	    constructor = MethodHandles.lookup().unreflectConstructor(noArgConstructor);
+	} catch (NoSuchMethodException e) {
+	    if (UNSAFE_ALLOCATOR == null) {
+		throw e;
+	    }
+	    constructor = MethodHandles.insertArguments(UNSAFE_ALLOCATOR, 0, type);
+	}
+
+	return constructor.asType(MethodType.methodType(Object.class));
+    }
+
+    /**
+     * Builds the handle copying the given field from an original object to its
+     * copy. Primitive and immutable values are copied as they are, any other value
+     * is deeply copied in the graph on the way.
+     *
+     * @return a handle of type {@code (Object copy, Object original, Graph)void}.
+     */
+    private MethodHandle fieldCopier(Field field) throws ReflectiveOperationException {
+	field.setAccessible(true);
+	MethodHandles.Lookup lookup = MethodHandles.lookup();
+	MethodHandle getter = lookup.unreflectGetter(field);
+	MethodHandle setter = lookup.unreflectSetter(field);
+
+	MethodHandle fieldCopier;
+	if (ImmutabilityClassifier.isImmutableDeclaredType(field.getType())) {
+	    fieldCopier = MethodHandles.dropArguments(MethodHandles.filterArguments(setter, 1, getter), 2, Graph.class);
+	} else {
+	    // (original, graph) -> copy(getter(original), graph), cast to the field type
+	    MethodHandle copiedGetter = MethodHandles
+		    .collectArguments(this.copyHandle, 0, getter.asType(getter.type().changeReturnType(Object.class)))
+		    .asType(MethodType.methodType(field.getType(), getter.type().parameterType(0), Graph.class));
+	    fieldCopier = MethodHandles.collectArguments(setter, 1, copiedGetter);
+	}
+
+	return fieldCopier.asType(MethodType.methodType(void.class, Object.class, Object.class, Graph.class));
+    }
+
+    /**
+     * Looks up {@code sun.misc.Unsafe.allocateInstance}, used the same way as Gson
+     * does to create objects of classes without a no-argument constructor.
+     *
+     * @return a handle of type {@code (Class)Object}, or {@code null} if the JVM
+     *         does not provide it.
+     */
+    private static MethodHandle unsafeAllocator() {
+	try {
+	    Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+	    Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+	    theUnsafe.setAccessible(true);
+	    return MethodHandles.lookup()
+		    .findVirtual(unsafeClass, "allocateInstance", MethodType.methodType(Object.class, Class.class))
+		    .bindTo(theUnsafe.get(null));
+	} catch (ReflectiveOperationException | RuntimeException e) {
+	    return null;
+	}
+    }
+}
\ No newline at end of file
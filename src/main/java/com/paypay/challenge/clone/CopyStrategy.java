@@ -0,0 +1,22 @@
+package com.paypay.challenge.clone;
+
+/**
+ * Interface defining the engine used by {@link DeepCopy} to make deep copies of
+ * objects. Implementations must be thread-safe: a single instance is shared by
+ * all the callers of {@link DeepCopy#deepCopy(Object)}.
+ * 
+ * @author hoang.tran
+ * @see com.paypay.challenge.clone.DeepCopy#setStrategy(CopyStrategy)
+ */
+public interface CopyStrategy {
+    /**
+     * Deeply copies the given original object and creates a separate but
+     * same-content object.
+     * 
+     * @param originalObj
+     *            the original object to be copied, may be {@code null}.
+     * @return an entirely new object with the same contents as the given one, or
+     *         {@code null} if the given object is {@code null}.
+     */
+    public <T> T copy(T originalObj);
+}
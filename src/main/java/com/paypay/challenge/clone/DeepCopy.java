@@ -1,6 +1,7 @@
 package com.paypay.challenge.clone;
 
-import com.google.gson.Gson;
+import com.paypay.challenge.metrics.Metrics;
+import com.paypay.challenge.metrics.MetricsRecorder;
 
 /**
  * Provides deep copy method(s) to copy objects. The deep copy is important in
@@ -8,11 +9,26 @@ import com.google.gson.Gson;
  * Deep copy makes sure that all fields and nested objects are separately copied
  * and makes an entirely new object with the same contents as the original one.
  * This will help us to avoid the unexpected change behaviors affecting to the
- * new object when any changes occur in the original one. We introduce the first
- * implementation converting the original object into JSON, then making a new
- * separate object by converting back that JSON data. <a href=
- * "https://mvnrepository.com/artifact/com.google.code.gson/gson">Gson</a> will
- * be used for the conversion between objects and JSON.
+ * new object when any changes occur in the original one.
+ * <p>
+ * The copies are made by a pluggable {@link CopyStrategy}. The default one,
+ * {@link CompiledCopyStrategy}, copies objects field by field through method
+ * handles built once per class, keeping the objects shared in the original
+ * graph shared in the copy, and copying cycles as cycles. The first
+ * implementation, converting the original object into JSON and back with Gson,
+ * is still available as {@link GsonCopyStrategy}.
+ * <p>
+ * Whatever the strategy, objects of immutable classes, as classified by
+ * {@link ImmutabilityClassifier}, are returned as they are: a copy of them
+ * could never differ from the original.
+ * <p>
+ * The copies stored by immutable queues are made by
+ * {@link #copyForStorage(Object)}. When an {@link Interner} is set, equal
+ * values stored by any queue share one canonical copy, instead of one copy
+ * each, and a value equal to a stored one is not copied at all.
+ * <p>
+ * When {@link Metrics} are enabled, every copy made is recorded, with its
+ * latency and the bytes it allocated.
  * 
  * @author hoang.tran
  *
@@ -20,21 +36,121 @@ import com.google.gson.Gson;
  *            type of the object to be deep copied.
  */
 public class DeepCopy<T> {
+    /** The strategy used by {@link #deepCopy(Object)}. */
+    private static volatile CopyStrategy strategy = new CompiledCopyStrategy();
+
+    /** The table of the canonical stored copies, {@code null} if disabled. */
+    private static volatile Interner interner;
+
     /**
      * Deeply copies the given original object and creates a separate but
      * same-content object.
      * 
      * @param originalObj
      *            the original object to be copied.
-     * @return an entirely new object with the same contents as the given one.
+     * @return an entirely new object with the same contents as the given one, or
+     *         the given object itself if it is immutable.
      */
     public static final <T> T deepCopy(T originalObj) {
-	Gson gson = new Gson();
+	return deepCopy(originalObj, strategy);
+    }
+
+    /**
+     * Deeply copies the given original object with the given strategy, instead of
+     * the one set for the whole application.
+     * 
+     * @param originalObj
+     *            the original object to be copied.
+     * @param copyStrategy
+     *            the strategy making the copy.
+     * @return an entirely new object with the same contents as the given one, or
+     *         the given object itself if it is immutable.
+     */
+    public static final <T> T deepCopy(T originalObj, CopyStrategy copyStrategy) {
+	if (ImmutabilityClassifier.isImmutable(originalObj)) {
+	    return originalObj;
+	}
+
+	MetricsRecorder recorder = Metrics.getRecorder();
+	if (recorder == null) {
+	    return copyStrategy.copy(originalObj);
+	}
+
+	long bytesBefore = recorder.measuresCopiedBytes() ? Metrics.allocatedBytes() : -1;
+	long start = System.nanoTime();
+	T copy = copyStrategy.copy(originalObj);
+	long nanos = System.nanoTime() - start;
+	recorder.copy(nanos, bytesBefore < 0 ? -1 : Metrics.allocatedBytes() - bytesBefore);
+	return copy;
+    }
+
+    /**
+     * Deeply copies the given original object to be stored by an immutable
+     * container, which never changes the copy nor hands it out without copying it
+     * again, unless it is immutable. If an {@link Interner} is set, the canonical
+     * copy equal to the object is returned instead, and a new copy is only made,
+     * then interned, when there is none yet: the canonical copy is shared by all
+     * the containers storing an equal object, so none of them may hand it out.
+     * 
+     * @param originalObj
+     *            the original object to be stored.
+     * @return an entirely new object with the same contents as the given one,
+     *         the canonical copy equal to it, or the given object itself if it is
+     *         immutable and no interner is set.
+     */
+    public static final <T> T copyForStorage(T originalObj) {
+	Interner currentInterner = interner;
+	if (currentInterner == null) {
+	    return deepCopy(originalObj);
+	}
+
+	T canonical = currentInterner.find(originalObj);
+	if (canonical != null) {
+	    return canonical;
+	}
+	return currentInterner.intern(deepCopy(originalObj));
+    }
+
+    /**
+     * Gets the strategy currently used to make deep copies.
+     * 
+     * @return the current copy strategy.
+     */
+    public static CopyStrategy getStrategy() {
+	return strategy;
+    }
+
+    /**
+     * Sets the strategy used to make deep copies for the whole application.
+     * 
+     * @param copyStrategy
+     *            the new copy strategy.
+     */
+    public static void setStrategy(CopyStrategy copyStrategy) {
+	if (copyStrategy == null) {
+	    throw new IllegalArgumentException("Copy strategy must not be null");
+	}
+	strategy = copyStrategy;
+    }
 
-	String originalJSON = gson.toJson(originalObj);
-	@SuppressWarnings("unchecked")
-	T newObj = (T) gson.fromJson(originalJSON, originalObj.getClass());
+    /**
+     * Gets the table of the canonical copies stored by immutable queues.
+     * 
+     * @return the current interner, or {@code null} if interning is disabled.
+     */
+    public static Interner getInterner() {
+	return interner;
+    }
 
-	return newObj;
+    /**
+     * Sets the table of the canonical copies stored by immutable queues, for the
+     * whole application. Interning is disabled by default; it pays off when many
+     * stored values are equal to each other.
+     * 
+     * @param copyInterner
+     *            the new interner, or {@code null} to disable interning.
+     */
+    public static void setInterner(Interner copyInterner) {
+	interner = copyInterner;
     }
-}
\ No newline at end of file
+}
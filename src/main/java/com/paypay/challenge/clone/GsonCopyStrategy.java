@@ -0,0 +1,53 @@
+package com.paypay.challenge.clone;
+
+import com.google.gson.Gson;
+
+/**
+ * Defines the deep copy strategy converting the original object into JSON, then
+ * making a new separate object by converting back that JSON data. <a href=
+ * "https://mvnrepository.com/artifact/com.google.code.gson/gson">Gson</a> is
+ * used for the conversion between objects and JSON. This was the first
+ * implementation of {@link DeepCopy}; it is kept as the fallback of
+ * {@link CompiledCopyStrategy} for the classes that cannot be copied field by
+ * field.
+ * <p>
+ * Note that Gson only knows the declared type of fields, so a field declared as
+ * a type variable or as {@code Object} is copied as a JSON tree (a map, a list,
+ * a string, a number or a boolean), not as an instance of its original class.
+ * 
+ * @author hoang.tran
+ */
+public final class GsonCopyStrategy implements CopyStrategy {
+    /** The converter, thread-safe and shared by all copies. */
+    private final Gson gson;
+
+    /** Creates a strategy using a default {@link Gson} converter. */
+    public GsonCopyStrategy() {
+	this(new Gson());
+    }
+
+    /**
+     * Creates a strategy using the given {@link Gson} converter.
+     * 
+     * @param gson
+     *            the converter to be used for copies.
+     */
+    public GsonCopyStrategy(Gson gson) {
+	this.gson = gson;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T copy(T originalObj) {
+	if (originalObj == null) {
+	    return null;
+	}
+
+	String originalJSON = this.gson.toJson(originalObj);
+	@SuppressWarnings("unchecked")
+	T newObj = (T) this.gson.fromJson(originalJSON, originalObj.getClass());
+
+	return newObj;
+    }
+}
@@ -0,0 +1,178 @@
+package com.paypay.challenge.clone;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies classes according to whether their instances can change. The
+ * instances of immutable classes can be shared by reference: deep copying them
+ * would only waste time and memory. A class is considered immutable if it is
+ * <ul>
+ * <li>one of the well-known immutable JDK classes (strings, boxed primitives,
+ * enums, {@code java.time} values, ...),</li>
+ * <li>annotated with {@link Immutable} or implementing {@link ImmutableValue},
+ * </li>
+ * <li>or a final class whose fields, including the inherited ones, are all final
+ * and of primitive or immutable types.</li>
+ * </ul>
+ * Classes referring to each other through their fields (other than a class
+ * referring to itself) are conservatively classified as mutable; they can still
+ * be marked as immutable with the annotation or the marker interface.
+ * The verdict is computed once per class and cached, so that classifying an
+ * object afterwards does not allocate anything.
+ * 
+ * @author hoang.tran
+ */
+public final class ImmutabilityClassifier {
+    /** JDK value classes whose instances can never change. */
+    private static final Set<Class<?>> JDK_IMMUTABLE_CLASSES = new HashSet<Class<?>>(Arrays.asList(String.class,
+	    Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+	    Double.class, BigInteger.class, BigDecimal.class, UUID.class, Class.class, Object.class, Locale.class,
+	    URI.class, Pattern.class, Instant.class, Duration.class, Period.class, LocalDate.class, LocalTime.class,
+	    LocalDateTime.class, OffsetTime.class, OffsetDateTime.class, ZonedDateTime.class, Year.class,
+	    YearMonth.class, MonthDay.class));
+
+    /** The verdicts computed so far, one per class. */
+    private static final ClassValue<Boolean> VERDICTS = new ClassValue<Boolean>() {
+	@Override
+	protected Boolean computeValue(Class<?> type) {
+	    return classify(type);
+	}
+    };
+
+    /**
+     * The classes being classified by the current thread, so that classes
+     * referring to each other do not make the classification loop forever.
+     */
+    private static final ThreadLocal<Set<Class<?>>> IN_PROGRESS = ThreadLocal.withInitial(HashSet::new);
+
+    private ImmutabilityClassifier() {
+    }
+
+    /**
+     * Checks if the given object can be shared instead of copied.
+     * 
+     * @param obj
+     *            the object to be checked, may be {@code null}.
+     * @return {@code true} if the object is {@code null} or an instance of an
+     *         immutable class; {@code false} otherwise.
+     */
+    public static boolean isImmutable(Object obj) {
+	return obj == null || isImmutableClass(obj.getClass());
+    }
+
+    /**
+     * Checks if the instances of exactly the given class never change. Note that
+     * this says nothing about the instances of its subclasses.
+     * 
+     * @param type
+     *            the class to be checked.
+     * @return {@code true} if the instances of the class are immutable;
+     *         {@code false} otherwise.
+     */
+    public static boolean isImmutableClass(Class<?> type) {
+	if (IN_PROGRESS.get().contains(type)) {
+	    // Classes referring to each other are conservatively considered mutable,
+	    // they can still be marked as immutable by their author
+	    return false;
+	}
+
+	return VERDICTS.get(type);
+    }
+
+    /**
+     * Checks if any value that can be assigned to a field or an array element of
+     * the given declared type is immutable. This holds for primitive types, and
+     * for immutable classes that cannot have mutable subclasses.
+     * 
+     * @param declaredType
+     *            the declared type of the field or of the array elements.
+     * @return {@code true} if all the values of the declared type are immutable;
+     *         {@code false} otherwise.
+     */
+    public static boolean isImmutableDeclaredType(Class<?> declaredType) {
+	if (declaredType.isPrimitive()) {
+	    return true;
+	}
+
+	boolean closedForMutableSubclasses = Modifier.isFinal(declaredType.getModifiers()) || declaredType.isEnum()
+		|| isMarked(declaredType);
+	return closedForMutableSubclasses && isImmutableClass(declaredType);
+    }
+
+    /**
+     * Computes the verdict of the given class.
+     */
+    private static boolean classify(Class<?> type) {
+	if (type.isArray() || type.isPrimitive()) {
+	    return false;
+	}
+	if (JDK_IMMUTABLE_CLASSES.contains(type) || isEnum(type) || isMarked(type)) {
+	    return true;
+	}
+	if (ZoneId.class.isAssignableFrom(type) && type.getName().startsWith("java.time.")) {
+	    return true;
+	}
+	if (!Modifier.isFinal(type.getModifiers()) || type.getName().startsWith("java.")) {
+	    return false;
+	}
+
+	Set<Class<?>> inProgress = IN_PROGRESS.get();
+	inProgress.add(type);
+	try {
+	    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+		for (Field field : c.getDeclaredFields()) {
+		    int modifiers = field.getModifiers();
+		    if (Modifier.isStatic(modifiers) || field.getType() == type && Modifier.isFinal(modifiers)) {
+			// A final field of the class's own type holds immutable values if
+			// all the other fields do
+			continue;
+		    }
+		    if (!Modifier.isFinal(modifiers) || !isImmutableDeclaredType(field.getType())) {
+			return false;
+		    }
+		}
+	    }
+	    return true;
+	} finally {
+	    inProgress.remove(type);
+	}
+    }
+
+    /**
+     * Checks if the given class is an enum, or the class of an enum constant with
+     * a body.
+     */
+    private static boolean isEnum(Class<?> type) {
+	return type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum());
+    }
+
+    /**
+     * Checks if the given class is marked as immutable by its author.
+     */
+    private static boolean isMarked(Class<?> type) {
+	return type.isAnnotationPresent(Immutable.class) || ImmutableValue.class.isAssignableFrom(type);
+    }
+}
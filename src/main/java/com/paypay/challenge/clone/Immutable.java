@@ -0,0 +1,25 @@
+package com.paypay.challenge.clone;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class whose instances never change once they are constructed. The
+ * instances of such a class are shared by reference instead of being deep
+ * copied by {@link DeepCopy} and the immutable queues. Putting this annotation
+ * on a class that is not really immutable breaks the guarantees of the queues
+ * holding its instances.
+ * 
+ * @author hoang.tran
+ * @see com.paypay.challenge.clone.ImmutabilityClassifier
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Immutable {
+}
@@ -0,0 +1,13 @@
+package com.paypay.challenge.clone;
+
+/**
+ * Marker interface for classes whose instances never change once they are
+ * constructed. It has the same meaning as the {@link Immutable} annotation, and
+ * can be used where an annotation is not convenient, for example to mark all the
+ * implementations of an interface at once.
+ * 
+ * @author hoang.tran
+ * @see com.paypay.challenge.clone.ImmutabilityClassifier
+ */
+public interface ImmutableValue {
+}
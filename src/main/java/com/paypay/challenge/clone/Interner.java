@@ -0,0 +1,211 @@
+package com.paypay.challenge.clone;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Defines a table of canonical instances, so that values equal to each other
+ * are held as one shared instance instead of one instance each (also known as
+ * <em>hash consing</em>). Values are compared by {@link Object#equals(Object)}
+ * and {@link Object#hashCode()}, so only classes with a structural equality,
+ * such as the Lombok {@code @Data} models, are actually deduplicated.
+ * <p>
+ * The table is:
+ * <ul>
+ * <li>weak: it does not keep its instances alive, and forgets an instance once
+ * it is garbage collected,</li>
+ * <li>concurrent: it is shared by all threads without any lock, and two threads
+ * interning equal values get the same instance,</li>
+ * <li>bounded: once it holds its maximum number of live instances, new values
+ * are returned as they are, without being added.</li>
+ * </ul>
+ * The canonical instances are shared by everyone interning an equal value, so
+ * they must never be changed: a mutable value must only be interned when its
+ * owner never changes it nor hands it out, as immutable queues do with the
+ * copies they store (see {@link DeepCopy#copyForStorage(Object)}): they hand
+ * out their mutable data as new copies only. Changing an interned value would
+ * change it for all its holders, and break the table.
+ *
+ * @author hoang.tran
+ */
+public final class Interner {
+    /** The canonical instances, each being its own key. */
+    private final ConcurrentMap<Key, Key> table = new ConcurrentHashMap<Key, Key>();
+
+    /** The keys whose instance was garbage collected. */
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+    /** The maximum number of instances of the table. */
+    private final int maxSize;
+
+    /** The number of values found in the table. */
+    private final LongAdder hits = new LongAdder();
+
+    /** The number of values not found in the table. */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Defines the weak reference to an instance, equal to the references to equal
+     * instances of the same class. A reference whose instance was collected is
+     * only equal to itself, so that it can still be removed from the table.
+     */
+    private static final class Key extends WeakReference<Object> {
+	/** The hash code of the instance. */
+	private final int hash;
+
+	private Key(Object value, ReferenceQueue<Object> collected) {
+	    super(value, collected);
+	    this.hash = value.hashCode();
+	}
+
+	@Override
+	public int hashCode() {
+	    return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+	    if (obj == this) {
+		return true;
+	    }
+	    if (!(obj instanceof Key) || ((Key) obj).hash != this.hash) {
+		return false;
+	    }
+
+	    Object value = get();
+	    Object other = ((Key) obj).get();
+	    return value != null && other != null && value.getClass() == other.getClass() && value.equals(other);
+	}
+    }
+
+    /**
+     * Creates an empty table.
+     *
+     * @param maxSize
+     *            the maximum number of instances held by the table.
+     */
+    public Interner(int maxSize) {
+	if (maxSize <= 0) {
+	    throw new IllegalArgumentException("Maximum size must be positive: " + maxSize);
+	}
+	this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the canonical instance equal to the given value, making the value the
+     * canonical instance if there is none yet and the table is not full.
+     *
+     * @param value
+     *            the value to be interned, may be {@code null}.
+     * @return the canonical instance equal to the value, or the value itself.
+     */
+    public <T> T intern(T value) {
+	if (value == null) {
+	    return null;
+	}
+
+	expunge();
+	Key key = new Key(value, this.collected);
+	while (true) {
+	    Key existing = this.table.get(key);
+	    if (existing == null) {
+		if (this.table.size() >= this.maxSize) {
+		    this.misses.increment();
+		    return value;
+		}
+		existing = this.table.putIfAbsent(key, key);
+		if (existing == null) {
+		    this.misses.increment();
+		    return value;
+		}
+	    }
+
+	    T canonical = canonical(existing);
+	    if (canonical != null) {
+		this.hits.increment();
+		return canonical;
+	    }
+	    // Collected in between: its key only equals itself now
+	    this.table.remove(existing, existing);
+	}
+    }
+
+    /**
+     * Gets the canonical instance equal to the given value, without adding the
+     * value to the table.
+     *
+     * @param value
+     *            the value to be looked up, may be {@code null}.
+     * @return the canonical instance equal to the value, or {@code null} if there
+     *         is none.
+     */
+    public <T> T find(T value) {
+	if (value == null) {
+	    return null;
+	}
+
+	Key existing = this.table.get(new Key(value, null));
+	T canonical = existing == null ? null : canonical(existing);
+	if (canonical != null) {
+	    this.hits.increment();
+	}
+	return canonical;
+    }
+
+    /**
+     * Gets the number of canonical instances held by the table, including the
+     * ones collected but not forgotten yet.
+     *
+     * @return the number of instances.
+     */
+    public int size() {
+	expunge();
+	return this.table.size();
+    }
+
+    /**
+     * Gets the number of values for which a canonical instance was found, and
+     * returned instead of the value.
+     *
+     * @return the number of hits since the table was created.
+     */
+    public long hits() {
+	return this.hits.sum();
+    }
+
+    /**
+     * Gets the number of values for which no canonical instance was found.
+     *
+     * @return the number of misses since the table was created.
+     */
+    public long misses() {
+	return this.misses.sum();
+    }
+
+    @Override
+    public String toString() {
+	return "Interner(size=" + this.table.size() + ", maxSize=" + this.maxSize + ", hits=" + hits()
+		+ ", misses=" + misses() + ")";
+    }
+
+    /**
+     * Gets the instance of the given key, {@code null} if it was collected.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T canonical(Key key) {
+	return (T) key.get();
+    }
+
+    /**
+     * Forgets the instances collected by the garbage collector.
+     */
+    private void expunge() {
+	for (Reference<?> reference; (reference = this.collected.poll()) != null;) {
+	    this.table.remove(reference, reference);
+	}
+    }
+}
@@ -0,0 +1,84 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+
+/**
+ * Defines the codec of the arrays of a component type, written as their length
+ * followed by their elements. Arrays of {@code byte}, {@code int} and
+ * {@code long} are written without boxing their elements.
+ *
+ * @author hoang.tran
+ */
+final class ArrayCodec implements Codec<Object> {
+    /** The component type of the arrays. */
+    private final Class<?> componentType;
+
+    /** The codec of the elements. */
+    private final Codec<Object> elementCodec;
+
+    ArrayCodec(Class<?> componentType, CodecRegistry registry) {
+	this.componentType = componentType;
+	this.elementCodec = new ReferenceCodec<Object>(componentType, registry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void encode(Object value, DataOutput out) throws IOException {
+	int length = Array.getLength(value);
+	Varints.writeUnsignedInt(out, length);
+	if (this.componentType == byte.class) {
+	    out.write((byte[]) value);
+	} else if (this.componentType == int.class) {
+	    for (int element : (int[]) value) {
+		Varints.writeInt(out, element);
+	    }
+	} else if (this.componentType == long.class) {
+	    for (long element : (long[]) value) {
+		Varints.writeLong(out, element);
+	    }
+	} else if (this.componentType.isPrimitive()) {
+	    for (int i = 0; i < length; i++) {
+		this.elementCodec.encode(Array.get(value, i), out);
+	    }
+	} else {
+	    for (Object element : (Object[]) value) {
+		this.elementCodec.encode(element, out);
+	    }
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object decode(DataInput in) throws IOException {
+	int length = Varints.readUnsignedInt(in);
+	Object array = Array.newInstance(this.componentType, length);
+	if (this.componentType == byte.class) {
+	    in.readFully((byte[]) array);
+	} else if (this.componentType == int.class) {
+	    int[] elements = (int[]) array;
+	    for (int i = 0; i < length; i++) {
+		elements[i] = Varints.readInt(in);
+	    }
+	} else if (this.componentType == long.class) {
+	    long[] elements = (long[]) array;
+	    for (int i = 0; i < length; i++) {
+		elements[i] = Varints.readLong(in);
+	    }
+	} else if (this.componentType.isPrimitive()) {
+	    for (int i = 0; i < length; i++) {
+		Array.set(array, i, this.elementCodec.decode(in));
+	    }
+	} else {
+	    Object[] elements = (Object[]) array;
+	    for (int i = 0; i < length; i++) {
+		elements[i] = this.elementCodec.decode(in);
+	    }
+	}
+	return array;
+    }
+}
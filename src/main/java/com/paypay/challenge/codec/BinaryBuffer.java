@@ -0,0 +1,302 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+/**
+ * Defines a growable byte array written as a {@link DataOutput} then read back
+ * as a {@link DataInput}, in the big-endian formats of
+ * {@link java.io.DataOutputStream} and {@link DataInputStream}. Unlike those
+ * streams over a {@link java.io.ByteArrayOutputStream}, it takes no lock and
+ * keeps its array between uses, so a buffer reused by one thread does not
+ * allocate once it has grown to the size of the encoded values.
+ * <p>
+ * A buffer is not thread-safe.
+ *
+ * @author hoang.tran
+ */
+final class BinaryBuffer implements DataOutput, DataInput {
+    /** The bytes of the buffer. */
+    private byte[] bytes;
+
+    /** The number of bytes written. */
+    private int length;
+
+    /** The position of the next byte to be read. */
+    private int position;
+
+    /**
+     * Creates an empty buffer with the given initial capacity.
+     */
+    BinaryBuffer(int capacity) {
+	this.bytes = new byte[capacity];
+    }
+
+    /**
+     * Empties the buffer, keeping its array.
+     */
+    void clear() {
+	this.length = 0;
+	this.position = 0;
+    }
+
+    /**
+     * Gets the number of bytes written.
+     */
+    int length() {
+	return this.length;
+    }
+
+    /**
+     * Gets a copy of the bytes written.
+     */
+    byte[] toByteArray() {
+	return Arrays.copyOf(this.bytes, this.length);
+    }
+
+    private void ensureCapacity(int extra) {
+	if (this.length + extra > this.bytes.length) {
+	    this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.length + extra));
+	}
+    }
+
+    private void checkAvailable(int count) throws EOFException {
+	if (this.position + count > this.length) {
+	    throw new EOFException();
+	}
+    }
+
+    @Override
+    public void write(int b) {
+	ensureCapacity(1);
+	this.bytes[this.length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b) {
+	write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+	ensureCapacity(len);
+	System.arraycopy(b, off, this.bytes, this.length, len);
+	this.length += len;
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+	write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) {
+	write(v);
+    }
+
+    @Override
+    public void writeShort(int v) {
+	ensureCapacity(2);
+	this.bytes[this.length++] = (byte) (v >>> 8);
+	this.bytes[this.length++] = (byte) v;
+    }
+
+    @Override
+    public void writeChar(int v) {
+	writeShort(v);
+    }
+
+    @Override
+    public void writeInt(int v) {
+	ensureCapacity(4);
+	for (int shift = 24; shift >= 0; shift -= 8) {
+	    this.bytes[this.length++] = (byte) (v >>> shift);
+	}
+    }
+
+    @Override
+    public void writeLong(long v) {
+	ensureCapacity(8);
+	for (int shift = 56; shift >= 0; shift -= 8) {
+	    this.bytes[this.length++] = (byte) (v >>> shift);
+	}
+    }
+
+    @Override
+    public void writeFloat(float v) {
+	writeInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v) {
+	writeLong(Double.doubleToLongBits(v));
+    }
+
+    @Override
+    public void writeBytes(String s) {
+	for (int i = 0; i < s.length(); i++) {
+	    write(s.charAt(i));
+	}
+    }
+
+    @Override
+    public void writeChars(String s) {
+	for (int i = 0; i < s.length(); i++) {
+	    writeChar(s.charAt(i));
+	}
+    }
+
+    /**
+     * Writes the given string in modified UTF-8, as
+     * {@link java.io.DataOutputStream#writeUTF(String)} does.
+     */
+    @Override
+    public void writeUTF(String s) throws UTFDataFormatException {
+	int utfLength = 0;
+	for (int i = 0; i < s.length(); i++) {
+	    char c = s.charAt(i);
+	    utfLength += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+	}
+	if (utfLength > 0xFFFF) {
+	    throw new UTFDataFormatException("Encoded string too long: " + utfLength + " bytes");
+	}
+
+	writeShort(utfLength);
+	ensureCapacity(utfLength);
+	for (int i = 0; i < s.length(); i++) {
+	    char c = s.charAt(i);
+	    if (c >= 0x0001 && c <= 0x007F) {
+		this.bytes[this.length++] = (byte) c;
+	    } else if (c > 0x07FF) {
+		this.bytes[this.length++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+		this.bytes[this.length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+		this.bytes[this.length++] = (byte) (0x80 | (c & 0x3F));
+	    } else {
+		this.bytes[this.length++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+		this.bytes[this.length++] = (byte) (0x80 | (c & 0x3F));
+	    }
+	}
+    }
+
+    @Override
+    public void readFully(byte[] b) throws EOFException {
+	readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws EOFException {
+	checkAvailable(len);
+	System.arraycopy(this.bytes, this.position, b, off, len);
+	this.position += len;
+    }
+
+    @Override
+    public int skipBytes(int n) {
+	int skipped = Math.max(0, Math.min(n, this.length - this.position));
+	this.position += skipped;
+	return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws EOFException {
+	return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws EOFException {
+	checkAvailable(1);
+	return this.bytes[this.position++];
+    }
+
+    @Override
+    public int readUnsignedByte() throws EOFException {
+	return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws EOFException {
+	checkAvailable(2);
+	return (short) (((this.bytes[this.position++] & 0xFF) << 8) | (this.bytes[this.position++] & 0xFF));
+    }
+
+    @Override
+    public int readUnsignedShort() throws EOFException {
+	return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws EOFException {
+	return (char) readShort();
+    }
+
+    @Override
+    public int readInt() throws EOFException {
+	checkAvailable(4);
+	int v = 0;
+	for (int i = 0; i < 4; i++) {
+	    v = (v << 8) | (this.bytes[this.position++] & 0xFF);
+	}
+	return v;
+    }
+
+    @Override
+    public long readLong() throws EOFException {
+	checkAvailable(8);
+	long v = 0;
+	for (int i = 0; i < 8; i++) {
+	    v = (v << 8) | (this.bytes[this.position++] & 0xFF);
+	}
+	return v;
+    }
+
+    @Override
+    public float readFloat() throws EOFException {
+	return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws EOFException {
+	return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Reads the next line as {@link DataInputStream#readLine()} does: each byte
+     * is one character, and the line ends with {@code '\n'}, {@code '\r'},
+     * {@code "\r\n"} or the end of the buffer.
+     *
+     * @return the line without its end, or {@code null} if the end of the
+     *         buffer is reached before any byte is read.
+     */
+    @Override
+    public String readLine() {
+	if (this.position == this.length) {
+	    return null;
+	}
+
+	StringBuilder line = new StringBuilder();
+	while (this.position < this.length) {
+	    int c = this.bytes[this.position++] & 0xFF;
+	    if (c == '\n') {
+		break;
+	    }
+	    if (c == '\r') {
+		if (this.position < this.length && this.bytes[this.position] == '\n') {
+		    this.position++;
+		}
+		break;
+	    }
+	    line.append((char) c);
+	}
+	return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+	return DataInputStream.readUTF(this);
+    }
+}
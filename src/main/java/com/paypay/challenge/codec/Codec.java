@@ -0,0 +1,46 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Interface defining how values are turned into bytes and back, for example to
+ * store the elements of a queue outside of the heap. Decoding what a codec
+ * encoded must give a separate object with the same contents as the original
+ * one, so encoding then decoding is also a deep copy.
+ * <p>
+ * Implementations must be thread-safe: a single instance is shared by all the
+ * versions of a queue.
+ * 
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of the values.
+ */
+public interface Codec<T> {
+    /**
+     * Writes the given value to the given output.
+     * 
+     * @param value
+     *            the value to be encoded, may be {@code null} if the codec
+     *            supports it.
+     * @param out
+     *            the output the value is written to.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    public void encode(T value, DataOutput out) throws IOException;
+
+    /**
+     * Reads a value written by {@link #encode(Object, DataOutput)} from the given
+     * input.
+     * 
+     * @param in
+     *            the input the value is read from.
+     * @return a new value with the same contents as the encoded one.
+     * @throws IOException
+     *             if the input cannot be read or does not hold a value.
+     */
+    public T decode(DataInput in) throws IOException;
+}
@@ -0,0 +1,69 @@
+package com.paypay.challenge.codec;
+
+import java.io.IOException;
+
+import com.paypay.challenge.clone.CopyStrategy;
+import com.paypay.challenge.exception.DeepCopyException;
+
+/**
+ * Defines the deep copy strategy encoding the original object into the compact
+ * binary format of a {@link CodecRegistry}, then decoding a new separate object
+ * from those bytes. It is to {@link com.paypay.challenge.clone.GsonCopyStrategy}
+ * what the binary codecs are to JSON: no text is built or parsed, and the copy
+ * keeps the runtime class of every nested object.
+ * <p>
+ * Each thread reuses its own buffer, so a copy does not allocate anything but
+ * the copied objects once the buffer has grown to the size of the encoded
+ * objects.
+ *
+ * @author hoang.tran
+ */
+public final class CodecCopyStrategy implements CopyStrategy {
+    /** The initial number of bytes of the buffer of each thread. */
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /** The registry of the codecs, shared by all copies. */
+    private final CodecRegistry registry;
+
+    /** The buffer of each thread. */
+    private final ThreadLocal<BinaryBuffer> buffers = ThreadLocal
+	    .withInitial(() -> new BinaryBuffer(INITIAL_BUFFER_SIZE));
+
+    /** Creates a strategy using a registry of the default codecs. */
+    public CodecCopyStrategy() {
+	this(new CodecRegistry());
+    }
+
+    /**
+     * Creates a strategy using the given registry of codecs.
+     *
+     * @param registry
+     *            the registry of the codecs to be used for copies.
+     */
+    public CodecCopyStrategy(CodecRegistry registry) {
+	this.registry = registry;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws DeepCopyException
+     *             if the object cannot be encoded or decoded.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T copy(T originalObj) {
+	if (originalObj == null) {
+	    return null;
+	}
+
+	Codec<T> codec = (Codec<T>) this.registry.codecFor(originalObj.getClass());
+	BinaryBuffer buffer = this.buffers.get();
+	buffer.clear();
+	try {
+	    codec.encode(originalObj, buffer);
+	    return codec.decode(buffer);
+	} catch (IOException | RuntimeException e) {
+	    throw new DeepCopyException("Cannot copy object of " + originalObj.getClass(), e);
+	}
+    }
+}
@@ -0,0 +1,355 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Defines the registry of the binary codecs, one per type. The registry knows
+ * how to encode the JDK values (primitives and their boxes, strings, dates,
+ * enums, arrays, collections and maps), and builds a <em>schema</em> codec for
+ * any other class: its fields, sorted by class then by name, are written one
+ * after the other without their names, each with the codec of its declared
+ * type. So, unlike JSON:
+ * <ul>
+ * <li>numbers are written as binary values, integers as variable-length ones
+ * taking one byte for small values, and dates as their time in
+ * milliseconds,</li>
+ * <li>no name is written, except the class name of a value whose class is not
+ * the declared type of its field, or of the elements of a collection,</li>
+ * <li>and every object is read back as an instance of its own class.</li>
+ * </ul>
+ * The class of an encoded object must therefore be the same, with the same
+ * fields, when it is decoded. As for Gson, object graphs must not contain
+ * cycles, and an object referenced twice is decoded as two separate objects;
+ * the comparator of a sorted collection is not encoded either.
+ * <p>
+ * Codecs for other types, for example user types needing a stable format, are
+ * plugged with {@link #register(Class, Codec)}, before the registry is used for
+ * those types. A class read by name must be assignable to the declared type,
+ * and, once {@link #allow(String...)} is called, allowed. The registry is
+ * thread-safe.
+ *
+ * @author hoang.tran
+ */
+public final class CodecRegistry {
+    /** The codecs of the value types, registered or built so far. */
+    private final Map<Type, Codec<?>> codecs = new ConcurrentHashMap<Type, Codec<?>>();
+
+    /** The codecs handed out by {@link #codecFor(Class)}, one per class. */
+    private final Map<Class<?>, Codec<?>> references = new ConcurrentHashMap<Class<?>, Codec<?>>();
+
+    /** The classes read by name so far. */
+    private final Map<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
+
+    /**
+     * The names of the classes, or of the packages, allowed to be read by name,
+     * or empty to allow any class.
+     */
+    private final Set<String> allowed = new CopyOnWriteArraySet<String>();
+
+    /** The names of the classes whose codec is registered, always allowed. */
+    private final Set<String> registered = ConcurrentHashMap.newKeySet();
+
+    /** The no-argument constructors found so far, if any. */
+    private final Map<Class<?>, Optional<Constructor<?>>> constructors = new ConcurrentHashMap<>();
+
+    /**
+     * Defines how a value is written, for the codecs of the JDK values.
+     */
+    @FunctionalInterface
+    private interface Writer<T> {
+	void write(T value, DataOutput out) throws IOException;
+    }
+
+    /**
+     * Defines how a value is read, for the codecs of the JDK values.
+     */
+    @FunctionalInterface
+    private interface Reader<T> {
+	T read(DataInput in) throws IOException;
+    }
+
+    /** Creates a registry knowing the codecs of the JDK values only. */
+    public CodecRegistry() {
+	register(Boolean.class, boolean.class, (v, out) -> out.writeBoolean(v), DataInput::readBoolean);
+	register(Byte.class, byte.class, (v, out) -> out.writeByte(v), DataInput::readByte);
+	register(Short.class, short.class, (v, out) -> out.writeShort(v), DataInput::readShort);
+	register(Character.class, char.class, (v, out) -> out.writeChar(v), DataInput::readChar);
+	register(Integer.class, int.class, (v, out) -> Varints.writeInt(out, v), Varints::readInt);
+	register(Long.class, long.class, (v, out) -> Varints.writeLong(out, v), Varints::readLong);
+	register(Float.class, float.class, (v, out) -> out.writeFloat(v), DataInput::readFloat);
+	register(Double.class, double.class, (v, out) -> out.writeDouble(v), DataInput::readDouble);
+	register(String.class, null, CodecRegistry::writeString, CodecRegistry::readString);
+	register(Date.class, null, (v, out) -> Varints.writeLong(out, v.getTime()),
+		in -> new Date(Varints.readLong(in)));
+	register(UUID.class, null, (v, out) -> {
+	    out.writeLong(v.getMostSignificantBits());
+	    out.writeLong(v.getLeastSignificantBits());
+	}, in -> new UUID(in.readLong(), in.readLong()));
+	register(BigInteger.class, null, CodecRegistry::writeBigInteger, CodecRegistry::readBigInteger);
+	register(BigDecimal.class, null, (v, out) -> {
+	    writeBigInteger(v.unscaledValue(), out);
+	    Varints.writeInt(out, v.scale());
+	}, in -> new BigDecimal(readBigInteger(in), Varints.readInt(in)));
+    }
+
+    /**
+     * Registers the codec of the given class, replacing the one the registry
+     * would build. The codec only encodes non-null instances of exactly that
+     * class; {@code null} values and instances of subclasses are handled by the
+     * registry.
+     *
+     * @param type
+     *            the class of the values.
+     * @param codec
+     *            the codec of its instances.
+     * @return this registry.
+     */
+    public <T> CodecRegistry register(Class<T> type, Codec<T> codec) {
+	this.codecs.put(type, codec);
+	this.registered.add(type.getName());
+	return this;
+    }
+
+    /**
+     * Gets the codec of the values of the given type. It encodes {@code null},
+     * instances of the type, and instances of its subclasses along with their
+     * class name.
+     *
+     * @param type
+     *            the declared type of the values, which can be an interface or
+     *            {@code Object}.
+     * @return the codec of the values of the type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> codecFor(Class<T> type) {
+	Codec<?> codec = this.references.get(type);
+	if (codec == null) {
+	    codec = new ReferenceCodec<T>(type, this);
+	    Codec<?> existing = this.references.putIfAbsent(type, codec);
+	    if (existing != null) {
+		codec = existing;
+	    }
+	}
+	return (Codec<T>) codec;
+    }
+
+    /**
+     * Gets the codec of the non-null values of exactly the given type, building
+     * it the first time.
+     */
+    @SuppressWarnings("unchecked")
+    <T> Codec<T> valueCodec(Type type) {
+	Codec<?> codec = this.codecs.get(type);
+	if (codec == null) {
+	    // Built outside of the map, as building a codec may need other ones
+	    codec = build(type);
+	    Codec<?> existing = this.codecs.putIfAbsent(type, codec);
+	    if (existing != null) {
+		codec = existing;
+	    }
+	}
+	return (Codec<T>) codec;
+    }
+
+    /**
+     * Allows only the given classes, and the classes whose codec is registered,
+     * to be read by name: the class of a value that is not exactly the declared
+     * type of its field or element, and the implementation of a collection or a
+     * map. Until this method is called, any class assignable to the declared
+     * type is read. Decoding untrusted input should always set the classes
+     * allowed, since reading a class by name loads it, and creates its instances
+     * without running any of their constructors.
+     *
+     * @param names
+     *            the names of the classes allowed, or of their packages, ending
+     *            with a dot; for example {@code "java.util."} allows the JDK
+     *            collections and maps.
+     * @return this registry.
+     */
+    public CodecRegistry allow(String... names) {
+	this.allowed.addAll(Arrays.asList(names));
+	return this;
+    }
+
+    /**
+     * Gets the class of the given name, which must be allowed and assignable to
+     * the given declared type. The class is loaded without being initialized.
+     */
+    Class<?> classForName(String name, Class<?> declaredType) throws IOException {
+	Class<?> type = this.classes.get(name);
+	if (type == null) {
+	    if (!isAllowed(name)) {
+		throw new IOException("Class of encoded value not allowed: " + name);
+	    }
+	    try {
+		type = Class.forName(name, false, CodecRegistry.class.getClassLoader());
+	    } catch (ClassNotFoundException e) {
+		throw new IOException("Unknown class of encoded value: " + name, e);
+	    }
+	    this.classes.put(name, type);
+	}
+	if (!declaredType.isAssignableFrom(type)) {
+	    throw new IOException("Class of encoded value " + name + " is not a " + declaredType.getName());
+	}
+	return type;
+    }
+
+    /**
+     * Checks if the class of the given name may be read by name.
+     */
+    private boolean isAllowed(String name) {
+	if (this.allowed.isEmpty() || this.registered.contains(name)) {
+	    return true;
+	}
+	for (String allowed : this.allowed) {
+	    if (allowed.endsWith(".") ? name.startsWith(allowed) && name.indexOf('.', allowed.length()) < 0
+		    : name.equals(allowed)) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Gets the no-argument constructor of the given class.
+     *
+     * @return the constructor, or {@code null} if the class has none.
+     */
+    Constructor<?> noArgConstructor(Class<?> type) {
+	return this.constructors.computeIfAbsent(type, c -> {
+	    if (Modifier.isAbstract(c.getModifiers())) {
+		return Optional.empty();
+	    }
+	    try {
+		Constructor<?> constructor = c.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		return Optional.<Constructor<?>>of(constructor);
+	    } catch (NoSuchMethodException | RuntimeException e) {
+		return Optional.empty();
+	    }
+	}).orElse(null);
+    }
+
+    /**
+     * Gets the class whose codec encodes the given non-null value: the class
+     * declaring the constants of an enum, the class of the value otherwise.
+     */
+    static Class<?> codecClass(Object value) {
+	if (value instanceof Enum) {
+	    return ((Enum<?>) value).getDeclaringClass();
+	}
+	return value.getClass();
+    }
+
+    /**
+     * Gets the class of the given type, {@code Object} for type variables and
+     * wildcards.
+     */
+    static Class<?> rawClass(Type type) {
+	if (type instanceof Class) {
+	    return (Class<?>) type;
+	}
+	if (type instanceof ParameterizedType) {
+	    return (Class<?>) ((ParameterizedType) type).getRawType();
+	}
+	if (type instanceof GenericArrayType) {
+	    return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+	}
+	return Object.class;
+    }
+
+    /**
+     * Builds the codec of the given type.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Codec<?> build(Type type) {
+	Class<?> raw = rawClass(type);
+	Type[] arguments = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments()
+		: null;
+	if (Collection.class.isAssignableFrom(raw)) {
+	    return new CollectionCodec(raw, arguments == null ? Object.class : arguments[0], this);
+	}
+	if (Map.class.isAssignableFrom(raw)) {
+	    return new MapCodec(raw, arguments == null ? Object.class : arguments[0],
+		    arguments == null ? Object.class : arguments[1], this);
+	}
+	if (type != raw) {
+	    return valueCodec(raw);
+	}
+	if (raw.isArray()) {
+	    return new ArrayCodec(raw.getComponentType(), this);
+	}
+	if (raw.isEnum()) {
+	    return new EnumCodec(raw);
+	}
+	if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers()) || raw == Object.class) {
+	    throw new IllegalArgumentException("No codec for the abstract type " + raw.getName());
+	}
+	if (raw.getName().startsWith("java.")) {
+	    // The fields of the other JDK classes are not a stable format
+	    return new JsonCodec(raw);
+	}
+	return new SchemaCodec(raw, this);
+    }
+
+    private <T> void register(Class<T> type, Class<?> primitiveType, Writer<T> writer, Reader<T> reader) {
+	Codec<T> codec = new Codec<T>() {
+	    public void encode(T value, DataOutput out) throws IOException {
+		writer.write(value, out);
+	    }
+
+	    public T decode(DataInput in) throws IOException {
+		return reader.read(in);
+	    }
+	};
+	this.codecs.put(type, codec);
+	this.registered.add(type.getName());
+	if (primitiveType != null) {
+	    this.codecs.put(primitiveType, codec);
+	}
+    }
+
+    private static void writeString(String value, DataOutput out) throws IOException {
+	byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+	Varints.writeUnsignedInt(out, bytes.length);
+	out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+	byte[] bytes = new byte[Varints.readUnsignedInt(in)];
+	in.readFully(bytes);
+	return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBigInteger(BigInteger value, DataOutput out) throws IOException {
+	byte[] bytes = value.toByteArray();
+	Varints.writeUnsignedInt(out, bytes.length);
+	out.write(bytes);
+    }
+
+    private static BigInteger readBigInteger(DataInput in) throws IOException {
+	byte[] bytes = new byte[Varints.readUnsignedInt(in)];
+	in.readFully(bytes);
+	return new BigInteger(bytes);
+    }
+}
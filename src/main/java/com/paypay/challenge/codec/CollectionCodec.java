@@ -0,0 +1,143 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Defines the codec of the collections of a declared type, written as their
+ * implementation, their size, then their elements. The implementation is a
+ * single byte when it is the default one of the declared type, or when the
+ * actual one cannot be instantiated (for example an unmodifiable view); it is
+ * followed by the name of the actual implementation otherwise.
+ *
+ * @author hoang.tran
+ */
+final class CollectionCodec implements Codec<Collection<Object>> {
+    /** The implementation byte of the default implementation. */
+    static final int DEFAULT_IMPLEMENTATION = 0;
+
+    /** The implementation byte of an implementation written with its name. */
+    static final int NAMED_IMPLEMENTATION = 1;
+
+    /** The declared class of the collections. */
+    private final Class<?> type;
+
+    /** The class of the collections created when decoding by default. */
+    private final Class<?> defaultImplementation;
+
+    /** The codec of the elements. */
+    private final Codec<Object> elementCodec;
+
+    /** The registry of the codecs. */
+    private final CodecRegistry registry;
+
+    CollectionCodec(Class<?> type, Type elementType, CodecRegistry registry) {
+	this.type = type;
+	this.defaultImplementation = defaultImplementation(type, registry);
+	this.elementCodec = new ReferenceCodec<Object>(elementType, registry);
+	this.registry = registry;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void encode(Collection<Object> value, DataOutput out) throws IOException {
+	writeImplementation(value.getClass(), this.defaultImplementation, this.registry, out);
+	Varints.writeUnsignedInt(out, value.size());
+	for (Object element : value) {
+	    this.elementCodec.encode(element, out);
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<Object> decode(DataInput in) throws IOException {
+	Collection<Object> collection = (Collection<Object>) readImplementation(this.type,
+		this.defaultImplementation, this.registry, in);
+	for (int size = Varints.readUnsignedInt(in); size > 0; size--) {
+	    collection.add(this.elementCodec.decode(in));
+	}
+	return collection;
+    }
+
+    /**
+     * Gets the class of the collections or maps created when decoding values of
+     * the given type: the type itself if it can be instantiated, the usual
+     * implementation of its interface otherwise.
+     */
+    static Class<?> defaultImplementation(Class<?> type, CodecRegistry registry) {
+	if (registry.noArgConstructor(type) != null) {
+	    return type;
+	}
+	if (SortedSet.class.isAssignableFrom(type)) {
+	    return TreeSet.class;
+	}
+	if (Set.class.isAssignableFrom(type)) {
+	    return HashSet.class;
+	}
+	if (Queue.class.isAssignableFrom(type)) {
+	    return ArrayDeque.class;
+	}
+	if (SortedMap.class.isAssignableFrom(type)) {
+	    return TreeMap.class;
+	}
+	if (Map.class.isAssignableFrom(type)) {
+	    return HashMap.class;
+	}
+	return ArrayList.class;
+    }
+
+    /**
+     * Writes the implementation of a collection or map of the given class.
+     */
+    static void writeImplementation(Class<?> implementation, Class<?> defaultImplementation,
+	    CodecRegistry registry, DataOutput out) throws IOException {
+	if (implementation == defaultImplementation || registry.noArgConstructor(implementation) == null) {
+	    out.writeByte(DEFAULT_IMPLEMENTATION);
+	} else {
+	    out.writeByte(NAMED_IMPLEMENTATION);
+	    out.writeUTF(implementation.getName());
+	}
+    }
+
+    /**
+     * Reads the implementation written by
+     * {@link #writeImplementation(Class, Class, CodecRegistry, DataOutput)},
+     * which must be assignable to the given declared type, and creates an empty
+     * instance of it.
+     */
+    static Object readImplementation(Class<?> type, Class<?> defaultImplementation, CodecRegistry registry,
+	    DataInput in) throws IOException {
+	Class<?> implementation = defaultImplementation;
+	if (in.readByte() == NAMED_IMPLEMENTATION) {
+	    implementation = registry.classForName(in.readUTF(), type);
+	}
+
+	Constructor<?> constructor = registry.noArgConstructor(implementation);
+	if (constructor == null) {
+	    throw new IOException("Cannot instantiate " + implementation.getName());
+	}
+	try {
+	    return constructor.newInstance();
+	} catch (ReflectiveOperationException e) {
+	    throw new IOException("Cannot instantiate " + implementation.getName(), e);
+	}
+    }
+}
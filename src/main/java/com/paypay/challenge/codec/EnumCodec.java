@@ -0,0 +1,40 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Defines the codec of the constants of an enum, written as their ordinal.
+ *
+ * @author hoang.tran
+ *
+ * @param <E>
+ *            the type of the enum.
+ */
+final class EnumCodec<E extends Enum<E>> implements Codec<E> {
+    /** The constants of the enum, by ordinal. */
+    private final E[] constants;
+
+    EnumCodec(Class<E> type) {
+	this.constants = type.getEnumConstants();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void encode(E value, DataOutput out) throws IOException {
+	Varints.writeUnsignedInt(out, value.ordinal());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public E decode(DataInput in) throws IOException {
+	int ordinal = Varints.readUnsignedInt(in);
+	if (ordinal >= this.constants.length) {
+	    throw new IOException("Unknown ordinal of encoded enum: " + ordinal);
+	}
+	return this.constants[ordinal];
+    }
+}
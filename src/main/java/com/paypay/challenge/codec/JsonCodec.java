@@ -0,0 +1,104 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+
+/**
+ * Defines the codec writing values as UTF-8 JSON, converted with <a href=
+ * "https://mvnrepository.com/artifact/com.google.code.gson/gson">Gson</a>, as
+ * {@link com.paypay.challenge.clone.GsonCopyStrategy} does for copies. The
+ * codec works in one of two ways:
+ * <ul>
+ * <li>created with a class, it writes the JSON of the values only, and reads it
+ * back as instances of that class,</li>
+ * <li>created without any class, it writes the name of the runtime class of
+ * each value before its JSON, so that values of different classes can be read
+ * back as instances of their own class.</li>
+ * </ul>
+ * The same limits as for copies apply: a field declared as a type variable or as
+ * {@code Object} is read back as a JSON tree, not as an instance of its original
+ * class.
+ * 
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of the values.
+ */
+public final class JsonCodec<T> implements Codec<T> {
+    /** The converter, thread-safe and shared by all the values. */
+    private final Gson gson;
+
+    /** The class of all the values, or {@code null} if written with each value. */
+    private final Class<T> type;
+
+    /**
+     * Creates a codec writing the name of the class of each value with it, using
+     * a default {@link Gson} converter.
+     */
+    public JsonCodec() {
+	this(null, new Gson());
+    }
+
+    /**
+     * Creates a codec for values of the given class, using a default {@link Gson}
+     * converter.
+     * 
+     * @param type
+     *            the class of the values.
+     */
+    public JsonCodec(Class<T> type) {
+	this(type, new Gson());
+    }
+
+    /**
+     * Creates a codec for values of the given class, using the given {@link Gson}
+     * converter.
+     * 
+     * @param type
+     *            the class of the values, or {@code null} to write the name of the
+     *            class of each value with it.
+     * @param gson
+     *            the converter to be used.
+     */
+    public JsonCodec(Class<T> type, Gson gson) {
+	this.type = type;
+	this.gson = gson;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void encode(T value, DataOutput out) throws IOException {
+	if (this.type == null) {
+	    out.writeUTF(value == null ? "" : value.getClass().getName());
+	}
+
+	byte[] json = this.gson.toJson(value).getBytes(StandardCharsets.UTF_8);
+	out.writeInt(json.length);
+	out.write(json);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public T decode(DataInput in) throws IOException {
+	Class<?> valueType = this.type;
+	if (valueType == null) {
+	    String className = in.readUTF();
+	    try {
+		valueType = className.isEmpty() ? Object.class : Class.forName(className);
+	    } catch (ClassNotFoundException e) {
+		throw new IOException("Unknown class of encoded value: " + className, e);
+	    }
+	}
+
+	byte[] json = new byte[in.readInt()];
+	in.readFully(json);
+	return (T) this.gson.fromJson(new String(json, StandardCharsets.UTF_8), valueType);
+    }
+}
@@ -0,0 +1,65 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Defines the codec of the maps of a declared type, written as their
+ * implementation, as for {@link CollectionCodec}, their size, then their keys
+ * and values.
+ *
+ * @author hoang.tran
+ */
+final class MapCodec implements Codec<Map<Object, Object>> {
+    /** The declared class of the maps. */
+    private final Class<?> type;
+
+    /** The class of the maps created when decoding by default. */
+    private final Class<?> defaultImplementation;
+
+    /** The codec of the keys. */
+    private final Codec<Object> keyCodec;
+
+    /** The codec of the values. */
+    private final Codec<Object> valueCodec;
+
+    /** The registry of the codecs. */
+    private final CodecRegistry registry;
+
+    MapCodec(Class<?> type, Type keyType, Type valueType, CodecRegistry registry) {
+	this.type = type;
+	this.defaultImplementation = CollectionCodec.defaultImplementation(type, registry);
+	this.keyCodec = new ReferenceCodec<Object>(keyType, registry);
+	this.valueCodec = new ReferenceCodec<Object>(valueType, registry);
+	this.registry = registry;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void encode(Map<Object, Object> value, DataOutput out) throws IOException {
+	CollectionCodec.writeImplementation(value.getClass(), this.defaultImplementation, this.registry, out);
+	Varints.writeUnsignedInt(out, value.size());
+	for (Map.Entry<Object, Object> entry : value.entrySet()) {
+	    this.keyCodec.encode(entry.getKey(), out);
+	    this.valueCodec.encode(entry.getValue(), out);
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Object, Object> decode(DataInput in) throws IOException {
+	Map<Object, Object> map = (Map<Object, Object>) CollectionCodec.readImplementation(this.type,
+		this.defaultImplementation, this.registry, in);
+	for (int size = Varints.readUnsignedInt(in); size > 0; size--) {
+	    Object key = this.keyCodec.decode(in);
+	    map.put(key, this.valueCodec.decode(in));
+	}
+	return map;
+    }
+}
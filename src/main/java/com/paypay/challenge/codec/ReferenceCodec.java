@@ -0,0 +1,122 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Defines the codec of the values of a declared type: a field, an element of a
+ * collection or an array, or a value handed to
+ * {@link CodecRegistry#codecFor(Class)}. Each value starts with a tag byte:
+ * <ul>
+ * <li>{@link #NULL} for {@code null},</li>
+ * <li>{@link #DECLARED} for an instance of the declared type, written by the
+ * codec of that type,</li>
+ * <li>{@link #NAMED} for an instance of another class, followed by the name of
+ * that class and written by its codec; when decoding, the class must be
+ * assignable to the declared type, and allowed by the registry.</li>
+ * </ul>
+ * A primitive declared type is written by its codec without any tag. The codec
+ * of the declared type is resolved the first time it is used, so that classes
+ * can refer to themselves.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the declared type of the values.
+ */
+final class ReferenceCodec<T> implements Codec<T> {
+    /** The tag of {@code null}. */
+    private static final int NULL = 0;
+
+    /** The tag of an instance of the declared type. */
+    private static final int DECLARED = 1;
+
+    /** The tag of an instance of another class, written with its name. */
+    private static final int NAMED = 2;
+
+    /** The declared type of the values. */
+    private final Type declaredType;
+
+    /** The class of the declared type. */
+    private final Class<?> declaredClass;
+
+    /**
+     * Whether the declared type is a collection or a map, whose codec writes
+     * instances of any implementation.
+     */
+    private final boolean container;
+
+    /** The registry of the codecs. */
+    private final CodecRegistry registry;
+
+    /** The codec of the declared type, once resolved. */
+    private Codec<T> declaredCodec;
+
+    ReferenceCodec(Type declaredType, CodecRegistry registry) {
+	this.declaredType = declaredType;
+	this.declaredClass = CodecRegistry.rawClass(declaredType);
+	this.container = Collection.class.isAssignableFrom(this.declaredClass)
+		|| Map.class.isAssignableFrom(this.declaredClass);
+	this.registry = registry;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void encode(T value, DataOutput out) throws IOException {
+	if (this.declaredClass.isPrimitive()) {
+	    declaredCodec().encode(value, out);
+	    return;
+	}
+	if (value == null) {
+	    out.writeByte(NULL);
+	    return;
+	}
+
+	Class<?> valueClass = CodecRegistry.codecClass(value);
+	if (valueClass == this.declaredClass || this.container && this.declaredClass.isInstance(value)) {
+	    out.writeByte(DECLARED);
+	    declaredCodec().encode(value, out);
+	} else {
+	    out.writeByte(NAMED);
+	    out.writeUTF(valueClass.getName());
+	    this.registry.<T>valueCodec(valueClass).encode(value, out);
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T decode(DataInput in) throws IOException {
+	if (this.declaredClass.isPrimitive()) {
+	    return declaredCodec().decode(in);
+	}
+
+	int tag = in.readByte();
+	switch (tag) {
+	case NULL:
+	    return null;
+	case DECLARED:
+	    return declaredCodec().decode(in);
+	case NAMED:
+	    return this.registry.<T>valueCodec(this.registry.classForName(in.readUTF(), this.declaredClass))
+		    .decode(in);
+	default:
+	    throw new IOException("Unknown tag of encoded value: " + tag);
+	}
+    }
+
+    private Codec<T> declaredCodec() {
+	Codec<T> codec = this.declaredCodec;
+	if (codec == null) {
+	    // Resolving it twice concurrently gives the same codec
+	    codec = this.registry.valueCodec(this.declaredType);
+	    this.declaredCodec = codec;
+	}
+	return codec;
+    }
+}
@@ -0,0 +1,163 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Defines the codec of the instances of a class, written as the values of their
+ * fields: the non-static and non-transient fields of its superclasses first,
+ * then its own ones, each group sorted by name. No field name is written, so
+ * the class must have the same fields when its instances are decoded.
+ * <p>
+ * The fields of type {@code int} and {@code long} are written as
+ * variable-length integers without boxing them; any other field is written by
+ * the codec of its declared type.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the class of the values.
+ */
+final class SchemaCodec<T> implements Codec<T> {
+    /** The allocator creating objects without calling their constructor. */
+    private static final MethodHandle UNSAFE_ALLOCATOR = unsafeAllocator();
+
+    /** The class of the values. */
+    private final Class<T> type;
+
+    /** The no-argument constructor of the class, if any. */
+    private final Constructor<?> constructor;
+
+    /** The fields of the class, in the order they are written. */
+    private final Field[] fields;
+
+    /** The codecs of the fields, {@code null} for {@code int} and {@code long}. */
+    private final Codec<Object>[] fieldCodecs;
+
+    @SuppressWarnings("unchecked")
+    SchemaCodec(Class<T> type, CodecRegistry registry) {
+	this.type = type;
+	this.constructor = registry.noArgConstructor(type);
+	if (this.constructor == null && UNSAFE_ALLOCATOR == null) {
+	    throw new IllegalArgumentException("Cannot instantiate " + type.getName());
+	}
+
+	List<Field> fields = new ArrayList<Field>();
+	collectFields(type, fields);
+	this.fields = fields.toArray(new Field[fields.size()]);
+	this.fieldCodecs = new Codec[this.fields.length];
+	for (int i = 0; i < this.fields.length; i++) {
+	    Class<?> fieldType = this.fields[i].getType();
+	    if (fieldType != int.class && fieldType != long.class) {
+		this.fieldCodecs[i] = new ReferenceCodec<Object>(this.fields[i].getGenericType(), registry);
+	    }
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void encode(T value, DataOutput out) throws IOException {
+	try {
+	    for (int i = 0; i < this.fields.length; i++) {
+		Field field = this.fields[i];
+		Codec<Object> codec = this.fieldCodecs[i];
+		if (codec != null) {
+		    codec.encode(field.get(value), out);
+		} else if (field.getType() == int.class) {
+		    Varints.writeInt(out, field.getInt(value));
+		} else {
+		    Varints.writeLong(out, field.getLong(value));
+		}
+	    }
+	} catch (IllegalAccessException e) {
+	    throw new IllegalStateException("Cannot read fields of " + this.type.getName(), e);
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T decode(DataInput in) throws IOException {
+	T value = newInstance();
+	try {
+	    for (int i = 0; i < this.fields.length; i++) {
+		Field field = this.fields[i];
+		Codec<Object> codec = this.fieldCodecs[i];
+		if (codec != null) {
+		    field.set(value, codec.decode(in));
+		} else if (field.getType() == int.class) {
+		    field.setInt(value, Varints.readInt(in));
+		} else {
+		    field.setLong(value, Varints.readLong(in));
+		}
+	    }
+	} catch (IllegalAccessException e) {
+	    throw new IllegalStateException("Cannot write fields of " + this.type.getName(), e);
+	}
+	return value;
+    }
+
+    private T newInstance() {
+	try {
+	    if (this.constructor != null) {
+		return this.type.cast(this.constructor.newInstance());
+	    }
+	    return this.type.cast(UNSAFE_ALLOCATOR.invokeExact(this.type));
+	} catch (Throwable e) {
+	    throw new IllegalStateException("Cannot instantiate " + this.type.getName(), e);
+	}
+    }
+
+    /**
+     * Collects the fields written for the instances of the given class, those of
+     * its superclasses first.
+     */
+    private static void collectFields(Class<?> type, List<Field> fields) {
+	if (type == null || type == Object.class) {
+	    return;
+	}
+
+	collectFields(type.getSuperclass(), fields);
+	List<Field> declared = new ArrayList<Field>();
+	for (Field field : type.getDeclaredFields()) {
+	    int modifiers = field.getModifiers();
+	    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+		field.setAccessible(true);
+		declared.add(field);
+	    }
+	}
+	declared.sort(Comparator.comparing(Field::getName));
+	fields.addAll(declared);
+    }
+
+    /**
+     * Looks up {@code sun.misc.Unsafe.allocateInstance}, to create objects of
+     * classes without a no-argument constructor.
+     *
+     * @return a handle of type {@code (Class)Object}, or {@code null} if the JVM
+     *         does not provide it.
+     */
+    private static MethodHandle unsafeAllocator() {
+	try {
+	    Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+	    Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+	    theUnsafe.setAccessible(true);
+	    return MethodHandles.lookup()
+		    .findVirtual(unsafeClass, "allocateInstance", MethodType.methodType(Object.class, Class.class))
+		    .bindTo(theUnsafe.get(null));
+	} catch (ReflectiveOperationException | RuntimeException e) {
+	    return null;
+	}
+    }
+}
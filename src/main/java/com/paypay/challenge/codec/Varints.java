@@ -0,0 +1,102 @@
+package com.paypay.challenge.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads integers as <em>varints</em>: seven bits per byte, the least
+ * significant first, the high bit of each byte telling whether another byte
+ * follows. Small values take one or two bytes instead of four or eight. Signed
+ * values are first mapped by <em>zigzag</em> encoding, so that small negative
+ * values are small too. Besides the codecs, the replication frames write their
+ * counters this way.
+ *
+ * @author hoang.tran
+ */
+public final class Varints {
+    private Varints() {
+    }
+
+    /**
+     * Writes the given value, as an unsigned one, in 1 to 5 bytes.
+     */
+    public static void writeUnsignedInt(DataOutput out, int value) throws IOException {
+	while ((value & ~0x7F) != 0) {
+	    out.writeByte((value & 0x7F) | 0x80);
+	    value >>>= 7;
+	}
+	out.writeByte(value);
+    }
+
+    /**
+     * Reads a value written by {@link #writeUnsignedInt(DataOutput, int)}.
+     */
+    public static int readUnsignedInt(DataInput in) throws IOException {
+	int value = 0;
+	for (int shift = 0; shift < 35; shift += 7) {
+	    byte b = in.readByte();
+	    value |= (b & 0x7F) << shift;
+	    if (b >= 0) {
+		return value;
+	    }
+	}
+	throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Writes the given value, as an unsigned one, in 1 to 10 bytes.
+     */
+    public static void writeUnsignedLong(DataOutput out, long value) throws IOException {
+	while ((value & ~0x7FL) != 0) {
+	    out.writeByte((int) ((value & 0x7F) | 0x80));
+	    value >>>= 7;
+	}
+	out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a value written by {@link #writeUnsignedLong(DataOutput, long)}.
+     */
+    public static long readUnsignedLong(DataInput in) throws IOException {
+	long value = 0;
+	for (int shift = 0; shift < 70; shift += 7) {
+	    byte b = in.readByte();
+	    value |= (long) (b & 0x7F) << shift;
+	    if (b >= 0) {
+		return value;
+	    }
+	}
+	throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Writes the given signed value in zigzag encoding.
+     */
+    public static void writeInt(DataOutput out, int value) throws IOException {
+	writeUnsignedInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads a value written by {@link #writeInt(DataOutput, int)}.
+     */
+    public static int readInt(DataInput in) throws IOException {
+	int value = readUnsignedInt(in);
+	return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes the given signed value in zigzag encoding.
+     */
+    public static void writeLong(DataOutput out, long value) throws IOException {
+	writeUnsignedLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads a value written by {@link #writeLong(DataOutput, long)}.
+     */
+    public static long readLong(DataInput in) throws IOException {
+	long value = readUnsignedLong(in);
+	return (value >>> 1) ^ -(value & 1);
+    }
+}
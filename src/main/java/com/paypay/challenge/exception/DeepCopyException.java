@@ -0,0 +1,18 @@
+package com.paypay.challenge.exception;
+
+/**
+ * A simple class defining exceptions that may occur while deep copying
+ * objects.
+ * 
+ * @author hoang.tran
+ */
+@SuppressWarnings("serial")
+public class DeepCopyException extends RuntimeException {
+    public DeepCopyException(String message, Throwable cause) {
+	super(message, cause);
+    }
+
+    public DeepCopyException(String message) {
+	super(message);
+    }
+}
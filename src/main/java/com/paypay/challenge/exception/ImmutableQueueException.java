@@ -20,6 +20,11 @@ public class ImmutableQueueException extends RuntimeException {
 	this.message = message;
     }
 
+    public ImmutableQueueException(String message, Throwable cause) {
+	super(cause);
+	this.message = message;
+    }
+
     public ImmutableQueueException() {
 	super("Exception occured while processing immutable queue.");
     }
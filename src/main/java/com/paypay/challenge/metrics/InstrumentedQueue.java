@@ -0,0 +1,157 @@
+package com.paypay.challenge.metrics;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+
+import com.paypay.challenge.queue.Queue;
+
+/**
+ * Defines the wrapper measuring the operations of any queue, made by
+ * {@link Metrics#instrument(Queue)}. The versions it returns are wrapped too.
+ * Reading the elements through an iterator or a stream is not measured.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements of the queue.
+ */
+final class InstrumentedQueue<T> implements Queue<T> {
+    /** The wrapped queue. */
+    private final Queue<T> queue;
+
+    InstrumentedQueue(Queue<T> queue) {
+	this.queue = queue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> enQueue(T t) {
+	MetricsRecorder recorder = Metrics.getRecorder();
+	if (recorder == null) {
+	    return wrap(this.queue.enQueue(t));
+	}
+
+	long start = System.nanoTime();
+	Queue<T> result = this.queue.enQueue(t);
+	recorder.operation(Operation.ENQUEUE, System.nanoTime() - start, result.size());
+	return wrap(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	MetricsRecorder recorder = Metrics.getRecorder();
+	if (recorder == null) {
+	    return wrap(this.queue.enQueueAll(elements));
+	}
+
+	long start = System.nanoTime();
+	Queue<T> result = this.queue.enQueueAll(elements);
+	recorder.operation(Operation.ENQUEUE_ALL, System.nanoTime() - start, result.size());
+	return wrap(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> deQueue() {
+	MetricsRecorder recorder = Metrics.getRecorder();
+	if (recorder == null) {
+	    return wrap(this.queue.deQueue());
+	}
+
+	long start = System.nanoTime();
+	Queue<T> result = this.queue.deQueue();
+	recorder.operation(Operation.DEQUEUE, System.nanoTime() - start, result.size());
+	return wrap(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> deQueue(int n) {
+	MetricsRecorder recorder = Metrics.getRecorder();
+	if (recorder == null) {
+	    return wrap(this.queue.deQueue(n));
+	}
+
+	long start = System.nanoTime();
+	Queue<T> result = this.queue.deQueue(n);
+	recorder.operation(Operation.DEQUEUE, System.nanoTime() - start, result.size());
+	return wrap(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	MetricsRecorder recorder = Metrics.getRecorder();
+	if (recorder == null) {
+	    return wrap(this.queue.drainTo(target, maxElements));
+	}
+
+	long start = System.nanoTime();
+	Queue<T> result = this.queue.drainTo(target, maxElements);
+	recorder.operation(Operation.DRAIN, System.nanoTime() - start, result.size());
+	return wrap(result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T head() {
+	MetricsRecorder recorder = Metrics.getRecorder();
+	if (recorder == null) {
+	    return this.queue.head();
+	}
+
+	long start = System.nanoTime();
+	T head = this.queue.head();
+	recorder.operation(Operation.HEAD, System.nanoTime() - start, this.queue.size());
+	return head;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+	return this.queue.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+	return this.queue.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Iterator<T> iterator() {
+	return this.queue.iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+	return this.queue.spliterator();
+    }
+
+    @Override
+    public String toString() {
+	return this.queue.toString();
+    }
+
+    /**
+     * Wraps the given version, unless it is the wrapped queue itself.
+     */
+    private Queue<T> wrap(Queue<T> result) {
+	return result == this.queue ? this : new InstrumentedQueue<T>(result);
+    }
+}
@@ -0,0 +1,87 @@
+package com.paypay.challenge.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Defines a histogram of non-negative values, such as latencies in nanoseconds
+ * or queue sizes, counted in buckets whose bounds are powers of two. That is
+ * precise enough to tell a constant-time operation from a linear one, and keeps
+ * recording a value down to two atomic increments, without any allocation or
+ * lock, so that it can be shared by all threads.
+ *
+ * @author hoang.tran
+ */
+public final class Log2Histogram {
+    /** Number of values per bucket; bucket i holds values below 2^i. */
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+    /** The highest value recorded. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value.
+     *
+     * @param value
+     *            the value to be recorded; negative values are recorded as 0.
+     */
+    public void record(long value) {
+	long bounded = Math.max(0, value);
+	this.buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(bounded));
+	if (bounded > this.max.get()) {
+	    this.max.accumulateAndGet(bounded, Math::max);
+	}
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return the number of values.
+     */
+    public long count() {
+	long count = 0;
+	for (int i = 0; i < this.buckets.length(); i++) {
+	    count += this.buckets.get(i);
+	}
+	return count;
+    }
+
+    /**
+     * Gets the upper bound of the bucket containing the given percentile.
+     *
+     * @param percentile
+     *            the percentile, between 0 and 100.
+     * @return the value below which the given percentage of values falls, or 0
+     *         if no value was recorded.
+     */
+    public long percentile(double percentile) {
+	long threshold = (long) Math.ceil(count() * percentile / 100);
+	if (threshold == 0) {
+	    return 0;
+	}
+
+	long seen = 0;
+	for (int i = 0; i < this.buckets.length(); i++) {
+	    seen += this.buckets.get(i);
+	    if (seen >= threshold) {
+		return i == 63 ? this.max.get() : 1L << i;
+	    }
+	}
+	return this.max.get();
+    }
+
+    /**
+     * Gets the highest value recorded.
+     *
+     * @return the maximum value, or 0 if no value was recorded.
+     */
+    public long max() {
+	return this.max.get();
+    }
+
+    @Override
+    public String toString() {
+	return String.format("Log2Histogram(count=%d, p50<%d, p99<%d, p99.9<%d, max=%d)", count(), percentile(50),
+		percentile(99), percentile(99.9), max());
+    }
+}
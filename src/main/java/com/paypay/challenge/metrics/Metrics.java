@@ -0,0 +1,105 @@
+package com.paypay.challenge.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.paypay.challenge.queue.Queue;
+
+/**
+ * Provides the instrumentation of the queues and of the deep copy. Metrics are
+ * disabled by default: each instrumented point then only reads one volatile
+ * field, and neither reads the clock nor allocates anything. They are enabled
+ * for the whole application by setting a {@link MetricsRecorder}, for example
+ * a {@link MetricsRegistry}, which then receives:
+ * <ul>
+ * <li>every operation of the queues wrapped by {@link #instrument(Queue)}, with
+ * its latency and the size of the version it returned,</li>
+ * <li>every deep copy made by {@link com.paypay.challenge.clone.DeepCopy}, with
+ * its latency and, if the recorder asks for it, the bytes it allocated,</li>
+ * <li>every creation of a {@link com.paypay.challenge.queue.Element}.</li>
+ * </ul>
+ *
+ * @author hoang.tran
+ */
+public final class Metrics {
+    /** The recorder of the measures, {@code null} if metrics are disabled. */
+    private static volatile MetricsRecorder recorder;
+
+    /** The JVM interface measuring the bytes allocated by a thread, if any. */
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets the recorder of the measures.
+     *
+     * @return the current recorder, or {@code null} if metrics are disabled.
+     */
+    public static MetricsRecorder getRecorder() {
+	return recorder;
+    }
+
+    /**
+     * Sets the recorder of the measures for the whole application.
+     *
+     * @param metricsRecorder
+     *            the new recorder, or {@code null} to disable metrics.
+     */
+    public static void setRecorder(MetricsRecorder metricsRecorder) {
+	recorder = metricsRecorder;
+    }
+
+    /**
+     * Wraps the given queue, so that its operations, and the operations of all
+     * the versions derived from it, are measured while metrics are enabled. The
+     * wrapper works with any {@link Queue} implementation.
+     *
+     * @param queue
+     *            the queue to be instrumented.
+     * @return the instrumented queue, or the queue itself if it already is.
+     */
+    public static <T> Queue<T> instrument(Queue<T> queue) {
+	return queue instanceof InstrumentedQueue ? queue : new InstrumentedQueue<T>(queue);
+    }
+
+    /**
+     * Gets the number of bytes allocated so far by the current thread.
+     *
+     * @return the number of bytes, or {@code -1} if the JVM does not measure
+     *         them.
+     */
+    public static long allocatedBytes() {
+	return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Records the creation of one queue element, if metrics are enabled.
+     */
+    public static void element() {
+	MetricsRecorder current = recorder;
+	if (current != null) {
+	    current.element();
+	}
+    }
+
+    /**
+     * Looks up the HotSpot extension of the {@link ThreadMXBean} measuring the
+     * bytes allocated by each thread.
+     */
+    private static com.sun.management.ThreadMXBean threads() {
+	try {
+	    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	    if (threads instanceof com.sun.management.ThreadMXBean) {
+		com.sun.management.ThreadMXBean hotSpotThreads = (com.sun.management.ThreadMXBean) threads;
+		if (hotSpotThreads.isThreadAllocatedMemorySupported()) {
+		    hotSpotThreads.setThreadAllocatedMemoryEnabled(true);
+		    return hotSpotThreads;
+		}
+	    }
+	} catch (RuntimeException | LinkageError e) {
+	    // Not a HotSpot JVM: the bytes are not measured
+	}
+	return null;
+    }
+}
@@ -0,0 +1,53 @@
+package com.paypay.challenge.metrics;
+
+/**
+ * Interface defining the receiver of the measures taken by the queues and by
+ * the deep copy, once set with {@link Metrics#setRecorder(MetricsRecorder)}.
+ * Implementations are called by every thread using the queues, on the path of
+ * every operation, so they must be thread-safe, and should neither block nor
+ * allocate.
+ *
+ * @author hoang.tran
+ * @see MetricsRegistry
+ */
+public interface MetricsRecorder {
+    /**
+     * Records one operation on an instrumented queue.
+     *
+     * @param operation
+     *            the operation.
+     * @param nanos
+     *            the time it took, in nanoseconds.
+     * @param size
+     *            the number of elements of the version it returned, or of the
+     *            queue it read.
+     */
+    public void operation(Operation operation, long nanos, int size);
+
+    /**
+     * Records one deep copy of an object.
+     *
+     * @param nanos
+     *            the time it took, in nanoseconds.
+     * @param bytes
+     *            the number of bytes allocated by the copy, or {@code -1} if
+     *            they were not measured.
+     */
+    public void copy(long nanos, long bytes);
+
+    /**
+     * Records the creation of one queue element.
+     */
+    public void element();
+
+    /**
+     * Tells whether the bytes allocated by each deep copy are to be measured,
+     * which costs a call to the JVM management interface before and after the
+     * copy.
+     *
+     * @return {@code true} if {@link #copy(long, long)} is to be given the bytes.
+     */
+    public default boolean measuresCopiedBytes() {
+	return false;
+    }
+}
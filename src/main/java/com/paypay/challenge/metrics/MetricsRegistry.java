@@ -0,0 +1,175 @@
+package com.paypay.challenge.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Defines a local registry of the queue metrics, kept in memory:
+ * <ul>
+ * <li>a counter and a latency histogram per {@link Operation},</li>
+ * <li>a histogram of the sizes of the queue versions, that is the queue
+ * depth,</li>
+ * <li>the number of deep copies and their latency histogram, and the number of
+ * bytes they allocated if asked for,</li>
+ * <li>the number of queue elements created.</li>
+ * </ul>
+ * Every measure is recorded with atomic increments only, so that the registry
+ * can be shared by all threads. It can be read at any time, or exported to
+ * another metrics library by a recorder delegating to it.
+ *
+ * @author hoang.tran
+ */
+public final class MetricsRegistry implements MetricsRecorder {
+    /** The number of operations, by operation. */
+    private final Map<Operation, LongAdder> counts = new EnumMap<Operation, LongAdder>(Operation.class);
+
+    /** The latencies of the operations, by operation. */
+    private final Map<Operation, Log2Histogram> latencies = new EnumMap<Operation, Log2Histogram>(Operation.class);
+
+    /** The sizes of the versions. */
+    private final Log2Histogram depth = new Log2Histogram();
+
+    /** The latencies of the deep copies. */
+    private final Log2Histogram copyLatency = new Log2Histogram();
+
+    /** The number of bytes allocated by the deep copies. */
+    private final LongAdder copiedBytes = new LongAdder();
+
+    /** The number of elements created. */
+    private final LongAdder elements = new LongAdder();
+
+    /** Whether the bytes allocated by the deep copies are measured. */
+    private final boolean measuresCopiedBytes;
+
+    /** Creates an empty registry, not measuring the bytes of the copies. */
+    public MetricsRegistry() {
+	this(false);
+    }
+
+    /**
+     * Creates an empty registry.
+     *
+     * @param measuresCopiedBytes
+     *            whether the bytes allocated by each deep copy are measured.
+     */
+    public MetricsRegistry(boolean measuresCopiedBytes) {
+	this.measuresCopiedBytes = measuresCopiedBytes;
+	for (Operation operation : Operation.values()) {
+	    this.counts.put(operation, new LongAdder());
+	    this.latencies.put(operation, new Log2Histogram());
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void operation(Operation operation, long nanos, int size) {
+	this.counts.get(operation).increment();
+	this.latencies.get(operation).record(nanos);
+	this.depth.record(size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void copy(long nanos, long bytes) {
+	this.copyLatency.record(nanos);
+	if (bytes > 0) {
+	    this.copiedBytes.add(bytes);
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void element() {
+	this.elements.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean measuresCopiedBytes() {
+	return this.measuresCopiedBytes;
+    }
+
+    /**
+     * Gets the number of the given operations recorded.
+     *
+     * @param operation
+     *            the operation.
+     * @return the number of operations.
+     */
+    public long count(Operation operation) {
+	return this.counts.get(operation).sum();
+    }
+
+    /**
+     * Gets the latencies of the given operation.
+     *
+     * @param operation
+     *            the operation.
+     * @return the histogram of its latencies, in nanoseconds.
+     */
+    public Log2Histogram latency(Operation operation) {
+	return this.latencies.get(operation);
+    }
+
+    /**
+     * Gets the sizes of the versions returned or read by the operations.
+     *
+     * @return the histogram of the queue depths.
+     */
+    public Log2Histogram depth() {
+	return this.depth;
+    }
+
+    /**
+     * Gets the number of deep copies recorded.
+     *
+     * @return the number of copies.
+     */
+    public long copies() {
+	return this.copyLatency.count();
+    }
+
+    /**
+     * Gets the latencies of the deep copies.
+     *
+     * @return the histogram of their latencies, in nanoseconds.
+     */
+    public Log2Histogram copyLatency() {
+	return this.copyLatency;
+    }
+
+    /**
+     * Gets the number of bytes allocated by the deep copies.
+     *
+     * @return the number of bytes, 0 if they are not measured.
+     */
+    public long copiedBytes() {
+	return this.copiedBytes.sum();
+    }
+
+    /**
+     * Gets the number of queue elements created.
+     *
+     * @return the number of elements.
+     */
+    public long elements() {
+	return this.elements.sum();
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder("MetricsRegistry(");
+	for (Operation operation : Operation.values()) {
+	    builder.append(operation).append('=').append(this.latencies.get(operation)).append(", ");
+	}
+	return builder.append("depth=").append(this.depth).append(", copies=").append(this.copyLatency)
+		.append(", copiedBytes=").append(copiedBytes()).append(", elements=").append(elements()).append(')')
+		.toString();
+    }
+}
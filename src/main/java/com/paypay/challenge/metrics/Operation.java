@@ -0,0 +1,23 @@
+package com.paypay.challenge.metrics;
+
+/**
+ * Defines the queue operations measured by the metrics.
+ *
+ * @author hoang.tran
+ */
+public enum Operation {
+    /** Adds one element, through {@code enQueue}. */
+    ENQUEUE,
+
+    /** Adds several elements at once, through {@code enQueueAll}. */
+    ENQUEUE_ALL,
+
+    /** Removes elements, through {@code deQueue}. */
+    DEQUEUE,
+
+    /** Removes elements and hands them out, through {@code drainTo}. */
+    DRAIN,
+
+    /** Reads the first element, through {@code head}. */
+    HEAD
+}
@@ -0,0 +1,209 @@
+package com.paypay.challenge.queue;
+
+/**
+ * Defines the immutable queues storing their values in fixed-size array chunks
+ * instead of one node per value:
+ * <ul>
+ * <li>the full chunks, oldest first, are kept in a persistent sequence shared
+ * between the versions of the queue, the first one being read from
+ * {@link #headIndex},</li>
+ * <li>and the <em>tail</em> chunk, the only one not yet full, is shared as well:
+ * enqueuing writes the next free slots in place when no other version has
+ * claimed them already, and a copy of the chunk is made only when two versions
+ * derived from the same one both enqueue.</li>
+ * </ul>
+ * Enqueue, dequeue and head take amortized constant time. Subclasses only
+ * create their arrays and versions, and write the values in the slots claimed
+ * by an {@link Appender}.
+ *
+ * @author hoang.tran
+ *
+ * @param <A>
+ *            the type of the arrays holding the values, for example
+ *            {@code long[]}.
+ * @param <Q>
+ *            the type of the queue itself.
+ */
+abstract class AbstractChunkedQueue<A, Q extends AbstractChunkedQueue<A, Q>> {
+    /** The number of values per chunk. */
+    static final int CHUNK_SIZE = 64;
+
+    /** The full chunks, oldest first. */
+    final ChunkSequence<Chunk<A>> chunks;
+
+    /**
+     * The index of the first value in the first full chunk, or in the tail chunk
+     * if there are no full chunks.
+     */
+    final int headIndex;
+
+    /** The chunk the values are enqueued to, {@code null} for an empty queue. */
+    final Chunk<A> tail;
+
+    /** The number of values of the tail chunk that belong to this queue. */
+    final int tailCount;
+
+    /** The number of values in the queue. */
+    final int size;
+
+    AbstractChunkedQueue(ChunkSequence<Chunk<A>> chunks, int headIndex, Chunk<A> tail, int tailCount, int size) {
+	this.chunks = chunks;
+	this.headIndex = headIndex;
+	this.tail = tail;
+	this.tailCount = tailCount;
+	this.size = size;
+    }
+
+    /**
+     * Creates an array of values of the given length.
+     */
+    abstract A newArray(int length);
+
+    /**
+     * Creates a version of the queue.
+     */
+    abstract Q create(ChunkSequence<Chunk<A>> chunks, int headIndex, Chunk<A> tail, int tailCount, int size);
+
+    /**
+     * Defines the appending of values to the chunks of a version of the queue.
+     * The appender claims the next slots of the tail chunk, copies the tail chunk
+     * when another version claimed them first, and rolls over to a new chunk once
+     * it is full; the caller then writes the values in the claimed slots. Only
+     * the final version is created.
+     */
+    final class Appender {
+	private ChunkSequence<Chunk<A>> chunks = AbstractChunkedQueue.this.chunks;
+	private Chunk<A> tail = AbstractChunkedQueue.this.tail;
+	private int tailCount = AbstractChunkedQueue.this.tailCount;
+	private int size = AbstractChunkedQueue.this.size;
+
+	/**
+	 * Claims the next slots of the tail chunk, as many as the given number but
+	 * no more than the chunk can take. The claimed slots start at
+	 * {@link #index()} in {@link #values()}, and must be written before the
+	 * next claim.
+	 *
+	 * @param count
+	 *            the number of values to be appended, at least one.
+	 * @return the number of slots claimed, at least one.
+	 */
+	int claim(int count) {
+	    if (this.tail != null && this.tailCount < CHUNK_SIZE) {
+		int claimed = Math.min(CHUNK_SIZE - this.tailCount, count);
+		if (!this.tail.claim(this.tailCount, this.tailCount + claimed)) {
+		    this.tail = new Chunk<A>(copyOf(this.tail.values, this.tailCount), this.tailCount + claimed);
+		}
+		return claimed;
+	    }
+
+	    if (this.tail != null) {
+		this.chunks = this.chunks.add(this.tail);
+	    }
+	    int claimed = Math.min(CHUNK_SIZE, count);
+	    this.tail = new Chunk<A>(newArray(CHUNK_SIZE), claimed);
+	    this.tailCount = 0;
+	    return claimed;
+	}
+
+	/**
+	 * Gets the array of the tail chunk, holding the claimed slots.
+	 */
+	A values() {
+	    return this.tail.values;
+	}
+
+	/**
+	 * Gets the index of the first claimed slot.
+	 */
+	int index() {
+	    return this.tailCount;
+	}
+
+	/**
+	 * Records that the given number of claimed slots have been written.
+	 */
+	void written(int count) {
+	    this.tailCount += count;
+	    this.size += count;
+	}
+
+	/**
+	 * Creates the version of the queue holding all the appended values.
+	 */
+	@SuppressWarnings("unchecked")
+	Q create() {
+	    if (this.size == AbstractChunkedQueue.this.size) {
+		return (Q) AbstractChunkedQueue.this;
+	    }
+
+	    return AbstractChunkedQueue.this.create(this.chunks, AbstractChunkedQueue.this.headIndex, this.tail,
+		    this.tailCount, this.size);
+	}
+    }
+
+    /**
+     * Removes the given number of values at the beginning of the queue, at most
+     * its size. Whole chunks are skipped at once.
+     */
+    @SuppressWarnings("unchecked")
+    final Q drop(int n) {
+	if (n == 0) {
+	    return (Q) this;
+	}
+	if (n == this.size) {
+	    return create(ChunkSequence.<Chunk<A>>empty(), 0, null, 0, 0);
+	}
+
+	ChunkSequence<Chunk<A>> chunks = this.chunks;
+	int headIndex = this.headIndex + n;
+	while (!chunks.isEmpty() && headIndex >= CHUNK_SIZE) {
+	    chunks = chunks.removeFirst();
+	    headIndex -= CHUNK_SIZE;
+	}
+
+	return create(chunks, headIndex, this.tail, this.tailCount, this.size - n);
+    }
+
+    /**
+     * Gets the array of the chunk holding the first value of the queue, which
+     * must not be empty.
+     */
+    final A headChunk() {
+	return (this.chunks.isEmpty() ? this.tail : this.chunks.first()).values;
+    }
+
+    /**
+     * Checks if the queue does not contain any values.
+     *
+     * @return {@code true} if this queue is empty; {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+	return this.size == 0;
+    }
+
+    /**
+     * Gets the number of values in the queue.
+     *
+     * @return the size of the queue.
+     */
+    public int size() {
+	return this.size;
+    }
+
+    /**
+     * Gets the number of chunks holding the values of the queue, full ones and
+     * the tail one.
+     */
+    final int chunkCount() {
+	return this.chunks.size() + (this.tail == null ? 0 : 1);
+    }
+
+    /**
+     * Copies the first values of the given chunk into a new chunk.
+     */
+    private A copyOf(A values, int count) {
+	A copy = newArray(CHUNK_SIZE);
+	System.arraycopy(values, 0, copy, 0, count);
+	return copy;
+    }
+}
@@ -0,0 +1,136 @@
+package com.paypay.challenge.queue;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines the immutable queues of primitive values, with the same semantics as
+ * {@link Queue} but without boxing. The values are stored in chunks of
+ * primitive arrays, as described in {@link AbstractChunkedQueue}. Subclasses
+ * read and write one value of an array, passed as a {@code long} wide enough
+ * for any of their values.
+ *
+ * @author hoang.tran
+ *
+ * @param <A>
+ *            the type of the arrays holding the values, for example
+ *            {@code long[]}.
+ * @param <Q>
+ *            the type of the queue itself.
+ */
+abstract class AbstractPrimitiveQueue<A, Q extends AbstractPrimitiveQueue<A, Q>> extends AbstractChunkedQueue<A, Q> {
+    AbstractPrimitiveQueue(ChunkSequence<Chunk<A>> chunks, int headIndex, Chunk<A> tail, int tailCount, int size) {
+	super(chunks, headIndex, tail, tailCount, size);
+    }
+
+    /**
+     * Writes the given value at the given index of the array.
+     */
+    abstract void store(A values, int index, long value);
+
+    /**
+     * Reads the value at the given index of the array.
+     */
+    abstract long load(A values, int index);
+
+    /**
+     * Adds the value at the end of the queue.
+     */
+    final Q enQueueValue(long value) {
+	if (this.size == Queue.MAX_ELEMENTS) {
+	    throw new ImmutableQueueException("Immutable queue overflow");
+	}
+
+	Appender appender = new Appender();
+	appender.claim(1);
+	store(appender.values(), appender.index(), value);
+	appender.written(1);
+	return appender.create();
+    }
+
+    /**
+     * Adds the given number of values of the given array, in order, at the end of
+     * the queue. The values are copied into the chunks by whole runs and only the
+     * final queue is created.
+     */
+    final Q enQueueValues(A values, int length) {
+	if (length > Queue.MAX_ELEMENTS - this.size) {
+	    throw new ImmutableQueueException("Immutable queue overflow");
+	}
+
+	Appender appender = new Appender();
+	for (int offset = 0; offset < length;) {
+	    int count = appender.claim(length - offset);
+	    System.arraycopy(values, offset, appender.values(), appender.index(), count);
+	    appender.written(count);
+	    offset += count;
+	}
+	return appender.create();
+    }
+
+    /**
+     * Removes the value at the beginning of the queue.
+     *
+     * @return a new queue containing the values of this queue but the first one.
+     * @throws ImmutableQueueException
+     *             if the dequeue is operated on an empty queue.
+     */
+    public Q deQueue() throws ImmutableQueueException {
+	return deQueue(1);
+    }
+
+    /**
+     * Removes the {@code n} values at the beginning of the queue. Whole chunks
+     * are skipped at once.
+     *
+     * @param n
+     *            the number of values to be removed.
+     * @return a new queue containing the values of this queue but the first
+     *         {@code n} ones, or this queue if {@code n} is zero.
+     * @throws ImmutableQueueException
+     *             if the queue contains less than {@code n} values.
+     * @throws IllegalArgumentException
+     *             if {@code n} is negative.
+     */
+    public Q deQueue(int n) throws ImmutableQueueException {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+	if (this.size < n) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+
+	return drop(n);
+    }
+
+    /**
+     * Gets the value at the beginning of the queue.
+     */
+    final long headValue() {
+	if (isEmpty()) {
+	    throw new ImmutableQueueException("Immutable queue is empty");
+	}
+
+	return load(headChunk(), this.headIndex);
+    }
+
+    /**
+     * Copies the values of the queue, in order, into a new array.
+     *
+     * @return an array containing all the values of the queue.
+     */
+    public A toArray() {
+	A result = newArray(this.size);
+	int count = 0;
+	int from = this.headIndex;
+	for (Chunk<A> chunk : this.chunks) {
+	    System.arraycopy(chunk.values, from, result, count, CHUNK_SIZE - from);
+	    count += CHUNK_SIZE - from;
+	    from = 0;
+	}
+	if (count < this.size) {
+	    System.arraycopy(this.tail.values, from, result, count, this.size - count);
+	}
+
+	return result;
+    }
+}
@@ -0,0 +1,78 @@
+package com.paypay.challenge.queue;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines the checks shared by all the {@link Queue.Builder} implementations: a
+ * builder may only be used by the thread that created it, and only until it is
+ * frozen. Subclasses only have to add elements to their own transient
+ * structure, and to turn that structure into an immutable queue.
+ * 
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to the queue.
+ */
+abstract class AbstractQueueBuilder<T> implements Queue.Builder<T> {
+    /** The thread allowed to use this builder. */
+    private final Thread owner = Thread.currentThread();
+
+    /** Whether this builder has been frozen. */
+    private boolean frozen;
+
+    /** The number of elements added so far. */
+    private int size;
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Queue.Builder<T> enQueue(T t) {
+	ensureEditable();
+	if (this.size == Queue.MAX_ELEMENTS) {
+	    throw new ImmutableQueueException("Immutable queue overflow");
+	}
+
+	add(t);
+	this.size++;
+	return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Queue<T> freeze() {
+	ensureEditable();
+	this.frozen = true;
+
+	return build(this.size);
+    }
+
+    /**
+     * Adds a deep copy of the given element at the back of the transient structure.
+     * 
+     * @param t
+     *            the element to be added.
+     */
+    protected abstract void add(T t);
+
+    /**
+     * Turns the transient structure into an immutable queue, in constant time.
+     * 
+     * @param size
+     *            the number of elements added.
+     * @return the immutable queue containing the added elements.
+     */
+    protected abstract Queue<T> build(int size);
+
+    /**
+     * Checks that this builder can still be changed by the current thread.
+     */
+    private void ensureEditable() {
+	if (Thread.currentThread() != this.owner) {
+	    throw new ImmutableQueueException("Queue builder used outside of its owner thread");
+	}
+	if (this.frozen) {
+	    throw new ImmutableQueueException("Queue builder already frozen");
+	}
+    }
+}
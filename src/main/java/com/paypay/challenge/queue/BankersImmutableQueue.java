@@ -0,0 +1,264 @@
+package com.paypay.challenge.queue;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.paypay.challenge.clone.DeepCopy;
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an immutable queue based on Okasaki's <em>banker's queue</em>. The
+ * queue is made of two persistent lists:
+ * <ul>
+ * <li>the <em>front</em> list, a lazy list holding the elements to be dequeued
+ * in order,</li>
+ * <li>and the <em>rear</em> list, holding the most recently enqueued elements in
+ * reverse order.</li>
+ * </ul>
+ * Whenever the rear list grows longer than the front list, it is reversed and
+ * lazily appended to the front. Both lists are shared, never copied, between the
+ * versions of the queue, so enqueue, dequeue and head take amortized constant
+ * time. Because the rotation is a memoized suspension, the bound still holds
+ * when old versions of the queue are reused.
+ * <p>
+ * As for {@link SlowImmutableQueue}, the data of the elements is deep copied
+ * when it is enqueued and, unless it is immutable, when it is read back
+ * through {@link #head()}, so changes made to the original objects never
+ * affect the queue.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to and removed from the
+ *            queue.
+ * @see com.paypay.challenge.queue.SlowImmutableQueue
+ */
+public final class BankersImmutableQueue<T> implements Queue<T> {
+    /** The elements to be dequeued, in order. */
+    private final LazyList<T> front;
+
+    /** The number of elements in the front list. */
+    private final int frontSize;
+
+    /** The most recently enqueued elements, newest first. */
+    private final PersistentList<T> rear;
+
+    /** Creates an empty immutable queue. */
+    public BankersImmutableQueue() {
+	this(LazyList.<T>empty(), 0, PersistentList.<T>empty());
+    }
+
+    private BankersImmutableQueue(LazyList<T> front, int frontSize, PersistentList<T> rear) {
+	this.front = front;
+	this.frontSize = frontSize;
+	this.rear = rear;
+    }
+
+    /**
+     * Creates a builder of a {@link BankersImmutableQueue}.
+     *
+     * @return a new builder, owned by the current thread.
+     */
+    public static <T> Queue.Builder<T> builder() {
+	return new Transient<T>();
+    }
+
+    /**
+     * Creates a queue from the given lists, restoring the invariant that the rear
+     * list is never longer than the front list.
+     */
+    private BankersImmutableQueue<T> check(LazyList<T> front, int frontSize, PersistentList<T> rear) {
+	if (rear.size() <= frontSize) {
+	    return new BankersImmutableQueue<T>(front, frontSize, rear);
+	}
+
+	return new BankersImmutableQueue<T>(LazyList.concat(front, LazyList.reverse(rear)), frontSize + rear.size(),
+		PersistentList.<T>empty());
+    }
+
+    /**
+     * {@inheritDoc} Enqueue puts a deep copy of the new element in front of the
+     * rear list, which is shared with this queue.
+     *
+     * @throws ImmutableQueueException
+     *             if the queue already contains {@link Queue#MAX_ELEMENTS}
+     *             elements.
+     */
+    public Queue<T> enQueue(T t) {
+	if (this.frontSize + this.rear.size() == MAX_ELEMENTS) {
+	    throw new ImmutableQueueException("Immutable queue overflow");
+	}
+
+	return check(this.front, this.frontSize, this.rear.prepend(StoredCopies.copy(t)));
+    }
+
+    /**
+     * {@inheritDoc} Dequeue drops the first cell of the front list, which is
+     * shared with this queue.
+     *
+     * @throws ImmutableQueueException
+     *             if the dequeue is operated on an empty queue.
+     */
+    public Queue<T> deQueue() throws ImmutableQueueException {
+	if (isEmpty()) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+
+	return check(this.front.tail(), this.frontSize - 1, this.rear);
+    }
+
+    /**
+     * {@inheritDoc} All the new elements are put in front of the rear list before
+     * the new queue is created.
+     *
+     * @throws ImmutableQueueException
+     *             if the number of elements would exceed
+     *             {@link Queue#MAX_ELEMENTS}.
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	PersistentList<T> rear = this.rear;
+	for (T t : elements) {
+	    if (this.frontSize + rear.size() == MAX_ELEMENTS) {
+		throw new ImmutableQueueException("Immutable queue overflow");
+	    }
+	    rear = rear.prepend(StoredCopies.copy(t));
+	}
+
+	return rear == this.rear ? this : check(this.front, this.frontSize, rear);
+    }
+
+    /**
+     * {@inheritDoc} The removed cells are dropped from the front list, then from
+     * the rear list, before the new queue is created.
+     */
+    public Queue<T> deQueue(int n) throws ImmutableQueueException {
+	return drain(null, n, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	return drain(target, maxElements, false);
+    }
+
+    /**
+     * Removes {@code n} elements at the beginning of the queue, adding them to the
+     * given target if any.
+     */
+    private Queue<T> drain(Collection<? super T> target, int n, boolean exactly) {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+	int size = this.frontSize + this.rear.size();
+	if (exactly && size < n) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+	if (n == 0) {
+	    return this;
+	}
+
+	int count = Math.min(n, size);
+	LazyList<T> front = this.front;
+	int frontCount = Math.min(count, this.frontSize);
+	for (int i = 0; i < frontCount; i++) {
+	    if (target != null) {
+		target.add(DeepCopy.deepCopy(front.head()));
+	    }
+	    front = front.tail();
+	}
+	if (frontCount == count) {
+	    return check(front, this.frontSize - count, this.rear);
+	}
+
+	// The rest of the removed elements are the oldest ones of the rear list, the
+	// remaining ones become the new front list
+	PersistentList<T> remaining = this.rear.reverse();
+	for (int i = frontCount; i < count; i++) {
+	    if (target != null) {
+		target.add(DeepCopy.deepCopy(remaining.value()));
+	    }
+	    remaining = remaining.next();
+	}
+
+	return check(LazyList.reverse(remaining.reverse()), remaining.size(), PersistentList.<T>empty());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T head() {
+	if (isEmpty()) {
+	    return null;
+	}
+
+	return DeepCopy.deepCopy(this.front.head());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+	// The rear list is never longer than the front one, so both are empty here
+	return this.frontSize == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+	return this.frontSize + this.rear.size();
+    }
+
+    /**
+     * {@inheritDoc} The front list is read first, then the rear list, which is
+     * reversed once the front list is exhausted.
+     */
+    public Iterator<T> iterator() {
+	return new FrontRearIterator<T>(this.front, this.rear, true);
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder("BankersImmutableQueue(elements=[");
+	String separator = "";
+	for (LazyList<T> l = this.front; !l.isEmpty(); l = l.tail()) {
+	    builder.append(separator).append(l.head());
+	    separator = ", ";
+	}
+	for (PersistentList<T> l = this.rear.reverse(); !l.isEmpty(); l = l.next()) {
+	    builder.append(separator).append(l.value());
+	    separator = ", ";
+	}
+
+	return builder.append("])").toString();
+    }
+
+    /**
+     * Defines the transient counterpart of {@link BankersImmutableQueue}. The
+     * elements are appended in place to a front list, which becomes the front list
+     * of the queue when the builder is frozen.
+     */
+    private static final class Transient<T> extends AbstractQueueBuilder<T> {
+	/** The first and last cells of the front list being built. */
+	private LazyList<T> first;
+	private LazyList<T> last;
+
+	@Override
+	protected void add(T t) {
+	    T data = StoredCopies.copy(t);
+	    if (this.last == null) {
+		this.first = LazyList.cons(data, LazyList.<T>empty());
+		this.last = this.first;
+	    } else {
+		this.last = this.last.append(data);
+	    }
+	}
+
+	@Override
+	protected Queue<T> build(int size) {
+	    LazyList<T> front = this.first == null ? LazyList.<T>empty() : this.first;
+	    return new BankersImmutableQueue<T>(front, size, PersistentList.<T>empty());
+	}
+    }
+}
\ No newline at end of file
@@ -0,0 +1,235 @@
+package com.paypay.challenge.queue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an immutable queue holding at most a given number of elements, its
+ * <em>capacity</em>, on top of another immutable queue. The capacity is checked
+ * against the size of the underlying queue, in constant time, before anything
+ * is copied or enqueued, and the {@link OverflowPolicy} decides what happens to
+ * the new elements once the queue is full. So the memory held by a queue stays
+ * bounded however fast the producers are compared with the consumers.
+ * <p>
+ * The versions derived from a bounded queue keep its capacity and its policy,
+ * as well as the implementation of the underlying queue.
+ * 
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to and removed from the
+ *            queue.
+ */
+public final class BoundedImmutableQueue<T> implements Queue<T> {
+    /** The underlying queue, holding the elements. */
+    private final Queue<T> queue;
+
+    /** The maximum number of elements of the queue. */
+    private final int capacity;
+
+    /** What happens to the new elements once the queue is full. */
+    private final OverflowPolicy policy;
+
+    /**
+     * Creates an empty bounded queue, backed by a {@link BankersImmutableQueue}.
+     * 
+     * @param capacity
+     *            the maximum number of elements of the queue.
+     * @param policy
+     *            what happens to the new elements once the queue is full.
+     */
+    public BoundedImmutableQueue(int capacity, OverflowPolicy policy) {
+	this(new BankersImmutableQueue<T>(), capacity, policy);
+    }
+
+    /**
+     * Creates a bounded queue starting from the given version.
+     * 
+     * @param queue
+     *            the underlying queue, holding the first elements.
+     * @param capacity
+     *            the maximum number of elements of the queue.
+     * @param policy
+     *            what happens to the new elements once the queue is full.
+     * @throws IllegalArgumentException
+     *             if the capacity is not positive, or if the given queue holds
+     *             more elements than the capacity.
+     */
+    public BoundedImmutableQueue(Queue<T> queue, int capacity, OverflowPolicy policy) {
+	if (queue == null || policy == null) {
+	    throw new IllegalArgumentException("Queue and overflow policy must not be null");
+	}
+	if (capacity <= 0) {
+	    throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+	}
+	if (queue.size() > capacity) {
+	    throw new IllegalArgumentException("Queue of " + queue.size() + " elements exceeds capacity " + capacity);
+	}
+
+	this.queue = queue;
+	this.capacity = capacity;
+	this.policy = policy;
+    }
+
+    /**
+     * {@inheritDoc} If the queue is full, the element is handled according to the
+     * overflow policy.
+     * 
+     * @throws ImmutableQueueException
+     *             if the queue is full and its policy is not
+     *             {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    public Queue<T> enQueue(T t) {
+	Queue<T> queue = this.queue;
+	if (queue.size() == this.capacity) {
+	    checkCanDrop(1);
+	    queue = queue.deQueue();
+	}
+
+	return with(queue.enQueue(t));
+    }
+
+    /**
+     * {@inheritDoc} Either all the elements are enqueued, evicting the oldest
+     * ones if needed and allowed, or none is.
+     * 
+     * @throws ImmutableQueueException
+     *             if the elements do not fit in the queue and its policy is not
+     *             {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	List<T> added = new ArrayList<T>();
+	for (T t : elements) {
+	    added.add(t);
+	}
+	int overflow = this.queue.size() + added.size() - this.capacity;
+	if (overflow <= 0) {
+	    return with(this.queue.enQueueAll(added));
+	}
+
+	checkCanDrop(overflow);
+	if (added.size() <= this.capacity) {
+	    return with(this.queue.deQueue(overflow).enQueueAll(added));
+	}
+	// The new elements alone overflow: only the last ones are kept
+	Queue<T> empty = this.queue.deQueue(this.queue.size());
+	return with(empty.enQueueAll(added.subList(added.size() - this.capacity, added.size())));
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws ImmutableQueueException
+     *             if the dequeue is operated on an empty queue.
+     */
+    public Queue<T> deQueue() {
+	return with(this.queue.deQueue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> deQueue(int n) {
+	return with(this.queue.deQueue(n));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	return with(this.queue.drainTo(target, maxElements));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T head() {
+	return this.queue.head();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+	return this.queue.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+	return this.queue.size();
+    }
+
+    /**
+     * Gets the maximum number of elements of the queue.
+     * 
+     * @return the capacity of the queue.
+     */
+    public int capacity() {
+	return this.capacity;
+    }
+
+    /**
+     * Gets the number of elements that can still be enqueued before the queue is
+     * full, in constant time.
+     * 
+     * @return the capacity minus the size of the queue.
+     */
+    public int remainingCapacity() {
+	return this.capacity - this.queue.size();
+    }
+
+    /**
+     * Gets what happens to the new elements once the queue is full.
+     * 
+     * @return the overflow policy of the queue.
+     */
+    public OverflowPolicy policy() {
+	return this.policy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Iterator<T> iterator() {
+	return this.queue.iterator();
+    }
+
+    /**
+     * {@inheritDoc} It is the spliterator of the underlying queue.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+	return this.queue.spliterator();
+    }
+
+    @Override
+    public String toString() {
+	return "BoundedImmutableQueue(capacity=" + this.capacity + ", policy=" + this.policy + ", queue=" + this.queue
+		+ ")";
+    }
+
+    /**
+     * Checks that the given number of the oldest elements can be evicted.
+     */
+    private void checkCanDrop(int count) {
+	if (this.policy != OverflowPolicy.DROP_OLDEST) {
+	    throw new ImmutableQueueException("Bounded queue full: cannot add " + count
+		    + " more element(s) beyond capacity " + this.capacity);
+	}
+    }
+
+    /**
+     * Wraps the given version of the underlying queue, unless it is the current
+     * one.
+     */
+    private Queue<T> with(Queue<T> queue) {
+	return queue == this.queue ? this : new BoundedImmutableQueue<T>(queue, this.capacity, this.policy);
+    }
+}
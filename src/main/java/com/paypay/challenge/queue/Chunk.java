@@ -0,0 +1,60 @@
+package com.paypay.challenge.queue;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Defines a fixed-size array of values used as a building block of the chunked
+ * immutable queues. The values are only appended, never changed: a slot is
+ * written once, by the first queue version that <em>claims</em> it. Any number
+ * of versions can share the chunk as long as each one reads only the slots it
+ * claimed itself or inherited from the version it was derived from; a version
+ * whose next slot has already been claimed by another one appends to a copy of
+ * the chunk instead.
+ *
+ * @author hoang.tran
+ *
+ * @param <A>
+ *            the type of the array holding the values, for example
+ *            {@code long[]}.
+ */
+final class Chunk<A> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Chunk> CLAIMED = AtomicIntegerFieldUpdater.newUpdater(Chunk.class,
+	    "claimed");
+
+    /** The values of the chunk. */
+    final A values;
+
+    /** The number of slots claimed so far, from the beginning of the array. */
+    private volatile int claimed;
+
+    /**
+     * Creates a chunk whose first slots are already claimed.
+     *
+     * @param values
+     *            the array holding the values.
+     * @param claimed
+     *            the number of slots already written.
+     */
+    Chunk(A values, int claimed) {
+	this.values = values;
+	this.claimed = claimed;
+    }
+
+    /**
+     * Claims the slots from {@code from} (inclusive) to {@code to} (exclusive).
+     * This only succeeds if {@code from} is exactly the number of slots claimed so
+     * far, that is if no other version has appended to the chunk after the
+     * calling one.
+     *
+     * @param from
+     *            the number of slots the calling version knows of.
+     * @param to
+     *            the number of slots the calling version needs.
+     * @return {@code true} if the caller may write the claimed slots;
+     *         {@code false} if it must append to a copy of the chunk.
+     */
+    boolean claim(int from, int to) {
+	return CLAIMED.compareAndSet(this, from, to);
+    }
+}
\ No newline at end of file
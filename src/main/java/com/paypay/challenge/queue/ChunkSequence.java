@@ -0,0 +1,116 @@
+package com.paypay.challenge.queue;
+
+import java.util.Iterator;
+
+/**
+ * Defines a persistent first in first out sequence of chunks, used by the
+ * chunked immutable queues to keep their full chunks. It is a banker's queue,
+ * as {@link BankersImmutableQueue}, except that the chunks are shared as they
+ * are, never copied: they are internal to the queues and never handed out.
+ *
+ * @author hoang.tran
+ *
+ * @param <C>
+ *            the type of the chunks.
+ */
+final class ChunkSequence<C> implements Iterable<C> {
+    /** The shared instance representing the empty sequence. */
+    private static final ChunkSequence<Object> EMPTY = new ChunkSequence<Object>(LazyList.empty(), 0,
+	    PersistentList.empty());
+
+    /** The chunks to be removed first, in order. */
+    private final LazyList<C> front;
+
+    /** The number of chunks in the front list. */
+    private final int frontSize;
+
+    /** The most recently added chunks, newest first. */
+    private final PersistentList<C> rear;
+
+    private ChunkSequence(LazyList<C> front, int frontSize, PersistentList<C> rear) {
+	this.front = front;
+	this.frontSize = frontSize;
+	this.rear = rear;
+    }
+
+    /**
+     * Gets the empty sequence.
+     *
+     * @return the shared empty sequence.
+     */
+    @SuppressWarnings("unchecked")
+    static <C> ChunkSequence<C> empty() {
+	return (ChunkSequence<C>) EMPTY;
+    }
+
+    /**
+     * Restores the invariant that the rear list is never longer than the front
+     * list.
+     */
+    private static <C> ChunkSequence<C> check(LazyList<C> front, int frontSize, PersistentList<C> rear) {
+	if (rear.size() <= frontSize) {
+	    return new ChunkSequence<C>(front, frontSize, rear);
+	}
+
+	return new ChunkSequence<C>(LazyList.concat(front, LazyList.reverse(rear)), frontSize + rear.size(),
+		PersistentList.<C>empty());
+    }
+
+    /**
+     * Creates a new sequence having the given chunk at its end.
+     *
+     * @param chunk
+     *            the chunk to be added.
+     * @return the new sequence.
+     */
+    ChunkSequence<C> add(C chunk) {
+	return check(this.front, this.frontSize, this.rear.prepend(chunk));
+    }
+
+    /**
+     * Creates a new sequence without the first chunk of this one. It must not be
+     * called on an empty sequence.
+     *
+     * @return the new sequence.
+     */
+    ChunkSequence<C> removeFirst() {
+	return check(this.front.tail(), this.frontSize - 1, this.rear);
+    }
+
+    /**
+     * Gets the first chunk of the sequence. It must not be called on an empty
+     * sequence.
+     *
+     * @return the first chunk.
+     */
+    C first() {
+	return this.front.head();
+    }
+
+    /**
+     * Gets the number of chunks in the sequence.
+     *
+     * @return the size of the sequence.
+     */
+    int size() {
+	return this.frontSize + this.rear.size();
+    }
+
+    /**
+     * Checks if the sequence does not contain any chunks.
+     *
+     * @return {@code true} if this sequence is empty; {@code false} otherwise.
+     */
+    boolean isEmpty() {
+	// The rear list is never longer than the front one, so both are empty here
+	return this.frontSize == 0;
+    }
+
+    /**
+     * Iterates over the chunks in order, from the first one to the last one.
+     */
+    @Override
+    public Iterator<C> iterator() {
+	return new FrontRearIterator<C>(this.front, this.rear);
+    }
+}
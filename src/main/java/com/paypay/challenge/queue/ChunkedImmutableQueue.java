@@ -0,0 +1,352 @@
+package com.paypay.challenge.queue;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import com.paypay.challenge.clone.DeepCopy;
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an immutable queue storing its elements in fixed-size array chunks
+ * instead of one node per element, so that traversing, draining and dequeuing
+ * many elements at once run over contiguous memory. The chunks are shared
+ * between the versions of the queue as described in
+ * {@link AbstractChunkedQueue}, as for {@link LongImmutableQueue}, and enqueue,
+ * dequeue and head take amortized constant time. Dequeued elements
+ * stay referenced by their chunk, which other versions may still read, until
+ * the whole chunk is dropped.
+ * <p>
+ * As for {@link SlowImmutableQueue}, the data of the elements is deep copied
+ * when it is enqueued and, unless it is immutable, when it is read back
+ * through {@link #head()}, so changes made to the original objects never
+ * affect the queue.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to and removed from the
+ *            queue.
+ */
+public final class ChunkedImmutableQueue<T> extends AbstractChunkedQueue<Object[], ChunkedImmutableQueue<T>>
+	implements Queue<T> {
+    /** Creates an empty immutable queue. */
+    public ChunkedImmutableQueue() {
+	this(ChunkSequence.<Chunk<Object[]>>empty(), 0, null, 0, 0);
+    }
+
+    private ChunkedImmutableQueue(ChunkSequence<Chunk<Object[]>> chunks, int headIndex, Chunk<Object[]> tail,
+	    int tailCount, int size) {
+	super(chunks, headIndex, tail, tailCount, size);
+    }
+
+    /**
+     * Creates a builder of a {@link ChunkedImmutableQueue}.
+     *
+     * @return a new builder, owned by the current thread.
+     */
+    public static <T> Queue.Builder<T> builder() {
+	return new Transient<T>();
+    }
+
+    /**
+     * {@inheritDoc} Enqueue writes a deep copy of the new element in the next
+     * slot of the tail chunk, which is shared with this queue unless another
+     * version already took that slot.
+     *
+     * @throws ImmutableQueueException
+     *             if the queue already contains {@link Queue#MAX_ELEMENTS}
+     *             elements.
+     */
+    public Queue<T> enQueue(T t) {
+	if (this.size == MAX_ELEMENTS) {
+	    throw new ImmutableQueueException("Immutable queue overflow");
+	}
+
+	Appender appender = new Appender();
+	append(appender, t);
+	return appender.create();
+    }
+
+    /**
+     * {@inheritDoc} The elements are written in the chunks one after the other,
+     * and only the final queue is created.
+     *
+     * @throws ImmutableQueueException
+     *             if the number of elements would exceed
+     *             {@link Queue#MAX_ELEMENTS}.
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	Appender appender = new Appender();
+	int size = this.size;
+	for (T t : elements) {
+	    if (size == MAX_ELEMENTS) {
+		throw new ImmutableQueueException("Immutable queue overflow");
+	    }
+	    append(appender, t);
+	    size++;
+	}
+
+	return appender.create();
+    }
+
+    /**
+     * Appends a deep copy of the given element with the given appender. The copy
+     * is made before the slot is claimed, so that a failing copy leaves the tail
+     * chunk as it was.
+     */
+    private void append(Appender appender, T t) {
+	Object data = StoredCopies.copy(t);
+	appender.claim(1);
+	appender.values()[appender.index()] = data;
+	appender.written(1);
+    }
+
+    /**
+     * {@inheritDoc} Dequeue moves the head index forward, dropping the first
+     * chunk once it is consumed.
+     *
+     * @throws ImmutableQueueException
+     *             if the dequeue is operated on an empty queue.
+     */
+    public Queue<T> deQueue() throws ImmutableQueueException {
+	return drain(null, 1, true);
+    }
+
+    /**
+     * {@inheritDoc} Whole chunks are skipped at once.
+     */
+    public Queue<T> deQueue(int n) throws ImmutableQueueException {
+	return drain(null, n, true);
+    }
+
+    /**
+     * {@inheritDoc} The elements are read chunk by chunk.
+     */
+    public Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	return drain(target, maxElements, false);
+    }
+
+    /**
+     * Removes {@code n} elements at the beginning of the queue, adding them to the
+     * given target if any.
+     */
+    @SuppressWarnings("unchecked")
+    private Queue<T> drain(Collection<? super T> target, int n, boolean exactly) {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+	if (exactly && this.size < n) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+	if (n == 0) {
+	    return this;
+	}
+
+	int count = Math.min(n, this.size);
+	if (target != null) {
+	    int remaining = count;
+	    int from = this.headIndex;
+	    for (Chunk<Object[]> chunk : this.chunks) {
+		int to = Math.min(CHUNK_SIZE, from + remaining);
+		for (int i = from; i < to; i++) {
+		    target.add(DeepCopy.deepCopy((T) chunk.values[i]));
+		}
+		remaining -= to - from;
+		from = 0;
+		if (remaining == 0) {
+		    break;
+		}
+	    }
+	    for (int i = from; i < from + remaining; i++) {
+		target.add(DeepCopy.deepCopy((T) this.tail.values[i]));
+	    }
+	}
+
+	return drop(count);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public T head() {
+	if (isEmpty()) {
+	    return null;
+	}
+
+	return DeepCopy.deepCopy((T) headChunk()[this.headIndex]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Iterator<T> iterator() {
+	return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * {@inheritDoc} The spliterator reads the chunks directly, and splits at chunk
+     * boundaries whenever possible, without buffering any element.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+	Object[][] values = new Object[this.chunks.size() + 1][];
+	int c = 0;
+	for (Chunk<Object[]> chunk : this.chunks) {
+	    values[c++] = chunk.values;
+	}
+	if (this.tail != null) {
+	    values[c] = this.tail.values;
+	}
+
+	return new ChunkSpliterator<T>(values, this.headIndex, this.headIndex + this.size);
+    }
+
+    @Override
+    Object[] newArray(int length) {
+	return new Object[length];
+    }
+
+    @Override
+    ChunkedImmutableQueue<T> create(ChunkSequence<Chunk<Object[]>> chunks, int headIndex, Chunk<Object[]> tail,
+	    int tailCount, int size) {
+	return new ChunkedImmutableQueue<T>(chunks, headIndex, tail, tailCount, size);
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder("ChunkedImmutableQueue(elements=[");
+	int remaining = this.size;
+	int from = this.headIndex;
+	for (Chunk<Object[]> chunk : this.chunks) {
+	    for (int i = from; i < CHUNK_SIZE; i++) {
+		builder.append(chunk.values[i]).append(", ");
+	    }
+	    remaining -= CHUNK_SIZE - from;
+	    from = 0;
+	}
+	for (int i = from; i < from + remaining; i++) {
+	    builder.append(this.tail.values[i]).append(", ");
+	}
+	if (this.size > 0) {
+	    builder.setLength(builder.length() - 2);
+	}
+
+	return builder.append("])").toString();
+    }
+
+    /**
+     * Defines a spliterator over a range of positions in the given chunks, the
+     * position {@code p} being the slot {@code p % CHUNK_SIZE} of the chunk
+     * {@code p / CHUNK_SIZE}.
+     */
+    private static final class ChunkSpliterator<T> implements Spliterator<T> {
+	/** The values of the chunks, in order. */
+	private final Object[][] chunks;
+
+	/** The position of the next element. */
+	private int from;
+
+	/** The position after the last element. */
+	private final int to;
+
+	private ChunkSpliterator(Object[][] chunks, int from, int to) {
+	    this.chunks = chunks;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean tryAdvance(Consumer<? super T> action) {
+	    if (this.from >= this.to) {
+		return false;
+	    }
+
+	    int position = this.from++;
+	    action.accept(DeepCopy.deepCopy((T) this.chunks[position / CHUNK_SIZE][position % CHUNK_SIZE]));
+	    return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void forEachRemaining(Consumer<? super T> action) {
+	    int position = this.from;
+	    this.from = this.to;
+	    while (position < this.to) {
+		Object[] chunk = this.chunks[position / CHUNK_SIZE];
+		int end = Math.min(CHUNK_SIZE, position % CHUNK_SIZE + this.to - position);
+		for (int i = position % CHUNK_SIZE; i < end; i++) {
+		    action.accept(DeepCopy.deepCopy((T) chunk[i]));
+		}
+		position += end - position % CHUNK_SIZE;
+	    }
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+	    if (this.to - this.from < 2) {
+		return null;
+	    }
+
+	    // Prefer a chunk boundary, so that each half reads whole chunks
+	    int middle = (this.from + this.to) >>> 1;
+	    int boundary = middle - middle % CHUNK_SIZE;
+	    if (boundary > this.from) {
+		middle = boundary;
+	    }
+	    Spliterator<T> prefix = new ChunkSpliterator<T>(this.chunks, this.from, middle);
+	    this.from = middle;
+	    return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+	    return this.to - this.from;
+	}
+
+	@Override
+	public int characteristics() {
+	    return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+	}
+    }
+
+    /**
+     * Defines the transient counterpart of {@link ChunkedImmutableQueue}. The
+     * elements are written in place in chunks owned by the builder, which are
+     * handed to the queue when the builder is frozen.
+     */
+    private static final class Transient<T> extends AbstractQueueBuilder<T> {
+	/** The full chunks built so far. */
+	private ChunkSequence<Chunk<Object[]>> chunks = ChunkSequence.empty();
+
+	/** The chunk being filled, and its number of elements. */
+	private Object[] tail;
+	private int tailCount;
+
+	@Override
+	protected void add(T t) {
+	    if (this.tail == null || this.tailCount == CHUNK_SIZE) {
+		if (this.tail != null) {
+		    this.chunks = this.chunks.add(new Chunk<Object[]>(this.tail, CHUNK_SIZE));
+		}
+		this.tail = new Object[CHUNK_SIZE];
+		this.tailCount = 0;
+	    }
+	    this.tail[this.tailCount++] = StoredCopies.copy(t);
+	}
+
+	@Override
+	protected Queue<T> build(int size) {
+	    if (this.tail == null) {
+		return new ChunkedImmutableQueue<T>();
+	    }
+
+	    return new ChunkedImmutableQueue<T>(this.chunks, 0, new Chunk<Object[]>(this.tail, this.tailCount),
+		    this.tailCount, size);
+	}
+    }
+}
\ No newline at end of file
@@ -0,0 +1,348 @@
+package com.paypay.challenge.queue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.UnaryOperator;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines a queue shared by any number of producer and consumer threads, built
+ * on top of an immutable {@link Queue}. The current version of the queue is
+ * held in an {@link AtomicReference}; every change derives a new version from
+ * the current one and publishes it with a compare-and-set, retrying from the
+ * latest version when another thread published first. No lock is ever taken:
+ * <ul>
+ * <li>readers get the current version through {@link #snapshot()}, a
+ * consistent queue that no later change can affect,</li>
+ * <li>and writers that keep losing the race back off for a random, growing
+ * delay, which spreads the retries of contending threads.</li>
+ * </ul>
+ * Each operation takes the time of the same operation on the underlying queue,
+ * times the number of retries, so the underlying queue should be one with
+ * constant time operations, such as {@link BankersImmutableQueue}.
+ * <p>
+ * When the underlying queue is a {@link BoundedImmutableQueue} with the
+ * {@link OverflowPolicy#BLOCK} policy, {@link #put(Object)} and
+ * {@link #offer(Object, long, TimeUnit)} make producers wait while the queue is
+ * full. Only those waiting producers take a lock; consumers take it to wake them
+ * up, and only when some are waiting.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to and removed from the
+ *            queue.
+ */
+public final class ConcurrentImmutableQueue<T> {
+    /** The shortest delay, in nanoseconds, a writer backs off after a failure. */
+    private static final int MIN_BACKOFF_NANOS = 1 << 6;
+
+    /** The longest delay, in nanoseconds, a writer backs off after a failure. */
+    private static final int MAX_BACKOFF_NANOS = 1 << 20;
+
+    /** The current version of the queue. */
+    private final AtomicReference<Queue<T>> current;
+
+    /** The lock producers wait on while the queue is full. */
+    private final Object space = new Object();
+
+    /** The number of producers waiting for space. */
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /** Creates an empty shared queue, backed by a {@link BankersImmutableQueue}. */
+    public ConcurrentImmutableQueue() {
+	this(new BankersImmutableQueue<T>());
+    }
+
+    /**
+     * Creates a shared queue starting from the given version. The versions
+     * derived from it keep its implementation.
+     *
+     * @param initial
+     *            the first version of the queue.
+     */
+    public ConcurrentImmutableQueue(Queue<T> initial) {
+	if (initial == null) {
+	    throw new IllegalArgumentException("Initial queue must not be null");
+	}
+
+	this.current = new AtomicReference<Queue<T>>(initial);
+    }
+
+    /**
+     * Gets the current version of the queue. It is an immutable queue, so it
+     * stays consistent whatever the other threads do afterwards.
+     *
+     * @return the current version of the queue.
+     */
+    public Queue<T> snapshot() {
+	return this.current.get();
+    }
+
+    /**
+     * Adds the element t at the end of the queue.
+     *
+     * @param t
+     *            the element to be put into the queue.
+     * @throws ImmutableQueueException
+     *             if the queue already contains {@link Queue#MAX_ELEMENTS}
+     *             elements.
+     */
+    public void offer(T t) {
+	update(queue -> queue.enQueue(t));
+    }
+
+    /**
+     * Adds the element t at the end of the queue, waiting for space if the queue
+     * is bounded with the {@link OverflowPolicy#BLOCK} policy and full. Other
+     * bounded queues apply their policy without waiting.
+     *
+     * @param t
+     *            the element to be put into the queue.
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting.
+     * @throws ImmutableQueueException
+     *             if the queue is full and its policy is
+     *             {@link OverflowPolicy#REJECT}.
+     */
+    public void put(T t) throws InterruptedException {
+	offer(t, false, 0L);
+    }
+
+    /**
+     * Adds the element t at the end of the queue, waiting at most the given time
+     * for space if the queue is bounded with the {@link OverflowPolicy#BLOCK}
+     * policy and full. Other bounded queues apply their policy without waiting.
+     *
+     * @param t
+     *            the element to be put into the queue.
+     * @param timeout
+     *            the longest time to wait for space.
+     * @param unit
+     *            the unit of the timeout.
+     * @return {@code true} if the element was added; {@code false} if the queue
+     *         was still full once the time elapsed.
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting.
+     * @throws ImmutableQueueException
+     *             if the queue is full and its policy is
+     *             {@link OverflowPolicy#REJECT}.
+     */
+    public boolean offer(T t, long timeout, TimeUnit unit) throws InterruptedException {
+	return offer(t, true, unit.toNanos(timeout));
+    }
+
+    /**
+     * Adds all the given elements, in iteration order and without any element of
+     * another thread in between, at the end of the queue.
+     *
+     * @param elements
+     *            the elements to be put into the queue.
+     * @throws ImmutableQueueException
+     *             if the number of elements would exceed
+     *             {@link Queue#MAX_ELEMENTS}.
+     */
+    public void offerAll(Iterable<? extends T> elements) {
+	update(queue -> queue.enQueueAll(elements));
+    }
+
+    /**
+     * Removes the element at the beginning of the queue.
+     *
+     * @return the data of the removed element, handed out according to the read
+     *         mode of the queue, or {@code null} if the queue is empty.
+     */
+    public T poll() {
+	for (int attempt = 0;; attempt++) {
+	    Queue<T> queue = this.current.get();
+	    if (queue.isEmpty()) {
+		return null;
+	    }
+	    if (this.current.compareAndSet(queue, queue.deQueue())) {
+		signalSpace();
+		// Only the winner reads, so failed attempts never copy the data
+		return queue.head();
+	    }
+	    backoff(attempt);
+	}
+    }
+
+    /**
+     * Removes at most {@code maxElements} elements at the beginning of the queue
+     * and adds them, in order, to the given collection.
+     *
+     * @param target
+     *            the collection the removed elements are added to.
+     * @param maxElements
+     *            the maximum number of elements to be removed.
+     * @return the number of removed elements.
+     * @throws IllegalArgumentException
+     *             if {@code maxElements} is negative.
+     */
+    public int drainTo(Collection<? super T> target, int maxElements) {
+	if (maxElements < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + maxElements);
+	}
+
+	for (int attempt = 0;; attempt++) {
+	    Queue<T> queue = this.current.get();
+	    if (queue.isEmpty() || maxElements == 0) {
+		return 0;
+	    }
+
+	    // The removed elements only reach the target once the removal is published
+	    List<T> drained = new ArrayList<T>();
+	    if (this.current.compareAndSet(queue, queue.drainTo(drained, maxElements))) {
+		signalSpace();
+		target.addAll(drained);
+		return drained.size();
+	    }
+	    backoff(attempt);
+	}
+    }
+
+    /**
+     * Gets the element at the beginning of the queue, without removing it.
+     *
+     * @return the data of the first element, handed out according to the read
+     *         mode of the queue, or {@code null} if the queue is empty.
+     */
+    public T peek() {
+	return this.current.get().head();
+    }
+
+    /**
+     * Checks if the queue does not contain any elements.
+     *
+     * @return {@code true} if the current version is empty; {@code false}
+     *         otherwise.
+     */
+    public boolean isEmpty() {
+	return this.current.get().isEmpty();
+    }
+
+    /**
+     * Replaces the current version of the queue by the result of the given
+     * function, atomically. The function may be called several times, when other
+     * threads change the queue concurrently, so it must not have side effects.
+     *
+     * @param function
+     *            the function deriving the new version from the current one.
+     * @return the new version of the queue.
+     */
+    public Queue<T> update(UnaryOperator<Queue<T>> function) {
+	for (int attempt = 0;; attempt++) {
+	    Queue<T> queue = this.current.get();
+	    Queue<T> updated = function.apply(queue);
+	    if (this.current.compareAndSet(queue, updated)) {
+		if (updated.size() < queue.size()) {
+		    signalSpace();
+		}
+		return updated;
+	    }
+	    backoff(attempt);
+	}
+    }
+
+    /**
+     * Adds the element t, waiting for space while the queue is full, for at most
+     * the given time if timed.
+     */
+    private boolean offer(T t, boolean timed, long nanos) throws InterruptedException {
+	long deadline = timed ? System.nanoTime() + nanos : 0L;
+	for (;;) {
+	    if (tryOffer(t)) {
+		return true;
+	    }
+	    if (Thread.interrupted()) {
+		throw new InterruptedException();
+	    }
+
+	    this.waiters.incrementAndGet();
+	    try {
+		synchronized (this.space) {
+		    // Checked again under the lock consumers signal with, so no wakeup is lost
+		    if (isFull(this.current.get())) {
+			if (!timed) {
+			    this.space.wait();
+			} else {
+			    long remaining = deadline - System.nanoTime();
+			    if (remaining <= 0) {
+				return false;
+			    }
+			    TimeUnit.NANOSECONDS.timedWait(this.space, remaining);
+			}
+		    }
+		}
+	    } finally {
+		this.waiters.decrementAndGet();
+	    }
+	}
+    }
+
+    /**
+     * Adds the element t unless the queue is full and producers must wait.
+     */
+    private boolean tryOffer(T t) {
+	for (int attempt = 0;; attempt++) {
+	    Queue<T> queue = this.current.get();
+	    if (isFull(queue)) {
+		return false;
+	    }
+	    if (this.current.compareAndSet(queue, queue.enQueue(t))) {
+		return true;
+	    }
+	    backoff(attempt);
+	}
+    }
+
+    /**
+     * Checks if the given version makes producers wait for space.
+     */
+    private static boolean isFull(Queue<?> queue) {
+	if (!(queue instanceof BoundedImmutableQueue)) {
+	    return false;
+	}
+
+	BoundedImmutableQueue<?> bounded = (BoundedImmutableQueue<?>) queue;
+	return bounded.policy() == OverflowPolicy.BLOCK && bounded.remainingCapacity() == 0;
+    }
+
+    /**
+     * Wakes up the producers waiting for space, if any, once elements have been
+     * removed.
+     */
+    private void signalSpace() {
+	if (this.waiters.get() > 0) {
+	    synchronized (this.space) {
+		this.space.notifyAll();
+	    }
+	}
+    }
+
+    /**
+     * Waits before the next attempt after the given number of failed ones: not at
+     * all after the first failure, then for a random delay whose bound doubles
+     * with each failure.
+     */
+    private static void backoff(int attempt) {
+	if (attempt == 0) {
+	    return;
+	}
+
+	int bound = MIN_BACKOFF_NANOS << Math.min(attempt - 1, 14);
+	LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(Math.min(bound, MAX_BACKOFF_NANOS)) + 1);
+    }
+
+    @Override
+    public String toString() {
+	return "ConcurrentImmutableQueue(current=" + this.current.get() + ")";
+    }
+}
\ No newline at end of file
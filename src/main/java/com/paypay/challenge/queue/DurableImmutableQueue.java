@@ -0,0 +1,359 @@
+package com.paypay.challenge.queue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.paypay.challenge.codec.Codec;
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an immutable queue whose elements are stored on disk, in an
+ * append-only log of memory-mapped segment files, so that it survives restarts.
+ * Each element is encoded by a {@link Codec} into a record of the log, and a
+ * version of the queue is only a pair of positions in the log: the position of
+ * its head, and the position after its last element (its <em>tail</em>).
+ * Hence:
+ * <ul>
+ * <li>dequeue only moves the head to the next record, and every version stays
+ * readable from the log without any copy,</li>
+ * <li>enqueue appends a record at the end of the log, when the tail of the
+ * version is the end of the log. Otherwise another version derived from the
+ * same one already appended there, so, as for {@link ChunkedImmutableQueue},
+ * the records of the version are first copied to the end of the log, which
+ * takes a time proportional to its size,</li>
+ * <li>the segments before the head of the oldest version still referenced,
+ * and of the committed one, are deleted from the disk.</li>
+ * </ul>
+ * A version is referenced until it is {@link #release() released}, or garbage
+ * collected; releasing each version once it is not read anymore lets its
+ * segments be deleted at the next commit, without waiting for the garbage
+ * collector.
+ * A version is made durable by {@link #commit()}; it is the version returned
+ * by {@link #open(Path, Codec)} when the directory of the log is opened again.
+ * <p>
+ * The data of the elements is encoded when it is enqueued, and decoded again
+ * each time it is read, so, as with the other queues, every read gives a new
+ * object that the caller is free to change.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to and removed from the
+ *            queue.
+ */
+public final class DurableImmutableQueue<T> implements Queue<T>, Closeable {
+    /** The default number of bytes of each segment file. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** The log storing the elements, shared by all the versions. */
+    private final SegmentedLog log;
+
+    /** The codec of the elements, shared by all the versions. */
+    private final Codec<T> codec;
+
+    /** The position of the first element in the log. */
+    private final long head;
+
+    /** The position after the last element in the log. */
+    private final long tail;
+
+    /** The number of elements of the queue. */
+    private final int size;
+
+    /** The registration of the version in the log, keeping its segments. */
+    private final SegmentedLog.Registration registration;
+
+    /** Whether the version was released. */
+    private volatile boolean released;
+
+    private DurableImmutableQueue(SegmentedLog log, Codec<T> codec, long head, long tail, int size) {
+	this.log = log;
+	this.codec = codec;
+	this.head = head;
+	this.tail = tail;
+	this.size = size;
+	this.registration = log.register(this, head);
+    }
+
+    /**
+     * Opens the log stored in the given directory, with segments of
+     * {@link #DEFAULT_SEGMENT_SIZE} bytes, and gets its committed version.
+     *
+     * @param directory
+     *            the directory of the segment files, created if needed.
+     * @param codec
+     *            the codec of the elements.
+     * @return the last committed version of the queue, or an empty queue if no
+     *         version was ever committed.
+     * @throws ImmutableQueueException
+     *             if the log cannot be opened.
+     */
+    public static <T> DurableImmutableQueue<T> open(Path directory, Codec<T> codec) {
+	return open(directory, codec, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the log stored in the given directory, with segments of the given
+     * size, and gets its committed version.
+     *
+     * @param directory
+     *            the directory of the segment files, created if needed.
+     * @param codec
+     *            the codec of the elements.
+     * @param segmentSize
+     *            the number of bytes of each segment; an element must be encoded
+     *            in less bytes. It must be the size the log was created with.
+     * @return the last committed version of the queue, or an empty queue if no
+     *         version was ever committed.
+     * @throws ImmutableQueueException
+     *             if the log cannot be opened, or was created with another
+     *             segment size.
+     */
+    public static <T> DurableImmutableQueue<T> open(Path directory, Codec<T> codec, int segmentSize) {
+	SegmentedLog log = SegmentedLog.open(directory, segmentSize);
+	long[] checkpoint = log.checkpoint();
+	if (checkpoint == null) {
+	    return new DurableImmutableQueue<T>(log, codec, 0, 0, 0);
+	}
+
+	return new DurableImmutableQueue<T>(log, codec, checkpoint[0], checkpoint[1], (int) checkpoint[2]);
+    }
+
+    /**
+     * {@inheritDoc} The element is encoded and appended to the log.
+     *
+     * @throws ImmutableQueueException
+     *             if the queue already contains {@link Queue#MAX_ELEMENTS}
+     *             elements, or if the element cannot be encoded or written.
+     */
+    public Queue<T> enQueue(T t) {
+	return enQueueAll(Collections.singletonList(t));
+    }
+
+    /**
+     * {@inheritDoc} The records of the version are copied at most once for all
+     * the new elements.
+     *
+     * @throws ImmutableQueueException
+     *             if the number of elements would exceed
+     *             {@link Queue#MAX_ELEMENTS}, or if an element cannot be encoded
+     *             or written.
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	checkNotReleased();
+	List<byte[]> records = new ArrayList<byte[]>();
+	int size = this.size;
+	for (T t : elements) {
+	    if (size++ == MAX_ELEMENTS) {
+		throw new ImmutableQueueException("Immutable queue overflow");
+	    }
+	    records.add(encode(t));
+	}
+	if (records.isEmpty()) {
+	    return this;
+	}
+
+	// The lock of the log keeps other versions from appending in between
+	synchronized (this.log) {
+	    long head = this.head;
+	    if (this.log.end() != this.tail) {
+		head = this.log.copy(this.head, this.size);
+	    }
+	    long tail = this.tail;
+	    for (byte[] record : records) {
+		tail = this.log.append(record);
+	    }
+
+	    return new DurableImmutableQueue<T>(this.log, this.codec, head, tail, size);
+	}
+    }
+
+    /**
+     * {@inheritDoc} Dequeue only moves the head to the next record.
+     *
+     * @throws ImmutableQueueException
+     *             if the dequeue is operated on an empty queue.
+     */
+    public Queue<T> deQueue() throws ImmutableQueueException {
+	return deQueue(1);
+    }
+
+    /**
+     * {@inheritDoc} The head is moved once for all the removed elements.
+     */
+    public Queue<T> deQueue(int n) throws ImmutableQueueException {
+	return drain(null, n, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	return drain(target, maxElements, false);
+    }
+
+    /**
+     * Removes {@code n} elements at the beginning of the queue, adding them to the
+     * given target if any.
+     */
+    private Queue<T> drain(Collection<? super T> target, int n, boolean exactly) {
+	checkNotReleased();
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+	if (exactly && this.size < n) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+	if (n == 0) {
+	    return this;
+	}
+
+	int count = Math.min(n, this.size);
+	long head = this.head;
+	for (int i = 0; i < count; i++) {
+	    if (target != null) {
+		target.add(decode(this.log.read(head)));
+	    }
+	    head = this.log.next(head);
+	}
+
+	return new DurableImmutableQueue<T>(this.log, this.codec, head, this.tail, this.size - count);
+    }
+
+    /**
+     * {@inheritDoc} The data is decoded from the log, so it is a new object at
+     * each call.
+     */
+    public T head() {
+	checkNotReleased();
+	if (isEmpty()) {
+	    return null;
+	}
+
+	return decode(this.log.read(this.head));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+	return this.size == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+	return this.size;
+    }
+
+    /**
+     * {@inheritDoc} The elements are decoded from the log one by one.
+     */
+    public Iterator<T> iterator() {
+	checkNotReleased();
+	return new Iterator<T>() {
+	    private long position = DurableImmutableQueue.this.head;
+	    private int remaining = DurableImmutableQueue.this.size;
+
+	    @Override
+	    public boolean hasNext() {
+		return this.remaining > 0;
+	    }
+
+	    @Override
+	    public T next() {
+		if (this.remaining == 0) {
+		    throw new NoSuchElementException();
+		}
+
+		byte[] record = DurableImmutableQueue.this.log.read(this.position);
+		this.position = DurableImmutableQueue.this.log.next(this.position);
+		this.remaining--;
+		return decode(record);
+	    }
+	};
+    }
+
+    /**
+     * Makes this version durable: the segments it reads are forced to the disk,
+     * then it replaces the version recovered when the log is opened again. The
+     * segments no version needs anymore are deleted.
+     *
+     * @throws ImmutableQueueException
+     *             if the version cannot be written, if the log is closed, or if
+     *             the version was released.
+     */
+    public void commit() {
+	checkNotReleased();
+	this.log.commit(this.head, this.tail, this.size);
+    }
+
+    /**
+     * Releases this version: the segments it reads can be deleted at the next
+     * commit as soon as no other version reads them, without waiting for the
+     * garbage collector. The version cannot be read, changed nor committed
+     * anymore; the versions derived from it are not affected. Releasing a version
+     * twice has no effect.
+     */
+    public void release() {
+	this.released = true;
+	this.log.release(this.registration);
+    }
+
+    /**
+     * Closes the log shared by all the versions of the queue, which cannot be used
+     * anymore. The versions not committed are lost.
+     */
+    @Override
+    public void close() {
+	this.log.close();
+    }
+
+    private void checkNotReleased() {
+	if (this.released) {
+	    throw new ImmutableQueueException("Queue version was released");
+	}
+    }
+
+    private byte[] encode(T t) {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try (DataOutputStream out = new DataOutputStream(bytes)) {
+	    this.codec.encode(t, out);
+	} catch (IOException e) {
+	    throw new ImmutableQueueException("Cannot encode element: " + t, e);
+	}
+	return bytes.toByteArray();
+    }
+
+    private T decode(byte[] record) {
+	try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+	    return this.codec.decode(in);
+	} catch (IOException e) {
+	    throw new ImmutableQueueException("Cannot decode element", e);
+	}
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder("DurableImmutableQueue(elements=[");
+	String separator = "";
+	for (T t : this) {
+	    builder.append(separator).append(t);
+	    separator = ", ";
+	}
+
+	return builder.append("])").toString();
+    }
+}
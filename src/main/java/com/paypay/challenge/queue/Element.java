@@ -1,6 +1,8 @@
 package com.paypay.challenge.queue;
 
 import com.paypay.challenge.clone.DeepCopy;
+import com.paypay.challenge.clone.ImmutabilityClassifier;
+import com.paypay.challenge.metrics.Metrics;
 
 import lombok.ToString;
 
@@ -34,6 +36,13 @@ public final class Element<T> {
     /** The reference to the next */
     private final Element<T> nextElement;
 
+    /**
+     * Whether the data of this element and of all the elements it refers to is
+     * immutable, in which case neither the data nor the elements need to be
+     * copied.
+     */
+    private final boolean frozen;
+
     /**
      * Creates a queue element with the {@code nextElement} pointing to null. This
      * constructor is used to create the element on the front (head) of the queue.
@@ -56,17 +65,70 @@ public final class Element<T> {
      *            is created and enqueued.
      */
     public Element(T data, Element<T> nextElement) {
-	this.data = DeepCopy.deepCopy(data);
-	this.nextElement = nextElement == null ? null : DeepCopy.deepCopy(nextElement);
+	this.data = StoredCopies.copy(data);
+	this.nextElement = nextElement == null || nextElement.isFrozen() ? nextElement : DeepCopy.deepCopy(nextElement);
+	this.frozen = frozen(this.data, this.nextElement);
+	Metrics.element();
+    }
+
+    private Element(T storedData, Element<T> ownedNextElement, boolean frozen) {
+	this.data = storedData;
+	this.nextElement = ownedNextElement;
+	this.frozen = frozen;
+	Metrics.element();
+    }
+
+    /**
+     * Creates a queue element holding data already copied for storage, and
+     * pointing to an element owned by the caller. Neither is copied.
+     */
+    private static <T> Element<T> ofStored(T storedData, Element<T> ownedNextElement) {
+	return new Element<T>(storedData, ownedNextElement, frozen(storedData, ownedNextElement));
+    }
+
+    /**
+     * Creates a queue element pointing to an element that the caller has just
+     * created and does not share with anyone else. Such an element cannot be
+     * changed from the outside, so unlike
+     * {@link #Element(Object, Element)} it is not copied; only the data is.
+     * 
+     * @param data
+     *            the data to be saved inside the element.
+     * @param ownedNextElement
+     *            the element added to the queue right before, owned by the
+     *            caller.
+     * @return the new element.
+     */
+    static <T> Element<T> linkOwned(T data, Element<T> ownedNextElement) {
+	return ofStored(StoredCopies.copy(data), ownedNextElement);
+    }
+
+    /**
+     * Checks if an element holding the given data and pointing to the given
+     * element is frozen.
+     */
+    private static boolean frozen(Object storedData, Element<?> nextElement) {
+	return ImmutabilityClassifier.isImmutable(storedData) && (nextElement == null || nextElement.isFrozen());
     }
 
     /**
      * Gets data saved inside this element.
      * 
-     * @return a deep copy of the data save in this element.
+     * @return a deep copy of the data save in this element, or the data itself
+     *         if it is immutable.
      */
     public T getData() {
-	return DeepCopy.deepCopy(this.data);
+	return this.frozen ? this.data : DeepCopy.deepCopy(this.data);
+    }
+
+    /**
+     * Gets data saved inside this element without copying it. The returned data
+     * must not be changed.
+     * 
+     * @return the data saved in this element.
+     */
+    T peekData() {
+	return this.data;
     }
 
     /**
@@ -77,4 +139,15 @@ public final class Element<T> {
     public Element<T> getNextElement() {
 	return this.nextElement;
     }
+
+    /**
+     * Checks if the data of this element and of all the elements it refers to is
+     * immutable. A frozen element can be shared by reference instead of being
+     * deep copied.
+     * 
+     * @return {@code true} if this element is frozen; {@code false} otherwise.
+     */
+    public boolean isFrozen() {
+	return this.frozen;
+    }
 }
\ No newline at end of file
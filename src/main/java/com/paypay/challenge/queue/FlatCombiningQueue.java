@@ -0,0 +1,281 @@
+package com.paypay.challenge.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Defines a <em>flat combining</em> front-end of a
+ * {@link ConcurrentImmutableQueue}, for heavily contended queues. Instead of
+ * racing each other with compare-and-sets, threads post their request in a
+ * per-thread <em>publication record</em>, then one of them, the
+ * <em>combiner</em>, collects all the pending requests and applies them at once:
+ * <ul>
+ * <li>the elements of all the pending offers are enqueued as one batch, so
+ * their data is deep copied in a single pass, once even if the update is
+ * retried,</li>
+ * <li>then the pending polls are served with one drain of the resulting
+ * queue,</li>
+ * <li>and the new version is published with a single update of the underlying
+ * queue.</li>
+ * </ul>
+ * The other threads wait for their record to be served, becoming the combiner
+ * themselves when nobody else is. Applying the concurrent offers before the
+ * concurrent polls is a valid order, and lets polls on an empty queue take the
+ * elements offered at the same time.
+ * <p>
+ * The underlying queue can still be used directly, for example to take a
+ * snapshot; direct changes simply compete with the combiner for the update.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to and removed from the
+ *            queue.
+ */
+public final class FlatCombiningQueue<T> {
+    /** The operation of a record with no pending request. */
+    private static final int NONE = 0;
+
+    /** The operation of a pending offer. */
+    private static final int OFFER = 1;
+
+    /** The operation of a pending poll. */
+    private static final int POLL = 2;
+
+    /** The number of combining passes after which an idle record is unlinked. */
+    private static final int MAX_IDLE_PASSES = 1024;
+
+    /** The queue the requests are applied to. */
+    private final ConcurrentImmutableQueue<T> target;
+
+    /** Whether a thread is currently combining. */
+    private final AtomicBoolean combining = new AtomicBoolean();
+
+    /** The first record of the publication list. */
+    private final AtomicReference<Record<T>> records = new AtomicReference<Record<T>>();
+
+    /** The record of each thread. */
+    private final ThreadLocal<Record<T>> localRecord = ThreadLocal.withInitial(Record::new);
+
+    /** The number of combining passes so far, only used by the combiner. */
+    private int passes;
+
+    /**
+     * Defines the publication record of a thread. The owner thread writes its
+     * request then sets {@link #operation}; the combiner writes the response
+     * then resets it, so each volatile write publishes the fields written before.
+     */
+    private static final class Record<T> {
+	/** The pending operation, {@link #NONE} once served. */
+	private volatile int operation;
+
+	/** Whether the record is in the publication list. */
+	private volatile boolean linked;
+
+	/** The element to be offered. */
+	private T element;
+
+	/** The polled element. */
+	private T result;
+
+	/** The failure of the request, if any. */
+	private RuntimeException failure;
+
+	/** The next record of the publication list. */
+	private Record<T> next;
+
+	/** The last combining pass that served this record. */
+	private int lastPass;
+    }
+
+    /** Creates an empty queue, backed by a {@link BankersImmutableQueue}. */
+    public FlatCombiningQueue() {
+	this(new ConcurrentImmutableQueue<T>());
+    }
+
+    /**
+     * Creates a front-end applying the requests to the given queue.
+     *
+     * @param target
+     *            the queue the requests are applied to.
+     */
+    public FlatCombiningQueue(ConcurrentImmutableQueue<T> target) {
+	if (target == null) {
+	    throw new IllegalArgumentException("Target queue must not be null");
+	}
+
+	this.target = target;
+    }
+
+    /**
+     * Gets the current version of the queue.
+     *
+     * @return the current version of the queue.
+     * @see ConcurrentImmutableQueue#snapshot()
+     */
+    public Queue<T> snapshot() {
+	return this.target.snapshot();
+    }
+
+    /**
+     * Adds the element t at the end of the queue, in the next combined batch.
+     *
+     * @param t
+     *            the element to be put into the queue.
+     * @throws com.paypay.challenge.exception.ImmutableQueueException
+     *             if the queue already contains {@link Queue#MAX_ELEMENTS}
+     *             elements.
+     */
+    public void offer(T t) {
+	await(OFFER, t);
+    }
+
+    /**
+     * Removes the element at the beginning of the queue, in the next combined
+     * batch.
+     *
+     * @return the data of the removed element, handed out according to the read
+     *         mode of the queue, or {@code null} if the queue is empty.
+     */
+    public T poll() {
+	return await(POLL, null);
+    }
+
+    /**
+     * Posts the request in the record of the current thread and waits until it is
+     * served, combining when no other thread does.
+     */
+    private T await(int operation, T element) {
+	Record<T> record = this.localRecord.get();
+	record.element = element;
+	record.operation = operation;
+
+	for (int spins = 0; record.operation != NONE; spins++) {
+	    if (!record.linked) {
+		link(record);
+	    }
+	    if (this.combining.compareAndSet(false, true)) {
+		try {
+		    combine();
+		} finally {
+		    this.combining.set(false);
+		}
+	    } else if (spins > 64) {
+		Thread.yield();
+	    }
+	}
+
+	T result = record.result;
+	RuntimeException failure = record.failure;
+	record.result = null;
+	record.failure = null;
+	if (failure != null) {
+	    throw failure;
+	}
+	return result;
+    }
+
+    /**
+     * Puts the given record at the beginning of the publication list.
+     */
+    private void link(Record<T> record) {
+	record.linked = true;
+	Record<T> first;
+	do {
+	    first = this.records.get();
+	    record.next = first;
+	} while (!this.records.compareAndSet(first, record));
+    }
+
+    /**
+     * Serves all the pending requests of the publication list in one batch, and
+     * unlinks the records idle for too long. Only called by the combiner.
+     */
+    private void combine() {
+	int pass = ++this.passes;
+	List<Record<T>> offers = new ArrayList<Record<T>>();
+	List<Record<T>> polls = new ArrayList<Record<T>>();
+	List<T> elements = new ArrayList<T>();
+	Record<T> previous = null;
+	for (Record<T> record = this.records.get(), next; record != null; record = next) {
+	    // Read before unlinking, as the owner may link the record again right after
+	    next = record.next;
+	    int operation = record.operation;
+	    if (operation == OFFER) {
+		offers.add(record);
+		elements.add(record.element);
+		record.lastPass = pass;
+	    } else if (operation == POLL) {
+		polls.add(record);
+		record.lastPass = pass;
+	    } else if (previous != null && pass - record.lastPass > MAX_IDLE_PASSES) {
+		// The first record is never unlinked, as other threads push in front of it
+		previous.next = next;
+		record.linked = false;
+		continue;
+	    }
+	    previous = record;
+	}
+	if (offers.isEmpty() && polls.isEmpty()) {
+	    return;
+	}
+
+	List<T> polled = new ArrayList<T>(polls.size());
+	try {
+	    // Copied once, not again each time a concurrent change makes the update retry
+	    List<T> copies = new ArrayList<T>(elements.size());
+	    for (T t : elements) {
+		copies.add(StoredCopies.copy(t));
+	    }
+	    this.target.update(queue -> {
+		polled.clear();
+		return StoredCopies.storeAsIs(() -> queue.enQueueAll(copies)).drainTo(polled, polls.size());
+	    });
+	} catch (RuntimeException e) {
+	    // Serve the requests one by one, so that only the failing ones fail
+	    serveSeparately(offers, polls);
+	    return;
+	}
+
+	for (Record<T> record : offers) {
+	    record.element = null;
+	    record.operation = NONE;
+	}
+	for (int i = 0; i < polls.size(); i++) {
+	    Record<T> record = polls.get(i);
+	    record.result = i < polled.size() ? polled.get(i) : null;
+	    record.operation = NONE;
+	}
+    }
+
+    /**
+     * Serves the given requests one after the other, recording the failure of
+     * each one.
+     */
+    private void serveSeparately(List<Record<T>> offers, List<Record<T>> polls) {
+	for (Record<T> record : offers) {
+	    try {
+		this.target.offer(record.element);
+	    } catch (RuntimeException e) {
+		record.failure = e;
+	    }
+	    record.element = null;
+	    record.operation = NONE;
+	}
+	for (Record<T> record : polls) {
+	    try {
+		record.result = this.target.poll();
+	    } catch (RuntimeException e) {
+		record.failure = e;
+	    }
+	    record.operation = NONE;
+	}
+    }
+
+    @Override
+    public String toString() {
+	return "FlatCombiningQueue(current=" + this.target.snapshot() + ")";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.paypay.challenge.queue;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.paypay.challenge.clone.DeepCopy;
+
+/**
+ * Defines an iterator over the values of a queue made of a front list, holding
+ * the first values in order, and a rear list, holding the last values in reverse
+ * order, as the banker's and real-time queues are. The rear list is reversed
+ * only once the front list is exhausted, so iterating over a prefix of the
+ * values never reverses it.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of the values.
+ */
+final class FrontRearIterator<T> implements Iterator<T> {
+    /** The front values not iterated over yet. */
+    private LazyList<T> front;
+
+    /** The rear list as given, reversed when the front list is exhausted. */
+    private PersistentList<T> rear;
+
+    /** Whether {@link #rear} is already reversed. */
+    private boolean reversed;
+
+    /** Whether the values are deep copied when they are handed out. */
+    private final boolean copy;
+
+    /**
+     * Creates an iterator handing out the values of the given lists as they are,
+     * for the internal structures of the queues.
+     *
+     * @param front
+     *            the first values, in order.
+     * @param rear
+     *            the last values, in reverse order.
+     */
+    FrontRearIterator(LazyList<T> front, PersistentList<T> rear) {
+	this(front, rear, false);
+    }
+
+    /**
+     * Creates an iterator over the values of the given lists.
+     *
+     * @param front
+     *            the first values, in order.
+     * @param rear
+     *            the last values, in reverse order.
+     * @param copy
+     *            whether the values are deep copied, unless they are immutable,
+     *            when they are handed out.
+     */
+    FrontRearIterator(LazyList<T> front, PersistentList<T> rear, boolean copy) {
+	this.front = front;
+	this.rear = rear;
+	this.copy = copy;
+    }
+
+    @Override
+    public boolean hasNext() {
+	return !this.front.isEmpty() || !this.rear.isEmpty();
+    }
+
+    @Override
+    public T next() {
+	if (!this.front.isEmpty()) {
+	    T value = this.front.head();
+	    this.front = this.front.tail();
+	    return this.copy ? DeepCopy.deepCopy(value) : value;
+	}
+	if (this.rear.isEmpty()) {
+	    throw new NoSuchElementException();
+	}
+	if (!this.reversed) {
+	    this.rear = this.rear.reverse();
+	    this.reversed = true;
+	}
+
+	T value = this.rear.value();
+	this.rear = this.rear.next();
+	return this.copy ? DeepCopy.deepCopy(value) : value;
+    }
+}
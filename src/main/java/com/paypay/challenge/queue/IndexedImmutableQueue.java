@@ -0,0 +1,577 @@
+package com.paypay.challenge.queue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import com.paypay.challenge.clone.DeepCopy;
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an immutable queue giving access to its elements by position. The
+ * elements are kept, in order, in a persistent AVL tree (a <em>rope</em>) whose
+ * nodes cache the size of their subtree. Every operation is built on
+ * <em>join</em>, which links two trees and a middle element into one balanced
+ * tree in time proportional to the difference of their heights, and on
+ * <em>split</em>, which cuts a tree at a position by joining the subtrees met on
+ * the way down. As a result:
+ * <ul>
+ * <li>{@link #size()} takes constant time,</li>
+ * <li>{@link #get(int)}, {@link #take(int)}, {@link #drop(int)} and
+ * {@link #concat(IndexedImmutableQueue)} take logarithmic time,</li>
+ * <li>enqueue, dequeue and head take logarithmic time too, rather than the
+ * constant time of {@link BankersImmutableQueue}: this queue is meant for
+ * backlogs that have to be inspected or sharded, not for the hottest path.</li>
+ * </ul>
+ * Only the nodes on the path of an operation are created; all the other nodes
+ * are shared between the versions of the queue, so splitting a backlog into
+ * shards never copies it.
+ * <p>
+ * As for {@link SlowImmutableQueue}, the data of the elements is deep copied
+ * when it is enqueued and, unless it is immutable, when it is read back
+ * through {@link #head()} or {@link #get(int)}, so changes made to the original
+ * objects never affect the queue.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to and removed from the
+ *            queue.
+ */
+public final class IndexedImmutableQueue<T> implements Queue<T> {
+    /** The root of the tree, {@code null} for an empty queue. */
+    private final Node<T> root;
+
+    /**
+     * Defines a node of the tree. The empty tree is {@code null}.
+     */
+    private static final class Node<T> {
+	/** The element of the node, after all the elements of the left subtree. */
+	private final T value;
+
+	/** The subtree of the elements before this one. */
+	private final Node<T> left;
+
+	/** The subtree of the elements after this one. */
+	private final Node<T> right;
+
+	/** The height of the subtree rooted at this node. */
+	private final int height;
+
+	/** The number of elements of the subtree rooted at this node. */
+	private final int size;
+
+	private Node(Node<T> left, T value, Node<T> right) {
+	    this.value = value;
+	    this.left = left;
+	    this.right = right;
+	    this.height = Math.max(height(left), height(right)) + 1;
+	    this.size = size(left) + size(right) + 1;
+	}
+    }
+
+    /**
+     * Defines a spliterator over a range of positions in a tree. The path to the
+     * next node is kept in a stack, computed in logarithmic time the first time
+     * the spliterator advances after being created or split.
+     */
+    private static final class NodeSpliterator<T> implements Spliterator<T> {
+	/** The root of the tree. */
+	private final Node<T> root;
+
+	/** The position of the next element. */
+	private int from;
+
+	/** The position after the last element. */
+	private final int to;
+
+	/**
+	 * The next node on top, then the ancestors whose element comes after it,
+	 * or {@code null} if not computed yet.
+	 */
+	private Deque<Node<T>> path;
+
+	private NodeSpliterator(Node<T> root, int from, int to) {
+	    this.root = root;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+	    if (this.from >= this.to) {
+		return false;
+	    }
+	    if (this.path == null) {
+		this.path = new ArrayDeque<Node<T>>();
+		Node<T> node = this.root;
+		int i = this.from;
+		while (i != size(node.left)) {
+		    if (i < size(node.left)) {
+			this.path.push(node);
+			node = node.left;
+		    } else {
+			i -= size(node.left) + 1;
+			node = node.right;
+		    }
+		}
+		this.path.push(node);
+	    }
+
+	    Node<T> node = this.path.pop();
+	    for (Node<T> n = node.right; n != null; n = n.left) {
+		this.path.push(n);
+	    }
+	    this.from++;
+	    action.accept(DeepCopy.deepCopy(node.value));
+	    return true;
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+	    if (this.to - this.from < 2) {
+		return null;
+	    }
+
+	    int middle = (this.from + this.to) >>> 1;
+	    Spliterator<T> prefix = new NodeSpliterator<T>(this.root, this.from, middle);
+	    this.from = middle;
+	    this.path = null;
+	    return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+	    return this.to - this.from;
+	}
+
+	@Override
+	public int characteristics() {
+	    return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+	}
+    }
+
+    /** Creates an empty immutable queue. */
+    public IndexedImmutableQueue() {
+	this(null);
+    }
+
+    private IndexedImmutableQueue(Node<T> root) {
+	this.root = root;
+    }
+
+    /**
+     * Creates a queue with the given tree.
+     */
+    private IndexedImmutableQueue<T> with(Node<T> root) {
+	return root == this.root ? this : new IndexedImmutableQueue<T>(root);
+    }
+
+    /**
+     * {@inheritDoc} Enqueue joins the tree with a new node holding a deep copy of
+     * the element, on its right.
+     *
+     * @throws ImmutableQueueException
+     *             if the queue already contains {@link Queue#MAX_ELEMENTS}
+     *             elements.
+     */
+    public Queue<T> enQueue(T t) {
+	if (size() == MAX_ELEMENTS) {
+	    throw new ImmutableQueueException("Immutable queue overflow");
+	}
+
+	return with(join(this.root, StoredCopies.copy(t), null));
+    }
+
+    /**
+     * {@inheritDoc} The new elements are built into a balanced tree of their own,
+     * in linear time, which is then joined to the tree of this queue.
+     *
+     * @throws ImmutableQueueException
+     *             if the number of elements would exceed
+     *             {@link Queue#MAX_ELEMENTS}.
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	List<T> copies = new ArrayList<T>();
+	int size = size();
+	for (T t : elements) {
+	    if (size++ == MAX_ELEMENTS) {
+		throw new ImmutableQueueException("Immutable queue overflow");
+	    }
+	    copies.add(StoredCopies.copy(t));
+	}
+
+	return with(concat(this.root, build(copies, 0, copies.size())));
+    }
+
+    /**
+     * {@inheritDoc} Dequeue removes the leftmost node, rebalancing the nodes on
+     * its path.
+     *
+     * @throws ImmutableQueueException
+     *             if the dequeue is operated on an empty queue.
+     */
+    public Queue<T> deQueue() throws ImmutableQueueException {
+	if (isEmpty()) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+
+	return with(removeFirst(this.root));
+    }
+
+    /**
+     * {@inheritDoc} The queue is split once, in logarithmic time.
+     */
+    public Queue<T> deQueue(int n) throws ImmutableQueueException {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+	if (size() < n) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+
+	return drop(n);
+    }
+
+    /**
+     * {@inheritDoc} The removed elements are read in order from the tree, which
+     * is then split once.
+     */
+    public Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	if (maxElements < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + maxElements);
+	}
+
+	int count = Math.min(maxElements, size());
+	addTo(this.root, target, count);
+	return drop(count);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T head() {
+	if (isEmpty()) {
+	    return null;
+	}
+
+	Node<T> node = this.root;
+	while (node.left != null) {
+	    node = node.left;
+	}
+	return DeepCopy.deepCopy(node.value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+	return this.root == null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+	return size(this.root);
+    }
+
+    /**
+     * {@inheritDoc} The tree is walked in order, without creating any node.
+     */
+    public Iterator<T> iterator() {
+	return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * {@inheritDoc} The spliterator splits at the middle position of its range,
+     * in constant time: each half walks the tree from its own first position.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+	return new NodeSpliterator<T>(this.root, 0, size());
+    }
+
+    /**
+     * Gets the element at the given position, in logarithmic time. The data is
+     * deep copied unless it is immutable.
+     *
+     * @param index
+     *            the position of the element, {@code 0} being the head of the
+     *            queue.
+     * @return the element at the given position.
+     * @throws IndexOutOfBoundsException
+     *             if the index is negative or not less than the size of the
+     *             queue.
+     */
+    public T get(int index) {
+	checkIndex(index, size() - 1);
+
+	Node<T> node = this.root;
+	int i = index;
+	while (i != size(node.left)) {
+	    if (i < size(node.left)) {
+		node = node.left;
+	    } else {
+		i -= size(node.left) + 1;
+		node = node.right;
+	    }
+	}
+	return DeepCopy.deepCopy(node.value);
+    }
+
+    /**
+     * {@inheritDoc} The queue is split eagerly, in logarithmic time, without
+     * reading any element.
+     *
+     * @throws IllegalArgumentException
+     *             if {@code n} is negative.
+     */
+    @Override
+    public IndexedImmutableQueue<T> take(int n) {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+	return n >= size() ? this : with(splitLeft(this.root, n));
+    }
+
+    /**
+     * Creates a queue without the first {@code n} elements of this queue, in
+     * logarithmic time.
+     *
+     * @param n
+     *            the number of elements to drop.
+     * @return the queue of the elements after the first {@code n} ones.
+     * @throws IndexOutOfBoundsException
+     *             if {@code n} is negative or greater than the size of the queue.
+     */
+    public IndexedImmutableQueue<T> drop(int n) {
+	checkIndex(n, size());
+	return n == 0 ? this : with(splitRight(this.root, n));
+    }
+
+    /**
+     * Creates a queue having the elements of this queue followed by the elements
+     * of the given one, in logarithmic time. Both queues are shared, not copied.
+     *
+     * @param other
+     *            the queue whose elements come after the ones of this queue.
+     * @return the concatenation of the two queues.
+     * @throws ImmutableQueueException
+     *             if the number of elements would exceed
+     *             {@link Queue#MAX_ELEMENTS}.
+     */
+    public IndexedImmutableQueue<T> concat(IndexedImmutableQueue<T> other) {
+	if (other.size() > MAX_ELEMENTS - size()) {
+	    throw new ImmutableQueueException("Immutable queue overflow");
+	}
+
+	return with(concat(this.root, other.root));
+    }
+
+    /**
+     * Splits the queue into the given number of consecutive shards, whose sizes
+     * differ by one at most. Each shard is computed by splitting the tree, so
+     * nothing is copied.
+     *
+     * @param count
+     *            the number of shards.
+     * @return the shards, in order; some of them are empty if the queue has less
+     *         than {@code count} elements.
+     * @throws IllegalArgumentException
+     *             if {@code count} is not positive.
+     */
+    public List<IndexedImmutableQueue<T>> shards(int count) {
+	if (count <= 0) {
+	    throw new IllegalArgumentException("Number of shards must be positive: " + count);
+	}
+
+	List<IndexedImmutableQueue<T>> shards = new ArrayList<IndexedImmutableQueue<T>>(count);
+	IndexedImmutableQueue<T> rest = this;
+	for (int i = count; i > 0; i--) {
+	    int shardSize = (rest.size() + i - 1) / i;
+	    shards.add(rest.take(shardSize));
+	    rest = rest.drop(shardSize);
+	}
+	return shards;
+    }
+
+    private static void checkIndex(int index, int max) {
+	if (index < 0 || index > max) {
+	    throw new IndexOutOfBoundsException("Index: " + index + ", max: " + max);
+	}
+    }
+
+    private static int height(Node<?> node) {
+	return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node) {
+	return node == null ? 0 : node.size;
+    }
+
+    private static <T> Node<T> rotateLeft(Node<T> node) {
+	Node<T> right = node.right;
+	return new Node<T>(new Node<T>(node.left, node.value, right.left), right.value, right.right);
+    }
+
+    private static <T> Node<T> rotateRight(Node<T> node) {
+	Node<T> left = node.left;
+	return new Node<T>(left.left, left.value, new Node<T>(left.right, node.value, node.right));
+    }
+
+    /**
+     * Creates a balanced tree having the elements of {@code left}, then
+     * {@code value}, then the elements of {@code right}.
+     */
+    private static <T> Node<T> join(Node<T> left, T value, Node<T> right) {
+	if (height(left) > height(right) + 1) {
+	    return joinRight(left, value, right);
+	}
+	if (height(right) > height(left) + 1) {
+	    return joinLeft(left, value, right);
+	}
+	return new Node<T>(left, value, right);
+    }
+
+    /**
+     * Joins a tree higher than {@code left} on the right spine of {@code left}.
+     */
+    private static <T> Node<T> joinRight(Node<T> left, T value, Node<T> right) {
+	Node<T> joined;
+	if (height(left.right) <= height(right) + 1) {
+	    joined = new Node<T>(left.right, value, right);
+	    if (height(joined) > height(left.left) + 1) {
+		joined = rotateRight(joined);
+	    }
+	} else {
+	    joined = joinRight(left.right, value, right);
+	}
+
+	Node<T> node = new Node<T>(left.left, left.value, joined);
+	return height(joined) > height(left.left) + 1 ? rotateLeft(node) : node;
+    }
+
+    /**
+     * Joins a tree higher than {@code right} on the left spine of {@code right}.
+     */
+    private static <T> Node<T> joinLeft(Node<T> left, T value, Node<T> right) {
+	Node<T> joined;
+	if (height(right.left) <= height(left) + 1) {
+	    joined = new Node<T>(left, value, right.left);
+	    if (height(joined) > height(right.right) + 1) {
+		joined = rotateLeft(joined);
+	    }
+	} else {
+	    joined = joinLeft(left, value, right.left);
+	}
+
+	Node<T> node = new Node<T>(joined, right.value, right.right);
+	return height(joined) > height(right.right) + 1 ? rotateRight(node) : node;
+    }
+
+    /**
+     * Creates a balanced tree having the elements of {@code left} followed by the
+     * elements of {@code right}.
+     */
+    private static <T> Node<T> concat(Node<T> left, Node<T> right) {
+	if (left == null) {
+	    return right;
+	}
+	if (right == null) {
+	    return left;
+	}
+
+	Node<T> first = right;
+	while (first.left != null) {
+	    first = first.left;
+	}
+	return join(left, first.value, removeFirst(right));
+    }
+
+    /**
+     * Creates a balanced tree without the first element of the given non-empty
+     * tree.
+     */
+    private static <T> Node<T> removeFirst(Node<T> node) {
+	if (node.left == null) {
+	    return node.right;
+	}
+	return join(removeFirst(node.left), node.value, node.right);
+    }
+
+    /**
+     * Creates a balanced tree with the first {@code n} elements of the given one.
+     */
+    private static <T> Node<T> splitLeft(Node<T> node, int n) {
+	if (node == null || n == 0) {
+	    return null;
+	}
+
+	int leftSize = size(node.left);
+	if (n <= leftSize) {
+	    return splitLeft(node.left, n);
+	}
+	return join(node.left, node.value, splitLeft(node.right, n - leftSize - 1));
+    }
+
+    /**
+     * Creates a balanced tree without the first {@code n} elements of the given
+     * one.
+     */
+    private static <T> Node<T> splitRight(Node<T> node, int n) {
+	if (node == null || n == size(node)) {
+	    return null;
+	}
+
+	int leftSize = size(node.left);
+	if (n <= leftSize) {
+	    return join(splitRight(node.left, n), node.value, node.right);
+	}
+	return splitRight(node.right, n - leftSize - 1);
+    }
+
+    /**
+     * Creates a balanced tree with the given elements, in linear time.
+     */
+    private static <T> Node<T> build(List<T> elements, int from, int to) {
+	if (from == to) {
+	    return null;
+	}
+
+	int middle = (from + to) >>> 1;
+	return new Node<T>(build(elements, from, middle), elements.get(middle), build(elements, middle + 1, to));
+    }
+
+    /**
+     * Adds the first {@code count} elements of the given tree, in order, to the
+     * target collection.
+     *
+     * @return the number of elements still to be added.
+     */
+    private int addTo(Node<T> node, Collection<? super T> target, int count) {
+	if (node == null || count == 0) {
+	    return count;
+	}
+
+	int remaining = addTo(node.left, target, count);
+	if (remaining == 0) {
+	    return 0;
+	}
+	target.add(DeepCopy.deepCopy(node.value));
+	return addTo(node.right, target, remaining - 1);
+    }
+
+    @Override
+    public String toString() {
+	List<T> elements = new ArrayList<T>(size());
+	addTo(this.root, elements, size());
+	return "IndexedImmutableQueue(elements=" + elements + ")";
+    }
+}
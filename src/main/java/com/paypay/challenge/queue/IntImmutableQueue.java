@@ -0,0 +1,92 @@
+package com.paypay.challenge.queue;
+
+import java.util.Arrays;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an immutable queue of {@code int} values, with the same semantics as
+ * {@link Queue} but without boxing. The values are stored in chunks of
+ * {@code int} arrays, as described in {@link AbstractChunkedQueue}, and the
+ * queue takes little more than four bytes per value.
+ *
+ * @author hoang.tran
+ * @see com.paypay.challenge.queue.LongImmutableQueue
+ */
+public final class IntImmutableQueue extends AbstractPrimitiveQueue<int[], IntImmutableQueue> {
+    /** Creates an empty immutable queue. */
+    public IntImmutableQueue() {
+	this(ChunkSequence.<Chunk<int[]>>empty(), 0, null, 0, 0);
+    }
+
+    private IntImmutableQueue(ChunkSequence<Chunk<int[]>> chunks, int headIndex, Chunk<int[]> tail,
+	    int tailCount, int size) {
+	super(chunks, headIndex, tail, tailCount, size);
+    }
+
+    /**
+     * Adds the value at the end of the queue.
+     *
+     * @param value
+     *            the value to be put into the queue.
+     * @return a new queue containing the values of this queue and the new value.
+     * @throws ImmutableQueueException
+     *             if the queue already contains {@link Queue#MAX_ELEMENTS}
+     *             values.
+     */
+    public IntImmutableQueue enQueue(int value) {
+	return enQueueValue(value);
+    }
+
+    /**
+     * Adds all the given values, in order, at the end of the queue. The values are
+     * copied into the chunks by whole runs and only the final queue is created.
+     *
+     * @param values
+     *            the values to be put into the queue.
+     * @return a new queue containing the values of this queue followed by the new
+     *         values, or this queue if there are none.
+     * @throws ImmutableQueueException
+     *             if the number of values would exceed {@link Queue#MAX_ELEMENTS}.
+     */
+    public IntImmutableQueue enQueueAll(int... values) {
+	return enQueueValues(values, values.length);
+    }
+
+    /**
+     * Gets the value at the beginning of the queue.
+     *
+     * @return the first value of the queue.
+     * @throws ImmutableQueueException
+     *             if the queue is empty, as there is no {@code null} to return.
+     */
+    public int head() {
+	return (int) headValue();
+    }
+
+    @Override
+    int[] newArray(int length) {
+	return new int[length];
+    }
+
+    @Override
+    IntImmutableQueue create(ChunkSequence<Chunk<int[]>> chunks, int headIndex, Chunk<int[]> tail, int tailCount,
+	    int size) {
+	return new IntImmutableQueue(chunks, headIndex, tail, tailCount, size);
+    }
+
+    @Override
+    void store(int[] values, int index, long value) {
+	values[index] = (int) value;
+    }
+
+    @Override
+    long load(int[] values, int index) {
+	return values[index];
+    }
+
+    @Override
+    public String toString() {
+	return "IntImmutableQueue(elements=" + Arrays.toString(toArray()) + ")";
+    }
+}
@@ -0,0 +1,195 @@
+package com.paypay.challenge.queue;
+
+import java.util.function.Supplier;
+
+/**
+ * Defines a persistent list whose cells may be suspended computations. A
+ * suspended cell is evaluated the first time its value or its rest is asked for,
+ * and the result is memoized so that every later access (from any version of a
+ * queue sharing the cell) costs constant time. Memoization is what lets the lazy
+ * queues keep their complexity bounds even when old versions are reused.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of the values kept in the list.
+ */
+final class LazyList<T> {
+    /** The shared instance representing the empty list. */
+    private static final LazyList<Object> EMPTY = new LazyList<Object>(null, null);
+
+    /** The computation producing this cell; dropped once it has been run. */
+    private Supplier<LazyList<T>> suspension;
+
+    /** The value of this cell, valid once the cell is evaluated. */
+    private T value;
+
+    /**
+     * The rest of the list after this cell, valid once the cell is evaluated. It is
+     * {@code null} only for the empty list.
+     */
+    private LazyList<T> rest;
+
+    /**
+     * Whether this cell has been evaluated. Written last, so that a reader seeing
+     * {@code true} also sees {@link #value} and {@link #rest}.
+     */
+    private volatile boolean evaluated;
+
+    private LazyList(T value, LazyList<T> rest) {
+	this.value = value;
+	this.rest = rest;
+	this.evaluated = true;
+    }
+
+    private LazyList(Supplier<LazyList<T>> suspension) {
+	this.suspension = suspension;
+    }
+
+    /**
+     * Gets the empty list.
+     *
+     * @return the shared empty list.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> LazyList<T> empty() {
+	return (LazyList<T>) EMPTY;
+    }
+
+    /**
+     * Creates an already evaluated cell.
+     *
+     * @param value
+     *            the value of the cell.
+     * @param rest
+     *            the rest of the list after the cell.
+     * @return a new list starting with the given value.
+     */
+    static <T> LazyList<T> cons(T value, LazyList<T> rest) {
+	return new LazyList<T>(value, rest);
+    }
+
+    /**
+     * Creates a cell whose contents are computed by the given suspension the first
+     * time they are needed.
+     *
+     * @param suspension
+     *            the computation producing the list.
+     * @return a new suspended list.
+     */
+    static <T> LazyList<T> suspend(Supplier<LazyList<T>> suspension) {
+	return new LazyList<T>(suspension);
+    }
+
+    /**
+     * Creates a suspended list having the values of the given one in reverse
+     * order. The reversal is monolithic: it runs completely the first time the
+     * result is forced.
+     *
+     * @param list
+     *            the list to be reversed.
+     * @return a suspended reversal of the given list.
+     */
+    static <T> LazyList<T> reverse(PersistentList<T> list) {
+	return suspend(() -> {
+	    LazyList<T> reversed = empty();
+	    for (PersistentList<T> l = list; !l.isEmpty(); l = l.next()) {
+		reversed = cons(l.value(), reversed);
+	    }
+	    return reversed;
+	});
+    }
+
+    /**
+     * Creates a suspended list having the values of {@code front} followed by the
+     * values of {@code back}. The concatenation is incremental: forcing one cell of
+     * the result forces at most one cell of {@code front}.
+     *
+     * @param front
+     *            the list whose values come first.
+     * @param back
+     *            the list whose values come after the ones of {@code front}.
+     * @return a suspended concatenation of the two lists.
+     */
+    static <T> LazyList<T> concat(LazyList<T> front, LazyList<T> back) {
+	return suspend(() -> front.isEmpty() ? back : cons(front.head(), concat(front.tail(), back)));
+    }
+
+    /**
+     * Puts a new evaluated cell right after this one, in place. This is only
+     * allowed on the last cell of a list being built by a transient builder, before
+     * the list is shared with anyone: once published, lists never change.
+     *
+     * @param value
+     *            the value of the new cell.
+     * @return the new last cell of the list.
+     */
+    LazyList<T> append(T value) {
+	LazyList<T> cell = cons(value, empty());
+	this.rest = cell;
+	return cell;
+    }
+
+    /**
+     * Checks if the list does not contain any values, evaluating its first cell if
+     * needed.
+     *
+     * @return {@code true} if this list is empty; {@code false} otherwise.
+     */
+    boolean isEmpty() {
+	force();
+	return this.rest == null;
+    }
+
+    /**
+     * Gets the value of the first cell, evaluating it if needed.
+     *
+     * @return the first value of the list.
+     */
+    T head() {
+	force();
+	return this.value;
+    }
+
+    /**
+     * Gets the rest of the list after the first cell, evaluating it if needed.
+     *
+     * @return the list without its first value.
+     */
+    LazyList<T> tail() {
+	force();
+	return this.rest;
+    }
+
+    /**
+     * Checks if the first cell of the list is already evaluated, without
+     * evaluating it.
+     *
+     * @return {@code true} if the first cell is evaluated; {@code false}
+     *         otherwise.
+     */
+    boolean isEvaluated() {
+	return this.evaluated;
+    }
+
+    /**
+     * Evaluates this cell, if it has not been evaluated yet, and memoizes the
+     * result.
+     */
+    private void force() {
+	if (this.evaluated) {
+	    return;
+	}
+
+	synchronized (this) {
+	    if (!this.evaluated) {
+		LazyList<T> result = this.suspension.get();
+		result.force();
+		this.value = result.value;
+		this.rest = result.rest;
+		this.suspension = null;
+		this.evaluated = true;
+	    }
+	}
+    }
+}
\ No newline at end of file
@@ -0,0 +1,368 @@
+package com.paypay.challenge.queue;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.paypay.challenge.clone.DeepCopy;
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines a lazy view of another queue, transformed by {@link #map(Function)},
+ * {@link #filter(Predicate)} and {@link #take(int)}. The view is itself an
+ * immutable queue, whose elements are computed from the elements of the
+ * underlying queue only when they are reached:
+ * <ul>
+ * <li>the transforms chained on a view, before anything is dequeued from it
+ * or computed, are fused into one function, applied in one pass over the
+ * underlying queue; the transforms chained afterwards read the memoized
+ * elements instead of computing them again,</li>
+ * <li>the elements are computed one at a time, when {@link #head()} (or
+ * {@link #isEmpty()}, or an iterator) reaches them, in a {@link LazyList} whose
+ * cells are memoized, so the versions of the view share the computed elements
+ * and each element is computed once,</li>
+ * <li>and the elements that are never reached are never read from the
+ * underlying queue, so taking the first elements of a large backlog only costs
+ * the elements taken.</li>
+ * </ul>
+ * The view reads the underlying version through its iterator, so the elements
+ * are handed to the functions as that queue hands them out. The computed
+ * elements are then handed out as by the other queues: the memoized instances
+ * are handed out as they are only when they are immutable, and copied
+ * otherwise. The functions must not have side effects,
+ * and may be called by any thread reading the view.
+ * <p>
+ * The size of a view is known in constant time unless it is filtered; it is
+ * then computed, and memoized, the first time it is asked for, which computes
+ * all the elements. Streams of a filtered view do not ask for it, and compute
+ * only the elements they reach. Elements enqueued on a view are appended, without any
+ * transform, to a {@link BankersImmutableQueue} following the computed ones.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements of the view.
+ */
+public final class LazyQueue<T> implements Queue<T> {
+    /** The result of the fused function for an element filtered out. */
+    private static final Object SKIP = new Object();
+
+    /**
+     * The fused transforms of the view, as long as nothing was dequeued from nor
+     * enqueued on it; {@code null} afterwards.
+     */
+    private final Pipeline<?> pipeline;
+
+    /** The elements computed from the underlying queue, not dequeued yet. */
+    private final LazyList<T> cells;
+
+    /** The number of cells, or {@code -1} until it is known. */
+    private volatile int cellCount;
+
+    /** The elements enqueued on the view, after the computed ones. */
+    private final Queue<T> back;
+
+    /**
+     * Defines the fused transforms of a view: the underlying queue, the function
+     * computing each element of the view from an element of the underlying queue
+     * (or {@link LazyQueue#SKIP}), and the maximum number of elements.
+     */
+    private static final class Pipeline<S> {
+	/** The underlying queue. */
+	private final Queue<S> source;
+
+	/** The fused function, giving {@link LazyQueue#SKIP} for filtered elements. */
+	private final Function<? super S, ?> function;
+
+	/** Whether the function filters elements out. */
+	private final boolean filtering;
+
+	/** The maximum number of elements of the view. */
+	private final int limit;
+
+	private Pipeline(Queue<S> source, Function<? super S, ?> function, boolean filtering, int limit) {
+	    this.source = source;
+	    this.function = function;
+	    this.filtering = filtering;
+	    this.limit = limit;
+	}
+
+	/**
+	 * Creates the same pipeline with the given function applied to its results.
+	 */
+	private Pipeline<S> andThen(Function<Object, ?> next, boolean filtering) {
+	    Function<? super S, ?> function = this.function;
+	    return new Pipeline<S>(this.source, s -> {
+		Object value = function.apply(s);
+		return value == SKIP ? SKIP : next.apply(value);
+	    }, this.filtering || filtering, this.limit);
+	}
+
+	/**
+	 * Computes the size of the view in constant time, if it is not filtered and
+	 * the size of the underlying queue is known.
+	 */
+	private int size() {
+	    if (this.filtering || this.source instanceof LazyQueue && ((LazyQueue<?>) this.source).cellCount < 0) {
+		return -1;
+	    }
+	    return Math.min(this.limit, this.source.size());
+	}
+
+	/**
+	 * Creates the suspended list of the elements of the view.
+	 */
+	private <T> LazyList<T> cells() {
+	    return cells(this.source.iterator(), this.function, this.limit);
+	}
+
+	/**
+	 * Creates the suspended list of at most {@code remaining} elements computed
+	 * from the rest of the given iterator. The cells are forced in order, and the
+	 * suspension of the next cell is created by the previous one, so the iterator
+	 * is only advanced by one thread at a time.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <S, T> LazyList<T> cells(Iterator<S> iterator, Function<? super S, ?> function, int remaining) {
+	    return LazyList.suspend(() -> {
+		if (remaining > 0) {
+		    // Filtered elements are skipped in a loop, not by nested suspensions
+		    while (iterator.hasNext()) {
+			Object value = function.apply(iterator.next());
+			if (value != SKIP) {
+			    return LazyList.cons((T) value, cells(iterator, function, remaining - 1));
+			}
+		    }
+		}
+		return LazyList.empty();
+	    });
+	}
+    }
+
+    private LazyQueue(Pipeline<?> pipeline) {
+	this(pipeline, pipeline.cells(), pipeline.size(), new BankersImmutableQueue<T>());
+    }
+
+    private LazyQueue(Pipeline<?> pipeline, LazyList<T> cells, int cellCount, Queue<T> back) {
+	this.pipeline = pipeline;
+	this.cells = cells;
+	this.cellCount = cellCount;
+	this.back = back;
+    }
+
+    /**
+     * Creates a view of the given queue, with the same elements until it is
+     * transformed, handing out a new copy of its elements on every read. Nothing
+     * is read from the queue until the view is.
+     *
+     * @param source
+     *            the underlying queue.
+     * @return a lazy view of the queue.
+     */
+    public static <T> LazyQueue<T> of(Queue<T> source) {
+	if (source instanceof LazyQueue) {
+	    return (LazyQueue<T>) source;
+	}
+
+	if (source == null) {
+	    throw new IllegalArgumentException("Source queue must not be null");
+	}
+
+	return new LazyQueue<T>(new Pipeline<T>(source, Function.identity(), false, Integer.MAX_VALUE));
+    }
+
+    /**
+     * {@inheritDoc} The function is fused with the transforms of this view, if
+     * nothing was dequeued from, enqueued on nor computed by it.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R> LazyQueue<R> map(Function<? super T, ? extends R> function) {
+	if (function == null) {
+	    throw new IllegalArgumentException("Function must not be null");
+	}
+
+	return new LazyQueue<R>(pipeline().andThen(value -> function.apply((T) value), false));
+    }
+
+    /**
+     * {@inheritDoc} The predicate is fused with the transforms of this view, if
+     * nothing was dequeued from, enqueued on nor computed by it, and if it was
+     * not limited by {@link #take(int)}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public LazyQueue<T> filter(Predicate<? super T> predicate) {
+	if (predicate == null) {
+	    throw new IllegalArgumentException("Predicate must not be null");
+	}
+
+	Pipeline<?> pipeline = pipeline();
+	if (pipeline.limit != Integer.MAX_VALUE) {
+	    // The limit applies before the filter, so it cannot be fused
+	    pipeline = new Pipeline<T>(this, Function.identity(), false, Integer.MAX_VALUE);
+	}
+	return new LazyQueue<T>(pipeline.andThen(value -> predicate.test((T) value) ? value : SKIP, true));
+    }
+
+    /**
+     * {@inheritDoc} The limit is fused with the transforms of this view, if
+     * nothing was dequeued from, enqueued on nor computed by it.
+     */
+    @Override
+    public LazyQueue<T> take(int n) {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+
+	Pipeline<?> pipeline = pipeline();
+	return new LazyQueue<T>(newPipeline(pipeline, Math.min(n, pipeline.limit)));
+    }
+
+    /**
+     * {@inheritDoc} The element is deep copied, and appended after the elements
+     * computed by the view.
+     */
+    public Queue<T> enQueue(T t) {
+	return new LazyQueue<T>(null, this.cells, this.cellCount, this.back.enQueue(t));
+    }
+
+    /**
+     * {@inheritDoc} The elements are deep copied, and appended after the elements
+     * computed by the view.
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	Queue<T> back = this.back.enQueueAll(elements);
+	return back == this.back ? this : new LazyQueue<T>(null, this.cells, this.cellCount, back);
+    }
+
+    /**
+     * {@inheritDoc} The element is computed, if it was not yet, to know whether
+     * there is one. Once the computed elements are all dequeued, the result is the
+     * queue of the enqueued ones.
+     *
+     * @throws ImmutableQueueException
+     *             if the dequeue is operated on an empty queue.
+     */
+    public Queue<T> deQueue() throws ImmutableQueueException {
+	if (this.cells.isEmpty()) {
+	    if (this.back.isEmpty()) {
+		throw new ImmutableQueueException("Immutable queue underflow");
+	    }
+	    return this.back.deQueue();
+	}
+
+	int cellCount = this.cellCount;
+	return new LazyQueue<T>(null, this.cells.tail(), cellCount < 0 ? -1 : cellCount - 1, this.back);
+    }
+
+    /**
+     * {@inheritDoc} The first element is computed, if it was not yet, and
+     * memoized.
+     */
+    public T head() {
+	return this.cells.isEmpty() ? this.back.head() : DeepCopy.deepCopy(this.cells.head());
+    }
+
+    /**
+     * {@inheritDoc} The first element is computed, if it was not yet, and
+     * memoized.
+     */
+    public boolean isEmpty() {
+	return this.cells.isEmpty() && this.back.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc} For a filtered view, all the elements are computed the first
+     * time, and the size is memoized.
+     */
+    public int size() {
+	int cellCount = this.cellCount;
+	if (cellCount < 0) {
+	    cellCount = 0;
+	    for (LazyList<T> l = this.cells; !l.isEmpty(); l = l.tail()) {
+		cellCount++;
+	    }
+	    this.cellCount = cellCount;
+	}
+	return cellCount + this.back.size();
+    }
+
+    /**
+     * {@inheritDoc} The spliterator of a filtered view whose size is not known
+     * yet is not sized, so that the elements are only computed as they are
+     * reached, as by {@link #iterator()}.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+	if (this.cellCount < 0) {
+	    return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.IMMUTABLE);
+	}
+	return Queue.super.spliterator();
+    }
+
+    /**
+     * {@inheritDoc} The elements are computed, if they were not yet, as the
+     * iterator reaches them.
+     */
+    public Iterator<T> iterator() {
+	return new Iterator<T>() {
+	    private LazyList<T> cells = LazyQueue.this.cells;
+	    private Iterator<T> back;
+
+	    @Override
+	    public boolean hasNext() {
+		return this.back == null ? !this.cells.isEmpty() || !LazyQueue.this.back.isEmpty()
+			: this.back.hasNext();
+	    }
+
+	    @Override
+	    public T next() {
+		if (this.back == null && !this.cells.isEmpty()) {
+		    T value = this.cells.head();
+		    this.cells = this.cells.tail();
+		    return DeepCopy.deepCopy(value);
+		}
+		if (this.back == null) {
+		    this.back = LazyQueue.this.back.iterator();
+		}
+		if (!this.back.hasNext()) {
+		    throw new NoSuchElementException();
+		}
+		return this.back.next();
+	    }
+	};
+    }
+
+    /**
+     * Gets the pipeline the transforms of this view can be fused with: its own,
+     * or a new one reading this view if its elements were changed, or if some
+     * of them were already computed, so that they are not computed again.
+     */
+    private Pipeline<?> pipeline() {
+	if (this.pipeline != null && !this.cells.isEvaluated()) {
+	    return this.pipeline;
+	}
+
+	return new Pipeline<T>(this, Function.identity(), false, Integer.MAX_VALUE);
+    }
+
+    private static <S> Pipeline<S> newPipeline(Pipeline<S> pipeline, int limit) {
+	return new Pipeline<S>(pipeline.source, pipeline.function, pipeline.filtering, limit);
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder("LazyQueue(elements=[");
+	String separator = "";
+	for (T t : this) {
+	    builder.append(separator).append(t);
+	    separator = ", ";
+	}
+
+	return builder.append("])").toString();
+    }
+}
@@ -0,0 +1,417 @@
+package com.paypay.challenge.queue;
+
+import java.io.Closeable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an append-only log of byte records stored outside of the Java heap,
+ * in direct {@link ByteBuffer} chunks of a fixed size, used by
+ * {@link OffHeapImmutableQueue}. As in {@link SegmentedLog}, a record is
+ * addressed by its <em>position</em>, its offset from the beginning of the
+ * first chunk ever allocated, and is made of its length followed by its bytes;
+ * a record never spans two chunks. So the next record of a queue is found from
+ * the offsets alone, without any object on the heap.
+ * <p>
+ * The chunks are reference counted by the versions of the queues reading them:
+ * every version whose head is in a chunk holds the {@link Handle} of that
+ * chunk, shared by all of them, which counts them. A chunk is kept as long as
+ * its handle is held:
+ * <ul>
+ * <li>a version given back with {@link #release(Handle)} stops holding it at
+ * once, so the chunks of a queue whose versions are all released are recycled
+ * by the next append, whatever the garbage collector does,</li>
+ * <li>the arena only keeps a weak reference to each handle, so the versions
+ * that are never released stop holding it once the garbage collector clears
+ * the handle. Under low garbage collection pressure, this can take a long time,
+ * during which the chunks are not recycled.</li>
+ * </ul>
+ * The oldest chunk no version holds anymore is recycled, with the chunks after
+ * it up to the next held one, into a pool of free chunks reused by the next
+ * appends. Since recycling is only driven by the handles, the readers of a
+ * version keep its handle reachable until their read is done, with
+ * {@link #reachabilityFence(Object)}.
+ * <p>
+ * Records are written holding the lock of the arena; they are read without any
+ * lock, as the bytes of a record never change once written.
+ *
+ * @author hoang.tran
+ */
+final class OffHeapArena implements Closeable {
+    /** The number of bytes of the length of a record. */
+    static final int HEADER_SIZE = 4;
+
+    /** The length marking the unused rest of a chunk. */
+    private static final int END_OF_CHUNK = -1;
+
+    /** The maximum number of free chunks kept for reuse. */
+    private static final int MAX_POOLED_CHUNKS = 8;
+
+    /** The number of bytes of each chunk. */
+    private final int chunkSize;
+
+    /** The chunks in use, by index. */
+    private final Map<Long, ByteBuffer> chunks = new ConcurrentHashMap<Long, ByteBuffer>();
+
+    /** The free chunks, reused before allocating new ones. */
+    private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<ByteBuffer>();
+
+    /** The position after the last record. */
+    private long end;
+
+    /** The index of the first chunk not recycled yet. */
+    private long firstChunk;
+
+    /** The handles of the chunks holding the head of a live version. */
+    private final TreeMap<Long, HandleReference> handles = new TreeMap<Long, HandleReference>();
+
+    /** The references to the handles collected by the garbage collector. */
+    private final ReferenceQueue<Handle> collected = new ReferenceQueue<Handle>();
+
+    /** The number of chunks allocated and not dropped. */
+    private int allocatedChunks;
+
+    /** Whether the arena is closed. */
+    private volatile boolean closed;
+
+    /**
+     * Defines the token held by the versions whose head is in one chunk. The
+     * chunk is kept as long as its handle is reachable.
+     */
+    static final class Handle {
+	/** The index of the chunk. */
+	private final long chunk;
+
+	/** The number of versions holding the handle, guarded by the arena. */
+	private int holders;
+
+	private Handle(long chunk) {
+	    this.chunk = chunk;
+	}
+
+	@Override
+	public String toString() {
+	    return "Handle(chunk=" + this.chunk + ")";
+	}
+    }
+
+    /**
+     * Defines the weak reference to the handle of a chunk, with its index.
+     */
+    private static final class HandleReference extends WeakReference<Handle> {
+	/** The index of the chunk. */
+	private final long chunk;
+
+	private HandleReference(Handle handle, ReferenceQueue<Handle> collected) {
+	    super(handle, collected);
+	    this.chunk = handle.chunk;
+	}
+    }
+
+    /**
+     * Creates an empty arena.
+     *
+     * @param chunkSize
+     *            the number of bytes of each chunk.
+     */
+    OffHeapArena(int chunkSize) {
+	if (chunkSize <= HEADER_SIZE) {
+	    throw new IllegalArgumentException("Chunk size must be greater than " + HEADER_SIZE + ": " + chunkSize);
+	}
+	this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Gets the position after the last record, where the next record is appended.
+     *
+     * @return the end of the arena.
+     */
+    synchronized long end() {
+	return this.end;
+    }
+
+    /**
+     * Appends the given record at the end of the arena.
+     *
+     * @param record
+     *            the bytes of the record.
+     * @return the new end of the arena, after the record.
+     * @throws ImmutableQueueException
+     *             if the record does not fit in a chunk, or if the arena is
+     *             closed.
+     */
+    synchronized long append(byte[] record) {
+	checkOpen();
+	if (record.length > this.chunkSize - HEADER_SIZE) {
+	    throw new ImmutableQueueException(
+		    "Record of " + record.length + " bytes does not fit in chunks of " + this.chunkSize + " bytes");
+	}
+
+	long position = this.end;
+	int offset = offset(position);
+	if (offset == 0 || this.chunkSize - offset < HEADER_SIZE + record.length) {
+	    if (offset != 0) {
+		if (this.chunkSize - offset >= HEADER_SIZE) {
+		    chunk(chunkIndex(position)).putInt(offset, END_OF_CHUNK);
+		}
+		position += this.chunkSize - offset;
+		offset = 0;
+	    }
+	    recycle();
+	    this.chunks.put(chunkIndex(position), newChunk());
+	}
+
+	ByteBuffer buffer = chunk(chunkIndex(position)).duplicate();
+	buffer.position(offset);
+	buffer.putInt(record.length).put(record);
+	this.end = position + HEADER_SIZE + record.length;
+	return this.end;
+    }
+
+    /**
+     * Copies the given number of records, starting at the given position, to the
+     * end of the arena.
+     *
+     * @param from
+     *            the position of the first record to be copied.
+     * @param count
+     *            the number of records to be copied.
+     * @return the position of the first copy, or the end of the arena if no
+     *         record is copied.
+     */
+    synchronized long copy(long from, int count) {
+	long head = this.end;
+	long position = from;
+	for (int i = 0; i < count; i++) {
+	    long record = first(position);
+	    long end = append(read(record));
+	    if (i == 0) {
+		head = end - HEADER_SIZE - length(record);
+	    }
+	    position = record + HEADER_SIZE + length(record);
+	}
+
+	return head;
+    }
+
+    /**
+     * Reads the record at the given position.
+     *
+     * @param position
+     *            the position of the record, or of the unused rest of the chunk
+     *            before it.
+     * @return the bytes of the record.
+     * @throws ImmutableQueueException
+     *             if the arena is closed.
+     */
+    byte[] read(long position) {
+	long record = first(position);
+	ByteBuffer buffer = chunk(chunkIndex(record)).duplicate();
+	buffer.position(offset(record) + HEADER_SIZE);
+	byte[] bytes = new byte[length(record)];
+	buffer.get(bytes);
+	return bytes;
+    }
+
+    /**
+     * Gets the position after the record at the given position.
+     *
+     * @param position
+     *            the position of the record, or of the unused rest of the chunk
+     *            before it.
+     * @return the position after the record.
+     */
+    long next(long position) {
+	long record = first(position);
+	return record + HEADER_SIZE + length(record);
+    }
+
+    /**
+     * Gets the handle of the chunk of the given position, to be held by a version
+     * whose head is at that position.
+     *
+     * @param head
+     *            the position of the head of the version.
+     * @return the handle of its chunk, shared by all the versions whose head is
+     *         in that chunk, counting the new version.
+     */
+    synchronized Handle handle(long head) {
+	expunge();
+	long chunk = chunkIndex(head);
+	HandleReference reference = this.handles.get(chunk);
+	Handle handle = reference == null ? null : reference.get();
+	if (handle == null || handle.holders == 0) {
+	    handle = new Handle(chunk);
+	    this.handles.put(chunk, new HandleReference(handle, this.collected));
+	}
+	handle.holders++;
+	return handle;
+    }
+
+    /**
+     * Gives back the handle held by a version that is not read anymore. Once no
+     * version holds it, its chunk can be recycled, even if the handle is still
+     * reachable.
+     *
+     * @param handle
+     *            the handle of the released version.
+     */
+    synchronized void release(Handle handle) {
+	if (--handle.holders == 0) {
+	    HandleReference reference = this.handles.get(handle.chunk);
+	    if (reference != null && reference.get() == handle) {
+		this.handles.remove(handle.chunk);
+	    }
+	}
+    }
+
+    /**
+     * Keeps the given handle reachable until this call, so that the chunks a
+     * version reads are not recycled while it reads them, even once the version
+     * is otherwise unreachable. Equivalent to {@code Reference.reachabilityFence}
+     * of Java 9, for Java 8: the handle is locked, which the compiler cannot elide
+     * as the handle is shared.
+     *
+     * @param handle
+     *            the handle of the version being read, or {@code null}.
+     */
+    static void reachabilityFence(Object handle) {
+	if (handle != null) {
+	    synchronized (handle) {
+		// Nothing to do; locking the handle is enough
+	    }
+	}
+    }
+
+    /**
+     * Recycles the chunks before the head of the oldest live version, and before
+     * the chunk of the end of the arena.
+     *
+     * @return the number of recycled chunks.
+     */
+    synchronized int recycle() {
+	expunge();
+	long oldest = chunkIndex(this.end);
+	if (!this.handles.isEmpty()) {
+	    oldest = Math.min(oldest, this.handles.firstKey());
+	}
+
+	int recycled = 0;
+	for (; this.firstChunk < oldest; this.firstChunk++) {
+	    ByteBuffer chunk = this.chunks.remove(this.firstChunk);
+	    if (chunk != null) {
+		recycled++;
+		if (this.pool.size() < MAX_POOLED_CHUNKS) {
+		    this.pool.push(chunk);
+		} else {
+		    // Its memory is freed once the buffer is garbage collected
+		    this.allocatedChunks--;
+		}
+	    }
+	}
+	return recycled;
+    }
+
+    /**
+     * Gets the number of bytes of direct memory allocated by the arena, for its
+     * chunks in use and in its pool.
+     *
+     * @return the number of bytes.
+     */
+    synchronized long allocatedBytes() {
+	return (long) this.allocatedChunks * this.chunkSize;
+    }
+
+    /**
+     * Closes the arena. Its chunks are freed once they are garbage collected, and
+     * the versions reading the arena cannot be used anymore.
+     */
+    @Override
+    public synchronized void close() {
+	this.closed = true;
+	this.chunks.clear();
+	this.pool.clear();
+	this.handles.clear();
+	this.allocatedChunks = 0;
+    }
+
+    @Override
+    public String toString() {
+	return "OffHeapArena(chunkSize=" + this.chunkSize + ")";
+    }
+
+    /**
+     * Forgets the handles collected by the garbage collector.
+     */
+    private void expunge() {
+	for (Reference<?> reference; (reference = this.collected.poll()) != null;) {
+	    HandleReference handleReference = (HandleReference) reference;
+	    this.handles.remove(handleReference.chunk, handleReference);
+	}
+    }
+
+    /**
+     * Gets a free chunk from the pool, or allocates a new one.
+     */
+    private ByteBuffer newChunk() {
+	ByteBuffer chunk = this.pool.poll();
+	if (chunk == null) {
+	    chunk = ByteBuffer.allocateDirect(this.chunkSize);
+	    this.allocatedChunks++;
+	}
+	return chunk;
+    }
+
+    /**
+     * Gets the position of the record at the given position, skipping the unused
+     * rest of a chunk.
+     */
+    private long first(long position) {
+	int offset = offset(position);
+	if (this.chunkSize - offset < HEADER_SIZE || chunk(chunkIndex(position)).getInt(offset) == END_OF_CHUNK) {
+	    return position + this.chunkSize - offset;
+	}
+	return position;
+    }
+
+    /**
+     * Gets the length of the record at the given position.
+     */
+    private int length(long record) {
+	return chunk(chunkIndex(record)).getInt(offset(record));
+    }
+
+    private long chunkIndex(long position) {
+	return position / this.chunkSize;
+    }
+
+    private int offset(long position) {
+	return (int) (position % this.chunkSize);
+    }
+
+    /**
+     * Gets the chunk of the given index.
+     */
+    private ByteBuffer chunk(long index) {
+	ByteBuffer chunk = this.chunks.get(index);
+	if (chunk == null) {
+	    checkOpen();
+	    throw new IllegalStateException("Chunk " + index + " was recycled while still read");
+	}
+	return chunk;
+    }
+
+    private void checkOpen() {
+	if (this.closed) {
+	    throw new ImmutableQueueException("Arena is closed");
+	}
+    }
+}
@@ -0,0 +1,357 @@
+package com.paypay.challenge.queue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.paypay.challenge.codec.Codec;
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an immutable queue whose elements are stored outside of the Java
+ * heap, for queues of tens of millions of elements. Each element is encoded by
+ * a {@link Codec} into a record of an arena of direct memory chunks, and a
+ * version of the queue is only a pair of positions in the arena, as for
+ * {@link DurableImmutableQueue}: the position of its head, and the position
+ * after its last element (its <em>tail</em>). Hence:
+ * <ul>
+ * <li>the heap only holds the versions themselves, a few dozen bytes each,
+ * whatever the number of elements, so the garbage collector has nothing to
+ * trace or copy for the elements, however old they are,</li>
+ * <li>dequeue only moves the head to the next record,</li>
+ * <li>enqueue appends a record at the end of the arena, when the tail of the
+ * version is the end of the arena. Otherwise the records of the version are
+ * first copied to the end of the arena, which takes a time proportional to its
+ * size,</li>
+ * <li>the chunks before the head of the oldest live version are recycled for
+ * the next appends.</li>
+ * </ul>
+ * The data of an element is only decoded into an object on the heap when it is
+ * read, so, as with the other queues, every read gives a new object that the
+ * caller is free to change.
+ * <p>
+ * The chunks a version reads are kept until the version is {@link #release()
+ * released}, or garbage collected. Direct memory is not what the garbage
+ * collector watches, so a queue whose old versions are only dropped may keep
+ * its chunks for a long time when the heap is quiet; releasing each version
+ * once it is not read anymore, typically once the next one is derived from it,
+ * recycles its chunks at the next append.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to and removed from the
+ *            queue.
+ */
+public final class OffHeapImmutableQueue<T> implements Queue<T>, Closeable {
+    /** The default number of bytes of each chunk. */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /** The arena storing the elements, shared by all the versions. */
+    private final OffHeapArena arena;
+
+    /** The codec of the elements, shared by all the versions. */
+    private final Codec<T> codec;
+
+    /**
+     * The handle keeping the chunk of the head from being recycled, {@code null}
+     * for an empty queue, which reads no chunk.
+     */
+    private final OffHeapArena.Handle handle;
+
+    /** The position of the first element in the arena. */
+    private final long head;
+
+    /** The position after the last element in the arena. */
+    private final long tail;
+
+    /** The number of elements of the queue. */
+    private final int size;
+
+    /** Whether the version was released. */
+    private volatile boolean released;
+
+    /**
+     * Creates an empty queue, in a new arena of chunks of
+     * {@link #DEFAULT_CHUNK_SIZE} bytes.
+     *
+     * @param codec
+     *            the codec of the elements.
+     */
+    public OffHeapImmutableQueue(Codec<T> codec) {
+	this(codec, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates an empty queue, in a new arena of chunks of the given size.
+     *
+     * @param codec
+     *            the codec of the elements.
+     * @param chunkSize
+     *            the number of bytes of each chunk; an element must be encoded in
+     *            less bytes.
+     */
+    public OffHeapImmutableQueue(Codec<T> codec, int chunkSize) {
+	this(new OffHeapArena(chunkSize), codec, null, 0, 0, 0);
+    }
+
+    private OffHeapImmutableQueue(OffHeapArena arena, Codec<T> codec, OffHeapArena.Handle handle, long head,
+	    long tail, int size) {
+	this.arena = arena;
+	this.codec = codec;
+	this.handle = handle;
+	this.head = head;
+	this.tail = tail;
+	this.size = size;
+    }
+
+    /**
+     * {@inheritDoc} The element is encoded and appended to the arena.
+     *
+     * @throws ImmutableQueueException
+     *             if the queue already contains {@link Queue#MAX_ELEMENTS}
+     *             elements, or if the element cannot be encoded.
+     */
+    public Queue<T> enQueue(T t) {
+	return enQueueAll(Collections.singletonList(t));
+    }
+
+    /**
+     * {@inheritDoc} The records of the version are copied at most once for all
+     * the new elements.
+     *
+     * @throws ImmutableQueueException
+     *             if the number of elements would exceed
+     *             {@link Queue#MAX_ELEMENTS}, or if an element cannot be encoded.
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	checkNotReleased();
+	List<byte[]> records = new ArrayList<byte[]>();
+	int size = this.size;
+	for (T t : elements) {
+	    if (size++ == MAX_ELEMENTS) {
+		throw new ImmutableQueueException("Immutable queue overflow");
+	    }
+	    records.add(encode(t));
+	}
+	if (records.isEmpty()) {
+	    return this;
+	}
+
+	// The lock of the arena keeps other versions from appending in between
+	synchronized (this.arena) {
+	    boolean stale = this.arena.end() != this.tail;
+	    long head = stale ? this.arena.end() : this.head;
+	    // Taken before appending, so that the chunk of the new head is not recycled meanwhile
+	    OffHeapArena.Handle handle = this.arena.handle(head);
+	    if (stale) {
+		head = this.arena.copy(this.head, this.size);
+	    }
+	    long tail = this.tail;
+	    for (byte[] record : records) {
+		tail = this.arena.append(record);
+	    }
+	    // The records of this version may have been copied by the appends
+	    OffHeapArena.reachabilityFence(this.handle);
+
+	    return new OffHeapImmutableQueue<T>(this.arena, this.codec, handle, head, tail, size);
+	}
+    }
+
+    /**
+     * {@inheritDoc} Dequeue only moves the head to the next record.
+     *
+     * @throws ImmutableQueueException
+     *             if the dequeue is operated on an empty queue.
+     */
+    public Queue<T> deQueue() throws ImmutableQueueException {
+	return deQueue(1);
+    }
+
+    /**
+     * {@inheritDoc} The head is moved once for all the removed elements.
+     */
+    public Queue<T> deQueue(int n) throws ImmutableQueueException {
+	return drain(null, n, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	return drain(target, maxElements, false);
+    }
+
+    /**
+     * Removes {@code n} elements at the beginning of the queue, adding them to the
+     * given target if any.
+     */
+    private Queue<T> drain(Collection<? super T> target, int n, boolean exactly) {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+	if (exactly && this.size < n) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+	if (n == 0) {
+	    return this;
+	}
+	checkNotReleased();
+
+	int count = Math.min(n, this.size);
+	long head = this.head;
+	for (int i = 0; i < count; i++) {
+	    if (target != null) {
+		target.add(decode(this.arena.read(head)));
+	    }
+	    head = this.arena.next(head);
+	}
+
+	OffHeapArena.Handle handle = count == this.size ? null : this.arena.handle(head);
+	OffHeapArena.reachabilityFence(this.handle);
+	return new OffHeapImmutableQueue<T>(this.arena, this.codec, handle, head, this.tail, this.size - count);
+    }
+
+    /**
+     * {@inheritDoc} The data is decoded from the arena, so it is a new object at
+     * each call.
+     */
+    public T head() {
+	if (isEmpty()) {
+	    return null;
+	}
+	checkNotReleased();
+
+	byte[] record = this.arena.read(this.head);
+	OffHeapArena.reachabilityFence(this.handle);
+	return decode(record);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+	return this.size == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+	return this.size;
+    }
+
+    /**
+     * {@inheritDoc} The elements are decoded from the arena one by one.
+     */
+    public Iterator<T> iterator() {
+	checkNotReleased();
+	return new Iterator<T>() {
+	    // Keeps the chunks read by the iterator from being recycled
+	    private final OffHeapImmutableQueue<T> queue = OffHeapImmutableQueue.this;
+	    private long position = this.queue.head;
+	    private int remaining = this.queue.size;
+
+	    @Override
+	    public boolean hasNext() {
+		return this.remaining > 0;
+	    }
+
+	    @Override
+	    public T next() {
+		if (this.remaining == 0) {
+		    throw new NoSuchElementException();
+		}
+
+		byte[] record = this.queue.arena.read(this.position);
+		this.position = this.queue.arena.next(this.position);
+		this.remaining--;
+		OffHeapArena.reachabilityFence(this.queue.handle);
+		return this.queue.decode(record);
+	    }
+	};
+    }
+
+    /**
+     * Gets the number of bytes of direct memory allocated by the arena shared by
+     * all the versions of the queue.
+     *
+     * @return the number of bytes of the chunks in use and of the free chunks
+     *         kept for reuse.
+     */
+    public long allocatedBytes() {
+	return this.arena.allocatedBytes();
+    }
+
+    /**
+     * Releases this version: the chunks it reads can be recycled as soon as no
+     * other version reads them, without waiting for the garbage collector. The
+     * version cannot be read nor changed anymore; the versions derived from it
+     * are not affected. Releasing a version twice has no effect.
+     */
+    public void release() {
+	synchronized (this) {
+	    if (this.released) {
+		return;
+	    }
+	    this.released = true;
+	}
+	if (this.handle != null) {
+	    this.arena.release(this.handle);
+	}
+    }
+
+    /**
+     * Closes the arena shared by all the versions of the queue, which cannot be
+     * used anymore. Its memory is freed once its chunks are garbage collected.
+     */
+    @Override
+    public void close() {
+	this.arena.close();
+    }
+
+    private void checkNotReleased() {
+	if (this.released) {
+	    throw new ImmutableQueueException("Queue version was released");
+	}
+    }
+
+    private byte[] encode(T t) {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try (DataOutputStream out = new DataOutputStream(bytes)) {
+	    this.codec.encode(t, out);
+	} catch (IOException e) {
+	    throw new ImmutableQueueException("Cannot encode element: " + t, e);
+	}
+	return bytes.toByteArray();
+    }
+
+    private T decode(byte[] record) {
+	try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+	    return this.codec.decode(in);
+	} catch (IOException e) {
+	    throw new ImmutableQueueException("Cannot decode element", e);
+	}
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder("OffHeapImmutableQueue(elements=[");
+	String separator = "";
+	for (T t : this) {
+	    builder.append(separator).append(t);
+	    separator = ", ";
+	}
+
+	return builder.append("])").toString();
+    }
+}
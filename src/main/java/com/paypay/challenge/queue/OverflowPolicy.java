@@ -0,0 +1,32 @@
+package com.paypay.challenge.queue;
+
+/**
+ * Defines what a {@link BoundedImmutableQueue} does with new elements once it
+ * holds as many elements as its capacity.
+ * 
+ * @author hoang.tran
+ */
+public enum OverflowPolicy {
+    /**
+     * New elements are rejected: enqueuing on a full queue fails with an
+     * {@link com.paypay.challenge.exception.ImmutableQueueException}, and the
+     * queue is left as it is.
+     */
+    REJECT,
+
+    /**
+     * New elements are accepted and the oldest ones are evicted: enqueuing on a
+     * full queue removes as many elements at its head, in the same step, so the
+     * new version is still at capacity.
+     */
+    DROP_OLDEST,
+
+    /**
+     * New elements wait for room: a version cannot wait, so enqueuing on a full
+     * queue fails as with {@link #REJECT}, but
+     * {@link ConcurrentImmutableQueue#put(Object)} and
+     * {@link ConcurrentImmutableQueue#offer(Object, long, java.util.concurrent.TimeUnit)}
+     * block the producer until consumers have removed enough elements.
+     */
+    BLOCK
+}
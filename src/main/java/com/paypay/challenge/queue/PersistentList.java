@@ -0,0 +1,106 @@
+package com.paypay.challenge.queue;
+
+/**
+ * Defines a singly-linked persistent list used as a building block of the
+ * structurally-shared immutable queues. A list is either the empty list or a
+ * cell holding a value and a reference to the rest of the list. Cells are never
+ * changed once created, so any number of lists (and the queues built on top of
+ * them) can safely share the same tail.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of the values kept in the list.
+ */
+final class PersistentList<T> {
+    /** The shared instance representing the empty list. */
+    private static final PersistentList<Object> EMPTY = new PersistentList<Object>(null, null, 0);
+
+    /** The value kept in the first cell of the list. */
+    private final T value;
+
+    /** The rest of the list after the first cell. */
+    private final PersistentList<T> next;
+
+    /** The number of values in the list, cached to make it a constant lookup. */
+    private final int size;
+
+    private PersistentList(T value, PersistentList<T> next, int size) {
+	this.value = value;
+	this.next = next;
+	this.size = size;
+    }
+
+    /**
+     * Gets the empty list.
+     *
+     * @return the shared empty list.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> PersistentList<T> empty() {
+	return (PersistentList<T>) EMPTY;
+    }
+
+    /**
+     * Creates a new list having the given value in front of this list. This list
+     * is shared, not copied, by the new one.
+     *
+     * @param value
+     *            the value to be put in front of the list.
+     * @return a new list starting with the given value.
+     */
+    PersistentList<T> prepend(T value) {
+	return new PersistentList<T>(value, this, this.size + 1);
+    }
+
+    /**
+     * Gets the value kept in the first cell of the list.
+     *
+     * @return the first value of the list.
+     */
+    T value() {
+	return this.value;
+    }
+
+    /**
+     * Gets the rest of the list after the first cell.
+     *
+     * @return the list without its first value.
+     */
+    PersistentList<T> next() {
+	return this.next;
+    }
+
+    /**
+     * Gets the number of values in the list.
+     *
+     * @return the size of the list.
+     */
+    int size() {
+	return this.size;
+    }
+
+    /**
+     * Checks if the list does not contain any values.
+     *
+     * @return {@code true} if this list is empty; {@code false} otherwise.
+     */
+    boolean isEmpty() {
+	return this.size == 0;
+    }
+
+    /**
+     * Creates a new list having the values of this list in reverse order. This
+     * takes time proportional to the size of the list.
+     *
+     * @return the reversed list.
+     */
+    PersistentList<T> reverse() {
+	PersistentList<T> reversed = empty();
+	for (PersistentList<T> l = this; !l.isEmpty(); l = l.next) {
+	    reversed = reversed.prepend(l.value);
+	}
+
+	return reversed;
+    }
+}
\ No newline at end of file
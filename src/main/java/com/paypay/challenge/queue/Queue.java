@@ -1,15 +1,31 @@
 package com.paypay.challenge.queue;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
 /**
  * Interface defining APIs that will be implemented for immutable queues (a
  * First In First Out data structure).
+ * <p>
+ * A queue is also a read-only {@link Iterable} over its elements, from the head
+ * to the back, and can be streamed. Iterating never changes the queue, and the
+ * elements are handed out the same way as by {@link #head()}: immutable
+ * elements are streamed without copying them.
  * 
  * @author hoang.tran
  *
  * @param <T>
  *            type of the elements put into the queue.
  */
-public interface Queue<T> {
+public interface Queue<T> extends Iterable<T> {
     /** A constant defining the maximum number of elements a queue can contains. */
     public static final int MAX_ELEMENTS = Integer.MAX_VALUE;
 
@@ -42,4 +58,234 @@ public interface Queue<T> {
      * @return {@code true} if this queue is empty; {@code false} otherwise.
      */
     public boolean isEmpty();
+
+    /**
+     * Gets the number of elements in the queue, in constant time, except for the
+     * filtered views of {@link LazyQueue}, which compute all their elements the
+     * first time.
+     * 
+     * @return the size of the queue.
+     */
+    public int size();
+
+    /**
+     * Adds all the given elements, in iteration order, into the queue and returns
+     * that new queue. Implementations build the new queue in one pass, without
+     * creating an intermediate queue per element.
+     * 
+     * @param elements
+     *            the elements to be put into the queue.
+     * @return a new queue containing the newly added elements.
+     */
+    public default Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	Queue<T> queue = this;
+	for (T t : elements) {
+	    queue = queue.enQueue(t);
+	}
+
+	return queue;
+    }
+
+    /**
+     * Removes the given number of elements at the beginning of the queue, and
+     * returns a new queue. Implementations build the new queue in one pass,
+     * without creating an intermediate queue per element.
+     * 
+     * @param n
+     *            the number of elements to be removed.
+     * @return the new queue without the removed elements.
+     * @throws ImmutableQueueException
+     *             if the queue contains less than {@code n} elements.
+     * @throws IllegalArgumentException
+     *             if {@code n} is negative.
+     */
+    public default Queue<T> deQueue(int n) throws ImmutableQueueException {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+
+	Queue<T> queue = this;
+	for (int i = 0; i < n; i++) {
+	    queue = queue.deQueue();
+	}
+
+	return queue;
+    }
+
+    /**
+     * Removes at most the given number of elements at the beginning of the queue,
+     * adds them in order to the given collection, and returns the new queue. The
+     * elements are handed out the same way as by {@link #head()}.
+     * 
+     * @param target
+     *            the collection to which the removed elements are added.
+     * @param maxElements
+     *            the maximum number of elements to be removed.
+     * @return the new queue without the removed elements.
+     * @throws IllegalArgumentException
+     *             if {@code maxElements} is negative.
+     */
+    public default Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	if (maxElements < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + maxElements);
+	}
+
+	Queue<T> queue = this;
+	for (int i = 0; i < maxElements && !queue.isEmpty(); i++) {
+	    target.add(queue.head());
+	    queue = queue.deQueue();
+	}
+
+	return queue;
+    }
+
+    /**
+     * Creates a lazy view of the queue whose elements are the results of the given
+     * function applied to the elements of the queue. Nothing is computed until the
+     * view is read, and each element is computed once, when it is reached.
+     * 
+     * @param function
+     *            the function computing the elements of the view.
+     * @return a lazy view of the transformed elements.
+     * @see LazyQueue
+     */
+    public default <R> Queue<R> map(Function<? super T, ? extends R> function) {
+	return LazyQueue.of(this).map(function);
+    }
+
+    /**
+     * Creates a lazy view of the queue with only the elements matching the given
+     * predicate. Nothing is computed until the view is read, and each element is
+     * tested once, when it is reached.
+     * 
+     * @param predicate
+     *            the predicate the elements of the view match.
+     * @return a lazy view of the matching elements.
+     * @see LazyQueue
+     */
+    public default Queue<T> filter(Predicate<? super T> predicate) {
+	return LazyQueue.of(this).filter(predicate);
+    }
+
+    /**
+     * Creates a queue with at most the first {@code n} elements of the queue. The
+     * default implementation gives a lazy view, which reads nothing from this
+     * queue until it is read, and never reads the elements after the first
+     * {@code n}.
+     * 
+     * @param n
+     *            the maximum number of elements to keep.
+     * @return the queue of the first {@code n} elements, or of all the elements if
+     *         the queue has less.
+     * @throws IllegalArgumentException
+     *             if {@code n} is negative.
+     * @see LazyQueue
+     */
+    public default Queue<T> take(int n) {
+	return LazyQueue.of(this).take(n);
+    }
+
+    /**
+     * Iterates over the elements of the queue, from the head to the back. The
+     * elements are handed out the same way as by {@link #head()}, and the
+     * iterator does not support removal.
+     * 
+     * @return an iterator over the elements of the queue.
+     */
+    @Override
+    public Iterator<T> iterator();
+
+    /**
+     * Creates a spliterator over the elements of the queue, from the head to the
+     * back. Its characteristics include {@link Spliterator#ORDERED} and
+     * {@link Spliterator#IMMUTABLE}, and {@link Spliterator#SIZED} and
+     * {@link Spliterator#SUBSIZED} when the size is known in constant time. The
+     * default implementation splits by buffering batches of elements of the
+     * iterator; implementations giving direct access to their elements split
+     * without buffering.
+     * 
+     * @return a spliterator over the elements of the queue.
+     */
+    @Override
+    public default Spliterator<T> spliterator() {
+	return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Creates a sequential stream over the elements of the queue, from the head to
+     * the back.
+     * 
+     * @return a sequential stream over the elements of the queue.
+     */
+    public default Stream<T> stream() {
+	return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Creates a parallel stream over the elements of the queue. The queue is
+     * immutable, so the stream can be split across threads without any locking.
+     * 
+     * @return a parallel stream over the elements of the queue.
+     */
+    public default Stream<T> parallelStream() {
+	return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Interface defining a transient counterpart of an immutable queue, used to
+     * build large queues without creating an intermediate version per element.
+     * A builder is changed in place, and may only be used by the thread that
+     * created it. Once {@link #freeze()} is called, the builder cannot be used
+     * anymore and the built queue is as immutable as any other: the data of the
+     * elements is deep copied when it is added, exactly as by
+     * {@link Queue#enQueue(Object)}.
+     * 
+     * @param <T>
+     *            type of the elements put into the queue.
+     */
+    public interface Builder<T> {
+	/**
+	 * Adds the element t at the back of the queue being built.
+	 * 
+	 * @param t
+	 *            the element to be put into the queue.
+	 * @return this builder.
+	 * @throws ImmutableQueueException
+	 *             if the builder is frozen or used by another thread than its
+	 *             owner, or if the queue would exceed {@link Queue#MAX_ELEMENTS}
+	 *             elements.
+	 */
+	public Builder<T> enQueue(T t);
+
+	/**
+	 * Adds all the given elements, in iteration order, at the back of the queue
+	 * being built.
+	 * 
+	 * @param elements
+	 *            the elements to be put into the queue.
+	 * @return this builder.
+	 * @throws ImmutableQueueException
+	 *             if the builder is frozen or used by another thread than its
+	 *             owner, or if the queue would exceed {@link Queue#MAX_ELEMENTS}
+	 *             elements.
+	 */
+	public default Builder<T> enQueueAll(Iterable<? extends T> elements) {
+	    for (T t : elements) {
+		enQueue(t);
+	    }
+
+	    return this;
+	}
+
+	/**
+	 * Turns the built elements into an immutable queue, in constant time. The
+	 * builder cannot be used anymore afterwards.
+	 * 
+	 * @return the immutable queue containing the built elements.
+	 * @throws ImmutableQueueException
+	 *             if the builder is already frozen or used by another thread
+	 *             than its owner.
+	 */
+	public Queue<T> freeze();
+    }
 }
\ No newline at end of file
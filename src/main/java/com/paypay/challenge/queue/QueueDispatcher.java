@@ -0,0 +1,530 @@
+package com.paypay.challenge.queue;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Defines the consumer side of a {@link ConcurrentImmutableQueue} whose
+ * elements are handled by slow, typically blocking, tasks. Instead of polling
+ * the elements one by one, the dispatcher works in <em>batches</em>:
+ * <ul>
+ * <li>it takes a snapshot of the current version and reads its first elements,
+ * without removing them,</li>
+ * <li>groups them by key and hands each group to the executor, so the elements
+ * of one key are handled one after the other, in queue order, while the keys
+ * are handled in parallel,</li>
+ * <li>then, once the whole batch is done, removes the handled elements from the
+ * shared queue with a single update.</li>
+ * </ul>
+ * Progress is tracked per key. When the handler fails on an element, the later
+ * elements of its key are not handled, and that element is handled again in
+ * the next batch, before them; the elements of the other keys go on, and are
+ * not handled again. The queue can only lose its head though, so the update
+ * removes the longest prefix of the queue whose elements were all handled; the
+ * dispatcher remembers the elements handled after that prefix, and skips them
+ * in the next batches. An element whose handling fails {@code maxAttempts}
+ * times is given to the {@link FailureHandler}, as a dead letter, and counts as
+ * handled. Delivery is <em>at least once</em> across restarts of the
+ * dispatcher, as the elements handled after the prefix are only remembered by
+ * the dispatcher.
+ * <p>
+ * The dispatcher must be the only consumer of the queue, as it removes the
+ * elements it read from the head of the current version; producers can keep
+ * offering meanwhile. On Java 21 and later, {@link #virtualThreadExecutor()}
+ * runs every group on its own virtual thread, so blocking handlers do not limit
+ * the throughput to the number of platform threads.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements of the queue.
+ * @param <K>
+ *            the type of the keys ordering the elements.
+ */
+public final class QueueDispatcher<T, K> implements Closeable {
+    /** The default maximum number of elements per batch. */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /** The default number of times an element is handled before it is a dead letter. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /** The time, in nanoseconds, the dispatching thread sleeps when idle. */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** The queue the elements are taken from. */
+    private final ConcurrentImmutableQueue<T> source;
+
+    /** The function giving the key of an element. */
+    private final Function<? super T, ? extends K> keyFunction;
+
+    /** The handler of the elements. */
+    private final Handler<? super T> handler;
+
+    /** The executor running the groups of elements. */
+    private final Executor executor;
+
+    /** The maximum number of elements per batch. */
+    private final int batchSize;
+
+    /** The number of times an element is handled before it is a dead letter. */
+    private final int maxAttempts;
+
+    /** The handler of the dead letters and of the failures of the dispatch. */
+    private final FailureHandler<? super T> failureHandler;
+
+    /** The lock held by a batch, so that batches run one at a time. */
+    private final Object dispatching = new Object();
+
+    /**
+     * The positions in the queue, counted from the first element ever
+     * dispatched, of the elements handled but not acknowledged yet, guarded by
+     * {@link #dispatching}.
+     */
+    private final TreeSet<Long> handled = new TreeSet<Long>();
+
+    /** The number of failed attempts per position, guarded by {@link #dispatching}. */
+    private final Map<Long, Integer> attempts = new HashMap<Long, Integer>();
+
+    /** The number of elements acknowledged so far. */
+    private final AtomicLong acknowledged = new AtomicLong();
+
+    /** The number of elements the handler failed on so far. */
+    private final AtomicLong failures = new AtomicLong();
+
+    /** The number of dead letters so far. */
+    private final AtomicLong deadLetters = new AtomicLong();
+
+    /** The thread dispatching the batches, once started. */
+    private Thread thread;
+
+    /** Whether the dispatching thread must stop. */
+    private volatile boolean closed;
+
+    /**
+     * Defines the handling of one element, which may block.
+     *
+     * @param <T>
+     *            the type of data of the elements.
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+	/**
+	 * Handles the given element.
+	 *
+	 * @param element
+	 *            the data of the element, as handed out by the queue.
+	 * @throws Exception
+	 *             if the element could not be handled; it is then handled again
+	 *             in a later batch.
+	 */
+	void handle(T element) throws Exception;
+    }
+
+    /**
+     * Defines what happens to the elements the handler keeps failing on, and to
+     * the failures of the dispatch itself.
+     *
+     * @param <T>
+     *            the type of data of the elements.
+     */
+    @FunctionalInterface
+    public interface FailureHandler<T> {
+	/**
+	 * Takes an element the handler failed on for the maximum number of
+	 * attempts, which is then acknowledged, for example to store it aside.
+	 *
+	 * @param element
+	 *            the data of the element.
+	 * @param cause
+	 *            the last failure of the handler, or of the key function.
+	 */
+	void deadLetter(T element, Exception cause);
+
+	/**
+	 * Reports a failure of a batch of the dispatching thread, for example of
+	 * the update of the queue; the thread goes on with the next batch. Ignored
+	 * by default.
+	 *
+	 * @param cause
+	 *            the failure.
+	 */
+	default void dispatchFailed(RuntimeException cause) {
+	}
+    }
+
+    /**
+     * Creates a dispatcher with batches of at most {@link #DEFAULT_BATCH_SIZE}
+     * elements.
+     *
+     * @param source
+     *            the queue the elements are taken from.
+     * @param keyFunction
+     *            the function giving the key of an element; elements with equal
+     *            keys are handled in queue order.
+     * @param handler
+     *            the handler of the elements.
+     * @param executor
+     *            the executor running the groups of elements, which the
+     *            dispatcher does not shut down.
+     */
+    public QueueDispatcher(ConcurrentImmutableQueue<T> source, Function<? super T, ? extends K> keyFunction,
+	    Handler<? super T> handler, Executor executor) {
+	this(source, keyFunction, handler, executor, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a dispatcher.
+     *
+     * @param source
+     *            the queue the elements are taken from.
+     * @param keyFunction
+     *            the function giving the key of an element; elements with equal
+     *            keys are handled in queue order.
+     * @param handler
+     *            the handler of the elements.
+     * @param executor
+     *            the executor running the groups of elements, which the
+     *            dispatcher does not shut down.
+     * @param batchSize
+     *            the maximum number of elements per batch.
+     * @throws IllegalArgumentException
+     *             if an argument is {@code null}, or if the batch size is not
+     *             positive.
+     */
+    public QueueDispatcher(ConcurrentImmutableQueue<T> source, Function<? super T, ? extends K> keyFunction,
+	    Handler<? super T> handler, Executor executor, int batchSize) {
+	this(source, keyFunction, handler, executor, batchSize, DEFAULT_MAX_ATTEMPTS, (element, cause) -> {
+	});
+    }
+
+    /**
+     * Creates a dispatcher.
+     *
+     * @param source
+     *            the queue the elements are taken from.
+     * @param keyFunction
+     *            the function giving the key of an element; elements with equal
+     *            keys are handled in queue order.
+     * @param handler
+     *            the handler of the elements.
+     * @param executor
+     *            the executor running the groups of elements, which the
+     *            dispatcher does not shut down.
+     * @param batchSize
+     *            the maximum number of elements per batch.
+     * @param maxAttempts
+     *            the number of times the handler fails on an element before it is
+     *            a dead letter.
+     * @param failureHandler
+     *            the handler of the dead letters and of the failures of the
+     *            dispatch.
+     * @throws IllegalArgumentException
+     *             if an argument is {@code null}, or if the batch size or the
+     *             number of attempts is not positive.
+     */
+    public QueueDispatcher(ConcurrentImmutableQueue<T> source, Function<? super T, ? extends K> keyFunction,
+	    Handler<? super T> handler, Executor executor, int batchSize, int maxAttempts,
+	    FailureHandler<? super T> failureHandler) {
+	if (source == null || keyFunction == null || handler == null || executor == null || failureHandler == null) {
+	    throw new IllegalArgumentException(
+		    "Source, key function, handler, executor and failure handler must not be null");
+	}
+	if (batchSize <= 0 || maxAttempts <= 0) {
+	    throw new IllegalArgumentException(
+		    "Batch size and number of attempts must be positive: " + batchSize + ", " + maxAttempts);
+	}
+
+	this.source = source;
+	this.keyFunction = keyFunction;
+	this.handler = handler;
+	this.executor = executor;
+	this.batchSize = batchSize;
+	this.maxAttempts = maxAttempts;
+	this.failureHandler = failureHandler;
+    }
+
+    /**
+     * Creates an executor running each task on a new virtual thread when the JVM
+     * supports them (Java 21 and later), or on a cached pool of daemon platform
+     * threads otherwise.
+     *
+     * @return a new executor, to be shut down by the caller.
+     */
+    public static ExecutorService virtualThreadExecutor() {
+	try {
+	    // Looked up by reflection, so the project still builds for Java 8
+	    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	} catch (ReflectiveOperationException | RuntimeException e) {
+	    return Executors.newCachedThreadPool(task -> {
+		Thread thread = new Thread(task, "queue-dispatcher-worker");
+		thread.setDaemon(true);
+		return thread;
+	    });
+	}
+    }
+
+    /**
+     * Handles one batch: the first elements of the current version of the queue
+     * not handled yet, then removes the acknowledged ones from the queue with one
+     * update. Batches run one at a time.
+     *
+     * @return the number of acknowledged elements, {@code 0} if the queue is
+     *         empty or if the first element of the queue is still not handled.
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting for the batch; no
+     *             element of the batch is then acknowledged, nor handled again.
+     */
+    public int dispatchOnce() throws InterruptedException {
+	synchronized (this.dispatching) {
+	    long base = this.acknowledged.get();
+	    List<T> batch = new ArrayList<T>();
+	    List<Long> positions = new ArrayList<Long>();
+	    long position = base;
+	    for (T t : this.source.snapshot()) {
+		if (batch.size() == this.batchSize) {
+		    break;
+		}
+		if (!this.handled.contains(position)) {
+		    batch.add(t);
+		    positions.add(position);
+		}
+		position++;
+	    }
+
+	    if (!batch.isEmpty()) {
+		handleBatch(batch, positions);
+	    }
+	    return acknowledge(base);
+	}
+    }
+
+    /**
+     * Handles the elements of a batch, grouped by key, and records which ones
+     * were handled, and which ones failed.
+     */
+    private void handleBatch(List<T> batch, List<Long> positions) throws InterruptedException {
+	Exception[] failed = new Exception[batch.size()];
+	boolean[] done = new boolean[batch.size()];
+
+	// The indexes of the elements of each key, in queue order
+	Map<K, List<Integer>> groups = new LinkedHashMap<K, List<Integer>>();
+	for (int i = 0; i < batch.size(); i++) {
+	    try {
+		groups.computeIfAbsent(this.keyFunction.apply(batch.get(i)), key -> new ArrayList<Integer>()).add(i);
+	    } catch (RuntimeException e) {
+		failed[i] = e;
+	    }
+	}
+
+	CountDownLatch latch = new CountDownLatch(groups.size());
+	for (List<Integer> indexes : groups.values()) {
+	    try {
+		this.executor.execute(() -> {
+		    try {
+			handle(batch, indexes, done, failed);
+		    } finally {
+			latch.countDown();
+		    }
+		});
+	    } catch (RejectedExecutionException e) {
+		latch.countDown();
+	    }
+	}
+	// The writes of the tasks to done and failed happen before the count down
+	latch.await();
+
+	for (int i = 0; i < batch.size(); i++) {
+	    long position = positions.get(i);
+	    if (done[i]) {
+		this.handled.add(position);
+		this.attempts.remove(position);
+	    } else if (failed[i] != null) {
+		this.failures.incrementAndGet();
+		int attempts = this.attempts.merge(position, 1, Integer::sum);
+		if (attempts >= this.maxAttempts) {
+		    deadLetter(batch.get(i), failed[i]);
+		    this.handled.add(position);
+		    this.attempts.remove(position);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Removes from the queue the longest prefix of handled elements, starting at
+     * the given position of its head.
+     *
+     * @return the number of removed elements.
+     */
+    private int acknowledge(long base) {
+	int count = 0;
+	while (this.handled.contains(base + count)) {
+	    count++;
+	}
+	if (count == 0) {
+	    return 0;
+	}
+
+	int removed = count;
+	this.source.update(queue -> queue.deQueue(removed));
+	this.acknowledged.addAndGet(count);
+	this.handled.headSet(base + count).clear();
+	return count;
+    }
+
+    /**
+     * Gives the element to the failure handler, ignoring the failures of the
+     * failure handler itself.
+     */
+    private void deadLetter(T element, Exception cause) {
+	this.deadLetters.incrementAndGet();
+	try {
+	    this.failureHandler.deadLetter(element, cause);
+	} catch (RuntimeException e) {
+	    // The element is acknowledged anyway, or it would block its key forever
+	}
+    }
+
+    /**
+     * Starts a thread dispatching batches until the dispatcher is closed. The
+     * thread sleeps shortly whenever a batch acknowledges nothing.
+     *
+     * @throws IllegalStateException
+     *             if the dispatcher was already started or closed.
+     */
+    public synchronized void start() {
+	if (this.thread != null || this.closed) {
+	    throw new IllegalStateException("Dispatcher already started or closed");
+	}
+
+	this.thread = new Thread(this::run, "queue-dispatcher");
+	this.thread.setDaemon(true);
+	this.thread.start();
+    }
+
+    /**
+     * Stops the dispatching thread, if started, once its current batch is done.
+     * The elements not acknowledged stay in the queue.
+     */
+    @Override
+    public void close() {
+	Thread thread;
+	synchronized (this) {
+	    this.closed = true;
+	    thread = this.thread;
+	}
+	if (thread == null || thread == Thread.currentThread()) {
+	    return;
+	}
+
+	boolean interrupted = false;
+	while (thread.isAlive()) {
+	    try {
+		thread.join();
+	    } catch (InterruptedException e) {
+		interrupted = true;
+	    }
+	}
+	if (interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /**
+     * Gets the number of elements acknowledged, hence removed from the queue, so
+     * far.
+     *
+     * @return the number of acknowledged elements.
+     */
+    public long acknowledged() {
+	return this.acknowledged.get();
+    }
+
+    /**
+     * Gets the number of times the handler, or the key function, failed so far.
+     *
+     * @return the number of failures.
+     */
+    public long failures() {
+	return this.failures.get();
+    }
+
+    /**
+     * Gets the number of elements given to the failure handler as dead letters so
+     * far.
+     *
+     * @return the number of dead letters.
+     */
+    public long deadLetters() {
+	return this.deadLetters.get();
+    }
+
+    /**
+     * Dispatches batches until the dispatcher is closed. A failure of a batch is
+     * reported to the failure handler, and the thread goes on.
+     */
+    private void run() {
+	try {
+	    while (!this.closed) {
+		int acknowledged;
+		try {
+		    acknowledged = dispatchOnce();
+		} catch (RuntimeException e) {
+		    acknowledged = 0;
+		    reportFailure(e);
+		}
+		if (acknowledged == 0) {
+		    TimeUnit.NANOSECONDS.sleep(IDLE_NANOS);
+		}
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /**
+     * Reports a failure of the dispatch to the failure handler.
+     */
+    private void reportFailure(RuntimeException cause) {
+	try {
+	    this.failureHandler.dispatchFailed(cause);
+	} catch (RuntimeException e) {
+	    // Nothing else to report to
+	}
+    }
+
+    /**
+     * Handles the elements at the given indexes of the batch in order, up to the
+     * first failure, marking each one as done or failed.
+     */
+    private void handle(List<T> batch, List<Integer> indexes, boolean[] done, Exception[] failed) {
+	for (int index : indexes) {
+	    try {
+		this.handler.handle(batch.get(index));
+		done[index] = true;
+	    } catch (Exception e) {
+		failed[index] = e;
+		return;
+	    }
+	}
+    }
+
+    @Override
+    public String toString() {
+	return "QueueDispatcher(batchSize=" + this.batchSize + ", acknowledged=" + this.acknowledged.get()
+		+ ", failures=" + this.failures.get() + ", deadLetters=" + this.deadLetters.get() + ")";
+    }
+}
@@ -0,0 +1,322 @@
+package com.paypay.challenge.queue;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.paypay.challenge.clone.DeepCopy;
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an immutable queue based on Okasaki's <em>real-time queue</em>. Like
+ * {@link BankersImmutableQueue}, it keeps a lazy <em>front</em> list and a
+ * <em>rear</em> list in reverse order, but instead of reversing the rear list in
+ * one go when it grows longer than the front list, it starts an incremental
+ * rotation and keeps a <em>schedule</em>: a pointer into the not yet evaluated
+ * part of the front list. Each operation evaluates exactly one cell of the
+ * schedule, so the rotation is always complete before its result is needed and
+ * enqueue, dequeue and head take constant time in the worst case, not only on
+ * average.
+ * <p>
+ * As for {@link SlowImmutableQueue}, the data of the elements is deep copied
+ * when it is enqueued and, unless it is immutable, when it is read back
+ * through {@link #head()}, so changes made to the original objects never
+ * affect the queue.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements to be added to and removed from the
+ *            queue.
+ * @see com.paypay.challenge.queue.BankersImmutableQueue
+ */
+public final class RealTimeImmutableQueue<T> implements Queue<T> {
+    /** The elements to be dequeued, in order. */
+    private final LazyList<T> front;
+
+    /** The most recently enqueued elements, newest first. */
+    private final PersistentList<T> rear;
+
+    /**
+     * The part of the front list that is still to be evaluated. Its length is
+     * always the length of the front list minus the length of the rear list.
+     */
+    private final LazyList<T> schedule;
+
+    /** The number of elements in the queue. */
+    private final int size;
+
+    /** Creates an empty immutable queue. */
+    public RealTimeImmutableQueue() {
+	this(LazyList.<T>empty(), PersistentList.<T>empty(), LazyList.<T>empty(), 0);
+    }
+
+    private RealTimeImmutableQueue(LazyList<T> front, PersistentList<T> rear, LazyList<T> schedule, int size) {
+	this.front = front;
+	this.rear = rear;
+	this.schedule = schedule;
+	this.size = size;
+    }
+
+    /**
+     * Creates a builder of a {@link RealTimeImmutableQueue}.
+     *
+     * @return a new builder, owned by the current thread.
+     */
+    public static <T> Queue.Builder<T> builder() {
+	return new Transient<T>();
+    }
+
+    /**
+     * Creates a queue from the given lists, evaluating one cell of the schedule
+     * or, when the schedule is exhausted, starting a new rotation of the rear
+     * list into the front list.
+     */
+    private RealTimeImmutableQueue<T> exec(LazyList<T> front, PersistentList<T> rear, LazyList<T> schedule, int size) {
+	if (!schedule.isEmpty()) {
+	    return new RealTimeImmutableQueue<T>(front, rear, schedule.tail(), size);
+	}
+
+	LazyList<T> rotated = rotate(front, rear, LazyList.<T>empty());
+	return new RealTimeImmutableQueue<T>(rotated, PersistentList.<T>empty(), rotated, size);
+    }
+
+    /**
+     * Creates a suspended list equal to {@code front ++ reverse(rear) ++ accumulator}
+     * that moves one element of {@code rear} onto the accumulator each time one of
+     * its cells is evaluated. It must be called with a rear list exactly one
+     * element longer than the front list.
+     */
+    private static <T> LazyList<T> rotate(LazyList<T> front, PersistentList<T> rear, LazyList<T> accumulator) {
+	return LazyList.suspend(() -> {
+	    if (front.isEmpty()) {
+		return LazyList.cons(rear.value(), accumulator);
+	    }
+
+	    return LazyList.cons(front.head(),
+		    rotate(front.tail(), rear.next(), LazyList.cons(rear.value(), accumulator)));
+	});
+    }
+
+    /**
+     * {@inheritDoc} Enqueue puts a deep copy of the new element in front of the
+     * rear list, which is shared with this queue.
+     *
+     * @throws ImmutableQueueException
+     *             if the queue already contains {@link Queue#MAX_ELEMENTS}
+     *             elements.
+     */
+    public Queue<T> enQueue(T t) {
+	if (this.size == MAX_ELEMENTS) {
+	    throw new ImmutableQueueException("Immutable queue overflow");
+	}
+
+	return exec(this.front, this.rear.prepend(StoredCopies.copy(t)), this.schedule, this.size + 1);
+    }
+
+    /**
+     * {@inheritDoc} Dequeue drops the first cell of the front list, which is
+     * shared with this queue.
+     *
+     * @throws ImmutableQueueException
+     *             if the dequeue is operated on an empty queue.
+     */
+    public Queue<T> deQueue() throws ImmutableQueueException {
+	if (isEmpty()) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+
+	return exec(this.front.tail(), this.rear, this.schedule, this.size - 1);
+    }
+
+    /**
+     * {@inheritDoc} The schedule is advanced once per new element, as
+     * {@link #enQueue(Object)} would do, but only the final queue is created.
+     *
+     * @throws ImmutableQueueException
+     *             if the number of elements would exceed
+     *             {@link Queue#MAX_ELEMENTS}.
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	LazyList<T> front = this.front;
+	PersistentList<T> rear = this.rear;
+	LazyList<T> schedule = this.schedule;
+	int size = this.size;
+	for (T t : elements) {
+	    if (size == MAX_ELEMENTS) {
+		throw new ImmutableQueueException("Immutable queue overflow");
+	    }
+	    rear = rear.prepend(StoredCopies.copy(t));
+	    size++;
+
+	    // Same as exec(front, rear, schedule, size)
+	    if (!schedule.isEmpty()) {
+		schedule = schedule.tail();
+	    } else {
+		front = rotate(front, rear, LazyList.<T>empty());
+		rear = PersistentList.empty();
+		schedule = front;
+	    }
+	}
+
+	return size == this.size ? this : new RealTimeImmutableQueue<T>(front, rear, schedule, size);
+    }
+
+    /**
+     * {@inheritDoc} The schedule is advanced once per removed element, as
+     * {@link #deQueue()} would do, but only the final queue is created.
+     */
+    public Queue<T> deQueue(int n) throws ImmutableQueueException {
+	return drain(null, n, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	return drain(target, maxElements, false);
+    }
+
+    /**
+     * Removes {@code n} elements at the beginning of the queue, adding them to the
+     * given target if any.
+     */
+    private Queue<T> drain(Collection<? super T> target, int n, boolean exactly) {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+	if (exactly && this.size < n) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+	if (n == 0) {
+	    return this;
+	}
+
+	LazyList<T> front = this.front;
+	PersistentList<T> rear = this.rear;
+	LazyList<T> schedule = this.schedule;
+	int size = this.size;
+	for (int i = 0; i < n && size > 0; i++) {
+	    if (target != null) {
+		target.add(DeepCopy.deepCopy(front.head()));
+	    }
+	    front = front.tail();
+	    size--;
+
+	    // Same as exec(front, rear, schedule, size)
+	    if (!schedule.isEmpty()) {
+		schedule = schedule.tail();
+	    } else {
+		front = rotate(front, rear, LazyList.<T>empty());
+		rear = PersistentList.empty();
+		schedule = front;
+	    }
+	}
+
+	return new RealTimeImmutableQueue<T>(front, rear, schedule, size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T head() {
+	if (isEmpty()) {
+	    return null;
+	}
+
+	return DeepCopy.deepCopy(this.front.head());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+	return this.size == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+	return this.size;
+    }
+
+    /**
+     * Gets the length of the schedule, without evaluating any cell: the front
+     * list is walked up to the schedule, whose cells are the rest of the front
+     * list.
+     *
+     * @return the number of cells of the front list still to be evaluated, or
+     *         {@code -1} if a cell before the schedule is not evaluated.
+     */
+    int scheduleLength() {
+	int evaluated = 0;
+	for (LazyList<T> l = this.front; l != this.schedule; l = l.tail()) {
+	    if (!l.isEvaluated()) {
+		return -1;
+	    }
+	    evaluated++;
+	}
+
+	return this.size - this.rear.size() - evaluated;
+    }
+
+    /**
+     * Gets the length of the rear list.
+     */
+    int rearSize() {
+	return this.rear.size();
+    }
+
+    /**
+     * {@inheritDoc} The front list is read first, then the rear list, which is
+     * reversed once the front list is exhausted.
+     */
+    public Iterator<T> iterator() {
+	return new FrontRearIterator<T>(this.front, this.rear, true);
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder builder = new StringBuilder("RealTimeImmutableQueue(elements=[");
+	String separator = "";
+	for (LazyList<T> l = this.front; !l.isEmpty(); l = l.tail()) {
+	    builder.append(separator).append(l.head());
+	    separator = ", ";
+	}
+	for (PersistentList<T> l = this.rear.reverse(); !l.isEmpty(); l = l.next()) {
+	    builder.append(separator).append(l.value());
+	    separator = ", ";
+	}
+
+	return builder.append("])").toString();
+    }
+
+    /**
+     * Defines the transient counterpart of {@link RealTimeImmutableQueue}. The
+     * elements are appended in place to a front list, which becomes the front list
+     * of the queue when the builder is frozen. All the cells of that list are
+     * already evaluated, so it is also a valid schedule.
+     */
+    private static final class Transient<T> extends AbstractQueueBuilder<T> {
+	/** The first and last cells of the front list being built. */
+	private LazyList<T> first;
+	private LazyList<T> last;
+
+	@Override
+	protected void add(T t) {
+	    T data = StoredCopies.copy(t);
+	    if (this.last == null) {
+		this.first = LazyList.cons(data, LazyList.<T>empty());
+		this.last = this.first;
+	    } else {
+		this.last = this.last.append(data);
+	    }
+	}
+
+	@Override
+	protected Queue<T> build(int size) {
+	    LazyList<T> front = this.first == null ? LazyList.<T>empty() : this.first;
+	    return new RealTimeImmutableQueue<T>(front, PersistentList.<T>empty(), front, size);
+	}
+    }
+}
\ No newline at end of file
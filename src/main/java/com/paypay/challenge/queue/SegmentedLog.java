@@ -0,0 +1,480 @@
+package com.paypay.challenge.queue;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Defines an append-only log of byte records, stored in memory-mapped segment
+ * files of a fixed size, used by {@link DurableImmutableQueue}. A record is
+ * addressed by its <em>position</em>, its offset from the beginning of the
+ * first segment ever created, and is made of its length followed by its bytes.
+ * A record never spans two segments: when it does not fit in the rest of the
+ * current segment, that rest is marked as unused and the record starts the next
+ * segment.
+ * <p>
+ * The log also keeps track of the versions of the queues reading it, through
+ * weak references, so that the segments before the head of the oldest live
+ * version, and of the committed one, can be deleted. A version is live until it
+ * is released, or garbage collected. A version is committed by
+ * forcing its segments to the storage and writing its positions to a
+ * <em>checkpoint</em> file, which is replaced atomically; this is the version
+ * recovered when the log is opened again.
+ * <p>
+ * Records are written holding the lock of the log; they are read without any
+ * lock, as the bytes of a record never change once written.
+ *
+ * @author hoang.tran
+ */
+final class SegmentedLog implements Closeable {
+    /** The extension of the segment files, named after their index. */
+    private static final String SEGMENT_SUFFIX = ".segment";
+
+    /** The name of the checkpoint file. */
+    private static final String CHECKPOINT = "checkpoint";
+
+    /** The number of bytes of the length of a record. */
+    private static final int HEADER_SIZE = 4;
+
+    /** The length marking the unused rest of a segment. */
+    private static final int END_OF_SEGMENT = -1;
+
+    /** The directory of the segment files. */
+    private final Path directory;
+
+    /** The number of bytes of each segment. */
+    private final int segmentSize;
+
+    /** The mapped segments, by index. */
+    private final Map<Long, MappedByteBuffer> segments = new ConcurrentHashMap<Long, MappedByteBuffer>();
+
+    /** The position after the last record. */
+    private long end;
+
+    /** The index of the first segment not deleted yet. */
+    private long firstSegment;
+
+    /** The positions of the committed version: head, tail and size. */
+    private long[] checkpoint;
+
+    /** The number of live versions whose head is in each segment. */
+    private final TreeMap<Long, Integer> liveHeads = new TreeMap<Long, Integer>();
+
+    /** The references to the live versions, kept until they are collected. */
+    private final Set<Registration> registrations = new HashSet<Registration>();
+
+    /** The references to the versions collected by the garbage collector. */
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+    /** Whether the log is closed. */
+    private volatile boolean closed;
+
+    /**
+     * Defines the weak reference to a version, with the segment of its head.
+     */
+    static final class Registration extends WeakReference<Object> {
+	/** The segment of the head of the version. */
+	private final long segment;
+
+	private Registration(Object version, long segment, ReferenceQueue<Object> collected) {
+	    super(version, collected);
+	    this.segment = segment;
+	}
+    }
+
+    private SegmentedLog(Path directory, int segmentSize, long[] checkpoint) {
+	this.directory = directory;
+	this.segmentSize = segmentSize;
+	this.checkpoint = checkpoint;
+	if (checkpoint != null) {
+	    this.end = checkpoint[1];
+	    this.firstSegment = checkpoint[0] / segmentSize;
+	}
+    }
+
+    /**
+     * Opens the log stored in the given directory, creating it if needed, and
+     * deletes the segments the committed version does not need anymore.
+     *
+     * @param directory
+     *            the directory of the segment files.
+     * @param segmentSize
+     *            the number of bytes of each segment; it must be the one the log
+     *            was created with.
+     * @return the opened log.
+     * @throws ImmutableQueueException
+     *             if the directory cannot be read or written, or if the log was
+     *             created with another segment size.
+     */
+    static SegmentedLog open(Path directory, int segmentSize) {
+	if (segmentSize <= HEADER_SIZE) {
+	    throw new IllegalArgumentException("Segment size must be greater than " + HEADER_SIZE + ": " + segmentSize);
+	}
+
+	try {
+	    Files.createDirectories(directory);
+	    long[] checkpoint = null;
+	    Path checkpointFile = directory.resolve(CHECKPOINT);
+	    if (Files.exists(checkpointFile)) {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(checkpointFile))) {
+		    int storedSegmentSize = in.readInt();
+		    if (storedSegmentSize != segmentSize) {
+			throw new ImmutableQueueException(
+				"Log was created with segments of " + storedSegmentSize + " bytes, not " + segmentSize);
+		    }
+		    checkpoint = new long[] { in.readLong(), in.readLong(), in.readInt() };
+		}
+	    }
+
+	    SegmentedLog log = new SegmentedLog(directory, segmentSize, checkpoint);
+	    log.deleteSegmentsBefore(log.firstSegment);
+	    return log;
+	} catch (IOException e) {
+	    throw new ImmutableQueueException("Cannot open log in " + directory, e);
+	}
+    }
+
+    /**
+     * Gets the committed version.
+     *
+     * @return the head, tail and size of the committed version, or {@code null}
+     *         if no version was ever committed.
+     */
+    synchronized long[] checkpoint() {
+	return this.checkpoint == null ? null : this.checkpoint.clone();
+    }
+
+    /**
+     * Gets the position after the last record, where the next record is appended.
+     *
+     * @return the end of the log.
+     */
+    synchronized long end() {
+	return this.end;
+    }
+
+    /**
+     * Appends the given record at the end of the log.
+     *
+     * @param record
+     *            the bytes of the record.
+     * @return the new end of the log, after the record.
+     * @throws ImmutableQueueException
+     *             if the record does not fit in a segment, or if the log is
+     *             closed.
+     */
+    synchronized long append(byte[] record) {
+	if (record.length > this.segmentSize - HEADER_SIZE) {
+	    throw new ImmutableQueueException(
+		    "Record of " + record.length + " bytes does not fit in segments of " + this.segmentSize + " bytes");
+	}
+
+	long position = this.end;
+	int offset = offset(position);
+	if (this.segmentSize - offset < HEADER_SIZE + record.length) {
+	    if (this.segmentSize - offset >= HEADER_SIZE) {
+		segment(segmentIndex(position)).putInt(offset, END_OF_SEGMENT);
+	    }
+	    position += this.segmentSize - offset;
+	    offset = 0;
+	    reclaim();
+	}
+
+	ByteBuffer buffer = segment(segmentIndex(position)).duplicate();
+	buffer.position(offset);
+	buffer.putInt(record.length).put(record);
+	this.end = position + HEADER_SIZE + record.length;
+	return this.end;
+    }
+
+    /**
+     * Copies the given number of records, starting at the given position, to the
+     * end of the log.
+     *
+     * @param from
+     *            the position of the first record to be copied.
+     * @param count
+     *            the number of records to be copied.
+     * @return the position of the first copy, or the end of the log if no record
+     *         is copied.
+     */
+    synchronized long copy(long from, int count) {
+	long head = this.end;
+	long position = from;
+	for (int i = 0; i < count; i++) {
+	    long record = first(position);
+	    long end = append(read(record));
+	    if (i == 0) {
+		head = end - HEADER_SIZE - length(record);
+	    }
+	    position = record + HEADER_SIZE + length(record);
+	}
+
+	return head;
+    }
+
+    /**
+     * Reads the record at the given position.
+     *
+     * @param position
+     *            the position of the record, or of the unused rest of the segment
+     *            before it.
+     * @return the bytes of the record.
+     */
+    byte[] read(long position) {
+	long record = first(position);
+	ByteBuffer buffer = segment(segmentIndex(record)).duplicate();
+	buffer.position(offset(record) + HEADER_SIZE);
+	byte[] bytes = new byte[length(record)];
+	buffer.get(bytes);
+	return bytes;
+    }
+
+    /**
+     * Gets the position after the record at the given position.
+     *
+     * @param position
+     *            the position of the record, or of the unused rest of the segment
+     *            before it.
+     * @return the position after the record.
+     */
+    long next(long position) {
+	long record = first(position);
+	return record + HEADER_SIZE + length(record);
+    }
+
+    /**
+     * Registers a version of a queue whose head is at the given position, so that
+     * the segments it reads are kept as long as it is reachable.
+     *
+     * @param version
+     *            the version of the queue.
+     * @param head
+     *            the position of its head.
+     * @return the registration of the version, to be given back by
+     *         {@link #release(Registration)}.
+     */
+    synchronized Registration register(Object version, long head) {
+	expunge();
+	long segment = segmentIndex(head);
+	Registration registration = new Registration(version, segment, this.collected);
+	this.registrations.add(registration);
+	this.liveHeads.merge(segment, 1, Integer::sum);
+	return registration;
+    }
+
+    /**
+     * Forgets a version that is not read anymore, without waiting for the garbage
+     * collector: the segments it reads are deleted at the next commit or append
+     * if no other version reads them. Releasing a version twice has no effect.
+     *
+     * @param registration
+     *            the registration of the released version.
+     */
+    synchronized void release(Registration registration) {
+	registration.clear();
+	forget(registration);
+    }
+
+    /**
+     * Commits the given version: forces the segments it reads to the storage,
+     * then replaces the checkpoint, and finally deletes the segments no version
+     * needs anymore.
+     *
+     * @param head
+     *            the position of the head of the version.
+     * @param tail
+     *            the position after its last record.
+     * @param size
+     *            the number of its records.
+     * @throws ImmutableQueueException
+     *             if the checkpoint cannot be written, or if the log is closed.
+     */
+    synchronized void commit(long head, long tail, int size) {
+	checkOpen();
+	for (long index = segmentIndex(head); index <= segmentIndex(tail); index++) {
+	    MappedByteBuffer segment = this.segments.get(index);
+	    if (segment != null) {
+		segment.force();
+	    }
+	}
+
+	Path checkpointFile = this.directory.resolve(CHECKPOINT);
+	Path temporaryFile = this.directory.resolve(CHECKPOINT + ".tmp");
+	try (OutputStream stream = Files.newOutputStream(temporaryFile);
+		DataOutputStream out = new DataOutputStream(stream)) {
+	    out.writeInt(this.segmentSize);
+	    out.writeLong(head);
+	    out.writeLong(tail);
+	    out.writeInt(size);
+	} catch (IOException e) {
+	    throw new ImmutableQueueException("Cannot write checkpoint in " + this.directory, e);
+	}
+	try {
+	    Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+		    StandardCopyOption.ATOMIC_MOVE);
+	} catch (IOException e) {
+	    throw new ImmutableQueueException("Cannot replace checkpoint in " + this.directory, e);
+	}
+
+	this.checkpoint = new long[] { head, tail, size };
+	reclaim();
+    }
+
+    /**
+     * Deletes the segments before the head of the oldest live version, of the
+     * committed version, and of the end of the log.
+     *
+     * @return the number of deleted segments.
+     */
+    synchronized int reclaim() {
+	expunge();
+	long oldest = segmentIndex(this.end);
+	if (this.checkpoint != null) {
+	    oldest = Math.min(oldest, segmentIndex(this.checkpoint[0]));
+	}
+	if (!this.liveHeads.isEmpty()) {
+	    oldest = Math.min(oldest, this.liveHeads.firstKey());
+	}
+
+	long first = this.firstSegment;
+	deleteSegmentsBefore(oldest);
+	return (int) (this.firstSegment - first);
+    }
+
+    /**
+     * Closes the log. The mapped segments are released when they are garbage
+     * collected, and the versions reading the log cannot be used anymore.
+     */
+    @Override
+    public synchronized void close() {
+	this.closed = true;
+	this.segments.clear();
+    }
+
+    @Override
+    public String toString() {
+	return "SegmentedLog(directory=" + this.directory + ", segmentSize=" + this.segmentSize + ")";
+    }
+
+    /**
+     * Forgets the versions collected by the garbage collector.
+     */
+    private void expunge() {
+	for (Reference<?> reference; (reference = this.collected.poll()) != null;) {
+	    forget((Registration) reference);
+	}
+    }
+
+    /**
+     * Forgets the given version, if it is still registered.
+     */
+    private void forget(Registration registration) {
+	if (this.registrations.remove(registration)) {
+	    this.liveHeads.computeIfPresent(registration.segment, (segment, count) -> count == 1 ? null : count - 1);
+	}
+    }
+
+    /**
+     * Deletes the segment files before the given index, and the leftovers of
+     * older ones.
+     */
+    private void deleteSegmentsBefore(long index) {
+	try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory,
+		"*" + SEGMENT_SUFFIX)) {
+	    for (Path file : files) {
+		String name = file.getFileName().toString();
+		long segment = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+		if (segment < index) {
+		    this.segments.remove(segment);
+		    Files.deleteIfExists(file);
+		}
+	    }
+	} catch (IOException | NumberFormatException e) {
+	    throw new ImmutableQueueException("Cannot delete segments in " + this.directory, e);
+	}
+	this.firstSegment = Math.max(this.firstSegment, index);
+    }
+
+    /**
+     * Gets the position of the record at the given position, skipping the unused
+     * rest of a segment.
+     */
+    private long first(long position) {
+	int offset = offset(position);
+	if (this.segmentSize - offset < HEADER_SIZE
+		|| segment(segmentIndex(position)).getInt(offset) == END_OF_SEGMENT) {
+	    return position + this.segmentSize - offset;
+	}
+	return position;
+    }
+
+    /**
+     * Gets the length of the record at the given position.
+     */
+    private int length(long record) {
+	return segment(segmentIndex(record)).getInt(offset(record));
+    }
+
+    private long segmentIndex(long position) {
+	return position / this.segmentSize;
+    }
+
+    private int offset(long position) {
+	return (int) (position % this.segmentSize);
+    }
+
+    /**
+     * Gets the segment of the given index, mapping its file, created if needed,
+     * the first time.
+     */
+    private MappedByteBuffer segment(long index) {
+	MappedByteBuffer segment = this.segments.get(index);
+	if (segment != null) {
+	    return segment;
+	}
+
+	synchronized (this) {
+	    checkOpen();
+	    segment = this.segments.get(index);
+	    if (segment == null) {
+		Path file = this.directory.resolve(String.format("%020d", index) + SEGMENT_SUFFIX);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+			StandardOpenOption.WRITE)) {
+		    // The mapping stays valid once the channel is closed
+		    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+		} catch (IOException e) {
+		    throw new ImmutableQueueException("Cannot map segment " + file, e);
+		}
+		this.segments.put(index, segment);
+	    }
+	    return segment;
+	}
+    }
+
+    private void checkOpen() {
+	if (this.closed) {
+	    throw new ImmutableQueueException("Log is closed: " + this.directory);
+	}
+    }
+}
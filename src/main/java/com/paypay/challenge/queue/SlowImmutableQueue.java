@@ -1,5 +1,8 @@
 package com.paypay.challenge.queue;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Stack;
 
 import com.paypay.challenge.clone.DeepCopy;
@@ -37,10 +40,14 @@ public final class SlowImmutableQueue<T> implements Queue<T> {
      */
     private final Element<T> back;
 
+    /** The number of elements in the queue. */
+    private final int size;
+
     /** Creates an empty immutable queue. */
     public SlowImmutableQueue() {
 	this.front = null;
 	this.back = null;
+	this.size = 0;
     }
 
     /**
@@ -53,13 +60,52 @@ public final class SlowImmutableQueue<T> implements Queue<T> {
      *            the <em>back</em> of the queue to which elements are enqueued.
      */
     public SlowImmutableQueue(Element<T> front, Element<T> back) {
-	this.back = DeepCopy.deepCopy(back);
+	this(front, back, true, length(back));
+    }
+
+    /**
+     * Defines an immutable queue with the given front and back, and the given
+     * number of elements, copying them only if requested. They don't need to be
+     * copied when the caller has just created them and does not share them with
+     * anyone else.
+     */
+    private SlowImmutableQueue(Element<T> front, Element<T> back, boolean copyElements, int size) {
+	this.size = size;
+	this.back = copyElements ? copyElement(back) : back;
 
 	if (front == back) {
 	    this.front = this.back;
 	} else {
-	    this.front = DeepCopy.deepCopy(front);
+	    this.front = copyElements ? copyElement(front) : front;
+	}
+    }
+
+    /**
+     * Creates a builder of a {@link SlowImmutableQueue}.
+     *
+     * @return a new builder, owned by the current thread.
+     */
+    public static <T> Queue.Builder<T> builder() {
+	return new Transient<T>();
+    }
+
+    /**
+     * Counts the elements of the chain starting at the given element.
+     */
+    private static int length(Element<?> element) {
+	int length = 0;
+	for (Element<?> e = element; e != null; e = e.getNextElement()) {
+	    length++;
 	}
+
+	return length;
+    }
+
+    /**
+     * Deeply copies the given element, unless it is frozen and can be shared.
+     */
+    private static <T> Element<T> copyElement(Element<T> element) {
+	return element == null || element.isFrozen() ? element : DeepCopy.deepCopy(element);
     }
 
     /**
@@ -73,21 +119,22 @@ public final class SlowImmutableQueue<T> implements Queue<T> {
      * </ul>
      */
     public Queue<T> enQueue(T t) {
+	// Throw exception if the number of elements exceeds the max allowed
+	if (this.size == MAX_ELEMENTS) {
+	    throw new ImmutableQueueException("Immutable queue overflow");
+	}
+
 	// Both back and front point to the new element if the current queue is empty
 	if (isEmpty()) {
 	    Element<T> newElement = new Element<T>(t);
-	    return new SlowImmutableQueue<T>(newElement, newElement);
+	    return new SlowImmutableQueue<T>(newElement, newElement, true, 1);
 	}
 
-	// Push all elements' data into a stack
+	// Push all elements' data into a stack. The data doesn't need to be copied
+	// here, the new elements will copy it
 	Stack<T> elementDataStack = new Stack<T>();
 	for (Element<T> e = this.back; e != null; e = e.getNextElement()) {
-	    elementDataStack.push(e.getData());
-	}
-
-	// Throw exception if the number of elements exceeds the max allowed
-	if (elementDataStack.size() == MAX_ELEMENTS) {
-	    throw new ImmutableQueueException("Immutable queue overflow");
+	    elementDataStack.push(e.peekData());
 	}
 
 	// Get the current queue's elements' data by popping elements data from the
@@ -99,7 +146,7 @@ public final class SlowImmutableQueue<T> implements Queue<T> {
 	}
 	Element<T> back = new Element<T>(t, nextElement);
 
-	return new SlowImmutableQueue<T>(front, back);
+	return new SlowImmutableQueue<T>(front, back, true, this.size + 1);
     }
 
     /**
@@ -125,7 +172,7 @@ public final class SlowImmutableQueue<T> implements Queue<T> {
 	// element's data
 	Stack<T> elementDataStack = new Stack<T>();
 	for (Element<T> e = this.back; e != null && e.getNextElement() != null; e = e.getNextElement()) {
-	    elementDataStack.push(e.getData());
+	    elementDataStack.push(e.peekData());
 	}
 
 	// Create a new immutable queue using elements' data pushed in the stack
@@ -135,7 +182,99 @@ public final class SlowImmutableQueue<T> implements Queue<T> {
 	    nextElement = new Element<T>(elementDataStack.pop(), nextElement);
 	}
 
-	return new SlowImmutableQueue<T>(front, nextElement);
+	return new SlowImmutableQueue<T>(front, nextElement, true, this.size - 1);
+    }
+
+    /**
+     * {@inheritDoc} Like {@link #enQueue(Object)}, it makes an entirely new copy
+     * of all elements, but only once for all the given elements.
+     *
+     * @throws ImmutableQueueException
+     *             if the number of elements would exceed
+     *             {@link Queue#MAX_ELEMENTS}.
+     */
+    public Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	// Push all elements' data into a stack
+	Stack<T> elementDataStack = new Stack<T>();
+	for (Element<T> e = this.back; e != null; e = e.getNextElement()) {
+	    elementDataStack.push(e.peekData());
+	}
+
+	// Rebuild the current queue's elements, then add the new elements at the back
+	int size = this.size;
+	Element<T> front = null;
+	Element<T> back = null;
+	while (!elementDataStack.empty()) {
+	    back = Element.linkOwned(elementDataStack.pop(), back);
+	    front = front == null ? back : front;
+	}
+	for (T t : elements) {
+	    if (size++ == MAX_ELEMENTS) {
+		throw new ImmutableQueueException("Immutable queue overflow");
+	    }
+	    back = Element.linkOwned(t, back);
+	    front = front == null ? back : front;
+	}
+
+	return front == null ? this : new SlowImmutableQueue<T>(front, back, false, size);
+    }
+
+    /**
+     * {@inheritDoc} Like {@link #deQueue()}, it makes an entirely new copy of the
+     * remaining elements, but only once for all the removed elements.
+     */
+    public Queue<T> deQueue(int n) throws ImmutableQueueException {
+	return drain(null, n, true);
+    }
+
+    /**
+     * {@inheritDoc} Like {@link #deQueue()}, it makes an entirely new copy of the
+     * remaining elements, but only once for all the removed elements.
+     */
+    public Queue<T> drainTo(Collection<? super T> target, int maxElements) {
+	return drain(target, maxElements, false);
+    }
+
+    /**
+     * Removes {@code n} elements at the beginning of the queue, adding them to the
+     * given target if any, and rebuilds the remaining elements in one pass.
+     */
+    private Queue<T> drain(Collection<? super T> target, int n, boolean exactly) {
+	if (n < 0) {
+	    throw new IllegalArgumentException("Number of elements must not be negative: " + n);
+	}
+	if (exactly && this.size < n) {
+	    throw new ImmutableQueueException("Immutable queue underflow");
+	}
+	if (n == 0) {
+	    return this;
+	}
+
+	// Push all elements' data into a stack, the front element's data on the top
+	Stack<T> elementDataStack = new Stack<T>();
+	for (Element<T> e = this.back; e != null; e = e.getNextElement()) {
+	    elementDataStack.push(e.peekData());
+	}
+
+	// Pop the removed elements' data, then rebuild the remaining ones
+	for (int i = 0; i < n && !elementDataStack.empty(); i++) {
+	    T data = elementDataStack.pop();
+	    if (target != null) {
+		target.add(DeepCopy.deepCopy(data));
+	    }
+	}
+	if (elementDataStack.empty()) {
+	    return new SlowImmutableQueue<T>();
+	}
+
+	int size = elementDataStack.size();
+	Element<T> front = Element.linkOwned(elementDataStack.pop(), null);
+	Element<T> back = front;
+	while (!elementDataStack.empty()) {
+	    back = Element.linkOwned(elementDataStack.pop(), back);
+	}
+
+	return new SlowImmutableQueue<T>(front, back, false, size);
     }
 
     /**
@@ -146,7 +285,7 @@ public final class SlowImmutableQueue<T> implements Queue<T> {
 	    return null;
 	}
 
-	return this.front.getData();
+	return DeepCopy.deepCopy(this.front.peekData());
     }
 
     /**
@@ -155,4 +294,69 @@ public final class SlowImmutableQueue<T> implements Queue<T> {
     public boolean isEmpty() {
 	return this.front == null;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+	return this.size;
+    }
+
+    /**
+     * {@inheritDoc} The elements are linked from the back to the front, so their
+     * data is first collected in an array, in linear time.
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<T> iterator() {
+	Object[] elementData = new Object[this.size];
+	int i = this.size;
+	for (Element<T> e = this.back; e != null; e = e.getNextElement()) {
+	    elementData[--i] = e.peekData();
+	}
+
+	return new Iterator<T>() {
+	    private int next;
+
+	    @Override
+	    public boolean hasNext() {
+		return this.next < elementData.length;
+	    }
+
+	    @Override
+	    public T next() {
+		if (this.next == elementData.length) {
+		    throw new NoSuchElementException();
+		}
+		return DeepCopy.deepCopy((T) elementData[this.next++]);
+	    }
+	};
+    }
+
+    /**
+     * Defines the transient counterpart of {@link SlowImmutableQueue}. The
+     * elements are linked to the back of a chain owned by the builder, which
+     * becomes the chain of the queue when the builder is frozen.
+     */
+    private static final class Transient<T> extends AbstractQueueBuilder<T> {
+	/** The <em>front</em> and <em>back</em> of the chain being built. */
+	private Element<T> front;
+	private Element<T> back;
+
+	@Override
+	protected void add(T t) {
+	    this.back = Element.linkOwned(t, this.back);
+	    if (this.front == null) {
+		this.front = this.back;
+	    }
+	}
+
+	@Override
+	protected Queue<T> build(int size) {
+	    if (this.front == null) {
+		return new SlowImmutableQueue<T>();
+	    }
+
+	    return new SlowImmutableQueue<T>(this.front, this.back, false, size);
+	}
+    }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.paypay.challenge.queue;
+
+import java.util.function.Supplier;
+
+import com.paypay.challenge.clone.DeepCopy;
+
+/**
+ * Makes the copies of the data stored by the queues of this package, with
+ * {@link DeepCopy#copyForStorage(Object)}. A batch of data already copied for
+ * storage can be enqueued again without being copied again, through
+ * {@link #storeAsIs(Supplier)}, which only the classes of this package can use.
+ *
+ * @author hoang.tran
+ */
+final class StoredCopies {
+    /**
+     * Whether {@link #copy(Object)} returns the data as it is on the current
+     * thread, as set by {@link #storeAsIs(Supplier)}.
+     */
+    private static final ThreadLocal<boolean[]> STORING_AS_IS = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private StoredCopies() {
+    }
+
+    /**
+     * Copies the given data to be stored by a queue, unless it is called within
+     * {@link #storeAsIs(Supplier)}.
+     *
+     * @param data
+     *            the data to be stored.
+     * @return the copy of the data made for storage, or the data itself within
+     *         {@link #storeAsIs(Supplier)}.
+     */
+    static <T> T copy(T data) {
+	if (STORING_AS_IS.get()[0]) {
+	    return data;
+	}
+
+	return DeepCopy.copyForStorage(data);
+    }
+
+    /**
+     * Runs the given action storing the data given to {@link #copy(Object)} on
+     * the current thread as it is, because it already is a copy made for storage.
+     * This lets a batch of data be copied once, then enqueued again each time an
+     * optimistic update of a shared queue is retried.
+     *
+     * @param action
+     *            the action enqueuing data already copied for storage only.
+     * @return the result of the action.
+     */
+    static <R> R storeAsIs(Supplier<R> action) {
+	boolean[] storing = STORING_AS_IS.get();
+	boolean previous = storing[0];
+	storing[0] = true;
+	try {
+	    return action.get();
+	} finally {
+	    storing[0] = previous;
+	}
+    }
+}
@@ -0,0 +1,306 @@
+package com.paypay.challenge.queue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.function.UnaryOperator;
+
+/**
+ * Defines a registry of the successive versions of an immutable queue. Each
+ * committed version is tagged with a <em>version number</em>, increasing by one
+ * from {@code 0} for the initial version, and with the time it was committed.
+ * The retained versions are kept in a circular array indexed by version number,
+ * so:
+ * <ul>
+ * <li>the queue as of a given version is found in constant time, and the queue
+ * as of a given time by a binary search over the retained versions,</li>
+ * <li>and the oldest versions are dropped as soon as they fall out of the
+ * retention policy: beyond the last {@code maxVersions} ones, or older than the
+ * time to live. The latest version is always retained.</li>
+ * </ul>
+ * The store only holds references to the versions: each version shares with the
+ * previous one everything its change did not touch, as long as the queue is
+ * one of the persistent implementations, such as {@link BankersImmutableQueue}
+ * or {@link ChunkedImmutableQueue}. The memory retained by the store then grows
+ * with the changes between the retained versions, not with their number times
+ * their size; with {@link SlowImmutableQueue}, which copies the whole queue at
+ * each change, it does grow with both.
+ * <p>
+ * The store is thread-safe. Every method holds the lock of the store for an
+ * amortized constant time, except the searches by time, {@link #asOf(long)} and
+ * {@link #versionAt(long)}, which take a logarithmic time.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements of the queue.
+ */
+public final class VersionedQueueStore<T> {
+    /** The initial capacity of the circular arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The maximum number of versions retained. */
+    private final int maxVersions;
+
+    /** The time, in milliseconds, a version is retained after its commit. */
+    private final long ttlMillis;
+
+    /** The clock giving the commit times. */
+    private final Clock clock;
+
+    /** The retained versions, in a circular array indexed by version number. */
+    private Queue<?>[] versions;
+
+    /** The commit times of the retained versions, indexed as {@link #versions}. */
+    private long[] times;
+
+    /** The number of the oldest retained version. */
+    private long oldest;
+
+    /** The number of retained versions. */
+    private int count;
+
+    /**
+     * Creates a store retaining the last {@code maxVersions} versions, whatever
+     * their age.
+     *
+     * @param initial
+     *            the initial version, numbered {@code 0}.
+     * @param maxVersions
+     *            the maximum number of versions retained.
+     */
+    public VersionedQueueStore(Queue<T> initial, int maxVersions) {
+	this(initial, maxVersions, null, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a store retaining the last {@code maxVersions} versions committed
+     * within the given time to live.
+     *
+     * @param initial
+     *            the initial version, numbered {@code 0}.
+     * @param maxVersions
+     *            the maximum number of versions retained; use
+     *            {@link Integer#MAX_VALUE} for a retention by time only.
+     * @param ttl
+     *            how long a version is retained after its commit, or {@code null}
+     *            for a retention by number only.
+     * @param clock
+     *            the clock giving the commit times.
+     * @throws IllegalArgumentException
+     *             if the initial version or the clock is {@code null}, or if
+     *             {@code maxVersions} or the time to live is not positive.
+     */
+    public VersionedQueueStore(Queue<T> initial, int maxVersions, Duration ttl, Clock clock) {
+	if (initial == null || clock == null) {
+	    throw new IllegalArgumentException("Initial queue and clock must not be null");
+	}
+	if (maxVersions <= 0) {
+	    throw new IllegalArgumentException("Number of versions must be positive: " + maxVersions);
+	}
+	if (ttl != null && (ttl.isNegative() || ttl.isZero())) {
+	    throw new IllegalArgumentException("Time to live must be positive: " + ttl);
+	}
+
+	this.maxVersions = maxVersions;
+	this.ttlMillis = ttl == null ? Long.MAX_VALUE : ttl.toMillis();
+	this.clock = clock;
+	this.versions = new Queue<?>[INITIAL_CAPACITY];
+	this.times = new long[INITIAL_CAPACITY];
+	this.versions[0] = initial;
+	this.times[0] = clock.millis();
+	this.count = 1;
+    }
+
+    /**
+     * Registers the given queue as the new latest version, then drops the
+     * versions that fall out of the retention policy.
+     *
+     * @param version
+     *            the new version of the queue, typically derived from the latest
+     *            one.
+     * @return the number of the new version.
+     */
+    public synchronized long commit(Queue<T> version) {
+	if (version == null) {
+	    throw new IllegalArgumentException("Version must not be null");
+	}
+
+	if (this.count == this.versions.length) {
+	    grow();
+	}
+	long previousTime = this.times[index(this.oldest + this.count - 1)];
+	int index = index(this.oldest + this.count);
+	this.versions[index] = version;
+	// Kept increasing even if the clock goes back, for the searches by time
+	this.times[index] = Math.max(this.clock.millis(), previousTime);
+	this.count++;
+	expire();
+	return this.oldest + this.count - 1;
+    }
+
+    /**
+     * Derives a new version from the latest one with the given function, and
+     * commits it, atomically.
+     *
+     * @param function
+     *            the function deriving the new version from the latest one.
+     * @return the number of the new version.
+     */
+    public synchronized long update(UnaryOperator<Queue<T>> function) {
+	return commit(function.apply(latest()));
+    }
+
+    /**
+     * Gets the latest version of the queue.
+     *
+     * @return the last committed version.
+     */
+    public synchronized Queue<T> latest() {
+	return at(this.oldest + this.count - 1);
+    }
+
+    /**
+     * Gets the number of the latest version of the queue.
+     *
+     * @return the number of the last committed version.
+     */
+    public synchronized long latestVersion() {
+	return this.oldest + this.count - 1;
+    }
+
+    /**
+     * Gets the number of the oldest version still retained, after dropping the
+     * expired ones.
+     *
+     * @return the number of the oldest retained version.
+     */
+    public synchronized long oldestVersion() {
+	expire();
+	return this.oldest;
+    }
+
+    /**
+     * Gets the queue as of the given version, in constant time.
+     *
+     * @param version
+     *            the number of the version.
+     * @return the queue committed with that number, or {@code null} if it is not
+     *         retained anymore, or not committed yet.
+     */
+    public synchronized Queue<T> get(long version) {
+	expire();
+	if (version < this.oldest || version >= this.oldest + this.count) {
+	    return null;
+	}
+
+	return at(version);
+    }
+
+    /**
+     * Gets the queue as of the given time: the last version committed at or
+     * before that time.
+     *
+     * @param millis
+     *            the time, in milliseconds since the epoch, as given by the clock
+     *            of the store.
+     * @return the queue as of that time, or {@code null} if the versions of that
+     *         time are not retained anymore.
+     */
+    public synchronized Queue<T> asOf(long millis) {
+	expire();
+	long version = versionAt(millis);
+	return version < 0 ? null : at(version);
+    }
+
+    /**
+     * Gets the number of the last version committed at or before the given time.
+     *
+     * @param millis
+     *            the time, in milliseconds since the epoch, as given by the clock
+     *            of the store.
+     * @return the number of the version, or {@code -1} if the versions of that
+     *         time are not retained anymore.
+     */
+    public synchronized long versionAt(long millis) {
+	expire();
+	if (this.times[index(this.oldest)] > millis) {
+	    return -1;
+	}
+
+	// The commit times increase with the version numbers
+	long low = this.oldest;
+	long high = this.oldest + this.count - 1;
+	while (low < high) {
+	    long middle = (low + high + 1) >>> 1;
+	    if (this.times[index(middle)] <= millis) {
+		low = middle;
+	    } else {
+		high = middle - 1;
+	    }
+	}
+	return low;
+    }
+
+    /**
+     * Gets the number of versions retained, after dropping the expired ones.
+     *
+     * @return the number of retained versions.
+     */
+    public synchronized int size() {
+	expire();
+	return this.count;
+    }
+
+    /**
+     * Drops the oldest versions beyond the retention policy, except the latest
+     * one, clearing their references so that their memory can be reclaimed.
+     */
+    private void expire() {
+	long now = this.clock.millis();
+	while (this.count > 1 && (this.count > this.maxVersions
+		|| now - this.times[index(this.oldest)] > this.ttlMillis)) {
+	    this.versions[index(this.oldest)] = null;
+	    this.oldest++;
+	    this.count--;
+	}
+    }
+
+    /**
+     * Doubles the capacity of the circular arrays, keeping the retained versions
+     * at the same position relative to their number.
+     */
+    private void grow() {
+	int capacity = this.versions.length;
+	Queue<?>[] versions = new Queue<?>[capacity << 1];
+	long[] times = new long[capacity << 1];
+	for (long version = this.oldest; version < this.oldest + this.count; version++) {
+	    int index = (int) (version & ((capacity << 1) - 1));
+	    versions[index] = this.versions[index(version)];
+	    times[index] = this.times[index(version)];
+	}
+	this.versions = versions;
+	this.times = times;
+    }
+
+    /**
+     * Gets the retained version of the given number.
+     */
+    @SuppressWarnings("unchecked")
+    private Queue<T> at(long version) {
+	return (Queue<T>) this.versions[index(version)];
+    }
+
+    /**
+     * Gets the index of the given version number in the circular arrays, whose
+     * capacity is a power of two.
+     */
+    private int index(long version) {
+	return (int) (version & (this.versions.length - 1));
+    }
+
+    @Override
+    public synchronized String toString() {
+	return "VersionedQueueStore(versions=[" + this.oldest + ".." + (this.oldest + this.count - 1)
+		+ "], maxVersions=" + this.maxVersions + ", latest=" + latest() + ")";
+    }
+}
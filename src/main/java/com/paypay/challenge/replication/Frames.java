@@ -0,0 +1,114 @@
+package com.paypay.challenge.replication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.paypay.challenge.codec.Codec;
+import com.paypay.challenge.codec.Varints;
+import com.paypay.challenge.queue.Queue;
+
+/**
+ * Defines the messages exchanged by the leader and its followers. Every message
+ * starts with its kind, followed by:
+ * <ul>
+ * <li>for a {@link #BATCH}: the sequence number of its first delta, the number
+ * of deltas, then each delta as the number of dequeued elements, the number of
+ * enqueued elements and the enqueued elements, encoded by the codec of the
+ * queue. The deltas of a batch have consecutive sequence numbers,</li>
+ * <li>for a {@link #SNAPSHOT}: the sequence number of the last delta applied to
+ * the version, its size and all its elements,</li>
+ * <li>for a {@link #SNAPSHOT_REQUEST}: the sequence number the follower reached,
+ * for information only.</li>
+ * </ul>
+ * Numbers are written as varints.
+ *
+ * @author hoang.tran
+ */
+final class Frames {
+    /** The kind of a batch of deltas. */
+    static final byte BATCH = 1;
+
+    /** The kind of a snapshot of a whole version. */
+    static final byte SNAPSHOT = 2;
+
+    /** The kind of a request of a snapshot. */
+    static final byte SNAPSHOT_REQUEST = 3;
+
+    private Frames() {
+    }
+
+    /**
+     * Writes one delta: the number of dequeued elements, then the enqueued ones.
+     */
+    static <T> void writeDelta(DataOutput out, int dequeued, List<? extends T> enqueued, Codec<T> codec)
+	    throws IOException {
+	Varints.writeUnsignedInt(out, dequeued);
+	writeElements(out, enqueued.size(), enqueued, codec);
+    }
+
+    /**
+     * Creates the message of a batch of {@code count} deltas, already written.
+     */
+    static byte[] batch(long firstSequence, int count, byte[] deltas) {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream(deltas.length + 16);
+	DataOutputStream out = new DataOutputStream(bytes);
+	try {
+	    out.writeByte(BATCH);
+	    Varints.writeUnsignedLong(out, firstSequence);
+	    Varints.writeUnsignedInt(out, count);
+	    out.write(deltas);
+	} catch (IOException e) {
+	    // Never thrown by an in-memory stream
+	    throw new IllegalStateException(e);
+	}
+	return bytes.toByteArray();
+    }
+
+    /**
+     * Creates the message of a snapshot of the given version.
+     */
+    static <T> byte[] snapshot(long sequence, Queue<T> queue, Codec<T> codec) throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	DataOutputStream out = new DataOutputStream(bytes);
+	out.writeByte(SNAPSHOT);
+	Varints.writeUnsignedLong(out, sequence);
+	writeElements(out, queue.size(), queue, codec);
+	return bytes.toByteArray();
+    }
+
+    /**
+     * Creates the message requesting a snapshot.
+     */
+    static byte[] snapshotRequest(long sequence) throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+	DataOutputStream out = new DataOutputStream(bytes);
+	out.writeByte(SNAPSHOT_REQUEST);
+	Varints.writeLong(out, sequence);
+	return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a number of elements followed by the elements.
+     */
+    static <T> List<T> readElements(DataInput in, Codec<T> codec) throws IOException {
+	int count = Varints.readUnsignedInt(in);
+	List<T> elements = new ArrayList<T>(Math.min(count, 1024));
+	for (int i = 0; i < count; i++) {
+	    elements.add(codec.decode(in));
+	}
+	return elements;
+    }
+
+    private static <T> void writeElements(DataOutput out, int count, Iterable<? extends T> elements,
+	    Codec<T> codec) throws IOException {
+	Varints.writeUnsignedInt(out, count);
+	for (T t : elements) {
+	    codec.encode(t, out);
+	}
+    }
+}
@@ -0,0 +1,101 @@
+package com.paypay.challenge.replication;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Defines a {@link Transport} between two components of the same process,
+ * standing in for a network connection in tests and demonstrations. A message
+ * is delivered to the receiver of the other end directly on the sending thread,
+ * as a copy of the bytes sent. Each end counts the messages and the bytes it
+ * sent, which is the bandwidth replication would use on a network.
+ * 
+ * @author hoang.tran
+ */
+public final class InProcessTransport implements Transport {
+    /** The other end of the connection. */
+    private InProcessTransport peer;
+
+    /** The receiver of the messages sent by the other end. */
+    private volatile Consumer<byte[]> receiver;
+
+    /** Whether the connection is closed. */
+    private volatile boolean closed;
+
+    /** The number of messages sent from this end. */
+    private long messagesSent;
+
+    /** The number of bytes sent from this end. */
+    private long bytesSent;
+
+    private InProcessTransport() {
+    }
+
+    /**
+     * Creates the two ends of a new connection.
+     * 
+     * @return the two connected ends.
+     */
+    public static InProcessTransport[] connectedPair() {
+	InProcessTransport first = new InProcessTransport();
+	InProcessTransport second = new InProcessTransport();
+	first.peer = second;
+	second.peer = first;
+	return new InProcessTransport[] { first, second };
+    }
+
+    /**
+     * {@inheritDoc} The message is handed to the receiver of the other end before
+     * this method returns; a message sent before that receiver is set is lost.
+     * 
+     * @throws IOException
+     *             if either end of the connection is closed.
+     */
+    @Override
+    public void send(byte[] message) throws IOException {
+	if (this.closed || this.peer.closed) {
+	    throw new IOException("Transport closed");
+	}
+
+	synchronized (this) {
+	    this.messagesSent++;
+	    this.bytesSent += message.length;
+	}
+	Consumer<byte[]> receiver = this.peer.receiver;
+	if (receiver != null) {
+	    receiver.accept(Arrays.copyOf(message, message.length));
+	}
+    }
+
+    @Override
+    public void setReceiver(Consumer<byte[]> receiver) {
+	this.receiver = receiver;
+    }
+
+    /**
+     * Gets the number of messages sent from this end.
+     * 
+     * @return the number of messages sent.
+     */
+    public synchronized long messagesSent() {
+	return this.messagesSent;
+    }
+
+    /**
+     * Gets the number of bytes sent from this end.
+     * 
+     * @return the number of bytes sent.
+     */
+    public synchronized long bytesSent() {
+	return this.bytesSent;
+    }
+
+    /**
+     * Closes the connection, at both ends.
+     */
+    @Override
+    public void close() {
+	this.closed = true;
+    }
+}
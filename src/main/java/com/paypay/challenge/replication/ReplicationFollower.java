@@ -0,0 +1,188 @@
+package com.paypay.challenge.replication;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import com.paypay.challenge.codec.Codec;
+import com.paypay.challenge.codec.Varints;
+import com.paypay.challenge.exception.ImmutableQueueException;
+import com.paypay.challenge.queue.Queue;
+
+/**
+ * Defines the reading side of a replicated queue: a standby copy of the queue
+ * of a {@link ReplicationLeader}, rebuilt from the messages of the leader.
+ * <ul>
+ * <li>{@link #start()} requests a snapshot of the current version of the
+ * leader, which the follower rebuilds from an empty queue,</li>
+ * <li>then each delta of the following batches is applied, in sequence order,
+ * with one dequeue and one enqueue of all the elements of the delta, which
+ * derives the same version as on the leader,</li>
+ * <li>a batch whose first delta is not the next expected one means that a
+ * batch was lost: the follower ignores it and catches up from a new
+ * snapshot.</li>
+ * </ul>
+ * The versions are built from the given empty queue, so the follower can use
+ * any implementation, whatever the leader uses. The follower is
+ * thread-safe; {@link #current()} can be read while batches are applied.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements of the queue.
+ */
+public final class ReplicationFollower<T> {
+    /** The time, in milliseconds, after which a snapshot is requested again. */
+    private static final long RETRY_MILLIS = 1000;
+
+    /** The follower end of the connection with the leader. */
+    private final Transport transport;
+
+    /** The codec of the elements. */
+    private final Codec<T> codec;
+
+    /** The empty queue the versions are built from. */
+    private final Queue<T> empty;
+
+    /** The current version of the queue. */
+    private volatile Queue<T> current;
+
+    /** The sequence number of the current version, {@code -1} before a snapshot. */
+    private volatile long sequence = -1;
+
+    /** When a snapshot was last requested, or {@code 0} if none is expected. */
+    private long snapshotRequested;
+
+    /**
+     * Creates a follower, which receives nothing until it is started.
+     *
+     * @param transport
+     *            the follower end of the connection with the leader.
+     * @param codec
+     *            the codec of the elements, the same as the one of the leader.
+     * @param empty
+     *            the empty queue the versions are built from.
+     */
+    public ReplicationFollower(Transport transport, Codec<T> codec, Queue<T> empty) {
+	if (transport == null || codec == null || empty == null || !empty.isEmpty()) {
+	    throw new IllegalArgumentException("Transport, codec and an empty queue must be given");
+	}
+
+	this.transport = transport;
+	this.codec = codec;
+	this.empty = empty;
+	this.current = empty;
+    }
+
+    /**
+     * Starts receiving the messages of the leader, and requests the snapshot the
+     * follower starts from.
+     *
+     * @throws ImmutableQueueException
+     *             if the request cannot be sent.
+     */
+    public void start() {
+	this.transport.setReceiver(this::receive);
+	synchronized (this) {
+	    this.snapshotRequested = System.currentTimeMillis();
+	}
+	// Sent without the lock, as the snapshot may be received on this thread
+	try {
+	    this.transport.send(Frames.snapshotRequest(this.sequence));
+	} catch (IOException e) {
+	    throw new ImmutableQueueException("Cannot request replication snapshot", e);
+	}
+    }
+
+    /**
+     * Gets the current version of the queue.
+     *
+     * @return the version after the last applied delta.
+     */
+    public Queue<T> current() {
+	return this.current;
+    }
+
+    /**
+     * Gets the sequence number of the current version of the queue.
+     *
+     * @return the sequence number of the last applied delta, or {@code -1} until
+     *         the first snapshot is received.
+     */
+    public long sequence() {
+	return this.sequence;
+    }
+
+    /**
+     * Handles a message of the leader.
+     */
+    private synchronized void receive(byte[] message) {
+	DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+	try {
+	    byte kind = in.readByte();
+	    if (kind == Frames.SNAPSHOT) {
+		long sequence = Varints.readUnsignedLong(in);
+		this.current = this.empty.enQueueAll(Frames.readElements(in, this.codec));
+		this.sequence = sequence;
+		this.snapshotRequested = 0;
+	    } else if (kind == Frames.BATCH) {
+		applyBatch(in);
+	    }
+	} catch (IOException e) {
+	    // A message that cannot be read is as good as lost
+	    requestSnapshot();
+	}
+    }
+
+    /**
+     * Applies the deltas of a batch following the current version, or requests a
+     * snapshot if a batch was lost.
+     */
+    private void applyBatch(DataInputStream in) throws IOException {
+	long first = Varints.readUnsignedLong(in);
+	int count = Varints.readUnsignedInt(in);
+	if (this.sequence < 0 || first > this.sequence + 1) {
+	    requestSnapshot();
+	    return;
+	}
+
+	Queue<T> queue = this.current;
+	long sequence = this.sequence;
+	for (int i = 0; i < count; i++) {
+	    int dequeued = Varints.readUnsignedInt(in);
+	    List<T> enqueued = Frames.readElements(in, this.codec);
+	    // Deltas already in the snapshot are skipped
+	    if (first + i > sequence) {
+		queue = queue.deQueue(dequeued).enQueueAll(enqueued);
+		sequence = first + i;
+	    }
+	}
+	this.current = queue;
+	this.sequence = sequence;
+    }
+
+    /**
+     * Requests a snapshot, unless one was requested recently and may still be on
+     * its way.
+     */
+    private void requestSnapshot() {
+	long now = System.currentTimeMillis();
+	if (this.snapshotRequested != 0 && now - this.snapshotRequested < RETRY_MILLIS) {
+	    return;
+	}
+
+	this.snapshotRequested = now;
+	try {
+	    this.transport.send(Frames.snapshotRequest(this.sequence));
+	} catch (IOException e) {
+	    // Requested again with the next batch
+	    this.snapshotRequested = 0;
+	}
+    }
+
+    @Override
+    public String toString() {
+	return "ReplicationFollower(sequence=" + this.sequence + ", current=" + this.current + ")";
+    }
+}
@@ -0,0 +1,397 @@
+package com.paypay.challenge.replication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.paypay.challenge.codec.Codec;
+import com.paypay.challenge.exception.ImmutableQueueException;
+import com.paypay.challenge.queue.Queue;
+
+/**
+ * Defines the writing side of a replicated queue. Every change made through the
+ * leader derives a new version of its queue, numbered by a sequence number
+ * increasing by one, and is recorded as a <em>delta</em> against the previous
+ * version: the number of dequeued elements and the enqueued elements, encoded
+ * by a {@link Codec}. So:
+ * <ul>
+ * <li>the deltas are sent to every connected follower in batches, of at most
+ * the batch size, or on {@link #flush()}, so one message covers many
+ * changes,</li>
+ * <li>the bytes sent for a change are proportional to the change, whatever the
+ * size of the queue,</li>
+ * <li>and a follower that connects, or that missed a batch, requests a
+ * snapshot of the current version, from which it applies the next deltas.</li>
+ * </ul>
+ * The leader is thread-safe. Its changes are applied, and their messages queued
+ * for every follower, in sequence order under its lock, but the messages are
+ * sent without it: each follower has its own outbound queue, sent by its own
+ * thread. A slow or hung follower therefore never delays the changes nor the
+ * other followers. When the outbound queue of a follower holds
+ * {@link #MAX_OUTBOUND_MESSAGES} messages, they are replaced by a snapshot of
+ * the current version. Failing to send never fails a change, which is applied
+ * anyway.
+ *
+ * @author hoang.tran
+ *
+ * @param <T>
+ *            the type of data of elements of the queue.
+ */
+public final class ReplicationLeader<T> implements Closeable {
+    /** The default maximum number of deltas per batch. */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /** The maximum number of messages waiting to be sent to one follower. */
+    public static final int MAX_OUTBOUND_MESSAGES = 1024;
+
+    /** The codec of the elements. */
+    private final Codec<T> codec;
+
+    /** The maximum number of deltas per batch. */
+    private final int batchSize;
+
+    /** The connected followers. */
+    private final List<Link> followers = new ArrayList<Link>();
+
+    /** The number of messages that could not be sent or were dropped so far. */
+    private final AtomicLong sendFailures = new AtomicLong();
+
+    /** The deltas not sent yet. */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /** The number of deltas not sent yet. */
+    private int pendingCount;
+
+    /** The current version of the queue. */
+    private Queue<T> current;
+
+    /** The sequence number of the current version. */
+    private long sequence;
+
+    /** Whether the leader was closed. */
+    private boolean closed;
+
+    /**
+     * Defines the connection with one follower: its transport, and the queue of
+     * the messages waiting to be sent to it by its sending thread.
+     */
+    private final class Link implements Runnable {
+	/** The leader end of the connection with the follower. */
+	private final Transport transport;
+
+	/** The messages waiting to be sent, guarded by this link. */
+	private final ArrayDeque<byte[]> outbound = new ArrayDeque<byte[]>();
+
+	/** Whether the sending thread must stop, guarded by this link. */
+	private boolean stopped;
+
+	private Link(Transport transport) {
+	    this.transport = transport;
+	}
+
+	/**
+	 * Queues the given message, called under the lock of the leader once its
+	 * current version includes the message. If the follower is too far behind,
+	 * the queued messages and the given one are replaced by a snapshot of that
+	 * version, so that the follower catches up even if no batch follows.
+	 */
+	private synchronized void queue(byte[] message) {
+	    if (this.outbound.size() == MAX_OUTBOUND_MESSAGES) {
+		ReplicationLeader.this.sendFailures.addAndGet(this.outbound.size() + 1);
+		this.outbound.clear();
+		try {
+		    message = Frames.snapshot(ReplicationLeader.this.sequence, ReplicationLeader.this.current,
+			    ReplicationLeader.this.codec);
+		} catch (IOException e) {
+		    // The follower requests a snapshot when it receives the next batch
+		    return;
+		}
+	    }
+	    this.outbound.add(message);
+	    notifyAll();
+	}
+
+	/**
+	 * Stops the sending thread once it has sent the message it is sending, if
+	 * any.
+	 */
+	private synchronized void stop() {
+	    this.stopped = true;
+	    notifyAll();
+	}
+
+	/**
+	 * Sends the queued messages in order, until stopped.
+	 */
+	@Override
+	public void run() {
+	    for (;;) {
+		byte[] message;
+		synchronized (this) {
+		    while (this.outbound.isEmpty() && !this.stopped) {
+			try {
+			    wait();
+			} catch (InterruptedException e) {
+			    return;
+			}
+		    }
+		    if (this.stopped) {
+			return;
+		    }
+		    message = this.outbound.poll();
+		}
+
+		try {
+		    this.transport.send(message);
+		} catch (IOException | RuntimeException e) {
+		    // The follower catches up from a snapshot when it receives the next batch
+		    ReplicationLeader.this.sendFailures.incrementAndGet();
+		}
+	    }
+	}
+    }
+
+    /**
+     * Creates a leader sending batches of at most {@link #DEFAULT_BATCH_SIZE}
+     * deltas.
+     *
+     * @param initial
+     *            the initial version of the queue, numbered {@code 0}.
+     * @param codec
+     *            the codec of the elements.
+     */
+    public ReplicationLeader(Queue<T> initial, Codec<T> codec) {
+	this(initial, codec, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a leader.
+     *
+     * @param initial
+     *            the initial version of the queue, numbered {@code 0}.
+     * @param codec
+     *            the codec of the elements.
+     * @param batchSize
+     *            the maximum number of deltas per batch; {@code 1} sends every
+     *            change at once.
+     * @throws IllegalArgumentException
+     *             if the queue or the codec is {@code null}, or if the batch size
+     *             is not positive.
+     */
+    public ReplicationLeader(Queue<T> initial, Codec<T> codec, int batchSize) {
+	if (initial == null || codec == null) {
+	    throw new IllegalArgumentException("Initial queue and codec must not be null");
+	}
+	if (batchSize <= 0) {
+	    throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+	}
+
+	this.current = initial;
+	this.codec = codec;
+	this.batchSize = batchSize;
+    }
+
+    /**
+     * Connects a follower, and starts the thread sending its messages. The
+     * follower starts with a snapshot, once it requests it, then receives all the
+     * batches.
+     *
+     * @param transport
+     *            the leader end of the connection with the follower, which the
+     *            leader does not close.
+     * @throws IllegalStateException
+     *             if the leader was closed.
+     */
+    public synchronized void connect(Transport transport) {
+	if (this.closed) {
+	    throw new IllegalStateException("Replication leader closed");
+	}
+
+	Link link = new Link(transport);
+	transport.setReceiver(message -> receive(link, message));
+	this.followers.add(link);
+	Thread sender = new Thread(link, "replication-sender");
+	sender.setDaemon(true);
+	sender.start();
+    }
+
+    /**
+     * Adds the element t at the end of the queue.
+     *
+     * @param t
+     *            the element to be put into the queue.
+     * @return the new version of the queue.
+     * @throws ImmutableQueueException
+     *             if the element cannot be encoded; the queue is then unchanged.
+     */
+    public Queue<T> enQueue(T t) {
+	return enQueueAll(Collections.singletonList(t));
+    }
+
+    /**
+     * Adds all the given elements at the end of the queue, as one change.
+     *
+     * @param elements
+     *            the elements to be put into the queue.
+     * @return the new version of the queue, or the current one if there are no
+     *         elements.
+     * @throws ImmutableQueueException
+     *             if an element cannot be encoded; the queue is then unchanged.
+     */
+    public synchronized Queue<T> enQueueAll(Iterable<? extends T> elements) {
+	List<T> enqueued = new ArrayList<T>();
+	for (T t : elements) {
+	    enqueued.add(t);
+	}
+	if (enqueued.isEmpty()) {
+	    return this.current;
+	}
+
+	return record(this.current.enQueueAll(enqueued), 0, enqueued);
+    }
+
+    /**
+     * Removes the given number of elements at the beginning of the queue, as one
+     * change.
+     *
+     * @param n
+     *            the number of elements to be removed.
+     * @return the new version of the queue, or the current one if {@code n} is
+     *         {@code 0}.
+     * @throws ImmutableQueueException
+     *             if the queue contains less than {@code n} elements; the queue is
+     *             then unchanged.
+     */
+    public synchronized Queue<T> deQueue(int n) {
+	Queue<T> next = this.current.deQueue(n);
+	if (n == 0) {
+	    return this.current;
+	}
+
+	return record(next, n, Collections.<T>emptyList());
+    }
+
+    /**
+     * Gets the current version of the queue.
+     *
+     * @return the version after the last change.
+     */
+    public synchronized Queue<T> current() {
+	return this.current;
+    }
+
+    /**
+     * Gets the sequence number of the current version of the queue.
+     *
+     * @return the number of changes so far.
+     */
+    public synchronized long sequence() {
+	return this.sequence;
+    }
+
+    /**
+     * Gets the number of messages that could not be sent to a follower, or were
+     * dropped because it was too far behind, so far.
+     *
+     * @return the number of messages not sent.
+     */
+    public long sendFailures() {
+	return this.sendFailures.get();
+    }
+
+    /**
+     * Queues the deltas not sent yet, if any, as one batch for all the followers,
+     * without waiting for the batch to be sent. A follower that does not receive
+     * the batch catches up from a snapshot when it receives the next one.
+     */
+    public synchronized void flush() {
+	if (this.pendingCount == 0) {
+	    return;
+	}
+
+	byte[] message = Frames.batch(this.sequence - this.pendingCount + 1, this.pendingCount,
+		this.pending.toByteArray());
+	this.pending.reset();
+	this.pendingCount = 0;
+	for (Link follower : this.followers) {
+	    follower.queue(message);
+	}
+    }
+
+    /**
+     * Stops the threads sending the messages of the followers. The messages not
+     * sent yet are dropped, and the transports are left open.
+     */
+    @Override
+    public void close() {
+	List<Link> followers;
+	synchronized (this) {
+	    this.closed = true;
+	    followers = new ArrayList<Link>(this.followers);
+	    this.followers.clear();
+	}
+	for (Link follower : followers) {
+	    follower.stop();
+	}
+    }
+
+    /**
+     * Records the change leading to the given version, and queues the pending
+     * deltas once they fill a batch.
+     */
+    private Queue<T> record(Queue<T> next, int dequeued, List<T> enqueued) {
+	// Encoded aside first, so that a failure leaves the leader unchanged
+	ByteArrayOutputStream delta = new ByteArrayOutputStream();
+	try {
+	    Frames.writeDelta(new DataOutputStream(delta), dequeued, enqueued, this.codec);
+	} catch (IOException e) {
+	    throw new ImmutableQueueException("Cannot encode replication delta", e);
+	}
+
+	this.pending.write(delta.toByteArray(), 0, delta.size());
+	this.pendingCount++;
+	this.current = next;
+	this.sequence++;
+	if (this.pendingCount == this.batchSize) {
+	    flush();
+	}
+	return next;
+    }
+
+    /**
+     * Handles a message of a follower: a snapshot request is answered with the
+     * pending deltas, then a snapshot of the current version, queued in that order
+     * under the lock so that the next batches follow them.
+     */
+    private void receive(Link follower, byte[] message) {
+	try {
+	    if (new DataInputStream(new ByteArrayInputStream(message)).readByte() != Frames.SNAPSHOT_REQUEST) {
+		return;
+	    }
+
+	    synchronized (this) {
+		if (this.closed) {
+		    return;
+		}
+		flush();
+		follower.queue(Frames.snapshot(this.sequence, this.current, this.codec));
+	    }
+	} catch (IOException e) {
+	    // The follower asks again if it is still behind later on
+	}
+    }
+
+    @Override
+    public synchronized String toString() {
+	return "ReplicationLeader(sequence=" + this.sequence + ", followers=" + this.followers.size() + ", pending="
+		+ this.pendingCount + ")";
+    }
+}
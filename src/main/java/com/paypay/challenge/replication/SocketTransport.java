@@ -0,0 +1,105 @@
+package com.paypay.challenge.replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.function.Consumer;
+
+/**
+ * Defines a {@link Transport} over a TCP socket. Each message is written as its
+ * length followed by its bytes, and the messages of the other end are read by a
+ * daemon thread, started when the receiver is set, which delivers them in order.
+ * The thread stops when the socket is closed, at either end.
+ * 
+ * @author hoang.tran
+ */
+public final class SocketTransport implements Transport {
+    /** The largest message accepted from the other end. */
+    private static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+    /** The connected socket. */
+    private final Socket socket;
+
+    /** The buffered output of the socket, guarded by this transport. */
+    private final DataOutputStream out;
+
+    /** The buffered input of the socket, only read by the reading thread. */
+    private final DataInputStream in;
+
+    /** The thread reading the messages, once the receiver is set. */
+    private Thread reader;
+
+    /**
+     * Creates a transport over the given connected socket.
+     * 
+     * @param socket
+     *            the socket, connected to the other end.
+     * @throws IOException
+     *             if the streams of the socket cannot be opened.
+     */
+    public SocketTransport(Socket socket) throws IOException {
+	this.socket = socket;
+	this.socket.setTcpNoDelay(true);
+	this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    @Override
+    public synchronized void send(byte[] message) throws IOException {
+	this.out.writeInt(message.length);
+	this.out.write(message);
+	this.out.flush();
+    }
+
+    /**
+     * {@inheritDoc} The messages are delivered on the thread of the transport.
+     * 
+     * @throws IllegalStateException
+     *             if the receiver was already set.
+     */
+    @Override
+    public synchronized void setReceiver(Consumer<byte[]> receiver) {
+	if (this.reader != null) {
+	    throw new IllegalStateException("Receiver already set");
+	}
+
+	this.reader = new Thread(() -> read(receiver), "socket-transport-reader");
+	this.reader.setDaemon(true);
+	this.reader.start();
+    }
+
+    /**
+     * Reads the messages until the socket is closed.
+     */
+    private void read(Consumer<byte[]> receiver) {
+	try {
+	    for (;;) {
+		int length = this.in.readInt();
+		if (length < 0 || length > MAX_MESSAGE_SIZE) {
+		    throw new IOException("Invalid message length: " + length);
+		}
+		byte[] message = new byte[length];
+		this.in.readFully(message);
+		receiver.accept(message);
+	    }
+	} catch (IOException e) {
+	    // End of the connection, or broken: either way there is nothing more to read
+	    close();
+	}
+    }
+
+    /**
+     * Closes the socket, which stops the reading thread.
+     */
+    @Override
+    public void close() {
+	try {
+	    this.socket.close();
+	} catch (IOException e) {
+	    // Nothing more can be done with the socket
+	}
+    }
+}
@@ -0,0 +1,38 @@
+package com.paypay.challenge.replication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Interface defining one end of a connection between a
+ * {@link ReplicationLeader} and a {@link ReplicationFollower}. A transport
+ * carries whole messages, in both directions, delivered in the order they were
+ * sent; a message may be lost, for example when the connection breaks, but
+ * never altered. The followers find out about lost messages from their sequence
+ * numbers, and catch up from a snapshot.
+ * 
+ * @author hoang.tran
+ */
+public interface Transport extends Closeable {
+    /**
+     * Sends the given message to the other end.
+     * 
+     * @param message
+     *            the bytes of the message, which the transport must not keep
+     *            once this method returns.
+     * @throws IOException
+     *             if the message cannot be sent.
+     */
+    public void send(byte[] message) throws IOException;
+
+    /**
+     * Sets the receiver of the messages coming from the other end. Messages are
+     * delivered to it one at a time, in order; they may be delivered on a thread
+     * of the transport, or on the thread sending them.
+     * 
+     * @param receiver
+     *            the receiver of the messages.
+     */
+    public void setReceiver(Consumer<byte[]> receiver);
+}
@@ -0,0 +1,30 @@
+package com.paypay.challenge.test.model;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Mutable model class defining a team of users. This class nests arrays,
+ * collections and maps of other model classes and is used in testing the deep
+ * copy of objects.
+ * 
+ * @author hoang.tran
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class Team {
+    private String name;
+    private Date foundedDate;
+    private List<User> members;
+    private Map<String, Address> offices;
+    private int[] scores;
+    private String[] tags;
+}
@@ -1,5 +1,6 @@
 package com.paypay.challenge.test.util;
 
+import java.lang.management.ManagementFactory;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -31,4 +32,22 @@ public class Utilities {
 	    return null;
 	}
     }
-}
\ No newline at end of file
+
+    /**
+     * Measures the memory allocated by the current thread while running the given
+     * task. The measurement relies on the HotSpot extension of the
+     * {@code ThreadMXBean}.
+     * 
+     * @param task
+     *            the task to be measured.
+     * @return the number of bytes allocated while running the task.
+     */
+    public static long allocatedBytes(Runnable task) {
+	com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	long threadId = Thread.currentThread().getId();
+
+	long before = threads.getThreadAllocatedBytes(threadId);
+	task.run();
+	return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+}
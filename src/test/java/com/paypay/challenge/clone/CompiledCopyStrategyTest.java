@@ -0,0 +1,252 @@
+package com.paypay.challenge.clone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.paypay.challenge.queue.Element;
+import com.paypay.challenge.test.model.Address;
+import com.paypay.challenge.test.model.Team;
+import com.paypay.challenge.test.model.User;
+import com.paypay.challenge.test.util.Utilities;
+
+/**
+ * Unit tests for the {@link CompiledCopyStrategy} class.
+ * 
+ * @author hoang.tran
+ */
+public class CompiledCopyStrategyTest {
+    private final CopyStrategy strategy = new CompiledCopyStrategy();
+
+    /**
+     * Tests that nested beans, dates, arrays, collections and maps are all copied
+     * into separate objects with the same contents.
+     */
+    @Test
+    public void copy_copiesNestedObjectsArraysAndCollections() {
+	// Prepare test data
+	User ana = new User("Ana", Utilities.stringToDate("1990-06-15"), new Address("USA", "Los Angeles", 123456));
+	Map<String, Address> offices = new LinkedHashMap<>();
+	offices.put("HQ", new Address("Japan", "Tokyo", 1000001));
+	Team team = new Team("Team A", Utilities.stringToDate("2015-10-01"), new ArrayList<>(Arrays.asList(ana)),
+		offices, new int[] { 1, 2, 3 }, new String[] { "fast", "safe" });
+
+	// Call method to be tested
+	Team copy = this.strategy.copy(team);
+
+	// Assert test result
+	assertEquals(team, copy);
+	assertFalse(team == copy);
+	assertFalse(team.getFoundedDate() == copy.getFoundedDate());
+	assertFalse(team.getMembers() == copy.getMembers());
+	assertFalse(team.getMembers().get(0) == copy.getMembers().get(0));
+	assertFalse(team.getMembers().get(0).getAddress() == copy.getMembers().get(0).getAddress());
+	assertFalse(team.getOffices().get("HQ") == copy.getOffices().get("HQ"));
+	assertFalse(team.getScores() == copy.getScores());
+	assertArrayEquals(team.getTags(), copy.getTags());
+	assertEquals(ArrayList.class, copy.getMembers().getClass());
+	assertEquals(LinkedHashMap.class, copy.getOffices().getClass());
+    }
+
+    /**
+     * Tests that changes made to the original object after the copy do not affect
+     * the copy.
+     */
+    @Test
+    public void copy_changesOnOriginalObjectDoNotAffectCopy() {
+	// Prepare test data
+	Team team = new Team("Team A", new Date(0), new ArrayList<>(Arrays.asList(new User("Ana", null, null))),
+		null, new int[] { 1 }, null);
+	Team copy = this.strategy.copy(team);
+
+	// Call method to be tested
+	team.getFoundedDate().setTime(1000);
+	team.getMembers().get(0).setName("Suzuki");
+	team.getMembers().add(new User("Chris", null, null));
+	team.getScores()[0] = 2;
+
+	// Assert test result
+	assertEquals(0, copy.getFoundedDate().getTime());
+	assertEquals(1, copy.getMembers().size());
+	assertEquals("Ana", copy.getMembers().get(0).getName());
+	assertEquals(1, copy.getScores()[0]);
+    }
+
+    /**
+     * Tests that the runtime class of objects held in generic fields is kept,
+     * which the JSON round-trip cannot do.
+     */
+    @Test
+    public void copy_keepsRuntimeClassOfGenericFields() {
+	// Prepare test data
+	Element<Address> element = new Element<>(new Address("Japan", "Tokyo", 1234),
+		new Element<>(new Address("France", "Paris", 2222)));
+
+	// Call method to be tested
+	Element<Address> copy = this.strategy.copy(element);
+
+	// Assert test result
+	assertEquals(Address.class, copy.getData().getClass());
+	assertEquals(Address.class, copy.getNextElement().getData().getClass());
+	assertEquals("Paris", copy.getNextElement().getData().getCity());
+    }
+
+    /**
+     * Tests that mutable objects held in fields or arrays declared as
+     * {@code Object} are copied too, not shared.
+     */
+    @Test
+    public void copy_copiesMutableObjectsHeldAsObject() {
+	// Prepare test data
+	Object[] values = new Object[] { new Address("Japan", "Tokyo", 1234), "Tokyo" };
+
+	// Call method to be tested
+	Object[] copy = this.strategy.copy(values);
+
+	// Assert test result
+	assertEquals(values[0], copy[0]);
+	assertFalse(values[0] == copy[0]);
+	assertSame(values[1], copy[1]);
+    }
+
+    /**
+     * Tests that sorted collections keep their comparator.
+     */
+    @Test
+    public void copy_keepsComparatorOfSortedCollections() {
+	// Prepare test data
+	TreeSet<String> cities = new TreeSet<>(Comparator.reverseOrder());
+	cities.addAll(Arrays.asList("Berlin", "Tokyo", "Paris"));
+
+	// Call method to be tested
+	TreeSet<String> copy = this.strategy.copy(cities);
+
+	// Assert test result
+	assertEquals(Arrays.asList("Tokyo", "Paris", "Berlin"), new ArrayList<>(copy));
+	assertSame(cities.comparator(), copy.comparator());
+    }
+
+    /**
+     * Tests that immutable values are shared instead of copied, and that
+     * {@code null} is copied as {@code null}.
+     */
+    @Test
+    public void copy_sharesImmutableValues() {
+	String city = new String("Tokyo");
+	Integer zipCode = Integer.valueOf(123456);
+
+	assertSame(city, this.strategy.copy(city));
+	assertSame(zipCode, this.strategy.copy(zipCode));
+	assertNull(this.strategy.copy(null));
+    }
+
+    /**
+     * Tests that an object referenced twice in the original graph is copied once,
+     * and referenced twice in the copy.
+     */
+    @Test
+    public void copy_preservesSharedReferences() {
+	// Prepare test data
+	Address home = new Address("Japan", "Tokyo", 1234);
+	List<User> family = new ArrayList<>(Arrays.asList(new User("Ana", null, home), new User("Chris", null, home)));
+
+	// Call method to be tested
+	List<User> copy = this.strategy.copy(family);
+
+	// Assert test result
+	assertEquals(family, copy);
+	assertFalse(home == copy.get(0).getAddress());
+	assertSame(copy.get(0).getAddress(), copy.get(1).getAddress());
+    }
+
+    /**
+     * Tests that cycles through arrays and collections are copied as cycles,
+     * instead of recursing forever.
+     */
+    @Test(timeout = 10000)
+    public void copy_copiesCycles() {
+	// Prepare test data
+	Object[] node = new Object[2];
+	List<Object> children = new ArrayList<>();
+	node[0] = children;
+	node[1] = node;
+	children.add(node);
+
+	// Call method to be tested
+	Object[] copy = this.strategy.copy(node);
+
+	// Assert test result
+	assertFalse(node == copy);
+	assertSame(copy, copy[1]);
+	assertFalse(children == copy[0]);
+	assertSame(copy, ((List<?>) copy[0]).get(0));
+    }
+
+    /**
+     * Tests that the elements of large arrays, collections and maps copied in
+     * parallel are copied once each, even when shared across the tasks.
+     */
+    @Test
+    public void copy_copiesLargeGraphsInParallel() {
+	// Prepare test data
+	ForkJoinPool pool = new ForkJoinPool(4);
+	CopyStrategy parallelStrategy = new CompiledCopyStrategy(new GsonCopyStrategy(), pool, 16);
+	Address[] addresses = new Address[100];
+	for (int i = 0; i < addresses.length; i++) {
+	    addresses[i] = new Address("Japan", "Tokyo", i);
+	}
+	List<User> users = new ArrayList<>();
+	Map<Integer, User> usersById = new HashMap<>();
+	for (int i = 0; i < 10000; i++) {
+	    User user = new User("User " + i, new Date(i), addresses[i % addresses.length]);
+	    users.add(user);
+	    usersById.put(i, user);
+	}
+	Object[] graph = new Object[] { users, usersById, addresses };
+
+	// Call method to be tested
+	Object[] copy;
+	try {
+	    copy = parallelStrategy.copy(graph);
+	} finally {
+	    pool.shutdown();
+	}
+
+	// Assert test result
+	@SuppressWarnings("unchecked")
+	List<User> copiedUsers = (List<User>) copy[0];
+	@SuppressWarnings("unchecked")
+	Map<Integer, User> copiedUsersById = (Map<Integer, User>) copy[1];
+	Address[] copiedAddresses = (Address[]) copy[2];
+	assertEquals(users, copiedUsers);
+	assertEquals(usersById, copiedUsersById);
+	Set<Address> distinctAddresses = Collections.newSetFromMap(new IdentityHashMap<>());
+	for (int i = 0; i < copiedUsers.size(); i++) {
+	    User copiedUser = copiedUsers.get(i);
+	    assertFalse(users.get(i) == copiedUser);
+	    assertSame(copiedUser, copiedUsersById.get(i));
+	    assertSame(copiedAddresses[i % addresses.length], copiedUser.getAddress());
+	    distinctAddresses.add(copiedUser.getAddress());
+	}
+	assertEquals(addresses.length, distinctAddresses.size());
+	assertFalse(addresses[0] == copiedAddresses[0]);
+    }
+}
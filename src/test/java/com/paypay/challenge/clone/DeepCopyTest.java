@@ -3,6 +3,11 @@ package com.paypay.challenge.clone;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -69,4 +74,91 @@ public class DeepCopyTest {
 	// meaning that the change to the original doesn't affect to the copy
 	assertNotEquals(originalObj, copyObj);
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that {@link DeepCopy#deepCopy(Object, CopyStrategy)} makes the copy
+     * with the given strategy, so that the JSON round-trip stays available.
+     */
+    @Test
+    public void deepCopy_withGivenStrategyCreatesSeparateObjectWithSameContents() {
+	// Prepare test data
+	User ana = new User("Ana", Utilities.stringToDate("1990-06-15"), new Address("USA", "Los Angeles", 123456));
+
+	// Call method to be tested
+	User anaCopy = DeepCopy.deepCopy(ana, new GsonCopyStrategy());
+
+	// Assert test result
+	assertEquals(ana, anaCopy);
+	assertFalse(ana == anaCopy);
+	assertFalse(ana.getAddress() == anaCopy.getAddress());
+    }
+
+    /**
+     * Tests that {@link DeepCopy#deepCopy(Object)} uses the strategy set by
+     * {@link DeepCopy#setStrategy(CopyStrategy)}.
+     */
+    @Test
+    public void deepCopy_usesStrategySetForApplication() {
+	// Prepare test data
+	CopyStrategy defaultStrategy = DeepCopy.getStrategy();
+	CopyStrategy gsonStrategy = new GsonCopyStrategy();
+
+	try {
+	    // Call method to be tested
+	    DeepCopy.setStrategy(gsonStrategy);
+
+	    // Assert test result
+	    assertSame(gsonStrategy, DeepCopy.getStrategy());
+	    assertEquals(new Address("Japan", "Tokyo", 1234), DeepCopy.deepCopy(new Address("Japan", "Tokyo", 1234)));
+	} finally {
+	    DeepCopy.setStrategy(defaultStrategy);
+	}
+    }
+
+    /**
+     * Tests that {@link DeepCopy#copyForStorage(Object)} makes a new copy when no
+     * interner is set, and shares one canonical copy of equal objects otherwise.
+     */
+    @Test
+    public void copyForStorage_sharesCanonicalCopyWhenInternerIsSet() {
+	// Prepare test data
+	Address tokyo = new Address("Japan", "Tokyo", 1234);
+	Address plainCopy = DeepCopy.copyForStorage(tokyo);
+
+	try {
+	    // Call method to be tested
+	    DeepCopy.setInterner(new Interner(10));
+	    Address first = DeepCopy.copyForStorage(tokyo);
+	    Address second = DeepCopy.copyForStorage(new Address("Japan", "Tokyo", 1234));
+
+	    // Assert test result
+	    assertEquals(tokyo, plainCopy);
+	    assertFalse(tokyo == plainCopy);
+	    assertEquals(tokyo, first);
+	    assertFalse(tokyo == first);
+	    assertSame(first, second);
+	    assertEquals(1, DeepCopy.getInterner().hits());
+	} finally {
+	    DeepCopy.setInterner(null);
+	}
+    }
+
+    /**
+     * Tests that {@link DeepCopy#deepCopy(Object)} keeps the shape of the graph:
+     * users sharing one address in the original share one copy of it.
+     */
+    @Test
+    public void deepCopy_preservesSharedReferences() {
+	// Prepare test data
+	Address home = new Address("USA", "Los Angeles", 123456);
+	List<User> users = new ArrayList<>(Arrays.asList(new User("Ana", null, home), new User("Chris", null, home)));
+
+	// Call method to be tested
+	List<User> copy = DeepCopy.deepCopy(users);
+
+	// Assert test result
+	assertEquals(users, copy);
+	assertFalse(home == copy.get(0).getAddress());
+	assertSame(copy.get(0).getAddress(), copy.get(1).getAddress());
+    }
+}
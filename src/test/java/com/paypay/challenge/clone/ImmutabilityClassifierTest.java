@@ -0,0 +1,152 @@
+package com.paypay.challenge.clone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.paypay.challenge.test.model.Address;
+import com.paypay.challenge.test.model.User;
+import com.paypay.challenge.test.util.Utilities;
+
+/**
+ * Unit tests for the {@link ImmutabilityClassifier} class.
+ * 
+ * @author hoang.tran
+ */
+public class ImmutabilityClassifierTest {
+    /** A final class with only final fields of immutable types. */
+    static final class Country {
+	private final String name;
+	private final int code;
+	private final TimeUnit timeZoneUnit;
+
+	Country(String name, int code, TimeUnit timeZoneUnit) {
+	    this.name = name;
+	    this.code = code;
+	    this.timeZoneUnit = timeZoneUnit;
+	}
+    }
+
+    /** A final class with a final field of its own type. */
+    static final class Region {
+	private final String name;
+	private final Region parent;
+
+	Region(String name, Region parent) {
+	    this.name = name;
+	    this.parent = parent;
+	}
+    }
+
+    /** A final class with a final field of a mutable type. */
+    static final class Office {
+	private final Address address;
+
+	Office(Address address) {
+	    this.address = address;
+	}
+    }
+
+    /** A non-final class annotated as immutable by its author. */
+    @Immutable
+    static class Currency {
+	private String code;
+    }
+
+    /** A non-final class marked as immutable by its author. */
+    static class Language implements ImmutableValue {
+	private String code;
+    }
+
+    /**
+     * Tests that the well-known immutable JDK classes are classified as
+     * immutable, and the mutable ones are not.
+     */
+    @Test
+    public void isImmutableClass_recognizesJdkClasses() {
+	assertTrue(ImmutabilityClassifier.isImmutableClass(String.class));
+	assertTrue(ImmutabilityClassifier.isImmutableClass(Long.class));
+	assertTrue(ImmutabilityClassifier.isImmutableClass(BigInteger.class));
+	assertTrue(ImmutabilityClassifier.isImmutableClass(LocalDate.class));
+	assertTrue(ImmutabilityClassifier.isImmutableClass(ZoneId.of("Asia/Tokyo").getClass()));
+	assertTrue(ImmutabilityClassifier.isImmutableClass(TimeUnit.class));
+	assertFalse(ImmutabilityClassifier.isImmutableClass(Date.class));
+	assertFalse(ImmutabilityClassifier.isImmutableClass(StringBuilder.class));
+	assertFalse(ImmutabilityClassifier.isImmutableClass(int[].class));
+    }
+
+    /**
+     * Tests that the classes of the application are classified from their
+     * fields, their annotation or their marker interface.
+     */
+    @Test
+    public void isImmutableClass_recognizesApplicationClasses() {
+	assertTrue(ImmutabilityClassifier.isImmutableClass(Country.class));
+	assertTrue(ImmutabilityClassifier.isImmutableClass(Region.class));
+	assertTrue(ImmutabilityClassifier.isImmutableClass(Currency.class));
+	assertTrue(ImmutabilityClassifier.isImmutableClass(Language.class));
+	assertFalse(ImmutabilityClassifier.isImmutableClass(Office.class));
+	assertFalse(ImmutabilityClassifier.isImmutableClass(Address.class));
+	assertFalse(ImmutabilityClassifier.isImmutableClass(User.class));
+    }
+
+    /**
+     * Tests that declared types are only immutable when no mutable subclass can
+     * be assigned to them.
+     */
+    @Test
+    public void isImmutableDeclaredType_excludesTypesWithMutableSubclasses() {
+	assertTrue(ImmutabilityClassifier.isImmutableDeclaredType(int.class));
+	assertTrue(ImmutabilityClassifier.isImmutableDeclaredType(String.class));
+	assertTrue(ImmutabilityClassifier.isImmutableDeclaredType(Language.class));
+	assertFalse(ImmutabilityClassifier.isImmutableDeclaredType(BigInteger.class));
+	assertFalse(ImmutabilityClassifier.isImmutableDeclaredType(Object.class));
+    }
+
+    /**
+     * Tests that {@link DeepCopy#deepCopy(Object)} shares immutable objects by
+     * reference, and still copies mutable ones.
+     */
+    @Test
+    public void deepCopy_sharesImmutableObjects() {
+	Country japan = new Country("Japan", 81, TimeUnit.HOURS);
+	Address tokyo = new Address("Japan", "Tokyo", 1234);
+
+	assertSame(japan, DeepCopy.deepCopy(japan));
+	assertSame(japan, DeepCopy.deepCopy(japan, new GsonCopyStrategy()));
+	assertFalse(tokyo == DeepCopy.deepCopy(tokyo));
+	assertEquals(tokyo, DeepCopy.deepCopy(tokyo));
+    }
+
+    /**
+     * Tests that, once the verdict of a class is cached, copying its immutable
+     * instances does not allocate memory.
+     */
+    @Test
+    public void deepCopy_ofImmutableObjectsDoesNotAllocate() {
+	// Prepare test data
+	Country japan = new Country("Japan", 81, TimeUnit.HOURS);
+	for (int i = 0; i < 10000; i++) {
+	    DeepCopy.deepCopy(japan);
+	}
+
+	// Call method to be tested
+	long allocated = Utilities.allocatedBytes(() -> {
+	    for (int i = 0; i < 100000; i++) {
+		DeepCopy.deepCopy(japan);
+	    }
+	});
+
+	// Assert test result: allow for the measurement's own bookkeeping
+	assertTrue("allocated " + allocated + " bytes", allocated < 100000);
+    }
+}
@@ -0,0 +1,214 @@
+package com.paypay.challenge.clone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.paypay.challenge.metrics.Metrics;
+import com.paypay.challenge.metrics.MetricsRegistry;
+import com.paypay.challenge.queue.ChunkedImmutableQueue;
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link Interner} class.
+ *
+ * @author hoang.tran
+ */
+public class InternerTest {
+    /**
+     * Tests that equal values are interned as one instance, and that values of
+     * different classes are not mixed up even when they are equal.
+     */
+    @Test
+    public void intern_returnsCanonicalInstanceOfEqualValues() {
+	// Prepare test data
+	Interner interner = new Interner(100);
+	Address tokyo = new Address("Japan", "Tokyo", 1234);
+
+	// Call method to be tested
+	Address first = interner.intern(tokyo);
+	Address second = interner.intern(new Address("Japan", "Tokyo", 1234));
+	Address paris = interner.intern(new Address("France", "Paris", 2222));
+	List<Integer> list = interner.intern(new ArrayList<>(Arrays.asList(1, 2)));
+	List<Integer> linkedList = interner.intern(new LinkedList<>(Arrays.asList(1, 2)));
+
+	// Assert test result
+	assertSame(tokyo, first);
+	assertSame(tokyo, second);
+	assertSame(tokyo, interner.find(new Address("Japan", "Tokyo", 1234)));
+	assertEquals("Paris", paris.getCity());
+	assertEquals(LinkedList.class, linkedList.getClass());
+	assertNotSame(list, linkedList);
+	assertNull(interner.find(new Address("Italy", "Rome", 3333)));
+	assertNull(interner.intern(null));
+	assertEquals(2, interner.hits());
+	assertEquals(4, interner.misses());
+    }
+
+    /**
+     * Tests that the table does not keep its instances alive, and forgets them
+     * once they are collected.
+     */
+    @Test(timeout = 30000)
+    public void intern_forgetsCollectedInstances() throws InterruptedException {
+	// Prepare test data
+	Interner interner = new Interner(100);
+	for (int i = 0; i < 50; i++) {
+	    interner.intern(new Address("Japan", "Tokyo", i));
+	}
+
+	// Call method to be tested
+	for (int attempt = 0; attempt < 20 && interner.size() > 0; attempt++) {
+	    System.gc();
+	    Thread.sleep(50);
+	}
+
+	// Assert test result
+	assertEquals(0, interner.size());
+    }
+
+    /**
+     * Tests that values are returned as they are once the table is full.
+     */
+    @Test
+    public void intern_doesNotAddValuesOnceFull() {
+	// Prepare test data
+	Interner interner = new Interner(2);
+	List<Address> kept = new ArrayList<>();
+	kept.add(interner.intern(new Address("Japan", "Tokyo", 1)));
+	kept.add(interner.intern(new Address("Japan", "Tokyo", 2)));
+
+	// Call method to be tested
+	Address third = new Address("Japan", "Tokyo", 3);
+	Address interned = interner.intern(third);
+
+	// Assert test result
+	assertSame(third, interned);
+	assertNull(interner.find(new Address("Japan", "Tokyo", 3)));
+	assertSame(kept.get(1), interner.intern(new Address("Japan", "Tokyo", 2)));
+	assertEquals(2, interner.size());
+    }
+
+    /**
+     * Tests that threads interning equal values at the same time all get the same
+     * instance.
+     */
+    @Test(timeout = 30000)
+    public void intern_givesSameInstanceToConcurrentThreads() throws Exception {
+	// Prepare test data
+	Interner interner = new Interner(1000);
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	List<Callable<List<Address>>> tasks = new ArrayList<>();
+	for (int t = 0; t < 4; t++) {
+	    tasks.add(() -> {
+		List<Address> interned = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+		    interned.add(interner.intern(new Address("Japan", "Tokyo", i)));
+		}
+		return interned;
+	    });
+	}
+
+	// Call method to be tested
+	List<Future<List<Address>>> results;
+	try {
+	    results = executor.invokeAll(tasks);
+	} finally {
+	    executor.shutdown();
+	}
+
+	// Assert test result
+	List<Address> first = results.get(0).get();
+	for (Future<List<Address>> result : results) {
+	    for (int i = 0; i < 500; i++) {
+		assertSame(first.get(i), result.get().get(i));
+	    }
+	}
+	assertEquals(1500, interner.hits());
+    }
+
+    /**
+     * Tests that, on a workload where most enqueued values are equal, interning
+     * the copies stored by the queues makes one copy per distinct value, shared
+     * by all the elements equal to it, instead of one copy per element.
+     */
+    @Test
+    public void copyForStorage_deduplicatesQueuedValues() {
+	// Prepare test data
+	int size = 200000;
+	Interner interner = new Interner(10000);
+	MetricsRegistry plain = new MetricsRegistry();
+	MetricsRegistry interned = new MetricsRegistry();
+
+	// Call method to be tested
+	try {
+	    Metrics.setRecorder(plain);
+	    duplicatedQueue(size);
+	    Metrics.setRecorder(interned);
+	    DeepCopy.setInterner(interner);
+	    duplicatedQueue(size);
+	} finally {
+	    DeepCopy.setInterner(null);
+	    Metrics.setRecorder(null);
+	}
+
+	// Assert test result
+	assertEquals(size, plain.copies());
+	assertEquals(100, interned.copies());
+	assertEquals(size - 100, interner.hits());
+	assertEquals(100, interner.misses());
+    }
+
+    /**
+     * Tests that the mutable copies interned for a queue are never handed out, so
+     * changing what a queue hands out cannot change the other queues sharing the
+     * same canonical instance.
+     */
+    @Test
+    public void copyForStorage_neverHandsOutInternedMutableValues() {
+	// Prepare test data
+	Queue<Address> first;
+	Queue<Address> second;
+	try {
+	    DeepCopy.setInterner(new Interner(100));
+	    first = new ChunkedImmutableQueue<Address>().enQueue(new Address("Japan", "Tokyo", 1234));
+	    second = new ChunkedImmutableQueue<Address>().enQueue(new Address("Japan", "Tokyo", 1234));
+	} finally {
+	    DeepCopy.setInterner(null);
+	}
+
+	// Call method to be tested
+	first.head().setCity("Osaka");
+	first.iterator().next().setCity("Osaka");
+
+	// Assert test result
+	assertEquals("Tokyo", first.head().getCity());
+	assertEquals("Tokyo", second.head().getCity());
+    }
+
+    /**
+     * Creates a queue of the given number of addresses, cycling through a hundred
+     * distinct ones, each enqueued as a new instance.
+     */
+    private static Queue<Address> duplicatedQueue(int size) {
+	Queue.Builder<Address> builder = ChunkedImmutableQueue.builder();
+	for (int i = 0; i < size; i++) {
+	    builder.enQueue(new Address("Japan", "Tokyo", i % 100));
+	}
+	return builder.freeze();
+    }
+}
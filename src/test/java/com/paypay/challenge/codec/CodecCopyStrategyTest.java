@@ -0,0 +1,81 @@
+package com.paypay.challenge.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.paypay.challenge.clone.CopyStrategy;
+import com.paypay.challenge.exception.DeepCopyException;
+import com.paypay.challenge.test.model.Address;
+import com.paypay.challenge.test.model.Team;
+import com.paypay.challenge.test.model.User;
+
+/**
+ * Unit tests for the {@link CodecCopyStrategy} class.
+ *
+ * @author hoang.tran
+ */
+public class CodecCopyStrategyTest {
+    private final CopyStrategy strategy = new CodecCopyStrategy();
+
+    /**
+     * Tests that nested objects are copied into separate objects with the same
+     * contents, and that the buffer reused by successive copies does not leak
+     * bytes from one copy into the next.
+     */
+    @Test
+    public void copy_copiesNestedObjects() {
+	// Prepare test data
+	Team team = CodecRegistryTest.team();
+
+	// Call method to be tested
+	Team copy = this.strategy.copy(team);
+	Address address = this.strategy.copy(new Address("Japan", "Tokyo", 1234));
+
+	// Assert test result
+	assertEquals(team, copy);
+	assertFalse(team == copy);
+	assertFalse(team.getFoundedDate() == copy.getFoundedDate());
+	assertFalse(team.getMembers().get(0) == copy.getMembers().get(0));
+	assertFalse(team.getScores() == copy.getScores());
+	assertEquals(new Address("Japan", "Tokyo", 1234), address);
+	assertNull(this.strategy.copy(null));
+    }
+
+    /**
+     * Tests that changes made to the original object after the copy do not affect
+     * the copy.
+     */
+    @Test
+    public void copy_changesOnOriginalObjectDoNotAffectCopy() {
+	// Prepare test data
+	Team team = new Team("Team A", new Date(0), new ArrayList<>(Arrays.asList(new User("Ana", null, null))),
+		null, new int[] { 1 }, null);
+	Team copy = this.strategy.copy(team);
+
+	// Call method to be tested
+	team.getFoundedDate().setTime(1000);
+	team.getMembers().get(0).setName("Suzuki");
+	team.getScores()[0] = 2;
+
+	// Assert test result
+	assertEquals(0, copy.getFoundedDate().getTime());
+	assertEquals("Ana", copy.getMembers().get(0).getName());
+	assertEquals(1, copy.getScores()[0]);
+    }
+
+    /**
+     * Tests that objects the registry cannot encode fail with a
+     * {@link DeepCopyException}.
+     */
+    @Test(expected = DeepCopyException.class)
+    public void copy_failsOnObjectWithoutCodec() {
+	this.strategy.copy(new Object());
+    }
+}
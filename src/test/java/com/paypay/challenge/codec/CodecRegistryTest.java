@@ -0,0 +1,275 @@
+package com.paypay.challenge.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.paypay.challenge.queue.Element;
+import com.paypay.challenge.test.model.Address;
+import com.paypay.challenge.test.model.Team;
+import com.paypay.challenge.test.model.User;
+import com.paypay.challenge.test.util.Utilities;
+
+/**
+ * Unit tests for the {@link CodecRegistry} class.
+ *
+ * @author hoang.tran
+ */
+public class CodecRegistryTest {
+    private final CodecRegistry registry = new CodecRegistry();
+
+    /**
+     * Tests that nested beans, dates, arrays, collections and maps are decoded
+     * into separate objects with the same contents, and that the binary form is
+     * much smaller than the JSON one.
+     */
+    @Test
+    public void codecFor_roundTripsTeamInLessBytesThanJson() throws IOException {
+	// Prepare test data
+	Team team = team();
+
+	// Call method to be tested
+	byte[] binary = encode(this.registry.codecFor(Team.class), team);
+	byte[] json = encode(new JsonCodec<>(Team.class), team);
+	Team decoded = decode(this.registry.codecFor(Team.class), binary);
+
+	// Assert test result
+	assertEquals(team, decoded);
+	assertNotSame(team.getMembers().get(0), decoded.getMembers().get(0));
+	assertEquals(LinkedHashMap.class, decoded.getOffices().getClass());
+	assertTrue(binary.length + " bytes, " + json.length + " bytes as JSON", binary.length * 2 < json.length);
+    }
+
+    /**
+     * Tests that {@code null} fields, elements and values are decoded as
+     * {@code null}.
+     */
+    @Test
+    public void codecFor_roundTripsNulls() throws IOException {
+	// Prepare test data
+	Team team = new Team(null, null, new ArrayList<>(Arrays.asList(null, new User("Ana", null, null))), null,
+		null, new String[] { null, "fast" });
+	Codec<Team> codec = this.registry.codecFor(Team.class);
+
+	// Call method to be tested
+	Team decoded = decode(codec, encode(codec, team));
+
+	// Assert test result
+	assertEquals(team, decoded);
+	assertNull(decode(codec, encode(codec, null)));
+    }
+
+    /**
+     * Tests that values held as {@code Object} or as a type variable are decoded
+     * as instances of their own class, and that classes referring to themselves
+     * are supported.
+     */
+    @Test
+    public void codecFor_keepsRuntimeClassOfValues() throws IOException {
+	// Prepare test data
+	Element<Object> element = new Element<Object>(new Address("Japan", "Tokyo", 1234),
+		new Element<Object>(TimeUnit.SECONDS, new Element<Object>(42L)));
+	List<Object> values = Arrays.asList(UUID.randomUUID(), new BigDecimal("12.345"), 'c', new double[] { 1.5 },
+		new TreeSet<>(Arrays.asList("b", "a")), new LinkedList<>(Arrays.asList(1, 2)));
+
+	// Call method to be tested
+	@SuppressWarnings("unchecked")
+	Element<Object> decodedElement = roundTrip(this.registry.codecFor(Element.class), element);
+	List<?> decodedValues = (List<?>) roundTrip(this.registry.codecFor(Object.class), values);
+
+	// Assert test result
+	assertEquals(new Address("Japan", "Tokyo", 1234), decodedElement.getData());
+	assertEquals(TimeUnit.SECONDS, decodedElement.getNextElement().getData());
+	assertEquals(Long.valueOf(42), decodedElement.getNextElement().getNextElement().getData());
+	assertNull(decodedElement.getNextElement().getNextElement().getNextElement());
+	assertEquals(values.get(0), decodedValues.get(0));
+	assertEquals(values.get(1), decodedValues.get(1));
+	assertEquals(values.get(2), decodedValues.get(2));
+	assertArrayEquals((double[]) values.get(3), (double[]) decodedValues.get(3), 0);
+	assertEquals(TreeSet.class, decodedValues.get(4).getClass());
+	assertEquals(values.get(4), decodedValues.get(4));
+	assertEquals(LinkedList.class, decodedValues.get(5).getClass());
+	assertEquals(values.get(5), decodedValues.get(5));
+    }
+
+    /**
+     * Tests that collections and maps whose class cannot be instantiated, such as
+     * unmodifiable views, are decoded as the default implementation of their
+     * declared type.
+     */
+    @Test
+    public void codecFor_decodesViewsAsDefaultImplementation() throws IOException {
+	// Prepare test data
+	Map<String, Address> offices = Collections.singletonMap("HQ", new Address("Japan", "Tokyo", 1234));
+	Team team = new Team("Team A", null, Collections.unmodifiableList(Arrays.asList(new User("Ana", null, null))),
+		offices, null, null);
+
+	// Call method to be tested
+	Team decoded = roundTrip(this.registry.codecFor(Team.class), team);
+
+	// Assert test result
+	assertEquals(team, decoded);
+	assertEquals(ArrayList.class, decoded.getMembers().getClass());
+    }
+
+    /**
+     * Tests that a registered codec replaces the one the registry would build.
+     */
+    @Test
+    public void register_replacesBuiltCodec() throws IOException {
+	// Prepare test data
+	this.registry.register(Address.class, new Codec<Address>() {
+	    public void encode(Address value, DataOutput out) throws IOException {
+		out.writeUTF(value.getCity());
+	    }
+
+	    public Address decode(DataInput in) throws IOException {
+		return new Address("Japan", in.readUTF(), 0);
+	    }
+	});
+	User user = new User("Ana", null, new Address("USA", "Los Angeles", 123456));
+
+	// Call method to be tested
+	User decoded = roundTrip(this.registry.codecFor(User.class), user);
+
+	// Assert test result
+	assertEquals(new Address("Japan", "Los Angeles", 0), decoded.getAddress());
+    }
+
+    /**
+     * Tests that decoding truncated bytes fails instead of giving a partial
+     * value.
+     */
+    @Test(expected = IOException.class)
+    public void decode_failsOnTruncatedInput() throws IOException {
+	byte[] bytes = encode(this.registry.codecFor(Team.class), team());
+	decode(this.registry.codecFor(Team.class), Arrays.copyOf(bytes, bytes.length / 2));
+    }
+
+    /**
+     * Tests that a class read by name which is not assignable to the declared
+     * type is rejected, for values and for implementations of collections.
+     */
+    @Test
+    public void decode_rejectsClassesNotOfDeclaredType() throws IOException {
+	// Prepare test data
+	byte[] address = encode(this.registry.codecFor(Object.class), new Address("Japan", "Tokyo", 1234));
+	Team team = team();
+	team.setMembers(new LinkedList<>(team.getMembers()));
+	byte[] members = encode(this.registry.codecFor(Team.class), team);
+	String encoded = new String(members, StandardCharsets.ISO_8859_1);
+	byte[] tampered = encoded.replace("java.util.LinkedList", "java.util.ArrayDeque")
+		.getBytes(StandardCharsets.ISO_8859_1);
+
+	// Call method to be tested and assert test result
+	assertEquals(LinkedList.class, decode(this.registry.codecFor(Team.class), members).getMembers().getClass());
+	assertDecodeFails(this.registry.codecFor(CharSequence.class), address, "is not a java.lang.CharSequence");
+	assertDecodeFails(this.registry.codecFor(Team.class), tampered, "is not a java.util.List");
+    }
+
+    /**
+     * Tests that, once classes are allowed, only those classes are read by name.
+     */
+    @Test
+    public void allow_rejectsOtherClasses() throws IOException {
+	// Prepare test data
+	List<Object> values = new LinkedList<>(Arrays.asList(new Address("Japan", "Tokyo", 1234)));
+	byte[] bytes = encode(this.registry.codecFor(Object.class), values);
+	this.registry.allow("java.util.");
+
+	// Call method to be tested and assert test result
+	assertDecodeFails(this.registry.codecFor(Object.class), bytes,
+		"not allowed: com.paypay.challenge.test.model.Address");
+	this.registry.allow(Address.class.getName());
+	assertEquals(values, decode(this.registry.codecFor(Object.class), bytes));
+    }
+
+    /**
+     * Tests that lines are read as by {@link java.io.DataInputStream#readLine()},
+     * whatever their end.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void readLine_readsLinesWithAnyEnd() throws IOException {
+	// Prepare test data
+	byte[] bytes = "first\nsecond\r\nthird\r\rlast".getBytes(StandardCharsets.ISO_8859_1);
+	BinaryBuffer buffer = new BinaryBuffer(bytes.length);
+	buffer.write(bytes);
+	DataInputStream stream = new DataInputStream(new ByteArrayInputStream(bytes));
+
+	// Call method to be tested and assert test result
+	for (String expected : Arrays.asList("first", "second", "third", "", "last", null)) {
+	    assertEquals(expected, stream.readLine());
+	    assertEquals(expected, buffer.readLine());
+	}
+    }
+
+    /**
+     * Checks that decoding the given bytes fails with a message containing the
+     * given text.
+     */
+    private static void assertDecodeFails(Codec<?> codec, byte[] bytes, String message) {
+	try {
+	    decode(codec, bytes);
+	    fail("Decoded a class that should be rejected");
+	} catch (IOException e) {
+	    assertTrue(e.getMessage(), e.getMessage().contains(message));
+	}
+    }
+
+    /**
+     * Creates a team with all of its fields set.
+     */
+    static Team team() {
+	User ana = new User("Ana", Utilities.stringToDate("1990-06-15"), new Address("USA", "Los Angeles", 123456));
+	User suzuki = new User("Suzuki", Utilities.stringToDate("1985-01-20"), new Address("Japan", "Osaka", 5300001));
+	Map<String, Address> offices = new LinkedHashMap<>();
+	offices.put("HQ", new Address("Japan", "Tokyo", 1000001));
+	offices.put("EU", new Address("France", "Paris", 75001));
+	return new Team("Team A", new Date(1443657600000L), new ArrayList<>(Arrays.asList(ana, suzuki)), offices,
+		new int[] { 1, 2, 300, -4 }, new String[] { "fast", "safe" });
+    }
+
+    /**
+     * Encodes then decodes the given value with the given codec.
+     */
+    private static <T> T roundTrip(Codec<T> codec, T value) throws IOException {
+	return decode(codec, encode(codec, value));
+    }
+
+    private static <T> byte[] encode(Codec<T> codec, T value) throws IOException {
+	BinaryBuffer buffer = new BinaryBuffer(16);
+	codec.encode(value, buffer);
+	return buffer.toByteArray();
+    }
+
+    private static <T> T decode(Codec<T> codec, byte[] bytes) throws IOException {
+	BinaryBuffer buffer = new BinaryBuffer(bytes.length);
+	buffer.write(bytes);
+	return codec.decode(buffer);
+    }
+}
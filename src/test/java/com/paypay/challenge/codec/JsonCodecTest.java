@@ -0,0 +1,68 @@
+package com.paypay.challenge.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link JsonCodec} class.
+ *
+ * @author hoang.tran
+ */
+public class JsonCodecTest {
+    /**
+     * Tests that a codec created with a class reads back equal but separate
+     * values.
+     */
+    @Test
+    public void decode_givesCopyOfEncodedValue() throws IOException {
+	// Prepare test data
+	Address address = new Address("Japan", "Tokyo", 1234);
+
+	// Call method to be tested
+	Address decoded = roundTrip(new JsonCodec<>(Address.class), address);
+
+	// Assert test result
+	assertEquals(address, decoded);
+	assertNotSame(address, decoded);
+    }
+
+    /**
+     * Tests that a codec created without any class reads back values of different
+     * classes, and {@code null}, as they were encoded.
+     */
+    @Test
+    public void decode_withoutClassGivesValuesOfTheirOwnClass() throws IOException {
+	// Prepare test data
+	JsonCodec<Object> codec = new JsonCodec<>();
+
+	// Call method to be tested and assert test result
+	assertEquals(new Address("France", "Paris", 2222), roundTrip(codec, new Address("France", "Paris", 2222)));
+	assertEquals(Integer.valueOf(42), roundTrip(codec, 42));
+	assertEquals("text", roundTrip(codec, "text"));
+	assertNull(roundTrip(codec, null));
+    }
+
+    /**
+     * Encodes then decodes the given value with the given codec.
+     */
+    private static <T> T roundTrip(Codec<T> codec, T value) throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try (DataOutputStream out = new DataOutputStream(bytes)) {
+	    codec.encode(value, out);
+	}
+	try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+	    return codec.decode(in);
+	}
+    }
+}
@@ -0,0 +1,55 @@
+package com.paypay.challenge.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link Log2Histogram} class.
+ *
+ * @author hoang.tran
+ */
+public class Log2HistogramTest {
+    /**
+     * Tests that the percentiles are the upper bounds of the buckets of the
+     * recorded values.
+     */
+    @Test
+    public void percentile_givesUpperBoundOfBucket() {
+	// Prepare test data
+	Log2Histogram histogram = new Log2Histogram();
+
+	// Call method to be tested
+	for (int i = 0; i < 99; i++) {
+	    histogram.record(100);
+	}
+	histogram.record(5000);
+	histogram.record(-1);
+
+	// Assert test result
+	assertEquals(101, histogram.count());
+	assertEquals(128, histogram.percentile(50));
+	assertEquals(128, histogram.percentile(99));
+	assertEquals(8192, histogram.percentile(100));
+	assertEquals(5000, histogram.max());
+	assertEquals(0, new Log2Histogram().percentile(99));
+    }
+
+    /**
+     * Tests that the extreme values are counted in the first and last buckets.
+     */
+    @Test
+    public void record_countsExtremeValues() {
+	// Prepare test data
+	Log2Histogram histogram = new Log2Histogram();
+
+	// Call method to be tested
+	histogram.record(0);
+	histogram.record(Long.MAX_VALUE);
+
+	// Assert test result
+	assertEquals(2, histogram.count());
+	assertEquals(1, histogram.percentile(50));
+	assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+    }
+}
@@ -0,0 +1,116 @@
+package com.paypay.challenge.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.paypay.challenge.queue.ChunkedImmutableQueue;
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.queue.SlowImmutableQueue;
+import com.paypay.challenge.test.model.Address;
+import com.paypay.challenge.test.util.Utilities;
+
+/**
+ * Unit tests for the {@link Metrics} class, with a {@link MetricsRegistry} as
+ * recorder.
+ *
+ * @author hoang.tran
+ */
+public class MetricsTest {
+    @After
+    public void tearDown() {
+	Metrics.setRecorder(null);
+    }
+
+    /**
+     * Tests that the operations of an instrumented queue, and of the versions
+     * derived from it, are counted with the depth of each version.
+     */
+    @Test
+    public void instrument_recordsOperationsOfAllVersions() {
+	// Prepare test data
+	MetricsRegistry registry = new MetricsRegistry();
+	Metrics.setRecorder(registry);
+	Queue<Integer> queue = Metrics.instrument(new ChunkedImmutableQueue<Integer>());
+
+	// Call method to be tested
+	queue = queue.enQueue(1).enQueue(2).enQueueAll(Arrays.asList(3, 4, 5));
+	queue.head();
+	List<Integer> drained = new ArrayList<>();
+	queue = queue.deQueue().drainTo(drained, 2);
+
+	// Assert test result
+	assertEquals(2, registry.count(Operation.ENQUEUE));
+	assertEquals(1, registry.count(Operation.ENQUEUE_ALL));
+	assertEquals(1, registry.count(Operation.HEAD));
+	assertEquals(1, registry.count(Operation.DEQUEUE));
+	assertEquals(1, registry.count(Operation.DRAIN));
+	assertEquals(6, registry.depth().count());
+	assertEquals(5, registry.depth().max());
+	assertEquals(Arrays.asList(2, 3), drained);
+	assertEquals(Arrays.asList(4, 5), Arrays.asList(queue.head(), queue.deQueue().head()));
+	assertSame(queue, Metrics.instrument(queue));
+    }
+
+    /**
+     * Tests that the deep copies made by an enqueue and by the reads are counted
+     * with the bytes they allocate, and that the elements created are counted.
+     */
+    @Test
+    public void setRecorder_recordsCopiesAndElements() {
+	// Prepare test data
+	MetricsRegistry registry = new MetricsRegistry(true);
+	Metrics.setRecorder(registry);
+	Queue<Address> queue = Metrics.instrument(new SlowImmutableQueue<Address>());
+
+	// Call method to be tested
+	queue = queue.enQueue(new Address("Japan", "Tokyo", 1234)).enQueue(new Address("France", "Paris", 2222));
+	long copiesAfterEnqueue = registry.copies();
+	queue.head();
+
+	// Assert test result
+	assertTrue(copiesAfterEnqueue >= 2);
+	assertEquals(copiesAfterEnqueue + 1, registry.copies());
+	assertTrue(registry.copiedBytes() > 0);
+	assertTrue(registry.elements() >= 2);
+	assertEquals(registry.copies(), registry.copyLatency().count());
+    }
+
+    /**
+     * Tests that nothing is recorded, nor allocated, by an instrumented queue
+     * while metrics are disabled.
+     */
+    @Test
+    public void instrument_allocatesNothingWhenDisabled() {
+	// Prepare test data
+	MetricsRegistry registry = new MetricsRegistry();
+	Queue<Integer> queue = Metrics.instrument(new ChunkedImmutableQueue<Integer>()).enQueue(1);
+	Runnable heads = () -> {
+	    for (int i = 0; i < 1000; i++) {
+		queue.head();
+	    }
+	};
+	// Run the measured code until it is compiled, as the thread may allocate
+	// while switching from interpreted to compiled code
+	for (int i = 0; i < 500; i++) {
+	    heads.run();
+	}
+
+	// Call method to be tested
+	long allocated = Utilities.allocatedBytes(heads);
+	Metrics.setRecorder(registry);
+	Metrics.setRecorder(null);
+	queue.head();
+
+	// Assert test result
+	assertEquals(0, allocated);
+	assertEquals(0, registry.count(Operation.HEAD));
+    }
+}
@@ -0,0 +1,57 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BankersImmutableQueue} class.
+ * 
+ * @author hoang.tran
+ */
+public class BankersImmutableQueueTest extends ImmutableQueueContractTest {
+    @Override
+    protected <T> Queue<T> emptyQueue() {
+	return new BankersImmutableQueue<T>();
+    }
+
+    /**
+     * Tests that a large number of enqueues and dequeues keeps the first in first
+     * out order; with the slow queue this workload would not finish in time.
+     */
+    @Test(timeout = 10000)
+    public void enQueueAndDeQueue_handleLargeQueues() {
+	// Prepare test data
+	Queue<Integer> queue = new BankersImmutableQueue<>();
+	for (int i = 0; i < 10000; i++) {
+	    queue = queue.enQueue(i);
+	}
+
+	// Call method to be tested and assert test result
+	for (int i = 0; i < 10000; i++) {
+	    assertEquals(Integer.valueOf(i), queue.head());
+	    queue = queue.deQueue();
+	}
+	assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Tests that dequeuing repeatedly from the same old version of the queue,
+     * which forces the shared rotation many times, keeps returning the same
+     * result.
+     */
+    @Test
+    public void deQueue_onSameVersionRepeatedlyReturnsSameResult() {
+	// Prepare test data
+	Queue<Integer> queue = new BankersImmutableQueue<>();
+	for (int i = 0; i < 100; i++) {
+	    queue = queue.enQueue(i);
+	}
+
+	// Call method to be tested and assert test result
+	for (int i = 0; i < 5; i++) {
+	    assertEquals(Integer.valueOf(1), queue.deQueue().head());
+	}
+    }
+}
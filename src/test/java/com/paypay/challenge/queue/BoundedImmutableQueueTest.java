@@ -0,0 +1,121 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Unit tests for the {@link BoundedImmutableQueue} class.
+ *
+ * @author hoang.tran
+ */
+public class BoundedImmutableQueueTest extends ImmutableQueueContractTest {
+    @Override
+    protected <T> Queue<T> emptyQueue() {
+	return new BoundedImmutableQueue<T>(1 << 20, OverflowPolicy.REJECT);
+    }
+
+    /**
+     * Tests that enqueuing on a full queue with the reject policy fails, leaving
+     * the queue unchanged.
+     */
+    @Test
+    public void enQueue_rejectsWhenFull() {
+	// Prepare test data
+	Queue<Integer> queue = new BoundedImmutableQueue<Integer>(2, OverflowPolicy.REJECT).enQueue(1).enQueue(2);
+
+	// Call method to be tested
+	try {
+	    queue.enQueue(3);
+	    throw new AssertionError("Expected the full queue to reject the element");
+	} catch (ImmutableQueueException e) {
+	    // Assert test result
+	    assertEquals(Arrays.asList(1, 2), drainAll(queue));
+	    assertEquals(0, ((BoundedImmutableQueue<Integer>) queue).remainingCapacity());
+	}
+    }
+
+    /**
+     * Tests that enqueuing on a full queue with the drop-oldest policy evicts the
+     * head in the same step, keeping the previous version unchanged.
+     */
+    @Test
+    public void enQueue_dropsOldestWhenFull() {
+	// Prepare test data
+	Queue<Integer> queue = new BoundedImmutableQueue<Integer>(3, OverflowPolicy.DROP_OLDEST).enQueueAll(
+		Arrays.asList(1, 2, 3));
+
+	// Call method to be tested
+	Queue<Integer> next = queue.enQueue(4);
+
+	// Assert test result
+	assertEquals(Arrays.asList(2, 3, 4), drainAll(next));
+	assertEquals(Arrays.asList(1, 2, 3), drainAll(queue));
+	assertEquals(3, ((BoundedImmutableQueue<Integer>) next).capacity());
+	assertEquals(OverflowPolicy.DROP_OLDEST, ((BoundedImmutableQueue<Integer>) next).policy());
+    }
+
+    /**
+     * Tests that enqueuing several elements either evicts as many old ones as
+     * needed, or, when rejected, enqueues none.
+     */
+    @Test
+    public void enQueueAll_appliesPolicyToAllElements() {
+	// Prepare test data
+	Queue<Integer> dropping = new BoundedImmutableQueue<Integer>(4, OverflowPolicy.DROP_OLDEST).enQueueAll(
+		Arrays.asList(1, 2, 3));
+	Queue<Integer> rejecting = new BoundedImmutableQueue<Integer>(4, OverflowPolicy.REJECT).enQueueAll(
+		Arrays.asList(1, 2, 3));
+
+	// Call method to be tested
+	Queue<Integer> evicted = dropping.enQueueAll(Arrays.asList(4, 5, 6));
+	Queue<Integer> overflowing = dropping.enQueueAll(Arrays.asList(4, 5, 6, 7, 8, 9));
+	Queue<Integer> fitting = rejecting.enQueueAll(Arrays.asList(4));
+
+	// Assert test result
+	assertEquals(Arrays.asList(3, 4, 5, 6), drainAll(evicted));
+	assertEquals(Arrays.asList(6, 7, 8, 9), drainAll(overflowing));
+	assertEquals(Arrays.asList(1, 2, 3, 4), drainAll(fitting));
+	try {
+	    rejecting.enQueueAll(Arrays.asList(4, 5));
+	    throw new AssertionError("Expected the queue to reject the elements");
+	} catch (ImmutableQueueException e) {
+	    assertEquals(3, rejecting.size());
+	}
+    }
+
+    /**
+     * Tests that the versions derived from a bounded queue stay bounded, and that
+     * an unchanged version is returned as it is.
+     */
+    @Test
+    public void deQueue_keepsCapacityAndPolicy() {
+	// Prepare test data
+	Queue<Integer> queue = new BoundedImmutableQueue<Integer>(2, OverflowPolicy.BLOCK).enQueueAll(
+		Arrays.asList(1, 2));
+
+	// Call method to be tested
+	BoundedImmutableQueue<Integer> dequeued = (BoundedImmutableQueue<Integer>) queue.deQueue();
+
+	// Assert test result
+	assertEquals(1, dequeued.remainingCapacity());
+	assertEquals(OverflowPolicy.BLOCK, dequeued.policy());
+	assertEquals(Arrays.asList(2, 3), drainAll(dequeued.enQueue(3)));
+	assertSame(queue, queue.deQueue(0));
+    }
+
+    /**
+     * Tests that a bounded queue cannot start from a queue larger than its
+     * capacity.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_failsWhenQueueExceedsCapacity() {
+	new BoundedImmutableQueue<Integer>(new BankersImmutableQueue<Integer>().enQueueAll(Arrays.asList(1, 2)), 1,
+		OverflowPolicy.REJECT);
+    }
+}
@@ -0,0 +1,186 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+
+import org.junit.Test;
+
+import com.paypay.challenge.clone.CopyStrategy;
+import com.paypay.challenge.clone.DeepCopy;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link ChunkedImmutableQueue} class.
+ *
+ * @author hoang.tran
+ */
+public class ChunkedImmutableQueueTest extends ImmutableQueueContractTest {
+    @Override
+    protected <T> Queue<T> emptyQueue() {
+	return new ChunkedImmutableQueue<T>();
+    }
+
+    /**
+     * Tests that a large number of enqueues and dequeues, spanning many chunks,
+     * keeps the first in first out order.
+     */
+    @Test(timeout = 10000)
+    public void enQueueAndDeQueue_handleLargeQueues() {
+	// Prepare test data
+	Queue<Integer> queue = new ChunkedImmutableQueue<>();
+	for (int i = 0; i < 10000; i++) {
+	    queue = queue.enQueue(i);
+	}
+
+	// Call method to be tested and assert test result
+	for (int i = 0; i < 10000; i++) {
+	    assertEquals(Integer.valueOf(i), queue.head());
+	    queue = queue.deQueue();
+	}
+	assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Tests that enqueuing on the same version several times gives independent
+     * queues, even though they share the tail chunk of that version.
+     */
+    @Test
+    public void enQueue_onSameVersionGivesIndependentQueues() {
+	// Prepare test data
+	Queue<Integer> queue = new ChunkedImmutableQueue<Integer>().enQueueAll(Arrays.asList(1, 2, 3)).deQueue();
+
+	// Call method to be tested
+	Queue<Integer> first = queue.enQueue(4);
+	Queue<Integer> second = queue.enQueueAll(Arrays.asList(5, 6));
+
+	// Assert test result
+	assertEquals(Arrays.asList(2, 3), drainAll(queue));
+	assertEquals(Arrays.asList(2, 3, 4), drainAll(first));
+	assertEquals(Arrays.asList(2, 3, 5, 6), drainAll(second));
+	assertEquals("ChunkedImmutableQueue(elements=[2, 3, 5, 6])", second.toString());
+    }
+
+    /**
+     * Tests that the spliterator splits at a chunk boundary, into two halves
+     * covering all the elements in order.
+     */
+    @Test
+    public void spliterator_splitsAtChunkBoundary() {
+	// Prepare test data
+	List<Integer> elements = new ArrayList<>();
+	for (int i = 0; i < 300; i++) {
+	    elements.add(i);
+	}
+	Queue<Integer> queue = new ChunkedImmutableQueue<Integer>().enQueueAll(elements).deQueue(10);
+
+	// Call method to be tested
+	Spliterator<Integer> suffix = queue.spliterator();
+	Spliterator<Integer> prefix = suffix.trySplit();
+
+	// Assert test result
+	assertEquals(118, prefix.estimateSize());
+	assertEquals(172, suffix.estimateSize());
+	List<Integer> traversed = new ArrayList<>();
+	prefix.forEachRemaining(traversed::add);
+	suffix.forEachRemaining(traversed::add);
+	assertEquals(elements.subList(10, 300), traversed);
+    }
+
+    /**
+     * Tests that draining queues of growing sizes, from a thousand to a million
+     * elements, gives all the elements in order, whole or in part. The time per
+     * element, compared with the banker's queue, is measured by the
+     * {@code QueueTraversalBenchmark} benchmark.
+     */
+    @Test
+    public void drainTo_handlesQueuesOfAllSizes() {
+	for (int size = 1000; size <= 1000000; size *= 10) {
+	    // Prepare test data
+	    Queue.Builder<Integer> builder = ChunkedImmutableQueue.builder();
+	    for (int i = 0; i < size; i++) {
+		builder.enQueue(i);
+	    }
+	    Queue<Integer> queue = builder.freeze();
+
+	    // Call method to be tested
+	    List<Integer> drained = new ArrayList<>(size);
+	    Queue<Integer> rest = queue.drainTo(drained, size);
+	    List<Integer> half = new ArrayList<>(size / 2);
+	    Queue<Integer> secondHalf = queue.drainTo(half, size / 2);
+
+	    // Assert test result
+	    assertTrue(rest.isEmpty());
+	    assertEquals(size, drained.size());
+	    for (int i = 0; i < size; i++) {
+		assertEquals(i, drained.get(i).intValue());
+	    }
+	    assertEquals(drained.subList(0, size / 2), half);
+	    assertEquals(size - size / 2, secondHalf.size());
+	    assertEquals(Integer.valueOf(size / 2), secondHalf.head());
+	}
+    }
+
+    /**
+     * Tests that a version enqueuing after another version derived from the same
+     * one copies only its own slots of the tail chunk, not the elements written
+     * since by the other version.
+     */
+    @Test
+    public void enQueue_copiesOnlyOwnSlotsOfSharedChunk() {
+	// Prepare test data
+	ChunkedImmutableQueue<Integer> queue = (ChunkedImmutableQueue<Integer>) new ChunkedImmutableQueue<Integer>()
+		.enQueue(0);
+	queue.enQueue(1).enQueue(2);
+
+	// Call method to be tested
+	ChunkedImmutableQueue<Integer> other = (ChunkedImmutableQueue<Integer>) queue.enQueue(3);
+
+	// Assert test result
+	assertEquals(Arrays.asList(0, 3), drainAll(other));
+	assertEquals(Integer.valueOf(0), other.tail.values[0]);
+	assertNull(other.tail.values[2]);
+    }
+
+    /**
+     * Tests that an element whose copy fails does not claim a slot of the tail
+     * chunk, so the next element enqueued on the same version still writes to
+     * the shared chunk instead of a copy.
+     */
+    @Test
+    public void enQueue_failingCopyLeavesTailChunkUnclaimed() {
+	// Prepare test data
+	ChunkedImmutableQueue<Address> queue = (ChunkedImmutableQueue<Address>) new ChunkedImmutableQueue<Address>()
+		.enQueue(new Address("Japan", "Tokyo", 1234));
+	CopyStrategy defaultStrategy = DeepCopy.getStrategy();
+
+	// Call method to be tested
+	DeepCopy.setStrategy(new CopyStrategy() {
+	    @Override
+	    public <T> T copy(T originalObj) {
+		throw new IllegalStateException("Copy failed");
+	    }
+	});
+	try {
+	    queue.enQueue(new Address("France", "Paris", 2222));
+	    fail("The failure of the copy should be thrown");
+	} catch (IllegalStateException e) {
+	    // Expected
+	} finally {
+	    DeepCopy.setStrategy(defaultStrategy);
+	}
+	ChunkedImmutableQueue<Address> next = (ChunkedImmutableQueue<Address>) queue
+		.enQueue(new Address("Germany", "Berlin", 1111));
+
+	// Assert test result
+	assertSame(queue.tail, next.tail);
+	assertEquals("Berlin", next.deQueue().head().getCity());
+    }
+}
@@ -0,0 +1,220 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ConcurrentImmutableQueue} class.
+ *
+ * @author hoang.tran
+ */
+public class ConcurrentImmutableQueueTest {
+    /** The number of producer threads, and of consumer threads. */
+    private static final int THREADS = 4;
+
+    /** The number of elements offered by each producer. */
+    private static final int ELEMENTS = 10000;
+
+    /**
+     * Tests that the elements offered by a single thread are polled in order, and
+     * that polling an empty queue gives {@code null}.
+     */
+    @Test
+    public void offerAndPoll_keepFirstInFirstOutOrder() {
+	// Prepare test data
+	ConcurrentImmutableQueue<Integer> queue = new ConcurrentImmutableQueue<>();
+
+	// Call method to be tested
+	queue.offer(1);
+	queue.offerAll(Arrays.asList(2, 3, 4));
+
+	// Assert test result
+	assertEquals(Integer.valueOf(1), queue.peek());
+	assertEquals(Integer.valueOf(1), queue.poll());
+	List<Integer> drained = new ArrayList<>();
+	assertEquals(2, queue.drainTo(drained, 2));
+	assertEquals(Arrays.asList(2, 3), drained);
+	assertEquals(Integer.valueOf(4), queue.poll());
+	assertNull(queue.poll());
+	assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Tests that a snapshot is not affected by the changes published after it was
+     * taken.
+     */
+    @Test
+    public void snapshot_isNotAffectedByLaterChanges() {
+	// Prepare test data
+	ConcurrentImmutableQueue<Integer> queue = new ConcurrentImmutableQueue<>(new RealTimeImmutableQueue<>());
+	queue.offerAll(Arrays.asList(1, 2));
+
+	// Call method to be tested
+	Queue<Integer> snapshot = queue.snapshot();
+	queue.poll();
+	queue.offer(3);
+
+	// Assert test result
+	assertEquals(Arrays.asList(1, 2), ImmutableQueueContractTest.drainAll(snapshot));
+	assertEquals(Arrays.asList(2, 3), ImmutableQueueContractTest.drainAll(queue.snapshot()));
+    }
+
+    /**
+     * Tests that concurrent producers and consumers neither lose nor duplicate
+     * elements, and that the elements of each producer are consumed in the order
+     * they were offered.
+     */
+    @Test(timeout = 60000)
+    public void offerAndPoll_concurrentlyLoseNothing() throws Exception {
+	// Prepare test data
+	ConcurrentImmutableQueue<int[]> queue = new ConcurrentImmutableQueue<>(
+		new BankersImmutableQueue<>());
+	ExecutorService executor = Executors.newFixedThreadPool(2 * THREADS);
+	CountDownLatch start = new CountDownLatch(1);
+	List<Future<List<int[]>>> consumers = new ArrayList<>();
+
+	// Call method to be tested
+	try {
+	    for (int p = 0; p < THREADS; p++) {
+		int producer = p;
+		executor.submit(() -> {
+		    start.await();
+		    for (int i = 0; i < ELEMENTS; i++) {
+			queue.offer(new int[] { producer, i });
+		    }
+		    return null;
+		});
+	    }
+	    for (int c = 0; c < THREADS; c++) {
+		consumers.add(executor.submit(() -> {
+		    start.await();
+		    List<int[]> consumed = new ArrayList<>();
+		    while (consumed.size() < ELEMENTS) {
+			int[] element = queue.poll();
+			if (element != null) {
+			    consumed.add(element);
+			}
+		    }
+		    return consumed;
+		}));
+	    }
+	    start.countDown();
+
+	    // Assert test result
+	    List<List<Integer>> received = new ArrayList<>();
+	    for (int p = 0; p < THREADS; p++) {
+		received.add(new ArrayList<>());
+	    }
+	    for (Future<List<int[]>> consumer : consumers) {
+		int[] last = new int[THREADS];
+		Arrays.fill(last, -1);
+		for (int[] element : consumer.get()) {
+		    assertTrue(element[1] > last[element[0]]);
+		    last[element[0]] = element[1];
+		    received.get(element[0]).add(element[1]);
+		}
+	    }
+	    for (List<Integer> values : received) {
+		Collections.sort(values);
+		assertEquals(ELEMENTS, values.size());
+		for (int i = 0; i < ELEMENTS; i++) {
+		    assertEquals(Integer.valueOf(i), values.get(i));
+		}
+	    }
+	    assertTrue(queue.isEmpty());
+	} finally {
+	    executor.shutdownNow();
+	    executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+    }
+
+    /**
+     * Tests that a producer putting into a full blocking queue waits until a
+     * consumer removes an element, and that a timed offer gives up once its time
+     * elapsed.
+     */
+    @Test(timeout = 30000)
+    public void put_waitsForSpace() throws Exception {
+	// Prepare test data
+	ConcurrentImmutableQueue<Integer> queue = new ConcurrentImmutableQueue<>(
+		new BoundedImmutableQueue<Integer>(2, OverflowPolicy.BLOCK));
+	queue.put(1);
+	queue.put(2);
+	ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	// Call method to be tested
+	try {
+	    assertFalse(queue.offer(3, 10, TimeUnit.MILLISECONDS));
+	    Future<?> producer = executor.submit(() -> {
+		queue.put(3);
+		return null;
+	    });
+	    Thread.sleep(50);
+	    assertFalse(producer.isDone());
+	    assertEquals(Integer.valueOf(1), queue.poll());
+	    producer.get(10, TimeUnit.SECONDS);
+
+	    // Assert test result
+	    assertEquals(Arrays.asList(2, 3), ImmutableQueueContractTest.drainAll(queue.snapshot()));
+	} finally {
+	    executor.shutdownNow();
+	    executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+    }
+
+    /**
+     * Tests that concurrent producers blocked by a small bounded queue lose
+     * nothing, and that the queue never exceeds its capacity.
+     */
+    @Test(timeout = 60000)
+    public void put_concurrentlyRespectsCapacity() throws Exception {
+	// Prepare test data
+	int capacity = 16;
+	ConcurrentImmutableQueue<Integer> queue = new ConcurrentImmutableQueue<>(
+		new BoundedImmutableQueue<Integer>(new BankersImmutableQueue<>(), capacity,
+			OverflowPolicy.BLOCK));
+	ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+	List<Integer> consumed = new ArrayList<>();
+
+	// Call method to be tested
+	try {
+	    for (int p = 0; p < THREADS; p++) {
+		int producer = p;
+		executor.submit(() -> {
+		    for (int i = 0; i < ELEMENTS; i++) {
+			queue.put(producer * ELEMENTS + i);
+		    }
+		    return null;
+		});
+	    }
+	    while (consumed.size() < THREADS * ELEMENTS) {
+		assertTrue(queue.snapshot().size() <= capacity);
+		queue.drainTo(consumed, capacity / 2);
+	    }
+
+	    // Assert test result
+	    Collections.sort(consumed);
+	    for (int i = 0; i < THREADS * ELEMENTS; i++) {
+		assertEquals(Integer.valueOf(i), consumed.get(i));
+	    }
+	    assertTrue(queue.isEmpty());
+	} finally {
+	    executor.shutdownNow();
+	    executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+    }
+}
@@ -0,0 +1,223 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.paypay.challenge.codec.Codec;
+import com.paypay.challenge.codec.CodecRegistry;
+import com.paypay.challenge.codec.JsonCodec;
+import com.paypay.challenge.exception.ImmutableQueueException;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link DurableImmutableQueue} class. The logs are created
+ * in temporary folders, with small segments so that the queues span several
+ * segment files.
+ *
+ * @author hoang.tran
+ */
+public class DurableImmutableQueueTest extends ImmutableQueueContractTest {
+    /** The number of bytes of the segments of the tested logs. */
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** The queues opened by the test, closed after it. */
+    private final List<DurableImmutableQueue<?>> openedQueues = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+	for (DurableImmutableQueue<?> queue : this.openedQueues) {
+	    queue.close();
+	}
+    }
+
+    @Override
+    protected <T> Queue<T> emptyQueue() {
+	try {
+	    return open(this.folder.newFolder().toPath());
+	} catch (IOException e) {
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    /**
+     * Tests that the committed version is recovered when the log is opened again,
+     * and that the changes made after the commit are lost.
+     */
+    @Test
+    public void open_recoversCommittedVersion() throws IOException {
+	// Prepare test data
+	Path directory = this.folder.newFolder().toPath();
+	DurableImmutableQueue<Address> queue = open(directory);
+	Queue<Address> committed = queue.enQueue(new Address("Japan", "Tokyo", 1234))
+		.enQueue(new Address("France", "Paris", 2222)).enQueue(new Address("Vietnam", "Hanoi", 1000)).deQueue();
+	((DurableImmutableQueue<Address>) committed).commit();
+	committed.enQueue(new Address("Italy", "Rome", 3333));
+	queue.close();
+
+	// Call method to be tested
+	DurableImmutableQueue<Address> recovered = open(directory);
+
+	// Assert test result
+	assertEquals(Arrays.asList(new Address("France", "Paris", 2222), new Address("Vietnam", "Hanoi", 1000)),
+		drainAll(recovered));
+	assertEquals(Arrays.asList(new Address("France", "Paris", 2222), new Address("Vietnam", "Hanoi", 1000),
+		new Address("Spain", "Madrid", 4444)), drainAll(recovered.enQueue(new Address("Spain", "Madrid", 4444))));
+    }
+
+    /**
+     * Tests that enqueuing on a version whose tail is not the end of the log
+     * copies its records, leaving the other versions unchanged.
+     */
+    @Test
+    public void enQueue_onStaleVersionCopiesItsRecords() throws IOException {
+	// Prepare test data
+	Queue<Integer> queue = this.<Integer>open(this.folder.newFolder().toPath()).enQueueAll(Arrays.asList(1, 2, 3))
+		.deQueue();
+
+	// Call method to be tested
+	Queue<Integer> first = queue.enQueue(4);
+	Queue<Integer> second = queue.enQueue(5).enQueue(6);
+	Queue<Integer> third = first.enQueue(7);
+
+	// Assert test result
+	assertEquals(Arrays.asList(2, 3), drainAll(queue));
+	assertEquals(Arrays.asList(2, 3, 4), drainAll(first));
+	assertEquals(Arrays.asList(2, 3, 5, 6), drainAll(second));
+	assertEquals(Arrays.asList(2, 3, 4, 7), drainAll(third));
+	assertEquals("DurableImmutableQueue(elements=[2, 3, 5, 6])", second.toString());
+    }
+
+    /**
+     * Tests that the segments before the head of the oldest live version are
+     * deleted at the next commit, once the older versions are released.
+     */
+    @Test
+    public void commit_reclaimsSegmentsOfReleasedVersions() throws IOException {
+	// Prepare test data
+	Path directory = this.folder.newFolder().toPath();
+	List<Integer> elements = new ArrayList<>();
+	for (int i = 0; i < 2000; i++) {
+	    elements.add(i);
+	}
+	DurableImmutableQueue<Integer> empty = DurableImmutableQueue.open(directory, new JsonCodec<Integer>(),
+		SEGMENT_SIZE);
+	this.openedQueues.add(empty);
+	DurableImmutableQueue<Integer> queue = (DurableImmutableQueue<Integer>) empty.enQueueAll(elements);
+	empty.release();
+	queue.commit();
+	long segmentsBefore = segmentCount(directory);
+
+	// Call method to be tested
+	DurableImmutableQueue<Integer> rest = (DurableImmutableQueue<Integer>) queue.deQueue(1990);
+	rest.commit();
+	long segmentsKept = segmentCount(directory);
+	queue.release();
+	rest.commit();
+	long segmentsAfter = segmentCount(directory);
+
+	// Assert test result
+	assertTrue(segmentsBefore > 5);
+	assertEquals(segmentsBefore, segmentsKept);
+	assertTrue(segmentsAfter <= 2);
+	assertEquals(Integer.valueOf(1990), rest.head());
+	assertEquals(10, rest.size());
+    }
+
+    /**
+     * Tests that a released version cannot be used anymore, while the versions
+     * derived from it can.
+     */
+    @Test
+    public void release_makesVersionUnusable() {
+	// Prepare test data
+	DurableImmutableQueue<Integer> queue = (DurableImmutableQueue<Integer>) this.<Integer>emptyQueue().enQueue(1);
+	Queue<Integer> next = queue.enQueue(2);
+
+	// Call method to be tested
+	queue.release();
+	queue.release();
+
+	// Assert test result
+	assertEquals(Arrays.asList(1, 2), drainAll(next));
+	try {
+	    queue.head();
+	    fail("A released version must not be read");
+	} catch (ImmutableQueueException e) {
+	    assertEquals("Queue version was released", e.getMessage());
+	}
+    }
+
+    /**
+     * Tests that the elements can be stored in the binary format of a codec
+     * registry, and recovered as instances of their own class.
+     */
+    @Test
+    public void open_recoversElementsEncodedByRegistry() throws IOException {
+	// Prepare test data
+	Path directory = this.folder.newFolder().toPath();
+	Codec<Object> codec = new CodecRegistry().codecFor(Object.class);
+	DurableImmutableQueue<Object> queue = DurableImmutableQueue.open(directory, codec, SEGMENT_SIZE);
+	((DurableImmutableQueue<Object>) queue.enQueue(new Address("Japan", "Tokyo", 1234)).enQueue(42)).commit();
+	queue.close();
+
+	// Call method to be tested
+	DurableImmutableQueue<Object> recovered = DurableImmutableQueue.open(directory, codec, SEGMENT_SIZE);
+	this.openedQueues.add(recovered);
+
+	// Assert test result
+	assertEquals(Arrays.asList(new Address("Japan", "Tokyo", 1234), 42), drainAll(recovered));
+    }
+
+    /**
+     * Tests that an element encoded in more bytes than a segment is rejected.
+     */
+    @Test(expected = ImmutableQueueException.class)
+    public void enQueue_rejectsElementLargerThanSegment() throws IOException {
+	char[] name = new char[SEGMENT_SIZE];
+	Arrays.fill(name, 'a');
+	open(this.folder.newFolder().toPath()).enQueue(new String(name));
+    }
+
+    /**
+     * Tests that the versions cannot be used once the log is closed.
+     */
+    @Test(expected = ImmutableQueueException.class)
+    public void close_makesVersionsUnusable() throws IOException {
+	DurableImmutableQueue<Integer> queue = open(this.folder.newFolder().toPath());
+	Queue<Integer> version = queue.enQueue(1);
+	queue.close();
+	version.head();
+    }
+
+    /**
+     * Opens a log in the given directory, to be closed after the test.
+     */
+    private <T> DurableImmutableQueue<T> open(Path directory) {
+	DurableImmutableQueue<T> queue = DurableImmutableQueue.open(directory, new JsonCodec<T>(), SEGMENT_SIZE);
+	this.openedQueues.add(queue);
+	return queue;
+    }
+
+    private static long segmentCount(Path directory) throws IOException {
+	try (Stream<Path> files = Files.list(directory)) {
+	    return files.filter(file -> file.toString().endsWith(".segment")).count();
+	}
+    }
+}
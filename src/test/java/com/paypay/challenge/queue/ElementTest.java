@@ -0,0 +1,58 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link Element} class.
+ * 
+ * @author hoang.tran
+ */
+public class ElementTest {
+    /**
+     * Tests that elements holding immutable data are frozen, and share both their
+     * data and the elements they refer to instead of copying them.
+     */
+    @Test
+    public void element_withImmutableDataIsSharedWithoutCopies() {
+	// Prepare test data
+	String tokyo = new String("Tokyo");
+	Element<String> first = new Element<>(tokyo);
+
+	// Call method to be tested
+	Element<String> second = new Element<>("Paris", first);
+
+	// Assert test result
+	assertTrue(first.isFrozen());
+	assertTrue(second.isFrozen());
+	assertSame(first, second.getNextElement());
+	assertSame(tokyo, first.getData());
+    }
+
+    /**
+     * Tests that elements holding mutable data are not frozen, and keep copying
+     * their data and the elements they refer to.
+     */
+    @Test
+    public void element_withMutableDataIsCopied() {
+	// Prepare test data
+	Address tokyo = new Address("Japan", "Tokyo", 1234);
+	Element<Address> first = new Element<>(tokyo);
+
+	// Call method to be tested
+	Element<Address> second = new Element<>(new Address("France", "Paris", 2222), first);
+
+	// Assert test result
+	assertFalse(first.isFrozen());
+	assertFalse(second.isFrozen());
+	assertFalse(first == second.getNextElement());
+	assertFalse(tokyo == first.getData());
+	assertEquals(tokyo, first.getData());
+    }
+}
@@ -0,0 +1,209 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link FlatCombiningQueue} class.
+ *
+ * @author hoang.tran
+ */
+public class FlatCombiningQueueTest {
+    /** The number of producer threads, and of consumer threads. */
+    private static final int THREADS = 4;
+
+    /** The number of elements offered by each producer. */
+    private static final int ELEMENTS = 10000;
+
+    /**
+     * Tests that the elements offered by a single thread are polled in order, and
+     * that polling an empty queue gives {@code null}.
+     */
+    @Test
+    public void offerAndPoll_keepFirstInFirstOutOrder() {
+	// Prepare test data
+	FlatCombiningQueue<Integer> queue = new FlatCombiningQueue<>();
+
+	// Call method to be tested
+	queue.offer(1);
+	queue.offer(2);
+
+	// Assert test result
+	assertEquals(Arrays.asList(1, 2), ImmutableQueueContractTest.drainAll(queue.snapshot()));
+	assertEquals(Integer.valueOf(1), queue.poll());
+	assertEquals(Integer.valueOf(2), queue.poll());
+	assertNull(queue.poll());
+    }
+
+    /**
+     * Tests that the offered elements are deep copied, as by any immutable queue.
+     */
+    @Test
+    public void offer_copiesElements() {
+	// Prepare test data
+	FlatCombiningQueue<Address> queue = new FlatCombiningQueue<>();
+	Address address = new Address("Japan", "Tokyo", 1234);
+
+	// Call method to be tested
+	queue.offer(address);
+	address.setCity("Osaka");
+
+	// Assert test result
+	assertEquals("Tokyo", queue.poll().getCity());
+    }
+
+    /**
+     * Tests that concurrent producers and consumers neither lose nor duplicate
+     * elements, and that the elements of each producer are consumed in the order
+     * they were offered.
+     */
+    @Test(timeout = 60000)
+    public void offerAndPoll_concurrentlyLoseNothing() throws Exception {
+	// Prepare test data
+	FlatCombiningQueue<int[]> queue = new FlatCombiningQueue<>(
+		new ConcurrentImmutableQueue<>(new BankersImmutableQueue<>()));
+	ExecutorService executor = Executors.newFixedThreadPool(2 * THREADS);
+	CountDownLatch start = new CountDownLatch(1);
+	List<Future<List<int[]>>> consumers = new ArrayList<>();
+
+	// Call method to be tested
+	try {
+	    for (int p = 0; p < THREADS; p++) {
+		int producer = p;
+		executor.submit(() -> {
+		    start.await();
+		    for (int i = 0; i < ELEMENTS; i++) {
+			queue.offer(new int[] { producer, i });
+		    }
+		    return null;
+		});
+	    }
+	    for (int c = 0; c < THREADS; c++) {
+		consumers.add(executor.submit(() -> {
+		    start.await();
+		    List<int[]> consumed = new ArrayList<>();
+		    while (consumed.size() < ELEMENTS) {
+			int[] element = queue.poll();
+			if (element != null) {
+			    consumed.add(element);
+			}
+		    }
+		    return consumed;
+		}));
+	    }
+	    start.countDown();
+
+	    // Assert test result
+	    List<List<Integer>> received = new ArrayList<>();
+	    for (int p = 0; p < THREADS; p++) {
+		received.add(new ArrayList<>());
+	    }
+	    for (Future<List<int[]>> consumer : consumers) {
+		int[] last = new int[THREADS];
+		Arrays.fill(last, -1);
+		for (int[] element : consumer.get()) {
+		    assertTrue(element[1] > last[element[0]]);
+		    last[element[0]] = element[1];
+		    received.get(element[0]).add(element[1]);
+		}
+	    }
+	    for (List<Integer> values : received) {
+		Collections.sort(values);
+		assertEquals(ELEMENTS, values.size());
+		for (int i = 0; i < ELEMENTS; i++) {
+		    assertEquals(Integer.valueOf(i), values.get(i));
+		}
+	    }
+	    assertTrue(queue.snapshot().isEmpty());
+	} finally {
+	    executor.shutdownNow();
+	    executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+    }
+
+    /**
+     * Tests that threads going idle long enough for their record to be unlinked,
+     * then posting requests again, while other threads keep the combiner busy,
+     * neither lose nor duplicate elements.
+     */
+    @Test(timeout = 60000)
+    public void offerAndPoll_withIdleThreadsLoseNothing() throws Exception {
+	// Prepare test data
+	FlatCombiningQueue<Integer> queue = new FlatCombiningQueue<>();
+	int total = 2 * THREADS * ELEMENTS;
+	AtomicIntegerArray seen = new AtomicIntegerArray(total);
+	AtomicBoolean produced = new AtomicBoolean();
+	ExecutorService executor = Executors.newFixedThreadPool(3 * THREADS);
+	CountDownLatch start = new CountDownLatch(1);
+	List<Future<?>> producers = new ArrayList<>();
+	List<Future<?>> consumers = new ArrayList<>();
+
+	// Call method to be tested
+	try {
+	    for (int p = 0; p < 2 * THREADS; p++) {
+		int first = p * ELEMENTS;
+		boolean idle = p % 2 == 0;
+		producers.add(executor.submit(() -> {
+		    start.await();
+		    for (int i = 0; i < ELEMENTS; i++) {
+			queue.offer(first + i);
+			if (idle && i % 500 == 499) {
+			    // Long enough for the busy threads to unlink the record
+			    Thread.sleep(2);
+			}
+		    }
+		    return null;
+		}));
+	    }
+	    for (int c = 0; c < THREADS; c++) {
+		boolean idle = c % 2 == 0;
+		consumers.add(executor.submit(() -> {
+		    start.await();
+		    for (int polls = 1; !produced.get() || !queue.snapshot().isEmpty(); polls++) {
+			Integer element = queue.poll();
+			if (element != null) {
+			    seen.incrementAndGet(element);
+			}
+			if (idle && polls % 500 == 0) {
+			    Thread.sleep(2);
+			}
+		    }
+		    return null;
+		}));
+	    }
+	    start.countDown();
+	    for (Future<?> producer : producers) {
+		producer.get();
+	    }
+	    produced.set(true);
+	    for (Future<?> consumer : consumers) {
+		consumer.get();
+	    }
+
+	    // Assert test result
+	    for (int i = 0; i < total; i++) {
+		assertEquals("Times element " + i + " was polled", 1, seen.get(i));
+	    }
+	} finally {
+	    executor.shutdownNow();
+	    executor.awaitTermination(10, TimeUnit.SECONDS);
+	}
+    }
+}
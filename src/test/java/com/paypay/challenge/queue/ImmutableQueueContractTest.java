@@ -0,0 +1,318 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests shared by all implementations of the {@link Queue} interface. Each
+ * implementation is tested by a subclass providing its empty queue.
+ * 
+ * @author hoang.tran
+ */
+public abstract class ImmutableQueueContractTest {
+    /**
+     * Creates the empty queue of the implementation to be tested.
+     * 
+     * @return an empty immutable queue.
+     */
+    protected abstract <T> Queue<T> emptyQueue();
+
+    /**
+     * Tests that enqueuing on an immutable queue does not change its contents, the
+     * new element is only found in the new queue.
+     */
+    @Test
+    public void contract_enQueueDoesNotChangeOriginalQueue() {
+	// Prepare test data
+	Queue<Address> originalQueue = emptyQueue();
+
+	// Call method to be tested
+	Queue<Address> newQueue = originalQueue.enQueue(new Address("USA", "New York", 1234));
+
+	// Assert test result
+	assertTrue(originalQueue.isEmpty());
+	assertFalse(newQueue.isEmpty());
+	assertEquals(new Address("USA", "New York", 1234), newQueue.head());
+    }
+
+    /**
+     * Tests that dequeuing on an immutable queue does not change its contents, the
+     * removed element is still found in the original queue.
+     */
+    @Test
+    public void contract_deQueueDoesNotChangeOriginalQueue() {
+	// Prepare test data
+	Queue<Address> originalQueue = this.<Address>emptyQueue().enQueue(new Address("Japan", "Tokyo", 1234));
+
+	// Call method to be tested
+	Queue<Address> newQueue = originalQueue.deQueue();
+
+	// Assert test result
+	assertTrue(newQueue.isEmpty());
+	assertFalse(originalQueue.isEmpty());
+	assertEquals(new Address("Japan", "Tokyo", 1234), originalQueue.head());
+    }
+
+    /**
+     * Tests that elements are dequeued in the order they were enqueued, and that
+     * every intermediate version keeps its own contents.
+     */
+    @Test
+    public void contract_elementsAreDequeuedInFirstInFirstOutOrder() {
+	// Prepare test data
+	Queue<Integer> queue = emptyQueue();
+	for (int i = 0; i < 20; i++) {
+	    queue = queue.enQueue(i);
+	}
+	Queue<Integer> fullQueue = queue;
+
+	// Call method to be tested and assert test result
+	for (int i = 0; i < 20; i++) {
+	    assertEquals(Integer.valueOf(i), queue.head());
+	    queue = queue.deQueue();
+	}
+	assertTrue(queue.isEmpty());
+	assertEquals(Integer.valueOf(0), fullQueue.head());
+    }
+
+    /**
+     * Tests that interleaved enqueues and dequeues, including ones made on old
+     * versions of the queue, keep the first in first out order of each version.
+     */
+    @Test
+    public void contract_oldVersionsStayValidAfterInterleavedOperations() {
+	// Prepare test data
+	Queue<Integer> queue1 = this.<Integer>emptyQueue().enQueue(1).enQueue(2).enQueue(3);
+	Queue<Integer> queue2 = queue1.deQueue().enQueue(4);
+
+	// Call method to be tested
+	Queue<Integer> queue3 = queue1.enQueue(5).deQueue().deQueue();
+	Queue<Integer> queue4 = queue2.deQueue().deQueue();
+
+	// Assert test result
+	assertEquals(Integer.valueOf(1), queue1.head());
+	assertEquals(Integer.valueOf(2), queue2.head());
+	assertEquals(Integer.valueOf(3), queue3.head());
+	assertEquals(Integer.valueOf(5), queue3.deQueue().head());
+	assertEquals(Integer.valueOf(4), queue4.head());
+	assertTrue(queue4.deQueue().isEmpty());
+    }
+
+    /**
+     * Tests that changes made to an enqueued object or to the object returned by
+     * {@link Queue#head()} do not affect the queue.
+     */
+    @Test
+    public void contract_changesOnDataDoNotAffectQueue() {
+	// Prepare test data
+	Address address = new Address("Germany", "Berlin", 1111);
+	Queue<Address> queue = this.<Address>emptyQueue().enQueue(address);
+
+	// Call method to be tested
+	address.setCity("Frankfurt");
+	queue.head().setCity("Munich");
+
+	// Assert test result
+	assertEquals("Berlin", queue.head().getCity());
+    }
+
+    /**
+     * Tests that changes made to the objects given by the iterator of a queue, or
+     * by its stream, do not affect the queue.
+     */
+    @Test
+    public void contract_changesOnIteratedDataDoNotAffectQueue() {
+	// Prepare test data
+	Queue<Address> queue = this.<Address>emptyQueue().enQueue(new Address("Germany", "Berlin", 1111))
+		.enQueue(new Address("France", "Paris", 2222));
+
+	// Call method to be tested
+	for (Address address : queue) {
+	    address.setCity("Munich");
+	}
+	queue.stream().forEach(address -> address.setCity("Munich"));
+
+	// Assert test result
+	assertEquals("Berlin", queue.head().getCity());
+	assertEquals("Paris", queue.deQueue().head().getCity());
+    }
+
+    /**
+     * Tests that the head of an empty queue is {@code null}.
+     */
+    @Test
+    public void contract_headOfEmptyQueueIsNull() {
+	assertNull(emptyQueue().head());
+    }
+
+    /**
+     * Tests that dequeuing on an empty queue throws an
+     * {@link ImmutableQueueException}.
+     */
+    @Test(expected = ImmutableQueueException.class)
+    public void contract_deQueueOnEmptyQueueThrowsException() {
+	emptyQueue().deQueue();
+    }
+
+    /**
+     * Tests that {@link Queue#enQueueAll(Iterable)} adds all the elements in order,
+     * after the existing ones, without changing the original queue.
+     */
+    @Test
+    public void contract_enQueueAllAddsElementsInOrder() {
+	// Prepare test data
+	Queue<Integer> originalQueue = this.<Integer>emptyQueue().enQueue(0);
+
+	// Call method to be tested
+	Queue<Integer> newQueue = originalQueue.enQueueAll(Arrays.asList(1, 2, 3));
+
+	// Assert test result
+	assertEquals(Arrays.asList(0), drainAll(originalQueue));
+	assertEquals(Arrays.asList(0, 1, 2, 3), drainAll(newQueue));
+	assertEquals(Arrays.asList(4, 5), drainAll(this.<Integer>emptyQueue().enQueueAll(Arrays.asList(4, 5))));
+    }
+
+    /**
+     * Tests that {@link Queue#deQueue(int)} removes the given number of elements
+     * at the beginning of the queue, without changing the original queue.
+     */
+    @Test
+    public void contract_deQueueNRemovesElementsAtTheFront() {
+	// Prepare test data
+	Queue<Integer> originalQueue = this.<Integer>emptyQueue().enQueueAll(Arrays.asList(1, 2, 3, 4, 5));
+
+	// Call method to be tested and assert test result
+	assertEquals(Arrays.asList(4, 5), drainAll(originalQueue.deQueue(3)));
+	assertEquals(Arrays.asList(1, 2, 3, 4, 5), drainAll(originalQueue.deQueue(0)));
+	assertTrue(originalQueue.deQueue(5).isEmpty());
+	assertEquals(Arrays.asList(1, 2, 3, 4, 5), drainAll(originalQueue));
+
+	// Check that the front and the back of the queue can both be removed from
+	Queue<Integer> queue = this.<Integer>emptyQueue().enQueue(1).enQueue(2).deQueue().enQueueAll(Arrays.asList(3, 4));
+	assertEquals(Arrays.asList(4), drainAll(queue.deQueue(2)));
+    }
+
+    /**
+     * Tests that {@link Queue#deQueue(int)} throws an
+     * {@link ImmutableQueueException} when the queue has too few elements.
+     */
+    @Test(expected = ImmutableQueueException.class)
+    public void contract_deQueueNOnTooSmallQueueThrowsException() {
+	this.<Integer>emptyQueue().enQueueAll(Arrays.asList(1, 2)).deQueue(3);
+    }
+
+    /**
+     * Tests that {@link Queue#drainTo(java.util.Collection, int)} hands out the
+     * removed elements in order together with the remaining queue.
+     */
+    @Test
+    public void contract_drainToReturnsRemovedElementsAndRemainingQueue() {
+	// Prepare test data
+	Queue<Integer> originalQueue = this.<Integer>emptyQueue().enQueueAll(Arrays.asList(1, 2, 3));
+	List<Integer> removed = new ArrayList<>();
+
+	// Call method to be tested
+	Queue<Integer> remainingQueue = originalQueue.drainTo(removed, 2);
+
+	// Assert test result
+	assertEquals(Arrays.asList(1, 2), removed);
+	assertEquals(Arrays.asList(3), drainAll(remainingQueue));
+	assertEquals(Arrays.asList(1, 2, 3), drainAll(originalQueue));
+
+	// Check that draining more elements than the queue has drains all of them
+	removed.clear();
+	assertTrue(originalQueue.drainTo(removed, 10).isEmpty());
+	assertEquals(Arrays.asList(1, 2, 3), removed);
+    }
+
+    /**
+     * Tests that the size of each version counts its own elements.
+     */
+    @Test
+    public void contract_sizeCountsElementsOfEachVersion() {
+	// Prepare test data
+	Queue<Integer> emptyQueue = emptyQueue();
+
+	// Call method to be tested
+	Queue<Integer> queue = emptyQueue.enQueue(1).enQueueAll(Arrays.asList(2, 3, 4));
+	Queue<Integer> dequeued = queue.deQueue().deQueue(2);
+
+	// Assert test result
+	assertEquals(0, emptyQueue.size());
+	assertEquals(4, queue.size());
+	assertEquals(1, dequeued.size());
+	assertEquals(2, queue.drainTo(new ArrayList<>(), 2).size());
+	assertEquals(0, dequeued.deQueue().size());
+    }
+
+    /**
+     * Tests that iterating over a queue gives its elements from the head to the
+     * back, and does not change the queue.
+     */
+    @Test
+    public void contract_iteratorGivesElementsInOrder() {
+	// Prepare test data
+	Queue<Integer> queue = this.<Integer>emptyQueue().enQueueAll(Arrays.asList(0, 1, 2)).deQueue().enQueue(3);
+
+	// Call method to be tested
+	List<Integer> iterated = new ArrayList<>();
+	for (Integer i : queue) {
+	    iterated.add(i);
+	}
+
+	// Assert test result
+	assertEquals(Arrays.asList(1, 2, 3), iterated);
+	assertEquals(Arrays.asList(1, 2, 3), drainAll(queue));
+	assertFalse(this.<Integer>emptyQueue().iterator().hasNext());
+    }
+
+    /**
+     * Tests that sequential and parallel streams over a queue give the same
+     * results, and that its spliterator reports the size of the queue.
+     */
+    @Test(timeout = 30000)
+    public void contract_parallelStreamMatchesSequentialStream() {
+	// Prepare test data
+	List<Integer> elements = new ArrayList<>();
+	for (int i = 0; i < 3000; i++) {
+	    elements.add(i);
+	}
+	Queue<Integer> queue = this.<Integer>emptyQueue().enQueueAll(elements).deQueue(10).enQueue(3000);
+	List<Integer> expected = new ArrayList<>(elements.subList(10, 3000));
+	expected.add(3000);
+
+	// Call method to be tested and assert test result
+	assertEquals(expected, queue.stream().collect(Collectors.toList()));
+	assertEquals(expected, queue.parallelStream().collect(Collectors.toList()));
+	assertEquals(expected.stream().mapToLong(i -> i).sum(), queue.parallelStream().mapToLong(i -> i).sum());
+
+	Spliterator<Integer> spliterator = queue.spliterator();
+	assertEquals(expected.size(), spliterator.getExactSizeIfKnown());
+	assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED | Spliterator.SIZED | Spliterator.IMMUTABLE));
+    }
+
+    /**
+     * Drains all the elements of the given queue into a list.
+     */
+    protected static <T> List<T> drainAll(Queue<T> queue) {
+	List<T> elements = new ArrayList<>();
+	for (Queue<T> q = queue; !q.isEmpty(); q = q.deQueue()) {
+	    elements.add(q.head());
+	}
+
+	return elements;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,216 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link IndexedImmutableQueue} class.
+ *
+ * @author hoang.tran
+ */
+public class IndexedImmutableQueueTest extends ImmutableQueueContractTest {
+    @Override
+    protected <T> Queue<T> emptyQueue() {
+	return new IndexedImmutableQueue<T>();
+    }
+
+    /**
+     * Tests that the elements can be read by position, without changing the
+     * queue.
+     */
+    @Test
+    public void get_returnsElementAtPosition() {
+	// Prepare test data
+	IndexedImmutableQueue<Integer> queue = indexedQueue(0, 100);
+
+	// Call method to be tested and assert test result
+	for (int i = 0; i < 100; i++) {
+	    assertEquals(Integer.valueOf(i), queue.get(i));
+	}
+	assertEquals(100, queue.size());
+    }
+
+    /**
+     * Tests that reading outside of the queue fails.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_failsOutsideOfQueue() {
+	indexedQueue(0, 3).get(3);
+    }
+
+    /**
+     * Tests that take and drop split the queue into two queues, leaving the
+     * original queue unchanged.
+     */
+    @Test
+    public void takeAndDrop_splitQueue() {
+	// Prepare test data
+	IndexedImmutableQueue<Integer> queue = indexedQueue(0, 10);
+
+	// Call method to be tested
+	IndexedImmutableQueue<Integer> first = queue.take(4);
+	IndexedImmutableQueue<Integer> rest = queue.drop(4);
+
+	// Assert test result
+	assertEquals(Arrays.asList(0, 1, 2, 3), drainAll(first));
+	assertEquals(Arrays.asList(4, 5, 6, 7, 8, 9), drainAll(rest));
+	assertEquals(10, queue.size());
+	assertSame(queue, queue.take(10));
+	assertSame(queue, queue.drop(0));
+	assertTrue(queue.drop(10).isEmpty());
+    }
+
+    /**
+     * Tests that concatenating two queues keeps the elements of the first one
+     * followed by the elements of the second one.
+     */
+    @Test
+    public void concat_appendsOtherQueue() {
+	// Prepare test data
+	IndexedImmutableQueue<Integer> small = indexedQueue(0, 3);
+	IndexedImmutableQueue<Integer> large = indexedQueue(3, 1000);
+
+	// Call method to be tested
+	IndexedImmutableQueue<Integer> smallFirst = small.concat(large);
+	IndexedImmutableQueue<Integer> largeFirst = large.concat(small);
+
+	// Assert test result
+	assertEquals(1000, smallFirst.size());
+	for (int i = 0; i < 1000; i++) {
+	    assertEquals(Integer.valueOf(i), smallFirst.get(i));
+	}
+	assertEquals(Integer.valueOf(999), largeFirst.get(996));
+	assertEquals(Integer.valueOf(0), largeFirst.get(997));
+	assertEquals("IndexedImmutableQueue(elements=[0, 1, 2, 3])", small.concat(large.take(1)).toString());
+    }
+
+    /**
+     * Tests that the shards of a queue are consecutive, cover all the elements,
+     * and have sizes differing by one at most.
+     */
+    @Test
+    public void shards_splitQueueEvenly() {
+	// Prepare test data
+	IndexedImmutableQueue<Integer> queue = indexedQueue(0, 10);
+
+	// Call method to be tested
+	List<IndexedImmutableQueue<Integer>> shards = queue.shards(4);
+	List<IndexedImmutableQueue<Integer>> tooMany = queue.take(2).shards(3);
+
+	// Assert test result
+	assertEquals(Arrays.asList(0, 1, 2), drainAll(shards.get(0)));
+	assertEquals(Arrays.asList(3, 4, 5), drainAll(shards.get(1)));
+	assertEquals(Arrays.asList(6, 7), drainAll(shards.get(2)));
+	assertEquals(Arrays.asList(8, 9), drainAll(shards.get(3)));
+	assertEquals(1, tooMany.get(0).size());
+	assertEquals(1, tooMany.get(1).size());
+	assertTrue(tooMany.get(2).isEmpty());
+    }
+
+    /**
+     * Tests that the spliterator splits at the middle of its range, even after it
+     * started to advance, and that the halves cover all the elements in order.
+     */
+    @Test
+    public void spliterator_splitsAtMiddle() {
+	// Prepare test data
+	IndexedImmutableQueue<Integer> queue = indexedQueue(0, 101);
+	Spliterator<Integer> suffix = queue.spliterator();
+	List<Integer> traversed = new ArrayList<>();
+	suffix.tryAdvance(traversed::add);
+
+	// Call method to be tested
+	Spliterator<Integer> prefix = suffix.trySplit();
+
+	// Assert test result
+	assertEquals(50, prefix.estimateSize());
+	assertEquals(50, suffix.estimateSize());
+	prefix.forEachRemaining(traversed::add);
+	suffix.forEachRemaining(traversed::add);
+	assertEquals(drainAll(queue), traversed);
+    }
+
+    /**
+     * Tests that random sequences of enqueues, dequeues, splits and
+     * concatenations give the same elements as the same operations on a list.
+     */
+    @Test(timeout = 30000)
+    public void operations_matchList() {
+	// Prepare test data
+	Random random = new Random(42);
+	IndexedImmutableQueue<Integer> queue = new IndexedImmutableQueue<>();
+	List<Integer> expected = new ArrayList<>();
+
+	// Call method to be tested and assert test result
+	for (int step = 0; step < 5000; step++) {
+	    int operation = random.nextInt(5);
+	    if (operation < 2) {
+		queue = (IndexedImmutableQueue<Integer>) queue.enQueue(step);
+		expected.add(step);
+	    } else if (operation == 2 && !expected.isEmpty()) {
+		queue = (IndexedImmutableQueue<Integer>) queue.deQueue();
+		expected.remove(0);
+	    } else if (operation == 3) {
+		int n = random.nextInt(expected.size() + 1);
+		queue = queue.drop(n).concat(queue.take(n));
+		List<Integer> rotated = new ArrayList<>(expected.subList(n, expected.size()));
+		rotated.addAll(expected.subList(0, n));
+		expected = rotated;
+	    } else {
+		List<Integer> batch = Arrays.asList(-step, -step - 1);
+		queue = (IndexedImmutableQueue<Integer>) queue.enQueueAll(batch);
+		expected.addAll(batch);
+	    }
+
+	    assertEquals(expected.size(), queue.size());
+	    if (!expected.isEmpty()) {
+		int index = random.nextInt(expected.size());
+		assertEquals(expected.get(index), queue.get(index));
+	    }
+	}
+	assertEquals(expected, drainAll(queue));
+    }
+
+    /**
+     * Tests that large queues can be built, read by position and split without
+     * deep recursion.
+     */
+    @Test(timeout = 30000)
+    public void get_handlesLargeQueues() {
+	// Prepare test data
+	Queue<Integer> queue = new IndexedImmutableQueue<>();
+	for (int i = 0; i < 200000; i++) {
+	    queue = queue.enQueue(i);
+	}
+	IndexedImmutableQueue<Integer> indexed = (IndexedImmutableQueue<Integer>) queue;
+
+	// Call method to be tested and assert test result
+	assertEquals(200000, indexed.size());
+	for (int i = 0; i < 200000; i += 997) {
+	    assertEquals(Integer.valueOf(i), indexed.get(i));
+	}
+	assertEquals(Integer.valueOf(150000), indexed.drop(150000).head());
+	assertEquals(100000, indexed.shards(2).get(1).size());
+    }
+
+    /**
+     * Creates an indexed queue with the integers from {@code from} included to
+     * {@code to} excluded.
+     */
+    private static IndexedImmutableQueue<Integer> indexedQueue(int from, int to) {
+	List<Integer> elements = new ArrayList<>();
+	for (int i = from; i < to; i++) {
+	    elements.add(i);
+	}
+	return (IndexedImmutableQueue<Integer>) new IndexedImmutableQueue<Integer>().enQueueAll(elements);
+    }
+}
@@ -0,0 +1,67 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Unit tests for the {@link IntImmutableQueue} class.
+ *
+ * @author hoang.tran
+ */
+public class IntImmutableQueueTest {
+    /**
+     * Tests that a large number of enqueues and dequeues, spanning many chunks,
+     * keeps the first in first out order.
+     */
+    @Test
+    public void enQueueAndDeQueue_keepOrderAcrossChunks() {
+	// Prepare test data
+	IntImmutableQueue queue = new IntImmutableQueue();
+	for (int i = 0; i < 1000; i++) {
+	    queue = queue.enQueue(i);
+	}
+
+	// Call method to be tested and assert test result
+	for (int i = 0; i < 1000; i++) {
+	    assertEquals(i, queue.head());
+	    queue = queue.deQueue().enQueue(1000 + i);
+	}
+	assertEquals(1000, queue.size());
+	assertEquals(1000, queue.head());
+	assertTrue(queue.deQueue(1000).isEmpty());
+    }
+
+    /**
+     * Tests that enqueuing on a queue does not change it, nor the queues derived
+     * from the same version, even though they share their tail chunk.
+     */
+    @Test
+    public void enQueue_onSameVersionGivesIndependentQueues() {
+	// Prepare test data
+	IntImmutableQueue queue = new IntImmutableQueue().enQueueAll(1, 2, 3).deQueue();
+
+	// Call method to be tested
+	IntImmutableQueue first = queue.enQueueAll(4, 5);
+	IntImmutableQueue second = queue.enQueue(6);
+
+	// Assert test result
+	assertArrayEquals(new int[] { 2, 3 }, queue.toArray());
+	assertArrayEquals(new int[] { 2, 3, 4, 5 }, first.toArray());
+	assertArrayEquals(new int[] { 2, 3, 6 }, second.toArray());
+	assertEquals("IntImmutableQueue(elements=[2, 3, 6])", second.toString());
+    }
+
+    /**
+     * Tests that reading the head of an empty queue fails, as there is no
+     * {@code null} to return.
+     */
+    @Test(expected = ImmutableQueueException.class)
+    public void head_onEmptyQueueThrowsException() {
+	new IntImmutableQueue().enQueue(1).deQueue().head();
+    }
+}
\ No newline at end of file
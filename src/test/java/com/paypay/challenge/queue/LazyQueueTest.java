@@ -0,0 +1,210 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link LazyQueue} class.
+ *
+ * @author hoang.tran
+ */
+public class LazyQueueTest extends ImmutableQueueContractTest {
+    @Override
+    protected <T> Queue<T> emptyQueue() {
+	return LazyQueue.of(new BankersImmutableQueue<T>());
+    }
+
+    /**
+     * Tests that chained transforms compute each element once, only when it is
+     * reached, in one pass over the underlying queue.
+     */
+    @Test
+    public void map_computesElementsOnlyWhenReached() {
+	// Prepare test data
+	Queue<Integer> source = integers(0, 1000);
+	AtomicInteger mapped = new AtomicInteger();
+	AtomicInteger tested = new AtomicInteger();
+
+	// Call method to be tested
+	Queue<String> view = source.map(i -> {
+	    mapped.incrementAndGet();
+	    return i * 2;
+	}).filter(i -> {
+	    tested.incrementAndGet();
+	    return i % 3 == 0;
+	}).map(String::valueOf);
+
+	// Assert test result
+	assertEquals(0, mapped.get());
+	assertEquals("0", view.head());
+	assertEquals("6", view.deQueue().head());
+	assertEquals("6", view.deQueue().head());
+	assertEquals(4, mapped.get());
+	assertEquals(4, tested.get());
+	assertEquals(1000, source.size());
+    }
+
+    /**
+     * Tests that taking the first elements of a large backlog never reads the
+     * other ones, and that the size of an unfiltered view is known without
+     * computing anything.
+     */
+    @Test
+    public void take_readsOnlyTakenElements() {
+	// Prepare test data
+	Queue<Integer> source = integers(0, 100000);
+	AtomicInteger mapped = new AtomicInteger();
+
+	// Call method to be tested
+	Queue<Integer> view = source.map(i -> {
+	    mapped.incrementAndGet();
+	    return i + 1;
+	}).take(10).take(20);
+
+	// Assert test result
+	assertEquals(10, view.size());
+	assertEquals(0, mapped.get());
+	assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), drainAll(view));
+	assertEquals(10, mapped.get());
+    }
+
+    /**
+     * Tests that a filter after a take applies to the taken elements only, and
+     * that the size of a filtered view is computed once.
+     */
+    @Test
+    public void filter_afterTakeKeepsLimitFirst() {
+	// Prepare test data
+	Queue<Integer> source = integers(0, 100);
+	AtomicInteger tested = new AtomicInteger();
+
+	// Call method to be tested
+	Queue<Integer> view = source.take(10).filter(i -> {
+	    tested.incrementAndGet();
+	    return i % 2 == 1;
+	});
+
+	// Assert test result
+	assertEquals(5, view.size());
+	assertEquals(5, view.size());
+	assertEquals(10, tested.get());
+	assertEquals(Arrays.asList(1, 3, 5, 7, 9), drainAll(view));
+	assertEquals(Arrays.asList(0, 2, 4), drainAll(source.filter(i -> i % 2 == 0).take(3)));
+    }
+
+    /**
+     * Tests that elements enqueued on a view follow the computed ones, and that
+     * the view collapses into the queue of the enqueued elements once the
+     * computed ones are dequeued.
+     */
+    @Test
+    public void enQueue_appendsAfterComputedElements() {
+	// Prepare test data
+	Queue<Integer> view = integers(0, 3).map(i -> i * 10);
+
+	// Call method to be tested
+	Queue<Integer> queue = view.enQueue(1).enQueueAll(Arrays.asList(2, 3));
+
+	// Assert test result
+	assertEquals(6, queue.size());
+	assertEquals(Arrays.asList(0, 10, 20, 1, 2, 3), drainAll(queue));
+	assertSame(BankersImmutableQueue.class, queue.deQueue(4).getClass());
+	assertEquals(Arrays.asList(0, 10, 20), drainAll(view));
+	assertSame(view, view.enQueueAll(new ArrayList<Integer>()));
+    }
+
+    /**
+     * Tests that a large filtered view is traversed without deep recursion, even
+     * when most elements are filtered out.
+     */
+    @Test(timeout = 30000)
+    public void filter_handlesLongRunsOfSkippedElements() {
+	// Prepare test data
+	Queue<Integer> source = integers(0, 500000);
+
+	// Call method to be tested
+	Queue<Integer> view = source.filter(i -> i % 100000 == 99999);
+
+	// Assert test result
+	assertEquals(Arrays.asList(99999, 199999, 299999, 399999, 499999), drainAll(view));
+    }
+
+    /**
+     * Tests that streaming a filtered view computes only the elements the stream
+     * reaches, instead of computing all of them to know the size.
+     */
+    @Test
+    public void stream_ofFilteredViewComputesOnlyReachedElements() {
+	// Prepare test data
+	Queue<Integer> source = integers(0, 100000);
+	AtomicInteger tested = new AtomicInteger();
+	Queue<Integer> view = source.filter(i -> {
+	    tested.incrementAndGet();
+	    return i % 10 == 9;
+	});
+
+	// Call method to be tested
+	int first = view.stream().findFirst().get();
+
+	// Assert test result
+	assertEquals(9, first);
+	assertEquals(10, tested.get());
+	assertFalse(view.spliterator().hasCharacteristics(Spliterator.SIZED));
+	assertEquals(10000, view.size());
+	assertTrue(view.spliterator().hasCharacteristics(Spliterator.SIZED));
+    }
+
+    /**
+     * Tests that transforms chained on a view whose elements were already
+     * computed read the memoized elements, instead of computing them again.
+     */
+    @Test
+    public void map_afterComputedElementsReusesThem() {
+	// Prepare test data
+	Queue<Integer> source = integers(0, 100);
+	AtomicInteger mapped = new AtomicInteger();
+	Queue<Integer> view = source.map(i -> {
+	    mapped.incrementAndGet();
+	    return i * 2;
+	});
+	assertEquals(100, view.size());
+	assertEquals(Integer.valueOf(0), view.head());
+	assertEquals(1, mapped.get());
+
+	// Call method to be tested
+	Queue<Integer> mappedView = view.map(i -> i + 1);
+	Queue<Integer> filteredView = view.filter(i -> i % 4 == 0);
+
+	// Assert test result
+	assertEquals(Integer.valueOf(1), mappedView.head());
+	assertEquals(Integer.valueOf(0), filteredView.head());
+	assertEquals(1, mapped.get());
+	assertEquals(50, filteredView.size());
+	assertEquals(100, mapped.get());
+	assertEquals(100, mappedView.size());
+	assertEquals(Integer.valueOf(199), mappedView.deQueue(99).head());
+	assertEquals(100, mapped.get());
+    }
+
+    /**
+     * Creates a queue with the integers from {@code from} included to {@code to}
+     * excluded.
+     */
+    private static Queue<Integer> integers(int from, int to) {
+	List<Integer> elements = new ArrayList<>();
+	for (int i = from; i < to; i++) {
+	    elements.add(i);
+	}
+	return new ChunkedImmutableQueue<Integer>().enQueueAll(elements);
+    }
+}
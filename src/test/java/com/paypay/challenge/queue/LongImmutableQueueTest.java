@@ -0,0 +1,179 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+
+/**
+ * Unit tests for the {@link LongImmutableQueue} class.
+ *
+ * @author hoang.tran
+ */
+public class LongImmutableQueueTest {
+    /**
+     * Tests that a large number of enqueues and dequeues, spanning many chunks,
+     * keeps the first in first out order.
+     */
+    @Test
+    public void enQueueAndDeQueue_keepOrderAcrossChunks() {
+	// Prepare test data
+	LongImmutableQueue queue = new LongImmutableQueue();
+	for (long i = 0; i < 1000; i++) {
+	    queue = queue.enQueue(i);
+	}
+
+	// Call method to be tested and assert test result
+	for (long i = 0; i < 1000; i++) {
+	    assertEquals(i, queue.head());
+	    assertEquals(1000, queue.size());
+	    queue = queue.deQueue().enQueue(1000 + i);
+	}
+	for (long i = 1000; i < 2000; i++) {
+	    assertEquals(i, queue.head());
+	    queue = queue.deQueue();
+	}
+	assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Tests that enqueuing on a queue does not change it, nor the queues derived
+     * from the same version, even though they share their tail chunk.
+     */
+    @Test
+    public void enQueue_onSameVersionGivesIndependentQueues() {
+	// Prepare test data
+	LongImmutableQueue queue = new LongImmutableQueue().enQueue(1).enQueue(2);
+
+	// Call method to be tested
+	LongImmutableQueue first = queue.enQueue(3);
+	LongImmutableQueue second = queue.enQueue(4).enQueue(5);
+	LongImmutableQueue third = queue.enQueue(6);
+
+	// Assert test result
+	assertArrayEquals(new long[] { 1, 2 }, queue.toArray());
+	assertArrayEquals(new long[] { 1, 2, 3 }, first.toArray());
+	assertArrayEquals(new long[] { 1, 2, 4, 5 }, second.toArray());
+	assertArrayEquals(new long[] { 1, 2, 6 }, third.toArray());
+    }
+
+    /**
+     * Tests that threads enqueuing concurrently on the same version each get
+     * their own values.
+     */
+    @Test
+    public void enQueue_concurrentlyOnSameVersionGivesIndependentQueues() throws Exception {
+	// Prepare test data
+	LongImmutableQueue queue = new LongImmutableQueue().enQueueAll(new long[100]);
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	List<Future<LongImmutableQueue>> results = new ArrayList<>();
+
+	// Call method to be tested
+	try {
+	    for (int t = 0; t < 8; t++) {
+		long value = t;
+		results.add(executor.submit((Callable<LongImmutableQueue>) () -> {
+		    LongImmutableQueue result = queue;
+		    for (int i = 0; i < 1000; i++) {
+			result = result.enQueue(value);
+		    }
+		    return result;
+		}));
+	    }
+
+	    // Assert test result
+	    for (int t = 0; t < 8; t++) {
+		long[] values = results.get(t).get().toArray();
+		assertEquals(1100, values.length);
+		for (int i = 100; i < values.length; i++) {
+		    assertEquals(t, values[i]);
+		}
+	    }
+	    assertEquals(100, queue.toArray().length);
+	} finally {
+	    executor.shutdown();
+	}
+    }
+
+    /**
+     * Tests that all the values enqueued in one batch are dequeued in order, and
+     * that a batch dequeue skips whole chunks.
+     */
+    @Test
+    public void enQueueAllAndDeQueueN_keepOrder() {
+	// Prepare test data
+	long[] values = new long[1000];
+	for (int i = 0; i < values.length; i++) {
+	    values[i] = i;
+	}
+
+	// Call method to be tested
+	LongImmutableQueue queue = new LongImmutableQueue().enQueue(-1).enQueueAll(values).deQueue(301);
+
+	// Assert test result
+	assertEquals(700, queue.size());
+	assertEquals(300, queue.head());
+	assertEquals(999, queue.deQueue(699).head());
+	assertTrue(queue.deQueue(700).isEmpty());
+	assertSame(queue, queue.deQueue(0));
+	assertSame(queue, queue.enQueueAll());
+    }
+
+    /**
+     * Tests that the operations of an empty queue fail as the ones of the other
+     * queues do.
+     */
+    @Test
+    public void operations_onEmptyQueueThrowException() {
+	LongImmutableQueue queue = new LongImmutableQueue();
+
+	assertThrows(queue::head);
+	assertThrows(queue::deQueue);
+	assertThrows(() -> queue.enQueue(1).deQueue(2));
+    }
+
+    /**
+     * Tests that a million values enqueued one by one fill whole chunks of
+     * {@code long}s, that is about eight bytes per value, and that every version
+     * shares them: no chunk is copied as long as each version is enqueued to only
+     * once.
+     */
+    @Test
+    public void footprint_isAboutEightBytesPerValue() {
+	// Prepare test data
+	int size = 1000000;
+	LongImmutableQueue queue = new LongImmutableQueue();
+
+	// Call method to be tested
+	for (long i = 0; i < size; i++) {
+	    queue = queue.enQueue(i);
+	}
+	LongImmutableQueue dequeued = queue.deQueue(size - 1);
+
+	// Assert test result
+	int chunkSize = AbstractChunkedQueue.CHUNK_SIZE;
+	assertEquals((size + chunkSize - 1) / chunkSize, queue.chunkCount());
+	assertEquals(1, dequeued.chunkCount());
+	assertEquals(size - 1, dequeued.head());
+    }
+
+    private static void assertThrows(Runnable operation) {
+	try {
+	    operation.run();
+	    throw new AssertionError("Operation should have failed");
+	} catch (ImmutableQueueException e) {
+	    // Expected
+	}
+    }
+}
\ No newline at end of file
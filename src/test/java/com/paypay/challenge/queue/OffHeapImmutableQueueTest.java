@@ -0,0 +1,195 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.paypay.challenge.codec.Codec;
+import com.paypay.challenge.codec.CodecRegistry;
+import com.paypay.challenge.codec.JsonCodec;
+import com.paypay.challenge.exception.ImmutableQueueException;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link OffHeapImmutableQueue} class. The queues are created
+ * with small chunks, so that they span several chunks.
+ *
+ * @author hoang.tran
+ */
+public class OffHeapImmutableQueueTest extends ImmutableQueueContractTest {
+    /** The number of bytes of the chunks of the tested queues. */
+    private static final int CHUNK_SIZE = 1024;
+
+    /** The queues created by the test, closed after it. */
+    private final List<OffHeapImmutableQueue<?>> createdQueues = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+	for (OffHeapImmutableQueue<?> queue : this.createdQueues) {
+	    queue.close();
+	}
+    }
+
+    @Override
+    protected <T> Queue<T> emptyQueue() {
+	OffHeapImmutableQueue<T> queue = new OffHeapImmutableQueue<T>(new JsonCodec<T>(), CHUNK_SIZE);
+	this.createdQueues.add(queue);
+	return queue;
+    }
+
+    /**
+     * Tests that enqueuing on a version whose tail is not the end of the arena
+     * copies its records, leaving the other versions unchanged.
+     */
+    @Test
+    public void enQueue_onStaleVersionCopiesItsRecords() {
+	// Prepare test data
+	Queue<Integer> queue = this.<Integer>emptyQueue().enQueueAll(Arrays.asList(1, 2, 3)).deQueue();
+
+	// Call method to be tested
+	Queue<Integer> first = queue.enQueue(4);
+	Queue<Integer> second = queue.enQueue(5).enQueue(6);
+	Queue<Integer> third = first.enQueue(7);
+
+	// Assert test result
+	assertEquals(Arrays.asList(2, 3), drainAll(queue));
+	assertEquals(Arrays.asList(2, 3, 4), drainAll(first));
+	assertEquals(Arrays.asList(2, 3, 5, 6), drainAll(second));
+	assertEquals(Arrays.asList(2, 3, 4, 7), drainAll(third));
+	assertEquals("OffHeapImmutableQueue(elements=[2, 3, 5, 6])", second.toString());
+    }
+
+    /**
+     * Tests that the chunks of released versions are recycled by the next
+     * appends, while all the versions stay reachable, so that a queue used as a
+     * sliding window does not allocate more memory whatever the garbage collector
+     * does.
+     */
+    @Test
+    public void release_recyclesChunksWithoutGarbageCollection() {
+	// Prepare test data
+	List<Queue<Integer>> versions = new ArrayList<>();
+	OffHeapImmutableQueue<Integer> queue = (OffHeapImmutableQueue<Integer>) this.<Integer>emptyQueue();
+	for (int i = 0; i < 1000; i++) {
+	    queue = next(queue, queue.enQueue(i), versions);
+	}
+	long allocatedBefore = queue.allocatedBytes();
+
+	// Call method to be tested
+	for (int round = 0; round < 20; round++) {
+	    queue = next(queue, queue.deQueue(1000), versions);
+	    for (int i = 0; i < 1000; i++) {
+		queue = next(queue, queue.enQueue(round * 1000 + i), versions);
+	    }
+	}
+
+	// Assert test result
+	long allocatedAfter = queue.allocatedBytes();
+	assertTrue(allocatedBefore >= 5 * CHUNK_SIZE);
+	assertTrue(allocatedAfter + " bytes allocated", allocatedAfter <= allocatedBefore + 2 * CHUNK_SIZE);
+	assertEquals(1000, queue.size());
+	assertEquals(Integer.valueOf(19000), queue.head());
+	assertEquals(20 * 1000 + 1000 + 20, versions.size());
+    }
+
+    /**
+     * Tests that a released version cannot be read anymore, while the versions
+     * derived from it can.
+     */
+    @Test
+    public void release_makesVersionUnusable() {
+	// Prepare test data
+	OffHeapImmutableQueue<Integer> queue = (OffHeapImmutableQueue<Integer>) this.<Integer>emptyQueue()
+		.enQueueAll(Arrays.asList(1, 2));
+	Queue<Integer> next = queue.deQueue();
+
+	// Call method to be tested
+	queue.release();
+	queue.release();
+
+	// Assert test result
+	assertEquals(Integer.valueOf(2), next.head());
+	try {
+	    queue.head();
+	    fail("A released version must not be read");
+	} catch (ImmutableQueueException e) {
+	    assertEquals("Queue version was released", e.getMessage());
+	}
+    }
+
+    /**
+     * Tests that an element encoded in more bytes than a chunk is rejected.
+     */
+    @Test(expected = ImmutableQueueException.class)
+    public void enQueue_rejectsElementLargerThanChunk() {
+	char[] name = new char[CHUNK_SIZE];
+	Arrays.fill(name, 'a');
+	emptyQueue().enQueue(new String(name));
+    }
+
+    /**
+     * Tests that the versions cannot be used once the arena is closed.
+     */
+    @Test(expected = ImmutableQueueException.class)
+    public void close_makesVersionsUnusable() {
+	OffHeapImmutableQueue<Integer> queue = new OffHeapImmutableQueue<>(new JsonCodec<Integer>());
+	Queue<Integer> version = queue.enQueue(1);
+	queue.close();
+	version.head();
+    }
+
+    /**
+     * Tests that a million elements are all stored in direct memory, packed in
+     * as few chunks as their records fit in, so that the heap only holds the
+     * versions and one buffer per chunk instead of an {@link Element} and a data
+     * object per element as in a {@link SlowImmutableQueue}. The same element is
+     * enqueued every time, as the codec writes integers in a variable number of
+     * bytes.
+     */
+    @Test
+    public void footprint_storesElementsInDirectMemory() throws IOException {
+	// Prepare test data
+	int size = 1000000;
+	Codec<Address> codec = new CodecRegistry().codecFor(Address.class);
+	Address address = new Address("Japan", "Tokyo", 1234);
+	ByteArrayOutputStream record = new ByteArrayOutputStream();
+	codec.encode(address, new DataOutputStream(record));
+	int recordsPerChunk = OffHeapImmutableQueue.DEFAULT_CHUNK_SIZE / (OffHeapArena.HEADER_SIZE + record.size());
+	OffHeapImmutableQueue<Address> queue = new OffHeapImmutableQueue<>(codec);
+	this.createdQueues.add(queue);
+
+	// Call method to be tested
+	for (int i = 0; i < size; i++) {
+	    OffHeapImmutableQueue<Address> next = (OffHeapImmutableQueue<Address>) queue.enQueue(address);
+	    queue.release();
+	    queue = next;
+	}
+
+	// Assert test result
+	int chunks = (size + recordsPerChunk - 1) / recordsPerChunk;
+	assertEquals((long) chunks * OffHeapImmutableQueue.DEFAULT_CHUNK_SIZE, queue.allocatedBytes());
+	assertEquals(size, queue.size());
+	assertEquals(address, queue.head());
+    }
+
+    /**
+     * Releases the given version once the next one is derived from it, keeping
+     * the next one reachable.
+     */
+    private static OffHeapImmutableQueue<Integer> next(OffHeapImmutableQueue<Integer> queue, Queue<Integer> next,
+	    List<Queue<Integer>> versions) {
+	queue.release();
+	versions.add(next);
+	return (OffHeapImmutableQueue<Integer>) next;
+    }
+}
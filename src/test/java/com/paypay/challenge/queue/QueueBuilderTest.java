@@ -0,0 +1,138 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.paypay.challenge.exception.ImmutableQueueException;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link Queue.Builder} implementations of all the queues.
+ * 
+ * @author hoang.tran
+ */
+public class QueueBuilderTest {
+    /** Factories of the builders of the implementations to be tested. */
+    private static final List<Supplier<Queue.Builder<Integer>>> BUILDERS = Arrays.asList(
+	    SlowImmutableQueue::builder, BankersImmutableQueue::builder, RealTimeImmutableQueue::builder,
+	    ChunkedImmutableQueue::builder);
+
+    /**
+     * Tests that a frozen builder gives a queue with all the added elements in
+     * order, on which the usual operations work.
+     */
+    @Test(timeout = 30000)
+    public void freeze_givesQueueWithAddedElementsInOrder() {
+	for (Supplier<Queue.Builder<Integer>> builder : BUILDERS) {
+	    // Prepare test data
+	    Queue.Builder<Integer> queueBuilder = builder.get();
+	    for (int i = 0; i < 2000; i++) {
+		queueBuilder.enQueue(i);
+	    }
+
+	    // Call method to be tested
+	    Queue<Integer> queue = queueBuilder.freeze();
+
+	    // Assert test result
+	    for (int i = 0; i < 2000; i++) {
+		assertEquals(Integer.valueOf(i), queue.head());
+		queue = i % 2 == 0 ? queue.deQueue() : queue.deQueue().enQueue(i);
+	    }
+	    for (int i = 1; i < 2000; i += 2) {
+		assertEquals(Integer.valueOf(i), queue.head());
+		queue = queue.deQueue();
+	    }
+	    assertTrue(queue.isEmpty());
+	}
+    }
+
+    /**
+     * Tests that the built queue is immutable: changes made to the added objects
+     * do not affect it.
+     */
+    @Test
+    public void freeze_givesQueueNotAffectedByChangesOnAddedObjects() {
+	List<Supplier<Queue.Builder<Address>>> builders = Arrays.asList(SlowImmutableQueue::builder,
+		BankersImmutableQueue::builder, RealTimeImmutableQueue::builder, ChunkedImmutableQueue::builder);
+	for (Supplier<Queue.Builder<Address>> builder : builders) {
+	    // Prepare test data
+	    Address address = new Address("Japan", "Tokyo", 1234);
+
+	    // Call method to be tested
+	    Queue<Address> queue = builder.get().enQueueAll(Arrays.asList(address, address)).freeze();
+	    address.setCity("Osaka");
+
+	    // Assert test result
+	    assertEquals("Tokyo", queue.head().getCity());
+	    assertEquals("Tokyo", queue.deQueue().head().getCity());
+	}
+    }
+
+    /**
+     * Tests that an empty builder gives an empty queue.
+     */
+    @Test
+    public void freeze_withoutElementsGivesEmptyQueue() {
+	for (Supplier<Queue.Builder<Integer>> builder : BUILDERS) {
+	    Queue<Integer> queue = builder.get().freeze();
+
+	    assertTrue(queue.isEmpty());
+	    assertEquals(Integer.valueOf(1), queue.enQueue(1).head());
+	}
+    }
+
+    /**
+     * Tests that a builder cannot be used anymore once it is frozen.
+     */
+    @Test
+    public void enQueue_afterFreezeThrowsException() {
+	for (Supplier<Queue.Builder<Integer>> builder : BUILDERS) {
+	    // Prepare test data
+	    Queue.Builder<Integer> queueBuilder = builder.get().enQueue(1);
+	    Queue<Integer> queue = queueBuilder.freeze();
+
+	    // Call method to be tested and assert test result
+	    try {
+		queueBuilder.enQueue(2);
+		throw new AssertionError("Frozen builder must not accept elements");
+	    } catch (ImmutableQueueException e) {
+		assertEquals(Integer.valueOf(1), queue.head());
+		assertTrue(queue.deQueue().isEmpty());
+	    }
+	}
+    }
+
+    /**
+     * Tests that a builder cannot be used by another thread than the one that
+     * created it.
+     */
+    @Test
+    public void enQueue_fromAnotherThreadThrowsException() throws InterruptedException {
+	ExecutorService executor = Executors.newSingleThreadExecutor();
+	try {
+	    for (Supplier<Queue.Builder<Integer>> builder : BUILDERS) {
+		// Prepare test data
+		Queue.Builder<Integer> queueBuilder = builder.get();
+
+		// Call method to be tested and assert test result
+		try {
+		    executor.submit(() -> queueBuilder.enQueue(1)).get();
+		    throw new AssertionError("Builder must not be used by another thread");
+		} catch (ExecutionException e) {
+		    assertTrue(e.getCause() instanceof ImmutableQueueException);
+		}
+	    }
+	} finally {
+	    executor.shutdown();
+	}
+    }
+}
@@ -0,0 +1,254 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link QueueDispatcher} class.
+ *
+ * @author hoang.tran
+ */
+public class QueueDispatcherTest {
+    /** The executor running the handlers. */
+    private final ExecutorService executor = QueueDispatcher.virtualThreadExecutor();
+
+    @After
+    public void tearDown() throws InterruptedException {
+	this.executor.shutdownNow();
+	this.executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Tests that a batch handles the first elements of the queue, keeping the
+     * order of the elements of each key, and removes them with one update.
+     */
+    @Test
+    public void dispatchOnce_handlesBatchInKeyOrder() throws InterruptedException {
+	// Prepare test data
+	ConcurrentImmutableQueue<Integer> queue = new ConcurrentImmutableQueue<>();
+	for (int i = 0; i < 100; i++) {
+	    queue.offer(i);
+	}
+	Map<Integer, List<Integer>> handled = new ConcurrentHashMap<>();
+	QueueDispatcher<Integer, Integer> dispatcher = new QueueDispatcher<>(queue, i -> i % 3,
+		i -> handled.computeIfAbsent(i % 3, key -> Collections.synchronizedList(new ArrayList<>())).add(i),
+		this.executor, 60);
+
+	// Call method to be tested
+	int count = dispatcher.dispatchOnce();
+
+	// Assert test result
+	assertEquals(60, count);
+	assertEquals(40, queue.snapshot().size());
+	assertEquals(Integer.valueOf(60), queue.peek());
+	for (Map.Entry<Integer, List<Integer>> entry : handled.entrySet()) {
+	    int previous = -1;
+	    for (int i : entry.getValue()) {
+		assertEquals(entry.getKey().intValue(), i % 3);
+		assertTrue(i > previous);
+		previous = i;
+	    }
+	}
+	assertEquals(60, dispatcher.acknowledged());
+    }
+
+    /**
+     * Tests that a failure stops the elements of its key only, and acknowledges
+     * the elements before it, so the failed element is handled again, but not
+     * the elements of the other keys after it.
+     */
+    @Test
+    public void dispatchOnce_tracksProgressPerKey() throws InterruptedException {
+	// Prepare test data
+	ConcurrentImmutableQueue<String> queue = new ConcurrentImmutableQueue<>();
+	queue.offerAll(Arrays.asList("a1", "b1", "a2", "b2", "a3"));
+	AtomicBoolean failing = new AtomicBoolean(true);
+	List<String> handled = Collections.synchronizedList(new ArrayList<>());
+	QueueDispatcher<String, Character> dispatcher = new QueueDispatcher<>(queue, s -> s.charAt(0), s -> {
+	    if (s.equals("a2") && failing.get()) {
+		throw new IllegalStateException("Downstream unavailable");
+	    }
+	    handled.add(s);
+	}, this.executor);
+
+	// Call method to be tested
+	int first = dispatcher.dispatchOnce();
+	failing.set(false);
+	int second = dispatcher.dispatchOnce();
+
+	// Assert test result
+	assertEquals(2, first);
+	assertEquals(3, second);
+	assertTrue(queue.isEmpty());
+	assertEquals(1, dispatcher.failures());
+	assertTrue(handled.indexOf("a3") > handled.indexOf("a2"));
+	assertEquals(1, Collections.frequency(handled, "b2"));
+	assertEquals(1, Collections.frequency(handled, "a1"));
+    }
+
+    /**
+     * Tests that an element the handler always fails on is given to the failure
+     * handler after the maximum number of attempts, without handling the
+     * elements of the other keys again, and then lets the later elements of its
+     * key go.
+     */
+    @Test
+    public void dispatchOnce_deadLettersPoisonElement() throws InterruptedException {
+	// Prepare test data
+	ConcurrentImmutableQueue<String> queue = new ConcurrentImmutableQueue<>();
+	queue.offerAll(Arrays.asList("poison", "a1", "b1", "p1", "a2"));
+	List<String> handled = Collections.synchronizedList(new ArrayList<>());
+	List<String> deadLetters = new ArrayList<>();
+	QueueDispatcher<String, Character> dispatcher = new QueueDispatcher<>(queue, s -> s.charAt(0), s -> {
+	    if (s.equals("poison")) {
+		throw new IllegalArgumentException("Malformed");
+	    }
+	    handled.add(s);
+	}, this.executor, 10, 3, (element, cause) -> deadLetters.add(element));
+
+	// Call method to be tested
+	List<Integer> counts = new ArrayList<>();
+	for (int i = 0; i < 4; i++) {
+	    counts.add(dispatcher.dispatchOnce());
+	}
+
+	// Assert test result
+	assertEquals(Arrays.asList(0, 0, 3, 2), counts);
+	assertTrue(queue.isEmpty());
+	assertEquals(Collections.singletonList("poison"), deadLetters);
+	assertEquals(1, dispatcher.deadLetters());
+	assertEquals(3, dispatcher.failures());
+	assertEquals(Arrays.asList("a1", "a2"), filter(handled, 'a'));
+	assertEquals(Arrays.asList("b1"), filter(handled, 'b'));
+	assertEquals(Arrays.asList("p1"), filter(handled, 'p'));
+    }
+
+    /**
+     * Tests that an element the key function fails on counts as a failure of
+     * the handler, and does not stop the other elements.
+     */
+    @Test
+    public void dispatchOnce_handlesKeyFunctionFailure() throws InterruptedException {
+	// Prepare test data
+	ConcurrentImmutableQueue<String> queue = new ConcurrentImmutableQueue<>();
+	queue.offerAll(Arrays.asList("a1", "", "b1"));
+	List<String> handled = Collections.synchronizedList(new ArrayList<>());
+	List<Exception> causes = new ArrayList<>();
+	QueueDispatcher<String, Character> dispatcher = new QueueDispatcher<>(queue, s -> s.charAt(0), handled::add,
+		this.executor, 10, 1, (element, cause) -> causes.add(cause));
+
+	// Call method to be tested
+	int count = dispatcher.dispatchOnce();
+
+	// Assert test result
+	assertEquals(3, count);
+	assertEquals(2, handled.size());
+	assertEquals(1, causes.size());
+	assertTrue(causes.get(0) instanceof StringIndexOutOfBoundsException);
+    }
+
+    /**
+     * Tests that a started dispatcher reports the failures of a batch to the
+     * failure handler, and goes on with the next batches.
+     */
+    @Test(timeout = 30000)
+    public void start_survivesDispatchFailures() throws InterruptedException {
+	// Prepare test data
+	ConcurrentImmutableQueue<Integer> queue = new ConcurrentImmutableQueue<>();
+	queue.offerAll(Arrays.asList(1, 2, 3));
+	AtomicInteger rejections = new AtomicInteger(3);
+	Executor failing = task -> {
+	    if (rejections.getAndDecrement() > 0) {
+		throw new IllegalStateException("Executor unavailable");
+	    }
+	    this.executor.execute(task);
+	};
+	List<RuntimeException> reported = Collections.synchronizedList(new ArrayList<>());
+	QueueDispatcher.FailureHandler<Integer> failureHandler = new QueueDispatcher.FailureHandler<Integer>() {
+	    @Override
+	    public void deadLetter(Integer element, Exception cause) {
+	    }
+
+	    @Override
+	    public void dispatchFailed(RuntimeException cause) {
+		reported.add(cause);
+	    }
+	};
+
+	// Call method to be tested
+	try (QueueDispatcher<Integer, Integer> dispatcher = new QueueDispatcher<>(queue, i -> 0, i -> {
+	}, failing, 10, 1, failureHandler)) {
+	    dispatcher.start();
+	    while (dispatcher.acknowledged() < 3) {
+		Thread.sleep(5);
+	    }
+	}
+
+	// Assert test result
+	assertTrue(queue.isEmpty());
+	assertEquals(3, reported.size());
+	assertEquals("Executor unavailable", reported.get(0).getMessage());
+    }
+
+    /**
+     * Gets the handled elements starting with the given key, in handling order.
+     */
+    private static List<String> filter(List<String> handled, char key) {
+	List<String> result = new ArrayList<>();
+	for (String s : handled) {
+	    if (s.charAt(0) == key) {
+		result.add(s);
+	    }
+	}
+	return result;
+    }
+
+    /**
+     * Tests that a started dispatcher keeps handling the elements offered by a
+     * producer, until the queue is empty.
+     */
+    @Test(timeout = 30000)
+    public void start_handlesOfferedElements() throws InterruptedException {
+	// Prepare test data
+	ConcurrentImmutableQueue<Integer> queue = new ConcurrentImmutableQueue<>();
+	AtomicInteger sum = new AtomicInteger();
+	AtomicInteger inFlight = new AtomicInteger();
+	AtomicInteger maxInFlight = new AtomicInteger();
+
+	// Call method to be tested
+	try (QueueDispatcher<Integer, Integer> dispatcher = new QueueDispatcher<>(queue, i -> i % 16, i -> {
+	    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+	    Thread.sleep(1);
+	    inFlight.decrementAndGet();
+	    sum.addAndGet(i);
+	}, this.executor)) {
+	    dispatcher.start();
+	    for (int i = 1; i <= 1000; i++) {
+		queue.offer(i);
+	    }
+	    while (dispatcher.acknowledged() < 1000) {
+		Thread.sleep(5);
+	    }
+	}
+
+	// Assert test result
+	assertEquals(500500, sum.get());
+	assertTrue(queue.isEmpty());
+	assertTrue(maxInFlight.get() > 1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RealTimeImmutableQueue} class.
+ * 
+ * @author hoang.tran
+ */
+public class RealTimeImmutableQueueTest extends ImmutableQueueContractTest {
+    @Override
+    protected <T> Queue<T> emptyQueue() {
+	return new RealTimeImmutableQueue<T>();
+    }
+
+    /**
+     * Tests that a large number of enqueues and dequeues keeps the first in first
+     * out order.
+     */
+    @Test(timeout = 10000)
+    public void enQueueAndDeQueue_handleLargeQueues() {
+	// Prepare test data
+	Queue<Integer> queue = new RealTimeImmutableQueue<>();
+	for (int i = 0; i < 10000; i++) {
+	    queue = queue.enQueue(i);
+	}
+
+	// Call method to be tested and assert test result
+	for (int i = 0; i < 10000; i++) {
+	    assertEquals(Integer.valueOf(i), queue.head());
+	    queue = queue.deQueue();
+	}
+	assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Tests that every operation keeps the schedule exactly as long as the front
+     * list minus the rear list, with every cell before it evaluated: each
+     * operation then evaluates a single cell of the schedule, and the rotation is
+     * complete before the rear list grows longer than the front list, so no
+     * operation ever has to evaluate more than one cell. The latency itself is
+     * measured by {@code RealTimeQueueBenchmark}.
+     */
+    @Test
+    public void operations_keepScheduleInvariant() {
+	// Prepare test data
+	RealTimeImmutableQueue<Integer> queue = new RealTimeImmutableQueue<>();
+
+	// Call method to be tested and assert test result
+	for (int i = 0; i < 1000; i++) {
+	    queue = (RealTimeImmutableQueue<Integer>) queue.enQueue(i);
+	    assertScheduled(queue);
+	}
+	for (int i = 0; i < 1000; i++) {
+	    assertEquals(Integer.valueOf(i), queue.head());
+	    assertScheduled(queue);
+	    queue = (RealTimeImmutableQueue<Integer>) queue.deQueue();
+	    assertScheduled(queue);
+	    queue = (RealTimeImmutableQueue<Integer>) queue.enQueue(1000 + i);
+	    assertScheduled(queue);
+	}
+	while (!queue.isEmpty()) {
+	    queue = (RealTimeImmutableQueue<Integer>) queue.deQueue();
+	    assertScheduled(queue);
+	}
+    }
+
+    private static void assertScheduled(RealTimeImmutableQueue<?> queue) {
+	int frontSize = queue.size() - queue.rearSize();
+	assertEquals(frontSize - queue.rearSize(), queue.scheduleLength());
+    }
+}
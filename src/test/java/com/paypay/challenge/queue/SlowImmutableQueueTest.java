@@ -1,10 +1,16 @@
 package com.paypay.challenge.queue;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
+import com.paypay.challenge.clone.CopyStrategy;
+import com.paypay.challenge.clone.DeepCopy;
 import com.paypay.challenge.test.model.Address;
 
 /**
@@ -12,7 +18,12 @@ import com.paypay.challenge.test.model.Address;
  * 
  * @author hoang.tran
  */
-public class SlowImmutableQueueTest {
+public class SlowImmutableQueueTest extends ImmutableQueueContractTest {
+    @Override
+    protected <T> Queue<T> emptyQueue() {
+	return new SlowImmutableQueue<T>();
+    }
+
     /**
      * Tests that calling {@link SlowImmutableQueue#enQueue(Object)} on an immutable
      * queue does not change its contents. Instead, enqueue will make an entirely
@@ -60,4 +71,48 @@ public class SlowImmutableQueueTest {
 	// Assert that the originalQueue still have one element (not empty)
 	assertFalse(originalQueue.isEmpty());
     }
+
+    /**
+     * Tests that {@link SlowImmutableQueue#enQueueAll(Iterable)} copies the queue
+     * once for the whole batch: the data of each element is copied once, and the
+     * chain of elements is never deep copied, as
+     * {@link SlowImmutableQueue#enQueue(Object)} would do for each new element.
+     */
+    @Test
+    public void enQueueAll_copiesQueueOnceForWholeBatch() {
+	// Prepare test data
+	List<Address> addresses = new ArrayList<>();
+	for (int i = 0; i < 5000; i++) {
+	    addresses.add(new Address("Japan", "Tokyo", i));
+	}
+	Queue<Address> queue = new SlowImmutableQueue<Address>().enQueueAll(addresses);
+	CopyStrategy defaultStrategy = DeepCopy.getStrategy();
+	int[] elementCopies = new int[1];
+	int[] addressCopies = new int[1];
+
+	// Call method to be tested
+	DeepCopy.setStrategy(new CopyStrategy() {
+	    @Override
+	    public <T> T copy(T originalObj) {
+		if (originalObj instanceof Element) {
+		    elementCopies[0]++;
+		} else if (originalObj instanceof Address) {
+		    addressCopies[0]++;
+		}
+		return defaultStrategy.copy(originalObj);
+	    }
+	});
+	Queue<Address> result;
+	try {
+	    result = queue.enQueueAll(addresses);
+	} finally {
+	    DeepCopy.setStrategy(defaultStrategy);
+	}
+
+	// Assert test result
+	assertEquals(0, elementCopies[0]);
+	assertEquals(10000, addressCopies[0]);
+	assertEquals(addresses.get(0), result.head());
+	assertEquals(addresses.get(1), result.deQueue(5001).head());
+    }
 }
\ No newline at end of file
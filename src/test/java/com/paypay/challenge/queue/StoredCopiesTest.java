@@ -0,0 +1,60 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link StoredCopies} class.
+ *
+ * @author hoang.tran
+ */
+public class StoredCopiesTest {
+    /**
+     * Tests that the data is copied for storage outside of
+     * {@link StoredCopies#storeAsIs(java.util.function.Supplier)}, and stored as
+     * it is within it.
+     */
+    @Test
+    public void storeAsIs_storesDataWithoutCopyingIt() {
+	// Prepare test data
+	Address address = new Address("Japan", "Tokyo", 1234);
+
+	// Call method to be tested
+	Address copy = StoredCopies.copy(address);
+	Address stored = StoredCopies.storeAsIs(() -> StoredCopies.copy(address));
+
+	// Assert test result
+	assertNotSame(address, copy);
+	assertEquals(address, copy);
+	assertSame(address, stored);
+    }
+
+    /**
+     * Tests that the data is copied again once the action given to
+     * {@link StoredCopies#storeAsIs(java.util.function.Supplier)} has failed.
+     */
+    @Test
+    public void storeAsIs_copiesAgainAfterFailedAction() {
+	// Prepare test data
+	Address address = new Address("Japan", "Tokyo", 1234);
+
+	// Call method to be tested
+	try {
+	    StoredCopies.storeAsIs(() -> {
+		throw new IllegalStateException("Failed action");
+	    });
+	    fail("The failure of the action should be thrown");
+	} catch (IllegalStateException e) {
+	    // Expected
+	}
+
+	// Assert test result
+	assertNotSame(address, StoredCopies.copy(address));
+    }
+}
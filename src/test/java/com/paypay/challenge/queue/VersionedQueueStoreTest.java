@@ -0,0 +1,180 @@
+package com.paypay.challenge.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.paypay.challenge.test.model.Address;
+import com.paypay.challenge.test.util.Utilities;
+
+/**
+ * Unit tests for the {@link VersionedQueueStore} class.
+ *
+ * @author hoang.tran
+ */
+public class VersionedQueueStoreTest {
+    /**
+     * Defines a clock that only moves when the test says so.
+     */
+    private static final class ManualClock extends Clock {
+	private long millis = 1000;
+
+	@Override
+	public long millis() {
+	    return this.millis;
+	}
+
+	@Override
+	public Instant instant() {
+	    return Instant.ofEpochMilli(this.millis);
+	}
+
+	@Override
+	public ZoneId getZone() {
+	    return ZoneOffset.UTC;
+	}
+
+	@Override
+	public Clock withZone(ZoneId zone) {
+	    return this;
+	}
+    }
+
+    /**
+     * Tests that the versions are numbered in commit order, and that each one is
+     * found by its number.
+     */
+    @Test
+    public void commit_numbersVersionsInOrder() {
+	// Prepare test data
+	Queue<Integer> initial = new BankersImmutableQueue<>();
+	VersionedQueueStore<Integer> store = new VersionedQueueStore<>(initial, Integer.MAX_VALUE);
+
+	// Call method to be tested
+	long first = store.update(queue -> queue.enQueue(1));
+	long second = store.update(queue -> queue.enQueue(2));
+	long third = store.update(Queue::deQueue);
+
+	// Assert test result
+	assertEquals(1, first);
+	assertEquals(2, second);
+	assertEquals(3, third);
+	assertSame(initial, store.get(0));
+	assertEquals(Arrays.asList(1), ImmutableQueueContractTest.drainAll(store.get(1)));
+	assertEquals(Arrays.asList(1, 2), ImmutableQueueContractTest.drainAll(store.get(2)));
+	assertEquals(Arrays.asList(2), ImmutableQueueContractTest.drainAll(store.latest()));
+	assertNull(store.get(4));
+	assertEquals(4, store.size());
+    }
+
+    /**
+     * Tests that only the last versions are retained, across the growth of the
+     * store, and that the dropped ones are not found anymore.
+     */
+    @Test
+    public void commit_retainsLastVersions() {
+	// Prepare test data
+	VersionedQueueStore<Integer> store = new VersionedQueueStore<>(new BankersImmutableQueue<>(), 50);
+
+	// Call method to be tested
+	for (int i = 0; i < 1000; i++) {
+	    int value = i;
+	    store.update(queue -> queue.enQueue(value));
+	}
+
+	// Assert test result
+	assertEquals(50, store.size());
+	assertEquals(951, store.oldestVersion());
+	assertEquals(1000, store.latestVersion());
+	assertNull(store.get(950));
+	assertEquals(951, store.get(951).size());
+	assertEquals(Integer.valueOf(999), ImmutableQueueContractTest.drainAll(store.latest()).get(999));
+    }
+
+    /**
+     * Tests that the versions older than the time to live are dropped, except the
+     * latest one, and that the queue as of a time is the last version committed
+     * at or before it.
+     */
+    @Test
+    public void asOf_findsVersionsWithinTimeToLive() {
+	// Prepare test data
+	ManualClock clock = new ManualClock();
+	VersionedQueueStore<String> store = new VersionedQueueStore<>(new BankersImmutableQueue<>(),
+		Integer.MAX_VALUE, Duration.ofSeconds(10), clock);
+	clock.millis = 2000;
+	store.update(queue -> queue.enQueue("a"));
+	clock.millis = 5000;
+	store.update(queue -> queue.enQueue("b"));
+
+	// Call method to be tested and assert test result
+	assertTrue(store.asOf(1500).isEmpty());
+	assertEquals(Arrays.asList("a"), ImmutableQueueContractTest.drainAll(store.asOf(4999)));
+	assertEquals(2, store.versionAt(5000));
+	assertEquals(-1, store.versionAt(999));
+
+	clock.millis = 11500;
+	assertEquals(1, store.oldestVersion());
+	assertNull(store.asOf(1500));
+
+	clock.millis = 100000;
+	assertEquals(1, store.size());
+	assertEquals(Arrays.asList("a", "b"), ImmutableQueueContractTest.drainAll(store.latest()));
+    }
+
+    /**
+     * Tests that the fifty thousand versions of a persistent queue growing to
+     * fifty thousand elements are kept as they were committed, and that
+     * committing them all allocates the latest version plus a few bytes per
+     * version, as they share their elements. The allocations are counted for the
+     * current thread, so the result does not depend on the garbage collector.
+     */
+    @Test
+    public void commit_sharesStructureBetweenVersions() {
+	// Prepare test data
+	int size = 50000;
+	Address[] addresses = new Address[size];
+	for (int i = 0; i < size; i++) {
+	    addresses[i] = new Address("Japan", "Tokyo", i);
+	}
+	long oneVersion = Utilities.allocatedBytes(() -> {
+	    Queue<Address> queue = new BankersImmutableQueue<>();
+	    for (int i = 0; i < size; i++) {
+		queue = queue.enQueue(addresses[i]);
+	    }
+	});
+
+	// Call method to be tested
+	VersionedQueueStore<Address> store = new VersionedQueueStore<>(new BankersImmutableQueue<>(),
+		Integer.MAX_VALUE);
+	List<Queue<Address>> committed = new ArrayList<>(size);
+	long allVersions = Utilities.allocatedBytes(() -> {
+	    for (int i = 0; i < size; i++) {
+		Queue<Address> queue = store.latest().enQueue(addresses[i]);
+		store.commit(queue);
+		committed.add(queue);
+	    }
+	});
+
+	// Assert test result
+	// The store keeps the versions themselves, not copies of them
+	for (int i = 0; i < size; i++) {
+	    assertSame(committed.get(i), store.get(i + 1));
+	}
+	// Each version only adds its own small header, not a copy of its elements
+	assertTrue("Allocated " + allVersions + " bytes against " + oneVersion,
+		allVersions - oneVersion < 128L * size);
+    }
+}
@@ -0,0 +1,356 @@
+package com.paypay.challenge.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.paypay.challenge.codec.Codec;
+import com.paypay.challenge.codec.CodecRegistry;
+import com.paypay.challenge.queue.BankersImmutableQueue;
+import com.paypay.challenge.queue.ChunkedImmutableQueue;
+import com.paypay.challenge.queue.Queue;
+import com.paypay.challenge.test.model.Address;
+
+/**
+ * Unit tests for the {@link ReplicationLeader} and {@link ReplicationFollower}
+ * classes, over the {@link InProcessTransport} and {@link SocketTransport}
+ * transports.
+ *
+ * @author hoang.tran
+ */
+public class ReplicationTest {
+    /** The codec of the addresses. */
+    private final Codec<Address> codec = new CodecRegistry().codecFor(Address.class);
+
+    /**
+     * Tests that a follower started on a leader with elements catches up from a
+     * snapshot, then applies the batches of deltas to the same versions.
+     */
+    @Test(timeout = 30000)
+    public void follower_rebuildsLeaderVersions() throws InterruptedException {
+	// Prepare test data
+	ReplicationLeader<Address> leader = new ReplicationLeader<>(new BankersImmutableQueue<>(), this.codec, 4);
+	leader.enQueue(address(0));
+	leader.enQueue(address(1));
+	InProcessTransport[] transports = InProcessTransport.connectedPair();
+	leader.connect(transports[0]);
+	ReplicationFollower<Address> follower = new ReplicationFollower<>(transports[1], this.codec,
+		new ChunkedImmutableQueue<>());
+
+	// Call method to be tested
+	follower.start();
+	awaitSequence(follower, 2);
+	int caughtUp = follower.current().size();
+	for (int i = 2; i < 10; i++) {
+	    leader.enQueue(address(i));
+	    leader.deQueue(1);
+	}
+	awaitSequence(follower, leader.sequence());
+
+	// Assert test result
+	assertEquals(2, caughtUp);
+	assertEquals(18, follower.sequence());
+	assertEquals(toList(leader.current()), toList(follower.current()));
+	// The two pending deltas and a snapshot, then four batches of four deltas
+	assertEquals(6, transports[0].messagesSent());
+    }
+
+    /**
+     * Tests that a lost batch is detected by the sequence number of the next one,
+     * and that the follower catches up from a snapshot.
+     */
+    @Test(timeout = 30000)
+    public void follower_catchesUpAfterLostBatch() throws InterruptedException {
+	// Prepare test data
+	ReplicationLeader<Address> leader = new ReplicationLeader<>(new BankersImmutableQueue<>(), this.codec, 2);
+	InProcessTransport[] transports = InProcessTransport.connectedPair();
+	Lossy lossy = new Lossy(transports[0]);
+	leader.connect(lossy);
+	ReplicationFollower<Address> follower = new ReplicationFollower<>(transports[1], this.codec,
+		new BankersImmutableQueue<>());
+	follower.start();
+	awaitSequence(follower, 0);
+
+	// Call method to be tested
+	leader.enQueueAll(list(0, 3));
+	lossy.dropNext = true;
+	leader.enQueue(address(3));
+	leader.enQueue(address(4));
+	leader.deQueue(2);
+	leader.enQueue(address(5));
+	leader.flush();
+	awaitSequence(follower, leader.sequence());
+
+	// Assert test result
+	assertEquals(leader.sequence(), follower.sequence());
+	assertEquals(toList(leader.current()), toList(follower.current()));
+	assertEquals(1, lossy.dropped);
+    }
+
+    /**
+     * Tests that the bytes sent for a change do not depend on the size of the
+     * queue, and are far less than the JSON of the whole queue.
+     */
+    @Test(timeout = 30000)
+    public void leader_sendsBytesProportionalToChanges() throws InterruptedException {
+	// Prepare test data
+	ReplicationLeader<Address> leader = new ReplicationLeader<>(new BankersImmutableQueue<>(), this.codec, 1);
+	InProcessTransport[] transports = InProcessTransport.connectedPair();
+	leader.connect(transports[0]);
+	ReplicationFollower<Address> follower = new ReplicationFollower<>(transports[1], this.codec,
+		new BankersImmutableQueue<>());
+	follower.start();
+	leader.enQueueAll(list(0, 10000));
+	awaitSequence(follower, leader.sequence());
+	long before = transports[0].bytesSent();
+
+	// Call method to be tested
+	leader.enQueue(address(10000));
+	leader.deQueue(1);
+	awaitSequence(follower, leader.sequence());
+	long deltaBytes = transports[0].bytesSent() - before;
+
+	// Assert test result
+	String json = new Gson().toJson(toList(leader.current()));
+	assertTrue("Sent " + deltaBytes + " bytes", deltaBytes < 64);
+	assertTrue(json.length() > 10000 * deltaBytes);
+	assertEquals(toList(leader.current()), toList(follower.current()));
+    }
+
+    /**
+     * Tests that a follower too far behind receives a snapshot in place of the
+     * dropped messages, so it catches up without requesting one, even though no
+     * batch follows.
+     */
+    @Test(timeout = 30000)
+    public void follower_catchesUpAfterOverflowWithoutRequest() throws InterruptedException {
+	// Prepare test data
+	ReplicationLeader<Address> leader = new ReplicationLeader<>(new BankersImmutableQueue<>(), this.codec, 1);
+	InProcessTransport[] transports = InProcessTransport.connectedPair();
+	Gated gated = new Gated(transports[0]);
+	leader.connect(gated);
+	ReplicationFollower<Address> follower = new ReplicationFollower<>(transports[1], this.codec,
+		new BankersImmutableQueue<>());
+	follower.start();
+	awaitSequence(follower, 0);
+
+	// Call method to be tested
+	gated.gate = new CountDownLatch(1);
+	for (int i = 0; i < ReplicationLeader.MAX_OUTBOUND_MESSAGES + 2; i++) {
+	    leader.enQueue(address(i));
+	}
+	gated.gate.countDown();
+	awaitSequence(follower, leader.sequence());
+
+	// Assert test result
+	assertEquals(toList(leader.current()), toList(follower.current()));
+	assertEquals(1, transports[1].messagesSent());
+	leader.close();
+    }
+
+    /**
+     * Tests that a follower whose transport hangs, and one whose transport fails,
+     * neither block nor fail the changes of the leader, while another follower
+     * keeps up.
+     */
+    @Test(timeout = 30000)
+    public void leader_isNotBlockedBySlowOrFailingFollowers() throws InterruptedException {
+	// Prepare test data
+	ReplicationLeader<Address> leader = new ReplicationLeader<>(new BankersImmutableQueue<>(), this.codec, 1);
+	CountDownLatch hung = new CountDownLatch(1);
+	leader.connect(new Stub(message -> hung.await()));
+	leader.connect(new Stub(message -> {
+	    throw new IOException("Connection reset");
+	}));
+	InProcessTransport[] transports = InProcessTransport.connectedPair();
+	leader.connect(transports[0]);
+	ReplicationFollower<Address> follower = new ReplicationFollower<>(transports[1], this.codec,
+		new BankersImmutableQueue<>());
+	follower.start();
+
+	// Call method to be tested
+	try {
+	    for (int i = 0; i < 2 * ReplicationLeader.MAX_OUTBOUND_MESSAGES; i++) {
+		leader.enQueue(address(i));
+	    }
+	    awaitSequence(follower, leader.sequence());
+	} finally {
+	    hung.countDown();
+	    leader.close();
+	}
+
+	// Assert test result
+	assertEquals(2 * ReplicationLeader.MAX_OUTBOUND_MESSAGES, leader.current().size());
+	assertEquals(toList(leader.current()), toList(follower.current()));
+	assertTrue(leader.sendFailures() >= ReplicationLeader.MAX_OUTBOUND_MESSAGES);
+    }
+
+    /**
+     * Tests that a follower replicates the leader over a loopback socket.
+     */
+    @Test(timeout = 30000)
+    public void socketTransport_replicatesOverLoopback() throws Exception {
+	// Prepare test data
+	ReplicationLeader<Address> leader = new ReplicationLeader<>(new BankersImmutableQueue<>(), this.codec);
+	leader.enQueueAll(list(0, 100));
+	try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		SocketTransport followerEnd = new SocketTransport(
+			new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+		SocketTransport leaderEnd = new SocketTransport(server.accept())) {
+	    leader.connect(leaderEnd);
+	    ReplicationFollower<Address> follower = new ReplicationFollower<>(followerEnd, this.codec,
+		    new BankersImmutableQueue<>());
+
+	    // Call method to be tested
+	    follower.start();
+	    awaitSequence(follower, 1);
+	    for (int i = 100; i < 1000; i++) {
+		leader.enQueue(address(i));
+		if (i % 3 == 0) {
+		    leader.deQueue(1);
+		}
+	    }
+	    leader.flush();
+	    awaitSequence(follower, leader.sequence());
+
+	    // Assert test result
+	    assertEquals(toList(leader.current()), toList(follower.current()));
+	}
+    }
+
+    /**
+     * Defines a transport that can lose the next message sent.
+     */
+    private static final class Lossy implements Transport {
+	private final Transport transport;
+	private volatile boolean dropNext;
+	private volatile int dropped;
+
+	private Lossy(Transport transport) {
+	    this.transport = transport;
+	}
+
+	@Override
+	public void send(byte[] message) throws IOException {
+	    if (this.dropNext) {
+		this.dropNext = false;
+		this.dropped++;
+		return;
+	    }
+	    this.transport.send(message);
+	}
+
+	@Override
+	public void setReceiver(Consumer<byte[]> receiver) {
+	    this.transport.setReceiver(receiver);
+	}
+
+	@Override
+	public void close() throws IOException {
+	    this.transport.close();
+	}
+    }
+
+    /**
+     * Defines a transport whose sends wait until its gate is open.
+     */
+    private static final class Gated implements Transport {
+	private final Transport transport;
+	private volatile CountDownLatch gate = new CountDownLatch(0);
+
+	private Gated(Transport transport) {
+	    this.transport = transport;
+	}
+
+	@Override
+	public void send(byte[] message) throws IOException {
+	    try {
+		this.gate.await();
+	    } catch (InterruptedException e) {
+		throw new IOException(e);
+	    }
+	    this.transport.send(message);
+	}
+
+	@Override
+	public void setReceiver(Consumer<byte[]> receiver) {
+	    this.transport.setReceiver(receiver);
+	}
+
+	@Override
+	public void close() throws IOException {
+	    this.transport.close();
+	}
+    }
+
+    /**
+     * Defines a transport sending with the given action, and receiving nothing.
+     */
+    private static final class Stub implements Transport {
+	private final Sender sender;
+
+	private Stub(Sender sender) {
+	    this.sender = sender;
+	}
+
+	@Override
+	public void send(byte[] message) throws IOException {
+	    try {
+		this.sender.send(message);
+	    } catch (InterruptedException e) {
+		throw new IOException(e);
+	    }
+	}
+
+	@Override
+	public void setReceiver(Consumer<byte[]> receiver) {
+	}
+
+	@Override
+	public void close() {
+	}
+    }
+
+    @FunctionalInterface
+    private interface Sender {
+	void send(byte[] message) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Waits until the follower has applied the given sequence number.
+     */
+    private static void awaitSequence(ReplicationFollower<?> follower, long sequence) throws InterruptedException {
+	while (follower.sequence() < sequence) {
+	    Thread.sleep(1);
+	}
+    }
+
+    private static Address address(int i) {
+	return new Address("Japan", "Tokyo", i);
+    }
+
+    private static List<Address> list(int from, int to) {
+	List<Address> addresses = new ArrayList<>();
+	for (int i = from; i < to; i++) {
+	    addresses.add(address(i));
+	}
+	return addresses;
+    }
+
+    private static List<Address> toList(Queue<Address> queue) {
+	List<Address> elements = new ArrayList<>();
+	queue.forEach(elements::add);
+	return elements;
+    }
+}